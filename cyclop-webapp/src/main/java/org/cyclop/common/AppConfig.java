@@ -18,8 +18,6 @@ package org.cyclop.common;
 
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -31,7 +29,6 @@ import javax.validation.constraints.NotNull;
 import net.jcip.annotations.Immutable;
 
 import org.apache.commons.lang.Validate;
-import org.cyclop.model.exception.ServiceException;
 import org.cyclop.validation.BeanValidator;
 import org.cyclop.validation.SimpleDate;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -82,6 +79,10 @@ public final class AppConfig implements Serializable {
 	@Valid
 	public final QueryExport queryExport;
 
+	@NotNull
+	@Valid
+	public final ExportJobs exportJobs;
+
 	@NotNull
 	@Valid
 	public final HttpSession httpSession;
@@ -97,7 +98,7 @@ public final class AppConfig implements Serializable {
 	@Inject
 	public AppConfig(Cassandra cassandra, QueryEditor queryEditor, Common common, QueryExport queryExport,
 			Cookies cookie, History history, Favourites favourites, FileStore fileStore, HttpSession httpSession,
-			QueryImport queryImport, Login security) {
+			QueryImport queryImport, Login security, ExportJobs exportJobs) {
 		this.cassandra = cassandra;
 		this.queryEditor = queryEditor;
 		this.common = common;
@@ -109,6 +110,7 @@ public final class AppConfig implements Serializable {
 		this.httpSession = httpSession;
 		this.queryImport = queryImport;
 		this.login = security;
+		this.exportJobs = exportJobs;
 	}
 
 	private static String crs(String cr, String str) throws UnsupportedEncodingException {
@@ -133,7 +135,8 @@ public final class AppConfig implements Serializable {
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("cassandra", cassandra).add("queryEditor", queryEditor)
 				.add("common", common).add("history", history).add("fileStore", fileStore)
-				.add("favourites", favourites).add("queryExport", queryExport).add("httpSession", httpSession)
+				.add("favourites", favourites).add("queryExport", queryExport).add("exportJobs", exportJobs)
+				.add("httpSession", httpSession)
 				.add("cookie", cookie).add("queryImport", queryImport).add("security", login).toString();
 	}
 
@@ -163,10 +166,25 @@ public final class AppConfig implements Serializable {
 		public final int maxSimultaneousRequestsPerConnectionThreshold;
 
 		@Min(1)
-		public final int minSimultaneousRequestsPerConnectionThreshold;
+		public final int connectionIdleTimeoutSeconds;
+
+		@Min(1)
+		public final int keySpaceSessionIdleSeconds;
 
 		public final boolean useSsl;
 
+		@Min(0)
+		public final int schemaCacheExpirySeconds;
+
+		@Min(1)
+		public final int schemaCacheMaxEntries;
+
+		@Min(1)
+		public final int fetchSize;
+
+		@Min(1)
+		public final int maxFetchSize;
+
 		@Inject
 		public Cassandra(
 				@Value("${cassandra.hosts}") String hosts,
@@ -177,7 +195,12 @@ public final class AppConfig implements Serializable {
 				@Value("${cassandra.maxConnectionsPerHost}") int maxConnectionsPerHost,
 				@Value("${cassandra.coreConnectionsPerHost}") int coreConnectionsPerHost,
 				@Value("${cassandra.simultaneousRequestsPerConnectionThreshold.max}") int maxSimultaneousRequestsPerConnectionThreshold,
-				@Value("${cassandra.simultaneousRequestsPerConnectionThreshold.min}") int minSimultaneousRequestsPerConnectionThreshold) {
+				@Value("${cassandra.connectionIdleTimeoutSeconds:120}") int connectionIdleTimeoutSeconds,
+				@Value("${cassandra.keySpaceSessionIdleSeconds:600}") int keySpaceSessionIdleSeconds,
+				@Value("${cassandra.schemaCache.expirySeconds:60}") int schemaCacheExpirySeconds,
+				@Value("${cassandra.schemaCache.maxEntries:1000}") int schemaCacheMaxEntries,
+				@Value("${cassandra.fetchSize:500}") int fetchSize,
+				@Value("${cassandra.fetchSize.max:10000}") int maxFetchSize) {
 			this.hosts = hosts;
 			this.useSsl = useSsl;
 			this.port = port;
@@ -186,7 +209,12 @@ public final class AppConfig implements Serializable {
 			this.maxConnectionsPerHost = maxConnectionsPerHost;
 			this.coreConnectionsPerHost = coreConnectionsPerHost;
 			this.maxSimultaneousRequestsPerConnectionThreshold = maxSimultaneousRequestsPerConnectionThreshold;
-			this.minSimultaneousRequestsPerConnectionThreshold = minSimultaneousRequestsPerConnectionThreshold;
+			this.connectionIdleTimeoutSeconds = connectionIdleTimeoutSeconds;
+			this.keySpaceSessionIdleSeconds = keySpaceSessionIdleSeconds;
+			this.schemaCacheExpirySeconds = schemaCacheExpirySeconds;
+			this.schemaCacheMaxEntries = schemaCacheMaxEntries;
+			this.fetchSize = fetchSize;
+			this.maxFetchSize = maxFetchSize;
 		}
 
 		@Override
@@ -200,7 +228,11 @@ public final class AppConfig implements Serializable {
 					.add("maxConnectionsPerHost", maxConnectionsPerHost)
 					.add("coreConnectionsPerHost", coreConnectionsPerHost)
 					.add("maxSimultaneousRequestsPerConnectionThreshold", maxSimultaneousRequestsPerConnectionThreshold)
-					.add("minSimultaneousRequestsPerConnectionThreshold", minSimultaneousRequestsPerConnectionThreshold)
+					.add("connectionIdleTimeoutSeconds", connectionIdleTimeoutSeconds)
+					.add("keySpaceSessionIdleSeconds", keySpaceSessionIdleSeconds)
+					.add("schemaCacheExpirySeconds", schemaCacheExpirySeconds)
+					.add("schemaCacheMaxEntries", schemaCacheMaxEntries).add("fetchSize", fetchSize)
+					.add("maxFetchSize", maxFetchSize)
 					.add("useSsl", useSsl).toString();
 		}
 	}
@@ -294,24 +326,52 @@ public final class AppConfig implements Serializable {
 		@Min(1)
 		public final int rowsLimit;
 
+		@Min(1)
+		public final int queryDeadlineSeconds;
+
+		@Min(100)
+		public final int queryPollMillis;
+
+		@Min(1)
+		public final int rowCachePageSize;
+
+		@Min(1)
+		public final int rowCacheMaxRows;
+
+		@Min(1)
+		public final long rowCacheMaxBytes;
+
 		@Inject
 		protected QueryEditor(@Value("${queryEditor.maxColumnEmbeddedDisplayChars}") int maxColumnEmbeddedDisplayChars,
 				@Value("${queryEditor.maxColumnDisplayChars}") int maxColumnDisplayChars,
 				@Value("${queryEditor.maxColumnTooltipDisplayChars}") int maxColumnTooltipDisplayChars,
-				@Value("${queryEditor.rowsLimit}") int rowsLimit
+				@Value("${queryEditor.rowsLimit}") int rowsLimit,
+				@Value("${queryEditor.queryDeadlineSeconds:300}") int queryDeadlineSeconds,
+				@Value("${queryEditor.queryPollMillis:500}") int queryPollMillis,
+				@Value("${queryEditor.rowCache.pageSize:500}") int rowCachePageSize,
+				@Value("${queryEditor.rowCache.maxRows:20000}") int rowCacheMaxRows,
+				@Value("${queryEditor.rowCache.maxBytes:33554432}") long rowCacheMaxBytes
 
 		) {
 			this.maxColumnEmbeddedDisplayChars = maxColumnEmbeddedDisplayChars;
 			this.maxColumnDisplayChars = maxColumnDisplayChars;
 			this.maxColumnTooltipDisplayChars = maxColumnTooltipDisplayChars;
 			this.rowsLimit = rowsLimit;
+			this.queryDeadlineSeconds = queryDeadlineSeconds;
+			this.queryPollMillis = queryPollMillis;
+			this.rowCachePageSize = rowCachePageSize;
+			this.rowCacheMaxRows = Math.max(rowCacheMaxRows, rowCachePageSize);
+			this.rowCacheMaxBytes = rowCacheMaxBytes;
 		}
 
 		@Override
 		public String toString() {
 			return MoreObjects.toStringHelper(this).add("maxColumnEmbeddedDisplayChars", maxColumnEmbeddedDisplayChars)
 					.add("maxColumnDisplayChars", maxColumnDisplayChars).add("rowsLimit", rowsLimit)
-					.add("maxColumnTooltipDisplayChars", maxColumnTooltipDisplayChars).toString();
+					.add("maxColumnTooltipDisplayChars", maxColumnTooltipDisplayChars)
+					.add("queryDeadlineSeconds", queryDeadlineSeconds).add("queryPollMillis", queryPollMillis)
+					.add("rowCachePageSize", rowCachePageSize).add("rowCacheMaxRows", rowCacheMaxRows)
+					.add("rowCacheMaxBytes", rowCacheMaxBytes).toString();
 		}
 	}
 
@@ -355,6 +415,22 @@ public final class AppConfig implements Serializable {
 
 		public final boolean removeCrChars;
 
+		@Min(1024)
+		public final int bufferSize;
+
+		public final boolean parallel;
+
+		@Min(1)
+		public final int parallelThreadsProExport;
+
+		public final boolean parallelOrdered;
+
+		@Min(0)
+		public final int parallelMaxRetries;
+
+		@Min(1)
+		public final int parallelStallTimeoutSeconds;
+
 		@Inject
 		public QueryExport(@Value("${queryExport.fileName}") String fileName,
 				@Value("${queryExport.fileName.date}") String fileNameDate,
@@ -367,7 +443,13 @@ public final class AppConfig implements Serializable {
 				@Value("${queryExport.valueBracket.end}") String valueBracketEnd,
 				@Value("${queryExport.crCharCode}") int crCharCode,
 				@Value("${queryExport.removeCrChars}") boolean removeCrChars,
-				@Value("${queryExport.trim}") boolean trim, @Value("${queryExport.encoding}") String encoding)
+				@Value("${queryExport.trim}") boolean trim, @Value("${queryExport.encoding}") String encoding,
+				@Value("${queryExport.bufferSize:65536}") int bufferSize,
+				@Value("${queryExport.parallel:false}") boolean parallel,
+				@Value("${queryExport.parallel.threadsProExport:4}") int parallelThreadsProExport,
+				@Value("${queryExport.parallel.ordered:true}") boolean parallelOrdered,
+				@Value("${queryExport.parallel.maxRetries:3}") int parallelMaxRetries,
+				@Value("${queryExport.parallel.stallTimeoutSeconds:300}") int parallelStallTimeoutSeconds)
 				throws UnsupportedEncodingException {
 
 			this.crCharCode = crCharCode;
@@ -384,6 +466,12 @@ public final class AppConfig implements Serializable {
 			this.valueBracketEnd = valueBracketEnd;
 			this.trim = trim;
 			this.encoding = encoding;
+			this.bufferSize = bufferSize;
+			this.parallel = parallel;
+			this.parallelThreadsProExport = parallelThreadsProExport;
+			this.parallelOrdered = parallelOrdered;
+			this.parallelMaxRetries = parallelMaxRetries;
+			this.parallelStallTimeoutSeconds = parallelStallTimeoutSeconds;
 		}
 
 		@Override
@@ -394,16 +482,60 @@ public final class AppConfig implements Serializable {
 					.add("crCharCode", crCharCode).add("valueBracketStart", valueBracketStart)
 					.add("fileName", fileName).add("fileNameDate", fileNameDate)
 					.add("valueBracketEnd", valueBracketEnd).add("trim", trim).add("removeCrChars", removeCrChars)
-					.toString();
+					.add("bufferSize", bufferSize).add("parallel", parallel)
+					.add("parallelThreadsProExport", parallelThreadsProExport).add("parallelOrdered", parallelOrdered)
+					.add("parallelMaxRetries", parallelMaxRetries)
+					.add("parallelStallTimeoutSeconds", parallelStallTimeoutSeconds).toString();
 		}
 	}
 
 	@Named
 	@Immutable
-	public static final class QueryImport implements Serializable {
-		@NotNull
-		public final Pattern listSeparatorRegEx;
+	public static final class ExportJobs implements Serializable {
 
+		@NotEmpty
+		public final String folder;
+
+		public final boolean compress;
+
+		@Min(1)
+		public final int maxRunning;
+
+		@Min(0)
+		public final int maxQueued;
+
+		@Min(1)
+		public final int diskQuotaMb;
+
+		@Min(1)
+		public final int expirySeconds;
+
+		@Inject
+		public ExportJobs(@Value("${exportJobs.folder:/tmp}") String folder,
+				@Value("${exportJobs.compress:true}") boolean compress,
+				@Value("${exportJobs.maxRunning:2}") int maxRunning,
+				@Value("${exportJobs.maxQueued:10}") int maxQueued,
+				@Value("${exportJobs.diskQuotaMb:2048}") int diskQuotaMb,
+				@Value("${exportJobs.expirySeconds:7200}") int expirySeconds) {
+			this.folder = folder;
+			this.compress = compress;
+			this.maxRunning = maxRunning;
+			this.maxQueued = maxQueued;
+			this.diskQuotaMb = diskQuotaMb;
+			this.expirySeconds = expirySeconds;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("folder", folder).add("compress", compress)
+					.add("maxRunning", maxRunning).add("maxQueued", maxQueued).add("diskQuotaMb", diskQuotaMb)
+					.add("expirySeconds", expirySeconds).toString();
+		}
+	}
+
+	@Named
+	@Immutable
+	public static final class QueryImport implements Serializable {
 		@NotEmpty
 		public final String encoding;
 
@@ -413,27 +545,83 @@ public final class AppConfig implements Serializable {
 		@Min(1)
 		public final int maxThreadsProImport;
 
+		@Min(1)
+		public final int queueSize;
+
+		@Min(1)
+		public final int batchSize;
+
+		@Min(1)
+		public final int batchMaxSizeKb;
+
+		public final boolean async;
+
+		@Min(1)
+		public final int maxInFlightProImport;
+
+		@Min(1)
+		public final int maxInFlight;
+
+		@Min(1)
+		public final int adaptiveStartRate;
+
+		@Min(1)
+		public final int checkpointIntervalSeconds;
+
+		@Min(1)
+		public final int preparedCacheSize;
+
+		@NotEmpty
+		public final String resultFolder;
+
+		@Min(0)
+		public final int resultMaxErrors;
+
+		@Min(0)
+		public final int resultSuccessSample;
+
 		@Inject
-		public QueryImport(@Value("${queryImport.listSeparatorRegEx}") String listSeparatorRegEx,
-				@Value("${queryImport.encoding}") String encoding,
+		public QueryImport(@Value("${queryImport.encoding}") String encoding,
 				@Value("${queryImport.maxFileSizeMb}") int maxFileSizeMb,
-				@Value("${queryImport.parallel.maxThreadsProImport}") int maxThreadsProImport) {
-			try {
-				this.listSeparatorRegEx = Pattern.compile(listSeparatorRegEx);
-			} catch (PatternSyntaxException e) {
-				throw new ServiceException("Property: queryImport.listSeparatorRegEx syntax error: " + e.getMessage(),
-						e);
-			}
+				@Value("${queryImport.parallel.maxThreadsProImport}") int maxThreadsProImport,
+				@Value("${queryImport.parallel.queueSize:1000}") int queueSize,
+				@Value("${queryImport.parallel.batchSize:8}") int batchSize,
+				@Value("${queryImport.batch.maxSizeKb:5}") int batchMaxSizeKb,
+				@Value("${queryImport.async.enabled:true}") boolean async,
+				@Value("${queryImport.async.maxInFlightProImport:64}") int maxInFlightProImport,
+				@Value("${queryImport.async.maxInFlight:512}") int maxInFlight,
+				@Value("${queryImport.throttle.adaptiveStartRate:500}") int adaptiveStartRate,
+				@Value("${queryImport.checkpoint.intervalSeconds:5}") int checkpointIntervalSeconds,
+				@Value("${queryImport.prepared.cacheSize:100}") int preparedCacheSize,
+				@Value("${queryImport.result.folder:/tmp}") String resultFolder,
+				@Value("${queryImport.result.maxErrors:10000}") int resultMaxErrors,
+				@Value("${queryImport.result.successSample:1000}") int resultSuccessSample) {
 			this.encoding = encoding;
 			this.maxFileSizeMb = maxFileSizeMb;
 			this.maxThreadsProImport = maxThreadsProImport;
+			this.queueSize = queueSize;
+			this.batchSize = batchSize;
+			this.batchMaxSizeKb = batchMaxSizeKb;
+			this.async = async;
+			this.maxInFlightProImport = maxInFlightProImport;
+			this.maxInFlight = maxInFlight;
+			this.adaptiveStartRate = adaptiveStartRate;
+			this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+			this.preparedCacheSize = preparedCacheSize;
+			this.resultFolder = resultFolder;
+			this.resultMaxErrors = resultMaxErrors;
+			this.resultSuccessSample = resultSuccessSample;
 		}
 
 		@Override
 		public String toString() {
-			return MoreObjects.toStringHelper(this).add("listSeparatorRegEx", listSeparatorRegEx)
-					.add("encoding", encoding).add("maxFileSizeMb", maxFileSizeMb)
-					.add("maxThreadsProImport", maxThreadsProImport).toString();
+			return MoreObjects.toStringHelper(this).add("encoding", encoding).add("maxFileSizeMb", maxFileSizeMb)
+					.add("maxThreadsProImport", maxThreadsProImport).add("queueSize", queueSize).add("batchSize", batchSize)
+					.add("batchMaxSizeKb", batchMaxSizeKb).add("async", async)
+					.add("maxInFlightProImport", maxInFlightProImport).add("maxInFlight", maxInFlight)
+					.add("adaptiveStartRate", adaptiveStartRate).add("checkpointIntervalSeconds", checkpointIntervalSeconds)
+					.add("preparedCacheSize", preparedCacheSize).add("resultFolder", resultFolder)
+					.add("resultMaxErrors", resultMaxErrors).add("resultSuccessSample", resultSuccessSample).toString();
 		}
 	}
 
@@ -491,16 +679,21 @@ public final class AppConfig implements Serializable {
 
 		public final boolean enabled;
 
+		@Min(1)
+		public final int filterLimit;
+
 		@Inject
-		public History(@Value("${history.entriesLimit}") int entriesLimit, @Value("${history.enabled}") boolean enabled) {
+		public History(@Value("${history.entriesLimit}") int entriesLimit, @Value("${history.enabled}") boolean enabled,
+				@Value("${history.filterLimit:500}") int filterLimit) {
 			this.entriesLimit = entriesLimit;
 			this.enabled = enabled;
+			this.filterLimit = filterLimit;
 		}
 
 		@Override
 		public String toString() {
 			return MoreObjects.toStringHelper(this).add("entriesLimit", entriesLimit).add("enabled", enabled)
-					.toString();
+					.add("filterLimit", filterLimit).toString();
 		}
 	}
 
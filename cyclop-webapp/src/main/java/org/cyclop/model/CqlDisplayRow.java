@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.model;
+
+import java.io.Serializable;
+
+import javax.validation.constraints.NotNull;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Row of query result decoded once into display ready values - it replaces driver's row in query result table, so
+ * that the row and its buffers can be released right after reading.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class CqlDisplayRow implements Serializable {
+
+	/** position of this row within query result */
+	public final int index;
+
+	/** values in the same order as {@link CqlRowMetadata#columns} */
+	@NotNull
+	public final ImmutableList<CqlDisplayValue> values;
+
+	/** not trimmed value of partition key, or null if result does not contain partition key */
+	public final String partitionKeyValue;
+
+	public CqlDisplayRow(int index, ImmutableList<CqlDisplayValue> values, String partitionKeyValue) {
+		this.index = index;
+		this.values = values;
+		this.partitionKeyValue = partitionKeyValue;
+	}
+
+	/** @return value on given column index, or {@link CqlDisplayValue#EMPTY} if index is out of range */
+	public CqlDisplayValue get(int columnIndex) {
+		return columnIndex < 0 || columnIndex >= values.size() ? CqlDisplayValue.EMPTY : values.get(columnIndex);
+	}
+
+	/** @return estimated amount of memory occupied by this row */
+	public long estimateSize() {
+		long size = 32 + (partitionKeyValue == null ? 0 : partitionKeyValue.length() * 2);
+		for (CqlDisplayValue val : values) {
+			size += val.estimateSize();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("index", index).add("values", values)
+				.add("partitionKeyValue", partitionKeyValue).toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return java.util.Objects.hash(index, values, partitionKeyValue);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final CqlDisplayRow other = (CqlDisplayRow) obj;
+		return index == other.index && java.util.Objects.equals(values, other.values)
+				&& java.util.Objects.equals(partitionKeyValue, other.partitionKeyValue);
+	}
+}
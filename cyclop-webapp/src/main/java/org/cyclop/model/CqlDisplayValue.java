@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.model;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Display ready value of single column - it contains content already converted to string and trimmed to configured
+ * display length, so that it can be rendered without accessing driver's row. Not trimmed content is not kept, it can
+ * be read again from query result over {@link CqlValuePath}.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class CqlDisplayValue implements Serializable {
+
+	public final static CqlDisplayValue EMPTY = new CqlDisplayValue(Type.EMPTY, "", null, ImmutableList.of(),
+			ImmutableList.of());
+
+	@NotNull
+	public final Type type;
+
+	/** content trimmed to display length */
+	@NotNull
+	public final String content;
+
+	/** content trimmed to tooltip length, or null if {@link #content} has not been trimmed */
+	public final String tooltip;
+
+	/** elements of set or list */
+	@NotNull
+	public final ImmutableList<CqlDisplayValue> collection;
+
+	/** entries of map in order returned by driver */
+	@NotNull
+	public final ImmutableList<Map.Entry<CqlDisplayValue, CqlDisplayValue>> map;
+
+	private CqlDisplayValue(Type type, String content, String tooltip, ImmutableList<CqlDisplayValue> collection,
+			ImmutableList<Map.Entry<CqlDisplayValue, CqlDisplayValue>> map) {
+		this.type = type;
+		this.content = content;
+		this.tooltip = tooltip;
+		this.collection = collection;
+		this.map = map;
+	}
+
+	public static CqlDisplayValue single(String content, String tooltip) {
+		return new CqlDisplayValue(Type.SINGLE, content, tooltip, ImmutableList.of(), ImmutableList.of());
+	}
+
+	public static CqlDisplayValue collection(ImmutableList<CqlDisplayValue> collection) {
+		return collection.isEmpty() ? EMPTY : new CqlDisplayValue(Type.COLLECTION, "", null, collection,
+				ImmutableList.of());
+	}
+
+	public static CqlDisplayValue map(ImmutableList<Map.Entry<CqlDisplayValue, CqlDisplayValue>> map) {
+		return map.isEmpty() ? EMPTY : new CqlDisplayValue(Type.MAP, "", null, ImmutableList.of(), map);
+	}
+
+	public boolean isTrimmed() {
+		return tooltip != null;
+	}
+
+	/** @return estimated amount of memory occupied by this value */
+	public long estimateSize() {
+		long size = 32 + content.length() * 2 + (tooltip == null ? 0 : tooltip.length() * 2);
+		for (CqlDisplayValue val : collection) {
+			size += val.estimateSize();
+		}
+		for (Map.Entry<CqlDisplayValue, CqlDisplayValue> entry : map) {
+			size += entry.getKey().estimateSize() + entry.getValue().estimateSize();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("type", type).add("content", content)
+				.add("tooltip", tooltip).add("collection", collection).add("map", map).toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return java.util.Objects.hash(type, content, tooltip, collection, map);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final CqlDisplayValue other = (CqlDisplayValue) obj;
+		return java.util.Objects.equals(type, other.type) && java.util.Objects.equals(content, other.content)
+				&& java.util.Objects.equals(tooltip, other.tooltip)
+				&& java.util.Objects.equals(collection, other.collection) && java.util.Objects.equals(map, other.map);
+	}
+
+	public static enum Type {
+		EMPTY, SINGLE, COLLECTION, MAP
+	}
+}
@@ -26,12 +26,13 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.collections4.iterators.EmptyIterator;
 import org.cyclop.common.SerializationUtil;
+import org.cyclop.model.exception.ServiceException;
 
 import com.datastax.driver.core.Row;
 import com.google.common.base.MoreObjects;
 
 /** @author Maciej Miklas */
-public class CqlQueryResult implements Iterable<Row>, Serializable {
+public class CqlQueryResult implements Iterable<Row>, Serializable, AutoCloseable {
 	public final static CqlQueryResult EMPTY = new CqlQueryResult();
 
 	@NotNull
@@ -41,15 +42,24 @@ public class CqlQueryResult implements Iterable<Row>, Serializable {
 	@NotNull
 	private final transient Iterator<Row> rows;
 
+	/** can be null */
+	private final transient RowSeeker seeker;
+
 	@SuppressWarnings("unchecked")
 	CqlQueryResult() {
 		rows = EmptyIterator.INSTANCE;
 		rowMetadata = CqlRowMetadata.EMPTY;
+		seeker = null;
 	}
 
 	public CqlQueryResult(Iterator<Row> rowsIt, CqlRowMetadata rowMetadata) {
+		this(rowsIt, rowMetadata, null);
+	}
+
+	public CqlQueryResult(Iterator<Row> rowsIt, CqlRowMetadata rowMetadata, RowSeeker seeker) {
 		this.rows = rowsIt;
 		this.rowMetadata = rowMetadata;
+		this.seeker = seeker;
 	}
 
 	@Override
@@ -57,6 +67,22 @@ public class CqlQueryResult implements Iterable<Row>, Serializable {
 		return rows;
 	}
 
+	/** @return true if {@link #iterator(int)} is supported */
+	public boolean isSeekable() {
+		return seeker != null;
+	}
+
+	/**
+	 * Returns new iterator starting at given row - query will be executed again, but rows before given index will be
+	 * fetched only from the beginning of the page containing it.
+	 */
+	public Iterator<Row> iterator(int fromRow) {
+		if (seeker == null) {
+			throw new UnsupportedOperationException("Query result is not seekable");
+		}
+		return seeker.seek(fromRow);
+	}
+
 	private void readObject(ObjectInputStream in) throws ClassNotFoundException, IOException {
 		in.defaultReadObject();
 		SerializationUtil.setField(this, "rows", EmptyIterator.INSTANCE);
@@ -70,4 +96,22 @@ public class CqlQueryResult implements Iterable<Row>, Serializable {
 	public boolean isEmpty() {
 		return !rows.hasNext();
 	}
+
+	/** stops reading rows in background, if rows are read this way - rows which are not read yet are dropped */
+	@Override
+	public void close() {
+		if (!(rows instanceof AutoCloseable)) {
+			return;
+		}
+		try {
+			((AutoCloseable) rows).close();
+		} catch (Exception e) {
+			throw new ServiceException("Error closing query result: " + e.getMessage(), e);
+		}
+	}
+
+	@FunctionalInterface
+	public static interface RowSeeker {
+		Iterator<Row> seek(int fromRow);
+	}
 }
@@ -53,6 +53,16 @@ public final class CqlRowMetadata implements Serializable {
 		this.partitionKey = null;
 	}
 
+	/** @return position of column with the same name in {@link #columns}, or -1 if not found */
+	public int indexOf(CqlExtendedColumnName column) {
+		for (int idx = 0; idx < columns.size(); idx++) {
+			if (columns.get(idx).partLc.equals(column.partLc)) {
+				return idx;
+			}
+		}
+		return -1;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("columns", columns).add("partitionKey", partitionKey).toString();
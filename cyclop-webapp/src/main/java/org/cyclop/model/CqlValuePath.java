@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.model;
+
+import java.io.Serializable;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Position of single value within query result. {@link CqlDisplayValue} keeps only trimmed content, the path is used
+ * to read not trimmed content again from the query result.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class CqlValuePath implements Serializable {
+
+	/** index of the row within query result - see {@link CqlDisplayRow#index} */
+	public final int rowIndex;
+
+	/** index of the column within {@link CqlRowMetadata#columns} */
+	public final int columnIndex;
+
+	/** index of collection element or map entry, or -1 if value is not embedded in collection */
+	public final int elementIndex;
+
+	/** true if value is the key of map entry */
+	public final boolean mapKey;
+
+	private CqlValuePath(int rowIndex, int columnIndex, int elementIndex, boolean mapKey) {
+		this.rowIndex = rowIndex;
+		this.columnIndex = columnIndex;
+		this.elementIndex = elementIndex;
+		this.mapKey = mapKey;
+	}
+
+	public static CqlValuePath column(int rowIndex, int columnIndex) {
+		return new CqlValuePath(rowIndex, columnIndex, -1, false);
+	}
+
+	public CqlValuePath element(int elementIndex) {
+		return new CqlValuePath(rowIndex, columnIndex, elementIndex, false);
+	}
+
+	public CqlValuePath mapKey(int entryIndex) {
+		return new CqlValuePath(rowIndex, columnIndex, entryIndex, true);
+	}
+
+	public CqlValuePath mapValue(int entryIndex) {
+		return new CqlValuePath(rowIndex, columnIndex, entryIndex, false);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("rowIndex", rowIndex).add("columnIndex", columnIndex)
+				.add("elementIndex", elementIndex).add("mapKey", mapKey).toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return java.util.Objects.hash(rowIndex, columnIndex, elementIndex, mapKey);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final CqlValuePath other = (CqlValuePath) obj;
+		return rowIndex == other.rowIndex && columnIndex == other.columnIndex && elementIndex == other.elementIndex
+				&& mapKey == other.mapKey;
+	}
+}
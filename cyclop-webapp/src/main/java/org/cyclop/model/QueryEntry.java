@@ -19,6 +19,7 @@ package org.cyclop.model;
 import java.io.Serializable;
 import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.function.Function;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -42,6 +43,9 @@ import com.google.common.base.MoreObjects;
 @XmlJavaTypeAdapter(QueryEntry.Adapter.class)
 public final class QueryEntry implements Comparable<QueryEntry>, Serializable {
 
+	/** text of entry used by {@link SearchIndex} */
+	public final static Function<QueryEntry, String> INDEX_TEXT = entry -> entry.query.partLc;
+
 	@NotNull
 	@Valid
 	public final CqlQuery query;
@@ -56,6 +56,9 @@ public final class QueryFavourites implements Serializable, Synchronizable {
 
 	private final Lock lock = new ReentrantLock();
 
+	/** created on first {@link #getIndex()}. guarded by lock */
+	private transient SearchIndex<QueryEntry> index;
+
 	public QueryFavourites() {
 		favourites = new HashSet<>(AppConfig.get().favourites.entriesLimit);
 	}
@@ -69,6 +72,9 @@ public final class QueryFavourites implements Serializable, Synchronizable {
 		lock.lock();
 		try {
 			favourites.clear();
+			if (index != null) {
+				index.clear();
+			}
 		} finally {
 			lock.unlock();
 		}
@@ -108,7 +114,11 @@ public final class QueryFavourites implements Serializable, Synchronizable {
 	public boolean remove(QueryEntry entry) {
 		lock.lock();
 		try {
-			return favourites.remove(entry);
+			boolean removed = favourites.remove(entry);
+			if (removed && index != null) {
+				index.remove(entry);
+			}
+			return removed;
 		} finally {
 			lock.unlock();
 		}
@@ -125,16 +135,38 @@ public final class QueryFavourites implements Serializable, Synchronizable {
 			if (favourites.contains(entry)) {
 				favourites.remove(entry);
 				favourites.add(entry);
+				if (index != null) {
+					index.remove(entry);
+				}
 			} else if (favourites.size() >= AppConfig.get().favourites.entriesLimit) {
 				return false;
 			}
 			favourites.add(entry);
+			if (index != null) {
+				index.add(entry);
+			}
 			return true;
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	/** @return index over favourites, it's updated on each change */
+	public SearchIndex<QueryEntry> getIndex() {
+		lock.lock();
+		try {
+			if (index == null) {
+				index = new SearchIndex<>(QueryEntry.INDEX_TEXT);
+				for (QueryEntry entry : favourites) {
+					index.add(entry);
+				}
+			}
+			return index;
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	@XmlRootElement
 	@XmlAccessorType(XmlAccessType.FIELD)
 	@NotThreadSafe
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -57,6 +58,15 @@ public final class QueryHistory implements Serializable, Synchronizable {
 
 	private final Lock lock = new ReentrantLock();
 
+	/**
+	 * entries added since last {@link #drainAppended()}, null if whole history has to be stored - after clear, or when
+	 * there are more new entries than history can hold. guarded by lock
+	 */
+	private transient List<QueryEntry> appended = new ArrayList<>();
+
+	/** created on first {@link #getIndex()}. guarded by lock */
+	private transient SearchIndex<QueryEntry> index;
+
 	@Override
 	public Lock getLock() {
 		return lock;
@@ -70,6 +80,10 @@ public final class QueryHistory implements Serializable, Synchronizable {
 		lock.lock();
 		try {
 			history.clear();
+			appended = null;
+			if (index != null) {
+				index.clear();
+			}
 		} finally {
 			lock.unlock();
 		}
@@ -111,7 +125,59 @@ public final class QueryHistory implements Serializable, Synchronizable {
 	public void add(QueryEntry entry) {
 		lock.lock();
 		try {
+			if (index != null) {
+				if (history.size() == history.maxSize()) {
+					index.remove(history.peek());
+				}
+				index.add(entry);
+			}
 			history.add(entry);
+			if (appended != null) {
+				appended.add(entry);
+				if (appended.size() >= history.maxSize()) {
+					appended = null;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** adds entries from given history, from oldest to newest */
+	public void addAll(QueryHistory other) {
+		for (QueryEntry entry : other.copyAsList().reverse()) {
+			add(entry);
+		}
+	}
+
+	/** @return index over entries kept in this history, it's updated on each change */
+	public SearchIndex<QueryEntry> getIndex() {
+		lock.lock();
+		try {
+			if (index == null) {
+				index = new SearchIndex<>(QueryEntry.INDEX_TEXT);
+				for (QueryEntry entry : history) {
+					index.add(entry);
+				}
+			}
+			return index;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Entries are returned only once - next call returns entries added after this one
+	 *
+	 * @return entries added since last call from oldest to newest, empty if whole history has to be stored
+	 */
+	public Optional<ImmutableList<QueryEntry>> drainAppended() {
+		lock.lock();
+		try {
+			Optional<ImmutableList<QueryEntry>> drained = appended == null ? Optional.empty() : Optional
+					.of(ImmutableList.copyOf(appended));
+			appended = new ArrayList<>();
+			return drained;
 		} finally {
 			lock.unlock();
 		}
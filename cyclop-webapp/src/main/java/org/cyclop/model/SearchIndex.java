@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Trigram index over text of elements, it's maintained incrementally by the owner of elements. Search finds elements
+ * whose text contains given keywords, cost depends on number of texts sharing keyword's rarest trigram - not on the
+ * size of the index. Elements with the same text are found once, the one added as last.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+public final class SearchIndex<T> {
+
+	public final static int GRAM_LENGTH = 3;
+
+	private final static Comparator<Map.Entry<String, Integer>> RANKING = (o1, o2) -> {
+		int compRes = o2.getValue() - o1.getValue();
+		return compRes == 0 ? o1.getKey().compareTo(o2.getKey()) : compRes;
+	};
+
+	private final Function<T, String> text;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** trigram -> texts containing it. guarded by lock */
+	private final Map<String, Set<String>> postings = new HashMap<>();
+
+	/** text -> elements having this text, oldest first. guarded by lock */
+	private final Map<String, Deque<T>> elements = new HashMap<>();
+
+	/**
+	 * @param text
+	 *            returns trimmed, lower case text of element
+	 */
+	public SearchIndex(Function<T, String> text) {
+		this.text = text;
+	}
+
+	public void add(T element) {
+		String elText = text.apply(element);
+		if (elText == null) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			Deque<T> sameText = elements.get(elText);
+			if (sameText == null) {
+				sameText = new ArrayDeque<>(1);
+				elements.put(elText, sameText);
+				for (String gram : grams(elText)) {
+					postings.computeIfAbsent(gram, g -> new HashSet<>()).add(elText);
+				}
+			}
+			sameText.addLast(element);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** removes the oldest element equal to given one */
+	public void remove(T element) {
+		String elText = text.apply(element);
+		if (elText == null) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			Deque<T> sameText = elements.get(elText);
+			if (sameText == null || !sameText.removeFirstOccurrence(element) || !sameText.isEmpty()) {
+				return;
+			}
+			elements.remove(elText);
+			for (String gram : grams(elText)) {
+				Set<String> texts = postings.get(gram);
+				texts.remove(elText);
+				if (texts.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			elements.clear();
+			postings.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param keywordsLc
+	 *            trimmed, lower case keywords - each one at least {@link #GRAM_LENGTH} long
+	 * @param limit
+	 *            max amount of returned elements
+	 * @return elements containing at least one keyword. Elements containing more keywords come first, elements
+	 *         containing the same amount of keywords are sorted by text
+	 */
+	public ImmutableList<T> search(Set<String> keywordsLc, int limit) {
+		lock.readLock().lock();
+		try {
+			Map<String, Integer> weights = new HashMap<>();
+			for (String keyword : keywordsLc) {
+				for (String found : find(keyword)) {
+					weights.merge(found, 1, Integer::sum);
+				}
+			}
+
+			// keeps top elements only, the worst one is on the head
+			PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(Math.min(limit, weights.size()) + 1,
+					RANKING.reversed());
+			for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+				top.add(weight);
+				if (top.size() > limit) {
+					top.poll();
+				}
+			}
+			List<Map.Entry<String, Integer>> ranked = new ArrayList<>(top);
+			Collections.sort(ranked, RANKING);
+
+			ImmutableList.Builder<T> result = ImmutableList.builder();
+			for (Map.Entry<String, Integer> weight : ranked) {
+				result.add(elements.get(weight.getKey()).getLast());
+			}
+			return result.build();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/** @return amount of different texts in index */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return elements.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/** texts sharing the rarest trigram of keyword are candidates, they still have to contain whole keyword */
+	private List<String> find(String keyword) {
+		Set<String> candidates = null;
+		for (String gram : grams(keyword)) {
+			Set<String> texts = postings.get(gram);
+			if (texts == null) {
+				return Collections.emptyList();
+			}
+			if (candidates == null || texts.size() < candidates.size()) {
+				candidates = texts;
+			}
+		}
+		if (candidates == null) {
+			return Collections.emptyList();
+		}
+		List<String> found = new ArrayList<>();
+		for (String candidate : candidates) {
+			if (candidate.contains(keyword)) {
+				found.add(candidate);
+			}
+		}
+		return found;
+	}
+
+	private static Set<String> grams(String text) {
+		Set<String> grams = new HashSet<>();
+		for (int idx = 0; idx + GRAM_LENGTH <= text.length(); idx++) {
+			grams.add(text.substring(idx, idx + GRAM_LENGTH));
+		}
+		return grams;
+	}
+}
@@ -65,6 +65,19 @@ public final class UserPreferences implements Serializable {
 	@XmlElement(name = "p_ii")
 	private long pagerImportItems = 100;
 
+	/** 0 - use cassandra.fetchSize from configuration */
+	@XmlElement(name = "e_fs")
+	private int fetchSize = 0;
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public UserPreferences setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
 	public long getPagerImportItems() {
 		return pagerImportItems;
 	}
@@ -106,7 +119,7 @@ public final class UserPreferences implements Serializable {
 				.add("showCqlHelp", showCqlHelp).add("importIncludeInHistory", importIncludeInHistory)
 				.add("importContinueWithErrors", importContinueWithErrors).add("pagerEditorItems", pagerEditorItems)
 				.add("pagerHistoryItems", pagerHistoryItems).add("pagerImportItems", pagerImportItems)
-				.add("resultOrientation", resultOrientation).toString();
+				.add("resultOrientation", resultOrientation).add("fetchSize", fetchSize).toString();
 	}
 
 	public boolean isImportIncludeInHistory() {
@@ -158,7 +171,7 @@ public final class UserPreferences implements Serializable {
 	public int hashCode() {
 		return java.util.Objects.hash(showCqlCompletionHint, showCqlHelp, importIncludeInHistory,
 				importContinueWithErrors, pagerEditorItems, pagerHistoryItems, pagerImportItems, importParallel,
-				resultOrientation);
+				resultOrientation, fetchSize);
 	}
 
 	@Override
@@ -175,6 +188,7 @@ public final class UserPreferences implements Serializable {
 				&& java.util.Objects.equals(pagerHistoryItems, other.pagerHistoryItems)
 				&& java.util.Objects.equals(pagerImportItems, other.pagerImportItems)
 				&& java.util.Objects.equals(importParallel, other.importParallel)
-				&& java.util.Objects.equals(resultOrientation, other.resultOrientation);
+				&& java.util.Objects.equals(resultOrientation, other.resultOrientation)
+				&& java.util.Objects.equals(fetchSize, other.fetchSize);
 	}
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra;
+
+import java.util.Optional;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+
+/**
+ * Query executed by {@link QueryService#executeAsync(CqlQuery, boolean, int)}. Query will be cancelled if it does not
+ * finish within configured deadline.
+ *
+ * @author Maciej Miklas
+ */
+public interface QueryHandle {
+
+	CqlQuery getQuery();
+
+	/** @return true if query has finished, failed or has been cancelled */
+	boolean isDone();
+
+	/**
+	 * @return query result, or empty if query is still running
+	 * @throws org.cyclop.model.exception.QueryException
+	 *             if query has failed, has been cancelled or has exceeded its deadline
+	 */
+	Optional<CqlQueryResult> poll();
+
+	/** @return false if query could not be cancelled because it has been already completed */
+	boolean cancel();
+}
@@ -17,6 +17,7 @@
 package org.cyclop.service.cassandra;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import javax.validation.constraints.NotNull;
 
@@ -54,6 +55,39 @@ public interface QueryService {
 	@NotNull
 	CqlQueryResult execute(@NotNull CqlQuery query, boolean updateHistory);
 
+	/**
+	 * executes query without blocking caller thread - use returned handle to poll for result or to cancel query
+	 *
+	 * @param fetchSize
+	 *            amount of rows fetched in single round trip, 0 for default from configuration, larger values
+	 *            than cassandra.fetchSize.max are reduced to it
+	 */
+	@NotNull
+	QueryHandle executeAsync(@NotNull CqlQuery query, boolean updateHistory, int fetchSize);
+
+	/**
+	 * executes full table select (without where clause) as token range queries running in parallel. Other queries
+	 * are executed as by {@link #execute(CqlQuery, boolean)} without history update. Returned result is not seekable.
+	 *
+	 * @param parallelism
+	 *            amount of token ranges read at once
+	 * @param ordered
+	 *            true to return rows in token order (as sequential select would), false to return them in the order in
+	 *            which ranges are read
+	 */
+	@NotNull
+	CqlQueryResult executeFullScan(@NotNull CqlQuery query, int parallelism, boolean ordered);
+
+	/**
+	 * binds query to user's session without executing it - this method requires user's session, but returned supplier
+	 * can be called in any thread. Supplier executes query as {@link #executeFullScan(CqlQuery, int, boolean)} does.
+	 *
+	 * @param parallelism
+	 *            amount of token ranges read at once, 0 to execute query sequentially
+	 */
+	@NotNull
+	Supplier<CqlQueryResult> prepareFullScan(@NotNull CqlQuery query, int parallelism, boolean ordered);
+
 	@NotNull
 	ImmutableSortedSet<CqlTable> findTableNames(@NotNull Optional<CqlKeySpace> keySpace);
 }
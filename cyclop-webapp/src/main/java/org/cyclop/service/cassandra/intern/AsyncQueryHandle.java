@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.exception.QueryException;
+import org.cyclop.service.cassandra.QueryHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ResultSet;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Result set is converted into {@link CqlQueryResult} by the thread calling {@link #poll()} - the driver's I/O
+ * threads must not execute blocking code.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+final class AsyncQueryHandle implements QueryHandle {
+	private final static Logger LOG = LoggerFactory.getLogger(AsyncQueryHandle.class);
+
+	private final CqlQuery query;
+
+	private final ListenableFuture<ResultSet> future;
+
+	private final ResultConverter converter;
+
+	private final long startTime;
+
+	private final long deadline;
+
+	private volatile long runTime = -1;
+
+	private volatile boolean deadlineExceeded = false;
+
+	/** guarded by this */
+	private CqlQueryResult result;
+
+	AsyncQueryHandle(CqlQuery query, ListenableFuture<ResultSet> future, long deadline, ResultConverter converter) {
+		this.query = query;
+		this.future = future;
+		this.deadline = deadline;
+		this.converter = converter;
+		this.startTime = System.currentTimeMillis();
+		future.addListener(() -> runTime = System.currentTimeMillis() - startTime, MoreExecutors.sameThreadExecutor());
+	}
+
+	/** handle for query that has been already executed */
+	static AsyncQueryHandle completed(CqlQuery query, CqlQueryResult result) {
+		return new AsyncQueryHandle(query, Futures.<ResultSet> immediateFuture(null), Long.MAX_VALUE, (rs, rt) -> result);
+	}
+
+	@Override
+	public CqlQuery getQuery() {
+		return query;
+	}
+
+	@Override
+	public boolean isDone() {
+		return future.isDone();
+	}
+
+	@Override
+	public synchronized Optional<CqlQueryResult> poll() {
+		if (result != null) {
+			return Optional.of(result);
+		}
+		if (!future.isDone()) {
+			if (System.currentTimeMillis() < deadline) {
+				return Optional.empty();
+			}
+			expire();
+		}
+
+		ResultSet resultSet;
+		try {
+			resultSet = Uninterruptibles.getUninterruptibly(future);
+		} catch (CancellationException e) {
+			String reason = deadlineExceeded ? "deadline exceeded" : "cancelled";
+			throw new QueryException("Query has been " + reason + ": '" + query.part + "'", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() == null ? e : e.getCause();
+			throw new QueryException("Error executing CQL: '" + query.part + "', reason: " + cause.getMessage(),
+					cause instanceof Exception ? (Exception) cause : e);
+		}
+
+		// listener setting run time might be still running
+		long time = runTime < 0 ? System.currentTimeMillis() - startTime : runTime;
+		result = converter.convert(resultSet, time);
+		return Optional.of(result);
+	}
+
+	@Override
+	public boolean cancel() {
+		boolean cancelled = future.cancel(true);
+		LOG.debug("Cancel: {} - {}", query, cancelled);
+		return cancelled;
+	}
+
+	/** called by scheduler when deadline has been reached */
+	void expire() {
+		if (future.isDone()) {
+			return;
+		}
+		deadlineExceeded = true;
+		if (future.cancel(true)) {
+			LOG.info("Query deadline exceeded, cancelled: {}", query);
+		}
+	}
+
+	long getDeadline() {
+		return deadline;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("query", query).add("done", future.isDone())
+				.add("deadline", deadline).toString();
+	}
+
+	@FunctionalInterface
+	interface ResultConverter {
+		CqlQueryResult convert(ResultSet resultSet, long runTime);
+	}
+}
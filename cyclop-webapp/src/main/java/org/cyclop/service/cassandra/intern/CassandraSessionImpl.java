@@ -16,6 +16,8 @@
  */
 package org.cyclop.service.cassandra.intern;
 
+import java.util.Optional;
+
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -23,22 +25,18 @@ import javax.validation.constraints.NotNull;
 
 import net.jcip.annotations.NotThreadSafe;
 
-import org.cyclop.common.AppConfig;
 import org.cyclop.model.CassandraVersion;
+import org.cyclop.model.CqlKeySpace;
 import org.cyclop.model.exception.AuthenticationRequiredException;
+import org.cyclop.model.exception.QueryException;
 import org.cyclop.service.cassandra.CassandraSession;
 import org.cyclop.validation.EnableValidation;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
 
 import com.datastax.driver.core.Cluster;
-import com.datastax.driver.core.HostDistance;
-import com.datastax.driver.core.PoolingOptions;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.SocketOptions;
-import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.DriverException;
 
 /** @author Maciej Miklas */
 @NotThreadSafe
@@ -46,107 +44,70 @@ import com.datastax.driver.core.exceptions.InvalidQueryException;
 @Scope(value = "session", proxyMode = ScopedProxyMode.TARGET_CLASS)
 @EnableValidation
 public class CassandraSessionImpl implements CassandraSession {
-	private final static Logger LOG = LoggerFactory.getLogger(CassandraSessionImpl.class);
-
-	private transient Session session;
 
 	@Inject
-	private AppConfig appConfig;
+	private transient ClusterRegistry clusterRegistry;
 
-	private CassandraVersion cassandraVersion;
+	private transient SharedCluster cluster;
 
-	private transient Cluster cluster;
+	/** can be null */
+	private CqlKeySpace activeKeySpace;
 
 	public synchronized void authenticate(@NotNull String userName, @NotNull String password) {
-		if (session != null) {
+		if (cluster != null) {
 			return;
 		}
-		try {
-			Cluster.Builder builder = Cluster.builder();
-			for (String host : appConfig.cassandra.hosts.split("[,]")) {
-				builder.addContactPoint(host);
-			}
-			builder.withCredentials(userName, password);
-
-			if (appConfig.cassandra.useSsl) {
-				builder.withSSL();
-			}
-
-			SocketOptions socketOptions = new SocketOptions();
-			socketOptions.setConnectTimeoutMillis(appConfig.cassandra.timeoutMillis);
-
-			PoolingOptions pooling = new PoolingOptions();
-			pooling.setCoreConnectionsPerHost(HostDistance.LOCAL, appConfig.cassandra.coreConnectionsPerHost);
-			pooling.setMaxConnectionsPerHost(HostDistance.LOCAL, appConfig.cassandra.maxConnectionsPerHost);
-			pooling.setMinSimultaneousRequestsPerConnectionThreshold(HostDistance.LOCAL,
-					appConfig.cassandra.minSimultaneousRequestsPerConnectionThreshold);
-			pooling.setMaxSimultaneousRequestsPerConnectionThreshold(HostDistance.LOCAL,
-					appConfig.cassandra.maxSimultaneousRequestsPerConnectionThreshold);
-
-			cluster = builder.withPort(appConfig.cassandra.port).withSocketOptions(socketOptions)
-					.withPoolingOptions(pooling).build();
-			session = cluster.connect();
-
-			cassandraVersion = determineVersion(session);
-		} finally {
-			if (session == null) {
-				LOG.debug("Cannot open cassandra session - clean up resources");
-				close();
-			}
-		}
-	}
-
-	private CassandraVersion determineVersion(Session session) {
-		CassandraVersion ver = CassandraVersion.VER_2_1;
-
-		// this way to check version sucks and works at the same time ....
-		try {
-			session.execute("select type_name from system.schema_usertypes");
-		} catch (InvalidQueryException e) {
-			ver = CassandraVersion.VER_2_0;
-		}
-
-		try {
-			session.execute("select type FROM system.schema_columns LIMIT 1 ALLOW FILTERING");
-		} catch (InvalidQueryException e) {
-			ver = CassandraVersion.VER_1_2;
-		}
-		return ver;
+		cluster = clusterRegistry.acquire(userName, password);
 	}
 
 	@Override
 	public CassandraVersion getCassandraVersion() {
-		checkAuthenticated();
-		return cassandraVersion;
+		return getSharedCluster().getCassandraVersion();
 	}
 
 	@Override
-	public synchronized Session getSession() {
-		checkAuthenticated();
-		return session;
+	public Session getSession() {
+		return getSharedCluster().getSession(Optional.ofNullable(activeKeySpace));
+	}
+
+	/** cluster metadata is kept up to date by the driver - use it instead of querying system tables */
+	public Cluster getCluster() {
+		return getSharedCluster().getCluster();
+	}
+
+	/**
+	 * Replacement for USE statement - session is shared with other users so its key space cannot be changed.
+	 *
+	 * @throws QueryException
+	 *             if given key space does not exist
+	 */
+	public synchronized void useKeySpace(CqlKeySpace keySpace) {
+		try {
+			getSharedCluster().getSession(Optional.of(keySpace));
+		} catch (DriverException e) {
+			throw new QueryException("Error executing CQL: 'use " + keySpace.part + "', reason: " + e.getMessage(), e);
+		}
+		activeKeySpace = keySpace;
 	}
 
 	public synchronized void close() {
 		if (cluster != null) {
-			try {
-				cluster.close();
-			} catch (Exception e) {
-				LOG.warn("Error while shutting down the cluster", e);
-			}
+			clusterRegistry.release(cluster);
 			cluster = null;
-			session = null;
+			activeKeySpace = null;
 		}
 	}
 
-	private void checkAuthenticated() {
-		if (!isOpen()) {
+	private synchronized SharedCluster getSharedCluster() {
+		if (cluster == null) {
 			throw new AuthenticationRequiredException("Cassandra session not found");
 		}
+		return cluster;
 	}
 
 	@Override
 	public synchronized boolean isOpen() {
-		return session != null;
+		return cluster != null;
 
 	}
 
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.Hashing;
+
+/**
+ * Process wide registry of {@link SharedCluster} instances. HTTP sessions authenticated with the same credentials
+ * share one cluster (control connection, connection pools, schema metadata). Cluster is closed when the last session
+ * using it has been closed.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+@Named
+public class ClusterRegistry {
+	private final static Logger LOG = LoggerFactory.getLogger(ClusterRegistry.class);
+
+	@Inject
+	private AppConfig appConfig;
+
+	private final Map<ClusterKey, SharedCluster> clusters = new HashMap<>();
+
+	/**
+	 * Returns connected cluster for given credentials and increases its reference count - each call has to be followed
+	 * by {@link #release(SharedCluster)}.
+	 *
+	 * @throws com.datastax.driver.core.exceptions.AuthenticationException
+	 *             on invalid credentials
+	 */
+	public SharedCluster acquire(String userName, String password) {
+		ClusterKey key = new ClusterKey(appConfig.cassandra.hosts, appConfig.cassandra.useSsl, userName, password);
+		SharedCluster cluster;
+		synchronized (this) {
+			cluster = clusters.get(key);
+			if (cluster == null) {
+				cluster = new SharedCluster(key.toString(), appConfig.cassandra, userName, password);
+				clusters.put(key, cluster);
+			}
+			cluster.references++;
+		}
+
+		// connecting can take a while - do not block sessions using other credentials
+		boolean connected = false;
+		try {
+			cluster.connect();
+			connected = true;
+		} finally {
+			if (!connected) {
+				release(cluster);
+			}
+		}
+		LOG.debug("Acquired: {}", cluster);
+		return cluster;
+	}
+
+	public void release(SharedCluster cluster) {
+		synchronized (this) {
+			cluster.references--;
+			if (cluster.references > 0) {
+				LOG.debug("Released: {}", cluster);
+				return;
+			}
+			clusters.values().remove(cluster);
+		}
+		LOG.debug("Closing unused: {}", cluster);
+		cluster.close();
+	}
+
+	/** amount of open clusters */
+	public synchronized int size() {
+		return clusters.size();
+	}
+
+	@PreDestroy
+	public void cleanup() {
+		synchronized (this) {
+			clusters.values().forEach(SharedCluster::close);
+			clusters.clear();
+		}
+	}
+
+	private final static class ClusterKey {
+		private final String hosts;
+
+		private final boolean useSsl;
+
+		private final String userName;
+
+		/**
+		 * password is a part of the key, so that sessions with wrong password do not get cluster authenticated by
+		 * someone else
+		 */
+		private final String passwordHash;
+
+		private ClusterKey(String hosts, boolean useSsl, String userName, String password) {
+			this.hosts = hosts;
+			this.useSsl = useSsl;
+			this.userName = userName;
+			this.passwordHash = Hashing.sha256().hashString(password, Charsets.UTF_8).toString();
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(hosts, useSsl, userName, passwordHash);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			ClusterKey other = (ClusterKey) obj;
+			return useSsl == other.useSsl && Objects.equals(hosts, other.hosts)
+					&& Objects.equals(userName, other.userName) && Objects.equals(passwordHash, other.passwordHash);
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("hosts", hosts).add("useSsl", useSsl)
+					.add("userName", userName).toString();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import static org.cyclop.common.Gullectors.toNaturalImmutableSortedSet;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CassandraVersion;
+import org.cyclop.model.CqlColumnName;
+import org.cyclop.model.CqlColumnType;
+import org.cyclop.model.CqlIndex;
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.model.CqlTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * Reads schema from {@link com.datastax.driver.core.Metadata} of the cluster - this data is kept up to date by
+ * driver's control connection, so lookups do not require any query.
+ *
+ * @author Maciej Miklas
+ */
+@Named
+@CassandraVersionQualifier(CassandraVersion.VER_2_0)
+class MetadataSchemaProvider implements SchemaProvider {
+
+	private final static Logger LOG = LoggerFactory.getLogger(MetadataSchemaProvider.class);
+
+	@Inject
+	private AppConfig config;
+
+	@Inject
+	private CassandraSessionImpl session;
+
+	@Inject
+	private QueryScopeImpl queryScope;
+
+	@Override
+	public boolean checkTableExists(CqlTable table) {
+		return findTables(table).findAny().isPresent();
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlIndex> findAllIndexes(Optional<CqlKeySpace> keySpace) {
+		ImmutableSortedSet<CqlIndex> res = keySpaces(keySpace).flatMap(ks -> ks.getTables().stream())
+				.flatMap(t -> t.getColumns().stream()).map(ColumnMetadata::getIndex).filter(Objects::nonNull)
+				.map(idx -> new CqlIndex(idx.getName())).collect(toNaturalImmutableSortedSet());
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlKeySpace> findAllKeySpaces() {
+		ImmutableSortedSet<CqlKeySpace> res = keySpaces(Optional.empty()).map(ks -> new CqlKeySpace(ks.getName()))
+				.collect(toNaturalImmutableSortedSet());
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlTable> findTableNames(Optional<CqlKeySpace> keySpace) {
+		ImmutableSortedSet<CqlTable> res = keySpaces(keySpace).flatMap(ks -> ks.getTables().stream())
+				.map(t -> new CqlTable(t.getName())).collect(toNaturalImmutableSortedSet());
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table) {
+		Stream<TableMetadata> tables = table.isPresent() ? findTables(table.get()) : keySpaces(Optional.empty())
+				.flatMap(ks -> ks.getTables().stream());
+
+		// value column of compact storage table without clustering columns has empty name
+		ImmutableSortedSet<CqlColumnName> res = tables.flatMap(t -> t.getColumns().stream())
+				.map(c -> StringUtils.trimToNull(c.getName())).filter(Objects::nonNull)
+				.limit(config.cassandra.columnsLimit).map(CqlColumnName::new).collect(toNaturalImmutableSortedSet());
+		return res;
+	}
+
+	@Override
+	public ImmutableMap<String, CqlColumnType> findTypeMap(CqlTable table) {
+		Optional<TableMetadata> tableMeta = findTable(table);
+		if (!tableMeta.isPresent()) {
+			LOG.warn("Table: {} not found in cluster metadata. Column type information is not available.", table);
+			return ImmutableMap.of();
+		}
+
+		TableMetadata meta = tableMeta.get();
+		// compact storage with clustering columns stores its single value column as compact value
+		boolean compact = meta.getOptions().isCompactStorage() && !meta.getClusteringColumns().isEmpty();
+		ImmutableMap.Builder<String, CqlColumnType> types = ImmutableMap.builder();
+		for (ColumnMetadata column : meta.getColumns()) {
+			String name = StringUtils.trimToNull(column.getName());
+			if (name == null) {
+				continue;
+			}
+			CqlColumnType type;
+			if (meta.getPartitionKey().contains(column)) {
+				type = CqlColumnType.PARTITION_KEY;
+			} else if (meta.getClusteringColumns().contains(column)) {
+				type = CqlColumnType.CLUSTERING_KEY;
+			} else if (compact) {
+				type = CqlColumnType.COMPACT_VALUE;
+			} else {
+				type = CqlColumnType.REGULAR;
+			}
+			types.put(name.toLowerCase(), type);
+		}
+		return types.build();
+	}
+
+	@Override
+	public boolean isCacheable() {
+		return false;
+	}
+
+	/**
+	 * table from given key space, or from active key space when query does not contain one - otherwise first table
+	 * with matching name
+	 */
+	private Optional<TableMetadata> findTable(CqlTable table) {
+		Optional<CqlKeySpace> keySpace = table.keySpace == null ? queryScope.getActiveKeySpace() : Optional
+				.of(table.keySpace);
+		if (keySpace.isPresent()) {
+			Optional<TableMetadata> found = keySpaces(keySpace).map(ks -> ks.getTable(table.partLc))
+					.filter(Objects::nonNull).findFirst();
+			if (found.isPresent()) {
+				return found;
+			}
+		}
+		return findTables(table).findFirst();
+	}
+
+	private Stream<TableMetadata> findTables(CqlTable table) {
+		return keySpaces(Optional.empty()).map(ks -> ks.getTable(table.partLc)).filter(Objects::nonNull);
+	}
+
+	private Stream<KeyspaceMetadata> keySpaces(Optional<CqlKeySpace> keySpace) {
+		if (keySpace.isPresent()) {
+			KeyspaceMetadata ks = session.getCluster().getMetadata().getKeyspace(keySpace.get().partLc);
+			return ks == null ? Stream.empty() : Stream.of(ks);
+		}
+		return session.getCluster().getMetadata().getKeyspaces().stream();
+	}
+}
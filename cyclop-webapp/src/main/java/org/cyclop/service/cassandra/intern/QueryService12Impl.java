@@ -16,30 +16,14 @@
  */
 package org.cyclop.service.cassandra.intern;
 
-import static org.cyclop.common.QueryHelper.extractTableName;
-
-import java.util.Arrays;
-import java.util.Optional;
+import java.util.function.Supplier;
 
+import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang.StringUtils;
 import org.cyclop.model.CassandraVersion;
-import org.cyclop.model.CqlColumnName;
-import org.cyclop.model.CqlColumnType;
-import org.cyclop.model.CqlDataType;
-import org.cyclop.model.CqlKeyword;
 import org.cyclop.model.CqlQuery;
-import org.cyclop.model.CqlTable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.Row;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSortedSet;
+import org.cyclop.model.CqlQueryResult;
 
 /**
  * Fallback for Cassandra 1.2
@@ -50,66 +34,18 @@ import com.google.common.collect.ImmutableSortedSet;
 @CassandraVersionQualifier(CassandraVersion.VER_1_2)
 class QueryService12Impl extends QueryServiceImpl {
 
-	private final static Logger LOG = LoggerFactory.getLogger(QueryService12Impl.class);
-
-	private ImmutableSet<String> findPartitionKeyNamesLc(CqlTable table) {
-
-		Optional<ResultSet> result = executeSilent("select key_aliases FROM system.schema_columnfamilies where "
-				+ "columnfamily_name='" + table.part + "' allow filtering");
-		if (!result.isPresent()) {
-			LOG.warn("Cannot find partition key info");
-			return ImmutableSet.of();
-		}
-
-		ImmutableSet.Builder<String> keys = ImmutableSet.builder();
-		for (Row row : result.get()) {
-			String aliases = StringUtils.trimToNull(row.getString("key_aliases"));
-			if (aliases == null || aliases.length() < 5) {// ["id"]
-				continue;
-			}
-
-			String aliasesPure = aliases.substring(2, aliases.length() - 2);
-			Arrays.asList(aliasesPure.split(",")).forEach(alias -> keys.add(alias.trim().toLowerCase()));
-		}
-
-		ImmutableSet<String> res = keys.build();
-		LOG.debug("Found key name(s):{} for table: {}", res, table);
-		return res;
-	}
+	@Inject
+	@CassandraVersionQualifier(CassandraVersion.VER_1_2)
+	private SchemaProvider schemaProvider;
 
 	@Override
-	protected void loadPartitionKeyNames(Optional<CqlTable> table,
-			ImmutableSortedSet.Builder<CqlColumnName> cqlColumnNames) {
-		if (!table.isPresent()) {
-			return;
-		}
-		findPartitionKeyNamesLc(table.get())
-				.forEach(
-						partitionKey -> cqlColumnNames.add(new CqlColumnName(CqlDataType.create(DataType.text()),
-								partitionKey)));
+	protected SchemaProvider schema() {
+		return schemaProvider;
 	}
 
-	protected ImmutableMap<String, CqlColumnType> createTypeMap(CqlQuery query) {
-
-		Optional<CqlTable> table = extractTableName(CqlKeyword.Def.FROM.value, query);
-		if (!table.isPresent()) {
-			LOG.warn("Could not extract table name from: {}. Column type information is not available.");
-			return ImmutableMap.of();
-		}
-
-		ImmutableMap.Builder<String, CqlColumnType> types = ImmutableMap.builder();
-		findPartitionKeyNamesLc(table.get()).forEach(pk -> types.put(pk, CqlColumnType.PARTITION_KEY));
-
-		ResultSet result = execute("select column_name from system.schema_columns where columnfamily_name='"
-				+ table.get().part + "' allow filtering");
-		for (Row row : result) {
-			String name = StringUtils.trimToNull(row.getString("column_name"));
-			if (name == null) {
-				continue;
-			}
-			String nameLc = name.toLowerCase();
-			types.put(nameLc, CqlColumnType.REGULAR);
-		}
-		return types.build();
+	/** protocol v1 does not support paging, so token ranges cannot be read page by page */
+	@Override
+	public Supplier<CqlQueryResult> prepareFullScan(CqlQuery query, int parallelism, boolean ordered) {
+		return super.prepareFullScan(query, 0, ordered);
 	}
 }
@@ -17,6 +17,7 @@
 package org.cyclop.service.cassandra.intern;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -28,6 +29,7 @@ import org.cyclop.model.CqlKeySpace;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.CqlTable;
+import org.cyclop.service.cassandra.QueryHandle;
 import org.cyclop.service.cassandra.QueryService;
 import org.springframework.context.annotation.Primary;
 
@@ -95,6 +97,21 @@ public class QueryServiceDispatcher implements QueryService {
 		return get().execute(query, updateHistory);
 	}
 
+	@Override
+	public QueryHandle executeAsync(CqlQuery query, boolean updateHistory, int fetchSize) {
+		return get().executeAsync(query, updateHistory, fetchSize);
+	}
+
+	@Override
+	public CqlQueryResult executeFullScan(CqlQuery query, int parallelism, boolean ordered) {
+		return get().executeFullScan(query, parallelism, ordered);
+	}
+
+	@Override
+	public Supplier<CqlQueryResult> prepareFullScan(CqlQuery query, int parallelism, boolean ordered) {
+		return get().prepareFullScan(query, parallelism, ordered);
+	}
+
 	@Override
 	public ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table) {
 		return get().findColumnNames(table);
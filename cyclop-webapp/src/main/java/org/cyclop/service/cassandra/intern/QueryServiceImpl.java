@@ -16,22 +16,21 @@
  */
 package org.cyclop.service.cassandra.intern;
 
-import static org.cyclop.common.Gullectors.toImmutableMap;
-import static org.cyclop.common.Gullectors.toNaturalImmutableSortedSet;
 import static org.cyclop.common.QueryHelper.extractSpace;
 import static org.cyclop.common.QueryHelper.extractTableName;
 
+import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.cyclop.common.AppConfig;
 import org.cyclop.model.CassandraVersion;
@@ -45,24 +44,30 @@ import org.cyclop.model.CqlKeyword;
 import org.cyclop.model.CqlPartitionKey;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.CqlQueryResult.RowSeeker;
 import org.cyclop.model.CqlQueryType;
 import org.cyclop.model.CqlRowMetadata;
 import org.cyclop.model.CqlTable;
 import org.cyclop.model.QueryEntry;
 import org.cyclop.model.exception.QueryException;
+import org.cyclop.service.cassandra.QueryHandle;
 import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.service.cassandra.intern.SchemaMetadataCache.Type;
 import org.cyclop.service.queryprotocoling.HistoryService;
 import org.cyclop.validation.EnableValidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
 
 import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.MoreExecutors;
 
 /** @author Maciej Miklas */
 @EnableValidation
@@ -84,69 +89,83 @@ class QueryServiceImpl implements QueryService {
 	@Inject
 	private HistoryService historyService;
 
+	@Inject
+	protected SchemaMetadataCache schemaCache;
+
+	@Inject
+	@Named("cyclop.scheduler")
+	private TaskScheduler scheduler;
+
+	@Inject
+	@Named("exportExecutor")
+	private ExecutorService exportExecutor;
+
+	@Inject
+	@CassandraVersionQualifier(CassandraVersion.VER_2_0)
+	private SchemaProvider schemaProvider;
+
 	@Override
 	public boolean checkTableExists(CqlTable table) {
 		Validate.notNull(table, "null CqlTable");
-
-		StringBuilder cql = new StringBuilder("select columnfamily_name from system.schema_columnfamilies");
-		cql.append(" where columnfamily_name='").append(table.partLc).append("' allow filtering");
-
-		Optional<ResultSet> result = executeSilent(cql.toString());
-		boolean tableExists = result.filter(r -> !r.isExhausted()).isPresent();
-		return tableExists;
+		return cached(Type.TABLE_EXISTS, table, () -> schema().checkTableExists(table));
 	}
 
 	@Override
 	public ImmutableSortedSet<CqlIndex> findAllIndexes(Optional<CqlKeySpace> keySpace) {
-
-		StringBuilder cql = new StringBuilder("SELECT index_name FROM system.schema_columns");
-		if (keySpace.isPresent()) {
-			cql.append(" where keyspace_name='").append(keySpace.get().partLc).append("'");
-		}
-
-		Optional<ResultSet> result = executeSilent(cql.toString());
-		if (!result.isPresent()) {
-			LOG.debug("No indexes found for keyspace: " + keySpace);
-			return ImmutableSortedSet.of();
-		}
-
-		ImmutableSortedSet<CqlIndex> res = map(result, "index_name", CqlIndex::new);
-		return res;
+		return cached(Type.INDEXES, keySpace, () -> schema().findAllIndexes(keySpace));
 	}
 
 	@Override
 	public ImmutableSortedSet<CqlKeySpace> findAllKeySpaces() {
+		return cached(Type.KEYSPACES, null, () -> schema().findAllKeySpaces());
+	}
 
-		Optional<ResultSet> result = executeSilent("select keyspace_name from system.schema_keyspaces");
-		if (!result.isPresent()) {
-			LOG.debug("Cannot readIdentifier keyspace info");
-			return ImmutableSortedSet.of();
-		}
+	@Override
+	public ImmutableSortedSet<CqlTable> findTableNames(Optional<CqlKeySpace> keySpace) {
+		return cached(Type.TABLE_NAMES, keySpace, () -> schema().findTableNames(keySpace));
+	}
 
-		ImmutableSortedSet<CqlKeySpace> res = map(result, "keyspace_name", CqlKeySpace::new);
-		return res;
+	@Override
+	public ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table) {
+		return cached(Type.COLUMN_NAMES, table, () -> schema().findColumnNames(table));
 	}
 
 	@Override
-	public ImmutableSortedSet<CqlTable> findTableNames(Optional<CqlKeySpace> keySpace) {
+	public ImmutableSortedSet<CqlColumnName> findAllColumnNames() {
+		return findColumnNames(Optional.empty());
+	}
 
-		StringBuilder cql = new StringBuilder("select columnfamily_name from system.schema_columnfamilies");
-		if (keySpace.isPresent()) {
-			cql.append(" where keyspace_name='").append(keySpace.get().partLc).append("'");
-		}
-		Optional<ResultSet> result = executeSilent(cql.toString());
-		if (!result.isPresent()) {
-			LOG.debug("No table names found for keyspace: " + keySpace);
-			return ImmutableSortedSet.of();
-		}
+	/** schema provider for cassandra version supported by this service */
+	protected SchemaProvider schema() {
+		return schemaProvider;
+	}
 
-		ImmutableSortedSet<CqlTable> res = map(result, "columnfamily_name", CqlTable::new);
-		return res;
+	private <T> T cached(Type type, Object param, Supplier<T> loader) {
+		SchemaProvider provider = schema();
+		if (!provider.isCacheable()) {
+			return loader.get();
+		}
+		return schemaCache.get(type, param, loader::get);
 	}
 
-	private void setActiveKeySpace(CqlQuery query) {
+	/**
+	 * driver session is shared between users, so USE is not executed on it - we switch to session bound to given key
+	 * space instead
+	 */
+	private boolean useKeySpace(CqlQuery query) {
+		boolean use = query.type == CqlQueryType.USE
+				|| (query.type == CqlQueryType.UNKNOWN && query.partLc.startsWith("use "));
+		if (!use) {
+			return false;
+		}
 		Optional<CqlKeySpace> space = extractSpace(query);
+		if (!space.isPresent()) {
+			// let cassandra report syntax error
+			return false;
+		}
+		session.useKeySpace(space.get());
 		queryScope.setActiveKeySpace(space);
+		return true;
 	}
 
 	@Override
@@ -157,7 +176,10 @@ class QueryServiceImpl implements QueryService {
 	@Override
 	public void executeSimple(CqlQuery query, boolean updateHistory) {
 		long startTime = System.currentTimeMillis();
-		execute(query.part);
+		if (!useKeySpace(query)) {
+			execute(query.part);
+		}
+		schemaCache.invalidateOnSchemaChange(query);
 		if (updateHistory) {
 			updateHistory(query, startTime);
 		}
@@ -176,21 +198,132 @@ class QueryServiceImpl implements QueryService {
 
 	private CqlQueryResult executeIntern(CqlQuery query) {
 		LOG.debug("Executing CQL: {}", query);
-		if (query.type == CqlQueryType.USE) {
-			setActiveKeySpace(query);
+		if (useKeySpace(query)) {
+			return CqlQueryResult.EMPTY;
+		}
+
+		ResultPager pager = createPager(query, 0);
+		ResultSet cqlResult;
+		try {
+			cqlResult = session.getSession().execute(pager.createStatement());
+		} catch (Exception e) {
+			throw new QueryException("Error executing CQL: '" + query.part + "', reason: " + e.getMessage(), e);
+		}
+		return toQueryResult(query, pager, cqlResult);
+	}
+
+	/** @param fetchSize 0 for default from configuration */
+	private ResultPager createPager(CqlQuery query, int fetchSize) {
+		int size = fetchSize > 0 ? Math.min(fetchSize, config.cassandra.maxFetchSize) : config.cassandra.fetchSize;
+		return new ResultPager(session.getSession(), query.part, size);
+	}
+
+	@Override
+	public QueryHandle executeAsync(CqlQuery query, boolean updateHistory, int fetchSize) {
+		LOG.debug("Executing async CQL: {}", query);
+		long startTime = System.currentTimeMillis();
+		if (useKeySpace(query)) {
+			if (updateHistory) {
+				updateHistory(query, startTime);
+			}
+			return AsyncQueryHandle.completed(query, CqlQueryResult.EMPTY);
+		}
+
+		ResultPager pager = createPager(query, fetchSize);
+		ResultSetFuture future;
+		try {
+			future = session.getSession().executeAsync(pager.createStatement());
+		} catch (Exception e) {
+			throw new QueryException("Error executing CQL: '" + query.part + "', reason: " + e.getMessage(), e);
+		}
+
+		long deadline = startTime + TimeUnit.SECONDS.toMillis(config.queryEditor.queryDeadlineSeconds);
+		AsyncQueryHandle handle = new AsyncQueryHandle(query, future, deadline, (rs, runTime) -> {
+			CqlQueryResult result = toQueryResult(query, pager, rs);
+			if (updateHistory) {
+				historyService.addAndStore(new QueryEntry(query, runTime));
+			}
+			return result;
+		});
+
+		ScheduledFuture<?> deadlineTask = scheduler.schedule(handle::expire, new Date(deadline));
+		future.addListener(() -> deadlineTask.cancel(false), MoreExecutors.sameThreadExecutor());
+		return handle;
+	}
+
+	@Override
+	public CqlQueryResult executeFullScan(CqlQuery query, int parallelism, boolean ordered) {
+		return prepareFullScan(query, parallelism, ordered).get();
+	}
+
+	/** session scoped beans are not available when returned supplier is called - it uses only values bound here */
+	@Override
+	public Supplier<CqlQueryResult> prepareFullScan(CqlQuery query, int parallelism, boolean ordered) {
+		LOG.debug("Preparing full scan CQL: {}", query);
+		if (useKeySpace(query)) {
+			return () -> CqlQueryResult.EMPTY;
+		}
+		schemaCache.invalidateOnSchemaChange(query);
+		Map<String, CqlColumnType> typeMap = findTypeMap(query);
+
+		Optional<TokenRangeScan> scan = Optional.empty();
+		if (parallelism > 0) {
+			int stallTimeout = config.queryExport.parallelStallTimeoutSeconds;
+			try {
+				scan = TokenRangeScan.create(session.getSession(), query, queryScope.getActiveKeySpace(),
+						config.cassandra.fetchSize, config.queryExport.parallelMaxRetries,
+						TimeUnit.SECONDS.toMillis(stallTimeout), ordered, parallelism);
+			} catch (Exception e) {
+				throw new QueryException("Error executing CQL: '" + query.part + "', reason: " + e.getMessage(), e);
+			}
+		}
+		if (scan.isPresent()) {
+			TokenRangeScan tokenScan = scan.get();
+			return () -> executeFullScan(tokenScan, parallelism, typeMap);
 		}
 
-		ResultSet cqlResult = execute(query.part);
+		LOG.debug("Query is not a full table select - it will be executed sequentially");
+		ResultPager pager = createPager(query, 0);
+		return () -> {
+			ResultSet cqlResult;
+			try {
+				cqlResult = pager.execute();
+			} catch (Exception e) {
+				throw new QueryException("Error executing CQL: '" + query.part + "', reason: " + e.getMessage(), e);
+			}
+			return cqlResult.isExhausted() ? CqlQueryResult.EMPTY : toQueryResult(pager.iterator(cqlResult),
+					typeMap, pager);
+		};
+	}
+
+	private CqlQueryResult executeFullScan(TokenRangeScan scan, int parallelism, Map<String, CqlColumnType> typeMap) {
+		scan.start(exportExecutor, parallelism);
+		try {
+			if (!scan.hasNext()) {
+				return CqlQueryResult.EMPTY;
+			}
+			return toQueryResult(scan, typeMap, null);
+		} catch (RuntimeException e) {
+			scan.close();
+			throw e;
+		}
+	}
+
+	private CqlQueryResult toQueryResult(CqlQuery query, ResultPager pager, ResultSet cqlResult) {
+		schemaCache.invalidateOnSchemaChange(query);
 		if (cqlResult == null || cqlResult.isExhausted()) {
 			return CqlQueryResult.EMPTY;
 		}
+		return toQueryResult(pager.iterator(cqlResult), findTypeMap(query), pager);
+	}
 
-		Map<String, CqlColumnType> typeMap = createTypeMap(query);
-		Row firstRow = cqlResult.one();
+	/** @param rows has at least one element */
+	private CqlQueryResult toQueryResult(Iterator<Row> rows, Map<String, CqlColumnType> typeMap, RowSeeker seeker) {
+		Row firstRow = rows.next();
 		CqlRowMetadata rowMetadata = extractRowMetadata(firstRow, typeMap);
 
-		RowIterator rowIterator = new RowIterator(cqlResult.iterator(), firstRow);
-		CqlQueryResult result = new CqlQueryResult(rowIterator, rowMetadata);
+		RowIterator rowIterator = new RowIterator(rows, firstRow);
+		CqlQueryResult result = new CqlQueryResult(rowIterator, rowMetadata, seeker);
 		return result;
 	}
 
@@ -233,123 +366,13 @@ class QueryServiceImpl implements QueryService {
 		return metadata;
 	}
 
-	private <T extends Comparable<?>> ImmutableSortedSet<T> map(Optional<ResultSet> result, String columnName,
-																Function<String, T> mapper) {
-		ImmutableSortedSet<T> res = StreamSupport.stream(result.get().spliterator(), false)
-				.map(r -> r.getString(columnName)).map(StringUtils::trimToNull).filter(Objects::nonNull).map(mapper)
-				.collect(toNaturalImmutableSortedSet());
-		return res;
-	}
-
-	protected ImmutableMap<String, CqlColumnType> createTypeMap(CqlQuery query) {
-
+	private ImmutableMap<String, CqlColumnType> findTypeMap(CqlQuery query) {
 		Optional<CqlTable> table = extractTableName(CqlKeyword.Def.FROM.value, query);
 		if (!table.isPresent()) {
-			LOG.warn("Could not extract table name from: {}. Column type information is not available.");
+			LOG.warn("Could not extract table name from: {}. Column type information is not available.", query);
 			return ImmutableMap.of();
 		}
-
-		Optional<ResultSet> result = executeSilent("select column_name, type from system.schema_columns where "
-				+ "columnfamily_name='" + table.get().part + "' allow filtering");
-		if (!result.isPresent()) {
-			LOG.warn("Could not readIdentifier types for columns of table: " + table);
-			return ImmutableMap.of();
-		}
-		ImmutableMap<String, CqlColumnType> typesMap = StreamSupport.stream(result.get().spliterator(), false)
-				.map(r -> new TypeTransfer(r.getString("type"), r.getString("column_name")))
-				.filter(TypeTransfer::isCorrect).collect(toImmutableMap(t -> t.name.toLowerCase(),
-						t -> extractType(t.type)));
-		return typesMap;
-	}
-
-	private final class TypeTransfer {
-		public final String type;
-		public final String name;
-
-		public TypeTransfer(String type, String name) {
-			this.type = StringUtils.trimToNull(type);
-			this.name = StringUtils.trimToNull(name);
-		}
-
-		public boolean isCorrect() {
-			return type != null && name != null;
-		}
-
-		@Override
-		public String toString() {
-			return "TypeTransfer [type=" + type + ", name=" + name + "]";
-		}
-
-	}
-
-	@Override
-	public ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table) {
-
-		StringBuilder buf = new StringBuilder("select column_name from system.schema_columns");
-		if (table.isPresent()) {
-			buf.append(" where columnfamily_name='");
-			buf.append(table.get().partLc);
-			buf.append("'");
-		}
-		buf.append(" limit ");
-		buf.append(config.cassandra.columnsLimit);
-		buf.append(" allow filtering");
-
-		Optional<ResultSet> result = executeSilent(buf.toString());
-		if (!result.isPresent()) {
-			LOG.warn("Cannot readIdentifier column names");
-			return ImmutableSortedSet.of();
-		}
-
-		ImmutableSortedSet.Builder<CqlColumnName> cqlColumnNames = ImmutableSortedSet.naturalOrder();
-		for (Row row : result.get()) {
-			String name = StringUtils.trimToNull(row.getString("column_name"));
-			if (name == null) {
-				continue;
-			}
-			cqlColumnNames.add(new CqlColumnName(CqlDataType.create(DataType.text()), name));
-		}
-
-		loadPartitionKeyNames(table, cqlColumnNames);
-
-		return cqlColumnNames.build();
-	}
-
-	// required only for cassandra 1.x
-	protected void loadPartitionKeyNames(Optional<CqlTable> table,
-			ImmutableSortedSet.Builder<CqlColumnName> cqlColumnNames) {
-
-	}
-
-	protected CqlColumnType extractType(String typeText) {
-
-		CqlColumnType type;
-		try {
-			type = CqlColumnType.valueOf(typeText.toUpperCase());
-		} catch (IllegalArgumentException ia) {
-			LOG.warn("Read unsupported column type: {}", typeText, ia);
-			type = CqlColumnType.REGULAR;
-		}
-
-		return type;
-	}
-
-	@Override
-	public ImmutableSortedSet<CqlColumnName> findAllColumnNames() {
-		return findColumnNames(Optional.empty());
-	}
-
-	protected Optional<ResultSet> executeSilent(String cql) {
-
-		LOG.debug("Executing: {}", cql);
-		ResultSet resultSet = null;
-		try {
-			resultSet = session.getSession().execute(cql);
-		} catch (Exception e) {
-			LOG.warn("Error executing CQL: '" + cql + "', reason: " + e.getMessage());
-			LOG.debug(e.getMessage(), e);
-		}
-		return Optional.ofNullable(resultSet);
+		return cached(Type.TYPE_MAP, table.get(), () -> schema().findTypeMap(table.get()));
 	}
 
 	protected ResultSet execute(String cql) {
@@ -364,7 +387,7 @@ class QueryServiceImpl implements QueryService {
 		return resultSet;
 	}
 
-	private class RowIterator implements Iterator<Row> {
+	private class RowIterator implements Iterator<Row>, AutoCloseable {
 
 		private final Iterator<Row> wrapped;
 
@@ -403,6 +426,13 @@ class QueryServiceImpl implements QueryService {
 		public void remove() {
 			throw new UnsupportedOperationException("Remove is not supported");
 		}
+
+		@Override
+		public void close() {
+			if (wrapped instanceof TokenRangeScan) {
+				((TokenRangeScan) wrapped).close();
+			}
+		}
 	}
 
 }
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.exception.QueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.collect.Iterators;
+
+/**
+ * Remembers {@link PagingState} of each page read from the result set. Iteration can be restarted at any row by
+ * executing query again from the state of the page containing this row - so the rows from previous pages does not
+ * have to be kept in memory.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class ResultPager implements CqlQueryResult.RowSeeker {
+	private final static Logger LOG = LoggerFactory.getLogger(ResultPager.class);
+
+	private final Session session;
+
+	private final String cql;
+
+	private final int fetchSize;
+
+	/** index of first row on the page -> state required to fetch this page */
+	private final NavigableMap<Integer, PagingState> pages = new TreeMap<>();
+
+	ResultPager(Session session, String cql, int fetchSize) {
+		this.session = session;
+		this.cql = cql;
+		this.fetchSize = fetchSize;
+	}
+
+	Statement createStatement() {
+		Statement statement = new SimpleStatement(cql);
+		statement.setFetchSize(fetchSize);
+		return statement;
+	}
+
+	/** executes {@link #createStatement()} in the session of this pager */
+	ResultSet execute() {
+		return session.execute(createStatement());
+	}
+
+	/** @return iterator over given result set, created by executing {@link #createStatement()} */
+	Iterator<Row> iterator(ResultSet resultSet) {
+		return new TrackingIterator(resultSet, 0);
+	}
+
+	@Override
+	public Iterator<Row> seek(int fromRow) {
+		Statement statement = createStatement();
+		Map.Entry<Integer, PagingState> page = pages.floorEntry(fromRow);
+		int pageStart = 0;
+		if (page != null) {
+			pageStart = page.getKey();
+			statement.setPagingState(page.getValue());
+		}
+		LOG.debug("Seeking to row {} starting from page at {} for: {}", fromRow, pageStart, cql);
+
+		ResultSet resultSet;
+		try {
+			resultSet = session.execute(statement);
+		} catch (DriverException e) {
+			throw new QueryException("Error executing CQL: '" + cql + "', reason: " + e.getMessage(), e);
+		}
+		Iterator<Row> it = new TrackingIterator(resultSet, pageStart);
+		Iterators.advance(it, fromRow - pageStart);
+		return it;
+	}
+
+	private final class TrackingIterator implements Iterator<Row> {
+		private final ResultSet resultSet;
+
+		private int index;
+
+		private TrackingIterator(ResultSet resultSet, int index) {
+			this.resultSet = resultSet;
+			this.index = index;
+		}
+
+		/** must be called before result set fetches next page */
+		private void trackPageStart() {
+			if (resultSet.getAvailableWithoutFetching() > 0 || pages.containsKey(index)) {
+				return;
+			}
+			PagingState state = resultSet.getExecutionInfo().getPagingState();
+			if (state != null) {
+				pages.put(index, state);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			trackPageStart();
+			return !resultSet.isExhausted();
+		}
+
+		@Override
+		public Row next() {
+			trackPageStart();
+			Row row = resultSet.one();
+			if (row == null) {
+				throw new NoSuchElementException();
+			}
+			index++;
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Remove is not supported");
+		}
+	}
+}
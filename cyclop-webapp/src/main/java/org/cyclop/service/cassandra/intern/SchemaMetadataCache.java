@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.exception.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Session bound cache for schema metadata (table names, column names, column types...). Completion and query
+ * execution ask for this data on each keystroke - without cache each request would scan cassandra system tables.
+ * <p>
+ * Entries expire after {@link AppConfig.Cassandra#schemaCacheExpirySeconds} and whole cache is dropped when user
+ * executes DDL query.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+@Named
+@Scope(value = "session", proxyMode = ScopedProxyMode.TARGET_CLASS)
+public class SchemaMetadataCache {
+	private final static Logger LOG = LoggerFactory.getLogger(SchemaMetadataCache.class);
+
+	private final static Set<CqlQueryType> DDL_TYPES = EnumSet.of(CqlQueryType.CREATE_KEYSPACE,
+			CqlQueryType.ALTER_KEYSPACE, CqlQueryType.DROP_KEYSPACE, CqlQueryType.CREATE_TABLE,
+			CqlQueryType.ALTER_TABLE, CqlQueryType.DROP_TABLE, CqlQueryType.CREATE_INDEX, CqlQueryType.DROP_INDEX);
+
+	private final static String[] DDL_PREFIXES = { "create ", "alter ", "drop " };
+
+	@Inject
+	private AppConfig appConfig;
+
+	private Cache<CacheKey, Object> cache;
+
+	@PostConstruct
+	void init() {
+		cache = CacheBuilder.newBuilder()
+				.expireAfterWrite(appConfig.cassandra.schemaCacheExpirySeconds, TimeUnit.SECONDS)
+				.maximumSize(appConfig.cassandra.schemaCacheMaxEntries).recordStats().build();
+	}
+
+	/**
+	 * @param loader
+	 *            will be called only if there is no cached value for given type and param. Returned value must not be
+	 *            null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Type type, Object param, Callable<T> loader) {
+		CacheKey key = new CacheKey(type, param);
+		try {
+			return (T) cache.get(key, loader);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new ServiceException("Error loading schema metadata for: " + key + " - " + e.getMessage(), e);
+		}
+	}
+
+	/** drops all entries if given query modifies schema - should be called after the query has been executed */
+	public void invalidateOnSchemaChange(CqlQuery query) {
+		if (!isSchemaChange(query)) {
+			return;
+		}
+		LOG.debug("Invalidating schema cache after: {}", query);
+		cache.invalidateAll();
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/** hit/miss counters since session has been created */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	private static boolean isSchemaChange(CqlQuery query) {
+		if (DDL_TYPES.contains(query.type)) {
+			return true;
+		}
+
+		// queries from import and editor without completion are not typed
+		if (query.type != CqlQueryType.UNKNOWN || query.partLc == null) {
+			return false;
+		}
+		for (String prefix : DDL_PREFIXES) {
+			if (query.partLc.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static enum Type {
+		COLUMN_NAMES, TABLE_NAMES, TABLE_EXISTS, INDEXES, KEYSPACES, TYPE_MAP
+	}
+
+	private final static class CacheKey {
+		private final Type type;
+
+		private final Object param;
+
+		private CacheKey(Type type, Object param) {
+			this.type = type;
+			this.param = param;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, param);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return type == other.type && Objects.equals(param, other.param);
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("type", type).add("param", param).toString();
+		}
+	}
+}
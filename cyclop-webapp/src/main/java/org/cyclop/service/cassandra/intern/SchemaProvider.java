@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.Optional;
+
+import org.cyclop.model.CqlColumnName;
+import org.cyclop.model.CqlColumnType;
+import org.cyclop.model.CqlIndex;
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.model.CqlTable;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * Source of schema information used by {@link QueryServiceImpl} - implementations are selected by
+ * {@link CassandraVersionQualifier}
+ *
+ * @author Maciej Miklas
+ */
+interface SchemaProvider {
+
+	/** table name is matched in all key spaces */
+	boolean checkTableExists(CqlTable table);
+
+	ImmutableSortedSet<CqlIndex> findAllIndexes(Optional<CqlKeySpace> keySpace);
+
+	ImmutableSortedSet<CqlKeySpace> findAllKeySpaces();
+
+	ImmutableSortedSet<CqlTable> findTableNames(Optional<CqlKeySpace> keySpace);
+
+	ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table);
+
+	/** @return lower case column name to its type */
+	ImmutableMap<String, CqlColumnType> findTypeMap(CqlTable table);
+
+	/**
+	 * @return true if provider executes queries to read schema, so that its results should be cached in
+	 *         {@link SchemaMetadataCache}
+	 */
+	boolean isCacheable();
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CassandraVersion;
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.model.exception.AuthenticationRequiredException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+
+/**
+ * Cluster shared by all HTTP sessions authenticated with the same credentials - managed by {@link ClusterRegistry}.
+ * <p>
+ * USE statement changes key space of the whole driver session, therefore it must not be executed on shared session.
+ * Instead there is one session for each key space, created on first use. Driver does not support key space per
+ * statement, so statements with unqualified table names need such session. Key space sessions which have been idle
+ * longer than configured time are closed, when session for next key space is opened.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+public final class SharedCluster {
+	private final static Logger LOG = LoggerFactory.getLogger(SharedCluster.class);
+
+	private final static String NO_KEYSPACE = "";
+
+	private final static int CLOSE_TIMEOUT_SECONDS = 10;
+
+	private final String name;
+
+	private final AppConfig.Cassandra config;
+
+	private final String userName;
+
+	private final String password;
+
+	private final ConcurrentMap<String, KeySpaceSession> sessions = new ConcurrentHashMap<>();
+
+	private volatile Cluster cluster;
+
+	private volatile CassandraVersion cassandraVersion;
+
+	/** guarded by {@link ClusterRegistry} */
+	int references = 0;
+
+	SharedCluster(String name, AppConfig.Cassandra config, String userName, String password) {
+		this.name = name;
+		this.config = config;
+		this.userName = userName;
+		this.password = password;
+	}
+
+	synchronized void connect() {
+		if (cluster != null) {
+			return;
+		}
+		Cluster newCluster = null;
+		try {
+			Cluster.Builder builder = Cluster.builder();
+			for (String host : config.hosts.split("[,]")) {
+				builder.addContactPoint(host);
+			}
+			builder.withCredentials(userName, password);
+
+			if (config.useSsl) {
+				builder.withSSL();
+			}
+
+			SocketOptions socketOptions = new SocketOptions();
+			socketOptions.setConnectTimeoutMillis(config.timeoutMillis);
+
+			PoolingOptions pooling = new PoolingOptions();
+			pooling.setCoreConnectionsPerHost(HostDistance.LOCAL, config.coreConnectionsPerHost);
+			pooling.setMaxConnectionsPerHost(HostDistance.LOCAL, config.maxConnectionsPerHost);
+			pooling.setMaxSimultaneousRequestsPerConnectionThreshold(HostDistance.LOCAL,
+					config.maxSimultaneousRequestsPerConnectionThreshold);
+			pooling.setIdleTimeoutSeconds(config.connectionIdleTimeoutSeconds);
+
+			newCluster = builder.withPort(config.port).withSocketOptions(socketOptions).withPoolingOptions(pooling)
+					.build();
+			Session session = newCluster.connect();
+
+			cassandraVersion = determineVersion(session);
+			sessions.put(NO_KEYSPACE, new KeySpaceSession(session));
+			cluster = newCluster;
+			LOG.info("Connected {} to Cassandra {}", name, cassandraVersion);
+		} finally {
+			if (cluster == null && newCluster != null) {
+				LOG.debug("Cannot open cassandra session - clean up resources");
+				closeCluster(newCluster);
+			}
+		}
+	}
+
+	private CassandraVersion determineVersion(Session session) {
+		CassandraVersion ver = CassandraVersion.VER_2_1;
+
+		// this way to check version sucks and works at the same time ....
+		try {
+			session.execute("select type_name from system.schema_usertypes");
+		} catch (InvalidQueryException e) {
+			ver = CassandraVersion.VER_2_0;
+		}
+
+		try {
+			session.execute("select type FROM system.schema_columns LIMIT 1 ALLOW FILTERING");
+		} catch (InvalidQueryException e) {
+			ver = CassandraVersion.VER_1_2;
+		}
+		return ver;
+	}
+
+	/**
+	 * @return session bound to given key space
+	 * @throws com.datastax.driver.core.exceptions.DriverException
+	 *             if key space does not exist
+	 */
+	public Session getSession(Optional<CqlKeySpace> keySpace) {
+		Cluster clu = getCluster();
+		String name = keySpace.isPresent() ? internalName(keySpace.get()) : NO_KEYSPACE;
+		KeySpaceSession session = sessions.get(name);
+		if (!keySpace.isPresent()) {
+			if (session == null) {
+				throw new AuthenticationRequiredException("Cassandra cluster has been closed");
+			}
+			return session.session;
+		}
+		if (session != null && session.use()) {
+			return session.session;
+		}
+		pruneIdleSessions();
+
+		// connect blocks until key space is set on all connections - it's not executed within the map, so that
+		// sessions for other key spaces can be obtained in the meantime
+		KeySpaceSession newSession = new KeySpaceSession(clu.connect(Metadata.quote(name)));
+		session = sessions.putIfAbsent(name, newSession);
+		if (session != null && session.use()) {
+			closeSession(newSession.session);
+			return session.session;
+		}
+		if (session != null) {
+			sessions.replace(name, session, newSession);
+		}
+		if (cluster != clu) {
+			sessions.remove(name, newSession);
+			closeSession(newSession.session);
+			throw new AuthenticationRequiredException("Cassandra cluster has been closed");
+		}
+		LOG.debug("Opened session for key space {} on {}", name, this.name);
+		return newSession.session;
+	}
+
+	/**
+	 * Closes key space sessions which have been idle longer than configured time and have no queries in flight. Session
+	 * without key space is used for cluster metadata and remains open.
+	 */
+	private void pruneIdleSessions() {
+		long idleSince = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(config.keySpaceSessionIdleSeconds);
+		sessions.forEach((name, session) -> {
+			if (NO_KEYSPACE.equals(name) || !session.isIdleSince(idleSince) || !sessions.remove(name, session)) {
+				return;
+			}
+			LOG.debug("Closing idle session for key space {} on {}", name, this.name);
+			session.session.closeAsync();
+		});
+	}
+
+	/** @return key space name as stored in cluster metadata - quoted names are case sensitive */
+	private static String internalName(CqlKeySpace keySpace) {
+		String name = keySpace.part.trim();
+		if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+			return name.substring(1, name.length() - 1).replace("\"\"", "\"");
+		}
+		return name.toLowerCase();
+	}
+
+	public Cluster getCluster() {
+		Cluster clu = cluster;
+		if (clu == null) {
+			throw new AuthenticationRequiredException("Cassandra cluster has been closed");
+		}
+		return clu;
+	}
+
+	public CassandraVersion getCassandraVersion() {
+		return cassandraVersion;
+	}
+
+	synchronized void close() {
+		if (cluster == null) {
+			return;
+		}
+		Cluster toClose = cluster;
+		cluster = null;
+		sessions.values().forEach(session -> closeSession(session.session));
+		sessions.clear();
+		closeCluster(toClose);
+	}
+
+	private void closeSession(Session toClose) {
+		try {
+			toClose.closeAsync().get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			LOG.warn("Session has not been closed within {} seconds", CLOSE_TIMEOUT_SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			LOG.warn("Error while closing the session", e);
+		}
+	}
+
+	private void closeCluster(Cluster toClose) {
+		try {
+			toClose.closeAsync().get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			LOG.warn("Cluster {} has not been shut down within {} seconds", name, CLOSE_TIMEOUT_SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			LOG.warn("Error while shutting down the cluster", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name + " [references=" + references + "]";
+	}
+
+	/** Driver session together with time of its last use */
+	@ThreadSafe
+	private static final class KeySpaceSession {
+		final Session session;
+
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		KeySpaceSession(Session session) {
+			this.session = session;
+		}
+
+		/** @return false if session has been already closed as idle - it cannot be used anymore */
+		boolean use() {
+			lastUsed = System.currentTimeMillis();
+			return !session.isClosed();
+		}
+
+		boolean isIdleSince(long time) {
+			if (lastUsed >= time) {
+				return false;
+			}
+			Session.State state = session.getState();
+			return state.getConnectedHosts().stream().allMatch(host -> state.getInFlightQueries(host) == 0);
+		}
+	}
+}
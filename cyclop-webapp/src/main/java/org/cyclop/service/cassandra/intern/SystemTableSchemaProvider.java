@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import static org.cyclop.common.Gullectors.toNaturalImmutableSortedSet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CassandraVersion;
+import org.cyclop.model.CqlColumnName;
+import org.cyclop.model.CqlColumnType;
+import org.cyclop.model.CqlDataType;
+import org.cyclop.model.CqlIndex;
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.model.CqlTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * Fallback for Cassandra 1.2 - reads schema from system tables.
+ *
+ * @author Maciej Miklas
+ */
+@Named
+@CassandraVersionQualifier(CassandraVersion.VER_1_2)
+class SystemTableSchemaProvider implements SchemaProvider {
+
+	private final static Logger LOG = LoggerFactory.getLogger(SystemTableSchemaProvider.class);
+
+	@Inject
+	private AppConfig config;
+
+	@Inject
+	private CassandraSessionImpl session;
+
+	@Override
+	public boolean checkTableExists(CqlTable table) {
+		StringBuilder cql = new StringBuilder("select columnfamily_name from system.schema_columnfamilies");
+		cql.append(" where columnfamily_name='").append(table.partLc).append("' allow filtering");
+
+		Optional<ResultSet> result = executeSilent(cql.toString());
+		boolean tableExists = result.filter(r -> !r.isExhausted()).isPresent();
+		return tableExists;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlIndex> findAllIndexes(Optional<CqlKeySpace> keySpace) {
+		StringBuilder cql = new StringBuilder("SELECT index_name FROM system.schema_columns");
+		if (keySpace.isPresent()) {
+			cql.append(" where keyspace_name='").append(keySpace.get().partLc).append("'");
+		}
+
+		Optional<ResultSet> result = executeSilent(cql.toString());
+		if (!result.isPresent()) {
+			LOG.debug("No indexes found for keyspace: " + keySpace);
+			return ImmutableSortedSet.of();
+		}
+
+		ImmutableSortedSet<CqlIndex> res = map(result, "index_name", CqlIndex::new);
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlKeySpace> findAllKeySpaces() {
+		Optional<ResultSet> result = executeSilent("select keyspace_name from system.schema_keyspaces");
+		if (!result.isPresent()) {
+			LOG.debug("Cannot readIdentifier keyspace info");
+			return ImmutableSortedSet.of();
+		}
+
+		ImmutableSortedSet<CqlKeySpace> res = map(result, "keyspace_name", CqlKeySpace::new);
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlTable> findTableNames(Optional<CqlKeySpace> keySpace) {
+		StringBuilder cql = new StringBuilder("select columnfamily_name from system.schema_columnfamilies");
+		if (keySpace.isPresent()) {
+			cql.append(" where keyspace_name='").append(keySpace.get().partLc).append("'");
+		}
+		Optional<ResultSet> result = executeSilent(cql.toString());
+		if (!result.isPresent()) {
+			LOG.debug("No table names found for keyspace: " + keySpace);
+			return ImmutableSortedSet.of();
+		}
+
+		ImmutableSortedSet<CqlTable> res = map(result, "columnfamily_name", CqlTable::new);
+		return res;
+	}
+
+	@Override
+	public ImmutableSortedSet<CqlColumnName> findColumnNames(Optional<CqlTable> table) {
+		StringBuilder buf = new StringBuilder("select column_name from system.schema_columns");
+		if (table.isPresent()) {
+			buf.append(" where columnfamily_name='");
+			buf.append(table.get().partLc);
+			buf.append("'");
+		}
+		buf.append(" limit ");
+		buf.append(config.cassandra.columnsLimit);
+		buf.append(" allow filtering");
+
+		Optional<ResultSet> result = executeSilent(buf.toString());
+		if (!result.isPresent()) {
+			LOG.warn("Cannot readIdentifier column names");
+			return ImmutableSortedSet.of();
+		}
+
+		ImmutableSortedSet.Builder<CqlColumnName> cqlColumnNames = ImmutableSortedSet.naturalOrder();
+		for (Row row : result.get()) {
+			String name = StringUtils.trimToNull(row.getString("column_name"));
+			if (name == null) {
+				continue;
+			}
+			cqlColumnNames.add(new CqlColumnName(CqlDataType.create(DataType.text()), name));
+		}
+
+		if (table.isPresent()) {
+			findPartitionKeyNamesLc(table.get()).forEach(
+					partitionKey -> cqlColumnNames.add(new CqlColumnName(CqlDataType.create(DataType.text()),
+							partitionKey)));
+		}
+
+		return cqlColumnNames.build();
+	}
+
+	@Override
+	public ImmutableMap<String, CqlColumnType> findTypeMap(CqlTable table) {
+		// the same table name can exist in many key spaces
+		Map<String, CqlColumnType> types = new HashMap<>();
+		findPartitionKeyNamesLc(table).forEach(pk -> types.put(pk, CqlColumnType.PARTITION_KEY));
+
+		Optional<ResultSet> result = executeSilent("select column_name from system.schema_columns where "
+				+ "columnfamily_name='" + table.partLc + "' allow filtering");
+		if (!result.isPresent()) {
+			LOG.warn("Could not readIdentifier types for columns of table: " + table);
+			return ImmutableMap.copyOf(types);
+		}
+		for (Row row : result.get()) {
+			String name = StringUtils.trimToNull(row.getString("column_name"));
+			if (name == null) {
+				continue;
+			}
+			types.putIfAbsent(name.toLowerCase(), CqlColumnType.REGULAR);
+		}
+		return ImmutableMap.copyOf(types);
+	}
+
+	@Override
+	public boolean isCacheable() {
+		return true;
+	}
+
+	private ImmutableSet<String> findPartitionKeyNamesLc(CqlTable table) {
+
+		Optional<ResultSet> result = executeSilent("select key_aliases FROM system.schema_columnfamilies where "
+				+ "columnfamily_name='" + table.partLc + "' allow filtering");
+		if (!result.isPresent()) {
+			LOG.warn("Cannot find partition key info");
+			return ImmutableSet.of();
+		}
+
+		ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+		for (Row row : result.get()) {
+			String aliases = StringUtils.trimToNull(row.getString("key_aliases"));
+			if (aliases == null || aliases.length() < 5) {// ["id"]
+				continue;
+			}
+
+			String aliasesPure = aliases.substring(2, aliases.length() - 2);
+			Arrays.asList(aliasesPure.split(",")).forEach(alias -> keys.add(alias.trim().toLowerCase()));
+		}
+
+		ImmutableSet<String> res = keys.build();
+		LOG.debug("Found key name(s):{} for table: {}", res, table);
+		return res;
+	}
+
+	private <T extends Comparable<?>> ImmutableSortedSet<T> map(Optional<ResultSet> result, String columnName,
+			Function<String, T> mapper) {
+		ImmutableSortedSet<T> res = StreamSupport.stream(result.get().spliterator(), false)
+				.map(r -> r.getString(columnName)).map(StringUtils::trimToNull).filter(Objects::nonNull).map(mapper)
+				.collect(toNaturalImmutableSortedSet());
+		return res;
+	}
+
+	private Optional<ResultSet> executeSilent(String cql) {
+		LOG.debug("Executing: {}", cql);
+		ResultSet resultSet = null;
+		try {
+			resultSet = session.getSession().execute(cql);
+		} catch (Exception e) {
+			LOG.warn("Error executing CQL: '" + cql + "', reason: " + e.getMessage());
+			LOG.debug(e.getMessage(), e);
+		}
+		return Optional.ofNullable(resultSet);
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra.intern;
+
+import static org.cyclop.common.QueryHelper.extractTableName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.model.CqlKeyword;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.CqlTable;
+import org.cyclop.model.exception.QueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+
+/**
+ * Executes full table select (without WHERE clause) as set of token range queries running concurrently. Each range is
+ * read page by page, failed page is retried from its {@link PagingState}. Rows are returned in token order, or in the
+ * order in which pages arrive if the scan is not ordered.
+ * <p>
+ * Workers take ranges in token order, and each range has its own bounded page queue - so with ordered scan a worker
+ * never waits on consumer longer than the workers of all previous ranges. Ordered scan reads only limited amount of
+ * ranges ahead of the consumer, so that memory is bounded even when most ranges are small.
+ * <p>
+ * Consumer has to {@link #close()} the scan if it does not read all rows - otherwise workers wait until stall timeout.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class TokenRangeScan implements Iterator<Row>, AutoCloseable {
+	private final static Logger LOG = LoggerFactory.getLogger(TokenRangeScan.class);
+
+	/** marks end of range in page queue */
+	private final static List<Row> END = Collections.emptyList();
+
+	/** workers waiting on consumer check this often whether scan has been cancelled or abandoned */
+	private final static long WAIT_MILLIS = 500;
+
+	/** aggregates would return one result per range */
+	private final static String[] AGGREGATES = { "count(", "min(", "max(", "sum(", "avg(" };
+
+	private final Session session;
+
+	private final String cql;
+
+	private final String token;
+
+	private final int fetchSize;
+
+	private final int maxRetries;
+
+	private final long stallTimeoutMillis;
+
+	private final List<TokenRange> ranges;
+
+	private final List<BlockingQueue<List<Row>>> queues;
+
+	private final AtomicInteger nextRange = new AtomicInteger();
+
+	/** ranges that can be read ahead of consumer, null if scan is not ordered */
+	private final Semaphore readAhead;
+
+	private final boolean ordered;
+
+	private volatile Exception failure;
+
+	private volatile boolean cancelled;
+
+	/** consumer has closed the scan - it returns no more rows */
+	private boolean closed;
+
+	/** time when consumer has taken last page */
+	private volatile long lastTakeMillis = System.currentTimeMillis();
+
+	private int currentRange = 0;
+
+	private int finishedRanges = 0;
+
+	private Iterator<Row> page = Collections.emptyIterator();
+
+	private TokenRangeScan(Session session, String cql, String token, List<TokenRange> ranges, int fetchSize,
+			int maxRetries, long stallTimeoutMillis, boolean ordered, int parallelism) {
+		this.session = session;
+		this.cql = cql;
+		this.token = token;
+		this.ranges = ranges;
+		this.fetchSize = fetchSize;
+		this.maxRetries = maxRetries;
+		this.stallTimeoutMillis = stallTimeoutMillis;
+		this.ordered = ordered;
+
+		int queueSize = 4;
+		readAhead = ordered ? new Semaphore(parallelism * 2) : null;
+		if (ordered) {
+			queues = new ArrayList<>(ranges.size());
+			for (int idx = 0; idx < ranges.size(); idx++) {
+				queues.add(new ArrayBlockingQueue<>(queueSize));
+			}
+		} else {
+			queues = Collections.singletonList(new ArrayBlockingQueue<>(queueSize * parallelism));
+		}
+	}
+
+	/**
+	 * @return scan over all token ranges of the table, or empty if query is not full table select or table metadata is
+	 *         not available
+	 */
+	static Optional<TokenRangeScan> create(Session session, CqlQuery query, Optional<CqlKeySpace> activeKeySpace,
+			int fetchSize, int maxRetries, long stallTimeoutMillis, boolean ordered, int parallelism) {
+		String cqlLc = query.partLc.replaceAll("\\s+", " ").trim();
+		boolean select = query.type == CqlQueryType.SELECT
+				|| (query.type == CqlQueryType.UNKNOWN && cqlLc.startsWith("select "));
+		if (!select || cqlLc.contains(" where ") || cqlLc.contains(" limit ") || cqlLc.contains(" order by ")
+				|| cqlLc.contains(" allow filtering")) {
+			return Optional.empty();
+		}
+		String selectClause = cqlLc.substring(0, Math.max(0, cqlLc.indexOf(" from ")));
+		for (String aggregate : AGGREGATES) {
+			if (selectClause.contains(aggregate)) {
+				return Optional.empty();
+			}
+		}
+
+		Metadata metadata = session.getCluster().getMetadata();
+		Optional<TableMetadata> table = findTable(metadata, query, activeKeySpace);
+		if (!table.isPresent()) {
+			return Optional.empty();
+		}
+
+		List<TokenRange> ranges = splitRanges(metadata, table.get().getKeyspace(), parallelism, ordered);
+		if (ranges.isEmpty()) {
+			return Optional.empty();
+		}
+
+		String cql = trimQuery(query.part);
+		String token = tokenFunction(table.get().getPartitionKey());
+		LOG.debug("Scanning {} token ranges of {} by {}", ranges.size(), cql, token);
+		return Optional.of(new TokenRangeScan(session, cql, token, ranges, fetchSize, maxRetries,
+				stallTimeoutMillis, ordered, parallelism));
+	}
+
+	/** starts given amount of workers, each one reading ranges until all has been read */
+	void start(ExecutorService executor, int parallelism) {
+		int workers = Math.min(parallelism, ranges.size());
+		for (int idx = 0; idx < workers; idx++) {
+			executor.execute(this::readRanges);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!page.hasNext()) {
+			if (finishedRanges == ranges.size() || closed) {
+				return false;
+			}
+			List<Row> next = takePage();
+			if (next == END) {
+				finishedRanges++;
+				currentRange++;
+				if (readAhead != null) {
+					readAhead.release();
+				}
+			} else {
+				page = next.iterator();
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Row next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.next();
+	}
+
+	/** stops workers - rows which are not read yet are dropped */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		LOG.debug("Closing token range scan: {}", cql);
+		closed = true;
+		cancelled = true;
+		page = Collections.emptyIterator();
+		queues.forEach(BlockingQueue::clear);
+	}
+
+	private List<Row> takePage() {
+		BlockingQueue<List<Row>> queue = queues.get(ordered ? currentRange : 0);
+		try {
+			while (true) {
+				if (failure != null) {
+					throw new QueryException("Error scanning token ranges: '" + cql + "', reason: "
+							+ failure.getMessage(), failure);
+				}
+				List<Row> next = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (next != null) {
+					lastTakeMillis = System.currentTimeMillis();
+					return next;
+				}
+			}
+		} catch (InterruptedException e) {
+			close();
+			Thread.currentThread().interrupt();
+			throw new QueryException("Token range scan has been interrupted: '" + cql + "'", e);
+		}
+	}
+
+	private void readRanges() {
+		try {
+			while (!cancelled && failure == null) {
+				if (readAhead != null && !acquireReadAhead()) {
+					break;
+				}
+				int rangeIdx = nextRange.getAndIncrement();
+				if (rangeIdx >= ranges.size()) {
+					break;
+				}
+				readRange(rangeIdx);
+			}
+		} catch (Throwable e) {
+			LOG.warn("Error scanning token range: {}", e.getMessage());
+			failure = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+		}
+	}
+
+	private void readRange(int rangeIdx) throws InterruptedException {
+		TokenRange range = ranges.get(rangeIdx);
+		BlockingQueue<List<Row>> queue = queues.get(ordered ? rangeIdx : 0);
+		PagingState pagingState = null;
+		do {
+			ResultSet resultSet = fetchPage(range, pagingState);
+			int available = resultSet.getAvailableWithoutFetching();
+			List<Row> rows = new ArrayList<>(available);
+			for (int idx = 0; idx < available; idx++) {
+				rows.add(resultSet.one());
+			}
+			if (!rows.isEmpty()) {
+				offer(queue, rows);
+			}
+			pagingState = resultSet.getExecutionInfo().getPagingState();
+		} while (pagingState != null && !cancelled);
+		offer(queue, END);
+	}
+
+	private ResultSet fetchPage(TokenRange range, PagingState pagingState) throws InterruptedException {
+		for (int attempt = 0;; attempt++) {
+			Statement statement = createStatement(range);
+			if (pagingState != null) {
+				statement.setPagingState(pagingState);
+			}
+			try {
+				return session.execute(statement);
+			} catch (RuntimeException e) {
+				if (attempt >= maxRetries || cancelled) {
+					throw e;
+				}
+				LOG.debug("Retrying range {} after error: {}", range, e.getMessage());
+				Thread.sleep(100L * (attempt + 1));
+			}
+		}
+	}
+
+	/** @return false if scan has been cancelled */
+	private boolean acquireReadAhead() throws InterruptedException {
+		while (!readAhead.tryAcquire(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (cancelled) {
+				return false;
+			}
+			checkStalled();
+		}
+		return true;
+	}
+
+	private void offer(BlockingQueue<List<Row>> queue, List<Row> rows) throws InterruptedException {
+		while (!queue.offer(rows, WAIT_MILLIS, TimeUnit.MILLISECONDS) && !cancelled) {
+			checkStalled();
+		}
+	}
+
+	/** consumer might be still reading previous ranges, so scan is abandoned only if it does not take any pages */
+	private void checkStalled() {
+		if (cancelled || System.currentTimeMillis() - lastTakeMillis < stallTimeoutMillis) {
+			return;
+		}
+		cancelled = true;
+		throw new QueryException("Token range scan abandoned - rows were not consumed for " + stallTimeoutMillis
+				+ "ms: '" + cql + "'", null);
+	}
+
+	private Statement createStatement(TokenRange range) {
+		Object start = range.getStart().getValue();
+		Statement statement;
+
+		// range unwrapped at the end of the ring ends with minimum token, which is lower than its start
+		if (range.getEnd().compareTo(range.getStart()) <= 0) {
+			statement = new SimpleStatement(cql + " WHERE " + token + " > ?", start);
+		} else {
+			statement = new SimpleStatement(cql + " WHERE " + token + " > ? AND " + token + " <= ?", start, range
+					.getEnd().getValue());
+		}
+		statement.setFetchSize(fetchSize);
+		return statement;
+	}
+
+	private static String trimQuery(String cql) {
+		String trimmed = cql.trim();
+		while (trimmed.endsWith(";")) {
+			trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+		}
+		return trimmed;
+	}
+
+	private static String tokenFunction(List<ColumnMetadata> partitionKey) {
+		StringBuilder token = new StringBuilder("token(");
+		for (int idx = 0; idx < partitionKey.size(); idx++) {
+			if (idx > 0) {
+				token.append(",");
+			}
+			token.append(Metadata.quote(partitionKey.get(idx).getName()));
+		}
+		token.append(")");
+		return token.toString();
+	}
+
+	private static Optional<TableMetadata> findTable(Metadata metadata, CqlQuery query,
+			Optional<CqlKeySpace> activeKeySpace) {
+		Optional<CqlTable> table = extractTableName(CqlKeyword.Def.FROM.value, query);
+		if (!table.isPresent()) {
+			return Optional.empty();
+		}
+		CqlKeySpace keySpace = table.get().keySpace != null ? table.get().keySpace : activeKeySpace.orElse(null);
+		if (keySpace == null) {
+			return Optional.empty();
+		}
+		KeyspaceMetadata keyspaceMeta = metadata.getKeyspace(keySpace.partLc);
+		if (keyspaceMeta == null) {
+			return Optional.empty();
+		}
+		String tableName = table.get().partLc;
+		while (tableName.endsWith(";")) {
+			tableName = tableName.substring(0, tableName.length() - 1);
+		}
+		return Optional.ofNullable(keyspaceMeta.getTable(tableName));
+	}
+
+	/**
+	 * Unwraps ranges crossing the end of the ring and splits them, so that there are at least few ranges for each
+	 * worker. Unordered scan interleaves ranges of different replicas, so that concurrent workers query different
+	 * nodes.
+	 */
+	private static List<TokenRange> splitRanges(Metadata metadata, KeyspaceMetadata keyspace, int parallelism,
+			boolean ordered) {
+		List<TokenRange> unwrapped = new ArrayList<>();
+		for (TokenRange range : metadata.getTokenRanges()) {
+			for (TokenRange part : range.unwrap()) {
+				if (!part.isEmpty()) {
+					unwrapped.add(part);
+				}
+			}
+		}
+		Collections.sort(unwrapped);
+
+		int minRanges = parallelism * 4;
+		List<TokenRange> split = new ArrayList<>();
+		int splitFactor = unwrapped.isEmpty() ? 1 : (minRanges + unwrapped.size() - 1) / unwrapped.size();
+		for (TokenRange range : unwrapped) {
+			split.addAll(splitFactor > 1 ? range.splitEvenly(splitFactor) : Collections.singletonList(range));
+		}
+		if (ordered) {
+			return split;
+		}
+
+		String keyspaceName = Metadata.quote(keyspace.getName());
+		Map<Host, List<TokenRange>> byReplica = new LinkedHashMap<>();
+		for (TokenRange range : split) {
+			Set<Host> replicas = metadata.getReplicas(keyspaceName, range);
+			Host primary = replicas.isEmpty() ? null : replicas.iterator().next();
+			byReplica.computeIfAbsent(primary, host -> new ArrayList<>()).add(range);
+		}
+		List<TokenRange> interleaved = new ArrayList<>(split.size());
+		for (int idx = 0; interleaved.size() < split.size(); idx++) {
+			for (List<TokenRange> hostRanges : byReplica.values()) {
+				if (idx < hostRanges.size()) {
+					interleaved.add(hostRanges.get(idx));
+				}
+			}
+		}
+		return interleaved;
+	}
+}
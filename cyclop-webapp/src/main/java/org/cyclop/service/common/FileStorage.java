@@ -16,20 +16,27 @@
  */
 package org.cyclop.service.common;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.InputStream;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.FileLockInterruptionException;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -39,17 +46,22 @@ import javax.inject.Named;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
+import net.jcip.annotations.Immutable;
 import net.jcip.annotations.NotThreadSafe;
 
 import org.apache.commons.lang3.StringUtils;
 import org.cyclop.common.AppConfig;
 import org.cyclop.model.UserIdentifier;
 import org.cyclop.model.exception.ServiceException;
+import org.cyclop.service.converter.BinaryMarshaller;
 import org.cyclop.service.converter.JsonMarshaller;
 import org.cyclop.validation.EnableValidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
 /** @author Maciej Miklas */
 @Named
 @NotThreadSafe
@@ -59,14 +71,15 @@ public class FileStorage {
 
 	private ThreadLocal<CharsetEncoder> encoder;
 
-	private ThreadLocal<CharsetDecoder> decoder;
-
 	@Inject
 	private AppConfig config;
 
 	@Inject
 	private JsonMarshaller jsonMarshaller;
 
+	@Inject
+	private BinaryMarshaller binaryMarshaller;
+
 	private boolean supported;
 
 	private final AtomicInteger lockRetryCount = new AtomicInteger(0);
@@ -83,15 +96,6 @@ public class FileStorage {
 				return decoder;
 			}
 		};
-
-		decoder = new ThreadLocal<CharsetDecoder>() {
-			@Override
-			protected CharsetDecoder initialValue() {
-				Charset charset = Charset.forName("UTF-8");
-				CharsetDecoder decoder = charset.newDecoder();
-				return decoder;
-			}
-		};
 	}
 
 	public boolean supported() {
@@ -122,10 +126,8 @@ public class FileStorage {
 		LOG.debug("Storing file for {}", userId);
 		Path histPath = getPath(userId, entity.getClass());
 		try (FileChannel channel = openForWrite(histPath)) {
-			String jsonText = jsonMarshaller.marshal(entity);
-			ByteBuffer buf = encoder.get().encode(CharBuffer.wrap(jsonText));
-			int written = channel.write(buf);
-			channel.truncate(written);
+			write(channel, entity, false);
+			channel.truncate(channel.position());
 		} catch (IOException | SecurityException | IllegalStateException e) {
 			throw new ServiceException("Error storing query history in:" + histPath + " - " + e.getClass() + " - "
 					+ e.getMessage(), e);
@@ -146,16 +148,13 @@ public class FileStorage {
 				LOG.info("File: {} too large: {} - skipping it", filePath, fileSize);
 				return Optional.empty();
 			}
-			ByteBuffer buf = ByteBuffer.allocate(fileSize);
-			channel.read(buf);
-			buf.flip();
-			String decoded = decoder.get().decode(buf).toString();
-			decoded = StringUtils.trimToNull(decoded);
-			if(decoded == null) {
+			InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+			int first = skipWhitespace(in);
+			if (first < 0) {
+				LOG.debug("File is empty: {}", filePath);
 				return Optional.empty();
 			}
-			T content = jsonMarshaller.unmarshal(clazz, decoded);
-
+			T content = unmarshal(clazz, in, BinaryMarshaller.isBinary(first), filePath);
 			LOG.debug("File read");
 			return Optional.ofNullable(content);
 		} catch (IOException | SecurityException | IllegalStateException e) {
@@ -164,6 +163,143 @@ public class FileStorage {
 
 	}
 
+	/** appends entity as single line to journal of given user, journal is created if it does not exist */
+	public void append(@NotNull UserIdentifier userId, @NotNull Object entity) throws ServiceException {
+		Path journalPath = getJournalPath(userId, entity.getClass());
+		LOG.debug("Appending to journal {}", journalPath);
+		try (FileChannel channel = lock(journalPath, FileChannel.open(journalPath, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND))) {
+			write(channel, entity, true);
+		} catch (IOException | SecurityException | IllegalStateException e) {
+			throw new ServiceException("Error appending to journal:" + journalPath + " - " + e.getClass() + " - "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/** replaces journal of given user with single entity */
+	public void compact(@NotNull UserIdentifier userId, @NotNull Object entity) throws ServiceException {
+		Path journalPath = getJournalPath(userId, entity.getClass());
+		LOG.debug("Compacting journal {}", journalPath);
+		try (FileChannel channel = openForWrite(journalPath)) {
+			write(channel, entity, true);
+			channel.truncate(channel.position());
+		} catch (IOException | SecurityException | IllegalStateException e) {
+			throw new ServiceException("Error compacting journal:" + journalPath + " - " + e.getClass() + " - "
+					+ e.getMessage(), e);
+		}
+	}
+
+	public boolean journalExists(@NotNull UserIdentifier userId, @NotNull Class<?> clazz) {
+		return getJournalPath(userId, clazz).toFile().exists();
+	}
+
+	/**
+	 * Journal contains binary records, or JSON lines if it has been written before binary format. Lines that cannot
+	 * be read are skipped, unreadable binary record ends the journal - the last one might be incomplete if
+	 * application has been stopped while appending to journal. In both cases journal is reported as damaged - it
+	 * has to be compacted before anything is appended to it, otherwise new records would follow broken bytes
+	 *
+	 * @return entities in the order in which they were appended, empty if journal does not exist
+	 */
+	public @NotNull <T> Journal<T> readJournal(@NotNull UserIdentifier userId, @NotNull Class<T> clazz)
+			throws ServiceException {
+		Path journalPath = getJournalPath(userId, clazz);
+		LOG.debug("Reading journal {} for {}", journalPath, userId);
+		List<T> entities = new ArrayList<>();
+		boolean damaged = false;
+		try (FileChannel channel = openForRead(journalPath)) {
+			if (channel == null) {
+				return new Journal<>(entities, false);
+			}
+			int fileSize = (int) channel.size();
+			if (fileSize > config.fileStore.maxFileSize) {
+				LOG.info("Journal: {} too large: {} - skipping it", journalPath, fileSize);
+				return new Journal<>(entities, true);
+			}
+			InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+			while (true) {
+				in.mark(1);
+				int first = in.read();
+				if (first < 0) {
+					break;
+				}
+				in.reset();
+				if (BinaryMarshaller.isBinary(first)) {
+					try {
+						entities.add(binaryMarshaller.unmarshal(clazz, in));
+					} catch (IOException e) {
+						// binary records cannot be skipped - their length is not known
+						LOG.warn("Skipping rest of journal {}: {}", journalPath, e.getMessage());
+						damaged = true;
+						break;
+					}
+				} else {
+					String line = StringUtils.trimToNull(readLine(in));
+					if (line == null) {
+						continue;
+					}
+					try {
+						entities.add(jsonMarshaller.unmarshal(clazz, line));
+					} catch (ServiceException e) {
+						LOG.warn("Skipping unreadable line in journal {}: {}", journalPath, e.getMessage());
+						damaged = true;
+					}
+				}
+			}
+			LOG.debug("Read {} journal entries, damaged: {}", entities.size(), damaged);
+			return new Journal<>(entities, damaged);
+		} catch (IOException | SecurityException | IllegalStateException e) {
+			throw new ServiceException("Error reading journal from:" + journalPath + " - " + e.getMessage(), e);
+		}
+	}
+
+	/** writes binary record if entity supports it, otherwise JSON - line in journal */
+	private void write(FileChannel channel, Object entity, boolean line) throws IOException {
+		if (binaryMarshaller.supports(entity.getClass())) {
+			binaryMarshaller.marshal(entity, new BufferedOutputStream(Channels.newOutputStream(channel)));
+		} else {
+			String jsonText = jsonMarshaller.marshal(entity);
+			channel.write(encoder.get().encode(CharBuffer.wrap(line ? jsonText + "\n" : jsonText)));
+		}
+	}
+
+	/**
+	 * Content is streamed from file directly into marshaller - file could be truncated if application has been stopped
+	 * while writing it, such file is skipped. Other errors are reported.
+	 *
+	 * @return null if file ends before its content is complete
+	 */
+	private <T> T unmarshal(Class<T> clazz, InputStream in, boolean binary, Path filePath) throws IOException {
+		try {
+			return binary ? binaryMarshaller.unmarshal(clazz, in) : jsonMarshaller.unmarshal(clazz, in);
+		} catch (EOFException e) {
+			LOG.warn("File: {} is incomplete - skipping it: {}", filePath, e.getMessage());
+			return null;
+		}
+	}
+
+	/** @return next byte without consuming it, -1 if stream contains only whitespace */
+	private int skipWhitespace(InputStream in) throws IOException {
+		while (true) {
+			in.mark(1);
+			int next = in.read();
+			if (next < 0 || !Character.isWhitespace(next)) {
+				in.reset();
+				return next;
+			}
+		}
+	}
+
+	/** journal lines written before binary format */
+	private String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int read;
+		while ((read = in.read()) >= 0 && read != '\n') {
+			line.write(read);
+		}
+		return new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
 	private FileChannel openForWrite(Path histPath) throws IOException {
 		FileChannel byteChannel = FileChannel.open(histPath, StandardOpenOption.CREATE,
 				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
@@ -216,8 +352,35 @@ public class FileStorage {
 		return histPath;
 	}
 
+	private Path getJournalPath(UserIdentifier userId, Class<?> entity) {
+		String fileName = entity.getSimpleName() + "-" + userId.id + ".journal";
+		return Paths.get(config.fileStore.folder, fileName);
+	}
+
 	public int getLockRetryCount() {
 		return lockRetryCount.get();
 	}
 
+
+	/** content of journal */
+	@Immutable
+	public final static class Journal<T> {
+
+		/** in the order in which they were appended */
+		public final ImmutableList<T> entities;
+
+		/** true if some records could not be read */
+		public final boolean damaged;
+
+		private Journal(List<T> entities, boolean damaged) {
+			this.entities = ImmutableList.copyOf(entities);
+			this.damaged = damaged;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("entities", entities.size()).add("damaged", damaged)
+					.toString();
+		}
+	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.validation.constraints.NotNull;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryFavourites;
+import org.cyclop.model.QueryHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Versioned binary format for {@link QueryHistory} and {@link QueryFavourites}, entries are streamed directly
+ * without intermediate objects:
+ *
+ * <pre>
+ * byte    MAGIC
+ * byte    VERSION
+ * byte    KIND_HISTORY | KIND_FAVOURITES
+ * int     number of query types, followed by their names (UTF)
+ * int     number of entries, each one:
+ *         byte   index of query type
+ *         int    length of UTF-8 encoded query, followed by query
+ *         long   executed on - UTC epoch second
+ *         int    executed on - nanos
+ *         long   run time
+ * </pre>
+ *
+ * Query types are stored by name, so that format does not depend on order of {@link CqlQueryType}. History entries
+ * are stored from oldest to newest. Single record is self delimiting, so that records can be appended one after
+ * another.
+ *
+ * @author Maciej Miklas
+ */
+@Named
+@ThreadSafe
+public class BinaryMarshaller {
+	private final static Logger LOG = LoggerFactory.getLogger(BinaryMarshaller.class);
+
+	/** cannot be first byte of JSON text, so that binary files can be told apart from JSON */
+	public final static int MAGIC = 0xCF;
+
+	public final static int VERSION = 1;
+
+	private final static int KIND_HISTORY = 1;
+
+	private final static int KIND_FAVOURITES = 2;
+
+	public static boolean isBinary(int firstByte) {
+		return firstByte == MAGIC;
+	}
+
+	public boolean supports(@NotNull Class<?> clazz) {
+		return clazz == QueryHistory.class || clazz == QueryFavourites.class;
+	}
+
+	public void marshal(@NotNull Object obj, @NotNull OutputStream out) throws IOException {
+		DataOutputStream dout = new DataOutputStream(out);
+		dout.writeByte(MAGIC);
+		dout.writeByte(VERSION);
+		if (obj instanceof QueryHistory) {
+			dout.writeByte(KIND_HISTORY);
+			writeEntries(dout, ((QueryHistory) obj).copyAsList().reverse());
+		} else if (obj instanceof QueryFavourites) {
+			dout.writeByte(KIND_FAVOURITES);
+			writeEntries(dout, ((QueryFavourites) obj).copyAsSortedSet());
+		} else {
+			throw new IllegalArgumentException("Binary format does not support: " + obj.getClass());
+		}
+		dout.flush();
+		LOG.trace("Marshalled {}", obj);
+	}
+
+	/**
+	 * @throws java.io.EOFException
+	 *             if stream ends before whole record has been read
+	 */
+	public @NotNull <T> T unmarshal(@NotNull Class<T> clazz, @NotNull InputStream in) throws IOException {
+		DataInputStream din = new DataInputStream(in);
+		int magic = din.readUnsignedByte();
+		if (magic != MAGIC) {
+			throw new IOException("Not a binary record, found: " + magic);
+		}
+		int version = din.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary format version: " + version);
+		}
+		int kind = din.readUnsignedByte();
+		List<QueryEntry> entries = readEntries(din);
+		Object unmarshalObj;
+		if (kind == KIND_HISTORY && clazz == QueryHistory.class) {
+			QueryHistory history = new QueryHistory();
+			for (QueryEntry entry : entries) {
+				history.add(entry);
+			}
+			// read entries are already stored
+			history.drainAppended();
+			unmarshalObj = history;
+		} else if (kind == KIND_FAVOURITES && clazz == QueryFavourites.class) {
+			QueryFavourites favourites = new QueryFavourites();
+			for (QueryEntry entry : entries) {
+				favourites.addWithSizeCheck(entry);
+			}
+			unmarshalObj = favourites;
+		} else {
+			throw new IOException("Record of kind " + kind + " cannot be read as " + clazz);
+		}
+		LOG.trace("Unmarshalled {}", unmarshalObj);
+		return clazz.cast(unmarshalObj);
+	}
+
+	private void writeEntries(DataOutputStream out, Collection<QueryEntry> entries) throws IOException {
+		Map<CqlQueryType, Integer> typeIndex = new HashMap<>();
+		List<CqlQueryType> types = new ArrayList<>();
+		for (QueryEntry entry : entries) {
+			if (!typeIndex.containsKey(entry.query.type)) {
+				typeIndex.put(entry.query.type, types.size());
+				types.add(entry.query.type);
+			}
+		}
+		out.writeInt(types.size());
+		for (CqlQueryType type : types) {
+			out.writeUTF(type.name());
+		}
+
+		out.writeInt(entries.size());
+		for (QueryEntry entry : entries) {
+			out.writeByte(typeIndex.get(entry.query.type));
+			byte[] cql = entry.query.part.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(cql.length);
+			out.write(cql);
+			out.writeLong(entry.executedOnUtc.toEpochSecond(ZoneOffset.UTC));
+			out.writeInt(entry.executedOnUtc.getNano());
+			out.writeLong(entry.runTime);
+		}
+	}
+
+	private List<QueryEntry> readEntries(DataInputStream in) throws IOException {
+		int typesSize = checkSize(in.readInt());
+		List<CqlQueryType> types = new ArrayList<>(typesSize);
+		for (int idx = 0; idx < typesSize; idx++) {
+			types.add(parseType(in.readUTF()));
+		}
+
+		int entriesSize = checkSize(in.readInt());
+		List<QueryEntry> entries = new ArrayList<>(Math.min(entriesSize, 1024));
+		for (int idx = 0; idx < entriesSize; idx++) {
+			int typeIdx = in.readUnsignedByte();
+			if (typeIdx >= types.size()) {
+				throw new IOException("Unknown query type index: " + typeIdx);
+			}
+			byte[] cql = new byte[checkSize(in.readInt())];
+			in.readFully(cql);
+			LocalDateTime executedOn = readDateTime(in);
+			long runTime = in.readLong();
+			CqlQuery query = new CqlQuery(types.get(typeIdx), new String(cql, StandardCharsets.UTF_8));
+			entries.add(new QueryEntry(query, executedOn, runTime));
+		}
+		return entries;
+	}
+
+	private LocalDateTime readDateTime(DataInputStream in) throws IOException {
+		long epochSecond = in.readLong();
+		int nano = in.readInt();
+		try {
+			return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+		} catch (DateTimeException e) {
+			throw new IOException("Incorrect date: " + e.getMessage(), e);
+		}
+	}
+
+	private CqlQueryType parseType(String name) {
+		try {
+			return CqlQueryType.valueOf(name);
+		} catch (IllegalArgumentException e) {
+			LOG.debug("Unknown query type: {}", name);
+			return CqlQueryType.UNKNOWN;
+		}
+	}
+
+	private int checkSize(int size) throws IOException {
+		if (size < 0 || size > AppConfig.get().fileStore.maxFileSize) {
+			throw new IOException("Incorrect size: " + size);
+		}
+		return size;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import net.jcip.annotations.Immutable;
+
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlRowMetadata;
+
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Extraction plan for all rows of single query result - it is compiled once by
+ * {@link DataExtractor#compile(CqlRowMetadata, com.datastax.driver.core.ColumnDefinitions)} and contains for each
+ * column reader specialized for its data type, together with the index of the column within the row. Reading a cell
+ * is an array access followed by single indexed call on the row - no type dispatch and no column name lookup.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class ColumnPlan {
+
+	/** columns in the same order as {@link CqlRowMetadata#columns} */
+	public final ImmutableList<CqlExtendedColumnName> columns;
+
+	private final Kind[] kinds;
+
+	private final int[] indexes;
+
+	private final CellReader[] readers;
+
+	/** position of partition key in {@link #columns}, or -1 */
+	public final int partitionKeyIndex;
+
+	ColumnPlan(ImmutableList<CqlExtendedColumnName> columns, Kind[] kinds, int[] indexes, CellReader[] readers,
+			int partitionKeyIndex) {
+		this.columns = columns;
+		this.kinds = kinds;
+		this.indexes = indexes;
+		this.readers = readers;
+		this.partitionKeyIndex = partitionKeyIndex;
+	}
+
+	public int size() {
+		return columns.size();
+	}
+
+	public Kind kind(int column) {
+		return kinds[column];
+	}
+
+	public boolean isNull(Row row, int column) {
+		int index = indexes[column];
+		return index < 0 || row.isNull(index);
+	}
+
+	/**
+	 * @return value of single column, or <code>null</code> if column has no value. Use this method only for columns of
+	 *         kind {@link Kind#SINGLE}
+	 */
+	public Object readSingle(Row row, int column) {
+		return isNull(row, column) ? null : readers[column].read(row, indexes[column]);
+	}
+
+	/** @return content of set or list, never <code>null</code> */
+	public Collection<?> readCollection(Row row, int column) {
+		return isNull(row, column) ? Collections.emptyList() : (Collection<?>) readers[column].read(row,
+				indexes[column]);
+	}
+
+	/** @return content of map, never <code>null</code> */
+	public Map<?, ?> readMap(Row row, int column) {
+		return isNull(row, column) ? Collections.emptyMap() : (Map<?, ?>) readers[column].read(row, indexes[column]);
+	}
+
+	public static enum Kind {
+		SINGLE, COLLECTION, MAP
+	}
+
+	/** Reads value of one cell with type specific getter */
+	@FunctionalInterface
+	interface CellReader {
+		Object read(Row row, int index);
+	}
+}
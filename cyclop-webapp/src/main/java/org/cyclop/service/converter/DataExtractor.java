@@ -30,10 +30,14 @@ import org.cyclop.model.CqlDataType;
 import org.cyclop.model.CqlExtendedColumnName;
 import org.cyclop.model.CqlPartitionKey;
 import org.cyclop.model.CqlPartitionKeyValue;
+import org.cyclop.model.CqlRowMetadata;
+import org.cyclop.service.converter.ColumnPlan.CellReader;
+import org.cyclop.service.converter.ColumnPlan.Kind;
 import org.cyclop.validation.EnableValidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.Row;
 import com.google.common.collect.ImmutableList;
@@ -45,6 +49,41 @@ import com.google.common.collect.ImmutableMap;
 public class DataExtractor {
 	private final static Logger LOG = LoggerFactory.getLogger(DataExtractor.class);
 
+	/**
+	 * Compiles extraction plan for all rows having given definitions - for each column in metadata, the type specific
+	 * reader and index within the row are resolved only once.
+	 */
+	public @NotNull ColumnPlan compile(@NotNull CqlRowMetadata metadata, @NotNull ColumnDefinitions definitions) {
+		ImmutableList<CqlExtendedColumnName> columns = metadata.columns;
+		int size = columns.size();
+		Kind[] kinds = new Kind[size];
+		int[] indexes = new int[size];
+		CellReader[] readers = new CellReader[size];
+		for (int col = 0; col < size; col++) {
+			CqlExtendedColumnName column = columns.get(col);
+			CqlDataType dataType = column.dataType;
+			indexes[col] = definitions.getIndexOf(column.partLc);
+
+			if (dataType.name == DataType.Name.SET || dataType.name == DataType.Name.LIST) {
+				kinds[col] = Kind.COLLECTION;
+				readers[col] = collectionReader(dataType);
+
+			} else if (dataType.name == DataType.Name.MAP) {
+				kinds[col] = Kind.MAP;
+				readers[col] = mapReader(dataType);
+
+			} else {
+				kinds[col] = Kind.SINGLE;
+				readers[col] = singleReader(column);
+			}
+		}
+		int partitionKeyIndex = metadata.partitionKey == null ? -1 : metadata.indexOf(metadata.partitionKey);
+
+		ColumnPlan plan = new ColumnPlan(columns, kinds, indexes, readers, partitionKeyIndex);
+		LOG.debug("Compiled column plan for: {}", columns);
+		return plan;
+	}
+
 	public @NotNull ImmutableList<CqlColumnValue> extractCollection(@NotNull Row row,
 			@NotNull CqlExtendedColumnName column) {
 		String partLc = column.partLc;
@@ -57,8 +96,8 @@ public class DataExtractor {
 			return ImmutableList.of();
 		}
 
-		Collection<?> objCont = dataType.name == DataType.Name.SET ? row.getSet(partLc, dataType.keyClass) : row
-				.getList(partLc, dataType.keyClass);
+		Collection<?> objCont = (Collection<?>) collectionReader(dataType).read(row,
+				row.getColumnDefinitions().getIndexOf(partLc));
 
 		ImmutableList<CqlColumnValue> collection = objCont.stream()
 				.map(o -> new CqlColumnValue(dataType.keyClass, o, column)).collect(toImmutableList());
@@ -79,7 +118,8 @@ public class DataExtractor {
 			return ImmutableMap.of();
 		}
 
-		Map<?, ?> unconverted = row.getMap(partLc, dataType.keyClass, dataType.valueClass);
+		Map<?, ?> unconverted = (Map<?, ?>) mapReader(dataType).read(row,
+				row.getColumnDefinitions().getIndexOf(partLc));
 
 		
 		ImmutableMap<CqlColumnValue, CqlColumnValue> map = unconverted
@@ -107,53 +147,77 @@ public class DataExtractor {
 			throw new IllegalArgumentException("Collection type is not supported");
 		}
 
-		Object extracted = null;
+		Object extracted = singleReader(column).read(row, row.getColumnDefinitions().getIndexOf(partLc));
+
+		if (extracted == null) {
+			extracted = "";
+		}
+
+		Class<?> eClass = extracted.getClass();
+		CqlColumnValue cqlColumnValue = new CqlColumnValue(eClass, extracted, column);
+
+		LOG.debug("Extracted: {}", cqlColumnValue);
+		return cqlColumnValue;
+	}
+
+	private static CellReader collectionReader(CqlDataType dataType) {
+		Class<?> elementClass = dataType.keyClass;
+		if (elementClass == null) {
+			return (row, index) -> ImmutableList.of();
+		}
+		return dataType.name == DataType.Name.SET ? (row, index) -> row.getSet(index, elementClass) : (row,
+				index) -> row.getList(index, elementClass);
+	}
+
+	private static CellReader mapReader(CqlDataType dataType) {
+		Class<?> keyClass = dataType.keyClass;
+		Class<?> valueClass = dataType.valueClass;
+		if (keyClass == null || valueClass == null) {
+			return (row, index) -> ImmutableMap.of();
+		}
+		return (row, index) -> row.getMap(index, keyClass, valueClass);
+	}
+
+	private static CellReader singleReader(CqlExtendedColumnName column) {
+		CqlDataType dataType = column.dataType;
+		CellReader reader;
 		if (dataType.isUUID()) {
-			extracted = row.getUUID(partLc);
+			reader = Row::getUUID;
 
 		} else if (dataType.isString()) {
-			extracted = row.getString(partLc);
+			reader = Row::getString;
 
 		} else if (dataType.isLong()) {
-			extracted = row.getLong(partLc);
+			reader = Row::getLong;
 
 		} else if (dataType.name == DataType.cfloat().getName()) {
-			extracted = row.getFloat(partLc);
+			reader = Row::getFloat;
 
 		} else if (dataType.name == DataType.cint().getName()) {
-			extracted = row.getInt(partLc);
+			reader = Row::getInt;
 
 		} else if (dataType.name == DataType.cboolean().getName()) {
-			extracted = row.getBool(partLc);
+			reader = Row::getBool;
 
 		} else if (dataType.name == DataType.decimal().getName()) {
-			extracted = row.getDecimal(partLc);
+			reader = Row::getDecimal;
 
 		} else if (dataType.name == DataType.cdouble().getName()) {
-			extracted = row.getDouble(partLc);
+			reader = Row::getDouble;
 
 		} else if (dataType.name == DataType.varint().getName()) {
-			extracted = row.getVarint(partLc);
+			reader = Row::getVarint;
 
 		} else if (dataType.name == DataType.timestamp().getName()) {
-			extracted = row.getDate(partLc);
+			reader = Row::getDate;
 
 		} else if (dataType.name == DataType.inet().getName()) {
-			extracted = row.getInet(partLc);
+			reader = Row::getInet;
 		} else {
-			extracted = "?? " + column.part + " ??";
+			String unsupported = "?? " + column.part + " ??";
+			reader = (row, index) -> unsupported;
 			LOG.warn("Type: " + dataType + " not supported by data converter");
 		}
-
-		if (extracted == null) {
-			extracted = "";
-		}
-
-		Class<?> eClass = extracted.getClass();
-		CqlColumnValue cqlColumnValue = new CqlColumnValue(eClass, extracted, column);
-
-		LOG.debug("Extracted: {}", cqlColumnValue);
-		return cqlColumnValue;
+		return reader;
 	}
-
 }
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.cyclop.common.Gullectors.toImmutableList;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.constraints.NotNull;
+
+import org.cyclop.model.CqlDisplayRow;
+import org.cyclop.model.CqlDisplayValue;
+import org.cyclop.model.CqlRowMetadata;
+import org.cyclop.model.CqlValuePath;
+import org.cyclop.validation.EnableValidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+
+/**
+ * Decodes driver's row into display ready values. Each cell is decoded, converted to string and trimmed only once -
+ * rendering of the result table works on {@link CqlDisplayRow} and driver's row can be released. Not trimmed content
+ * of single value is decoded on demand by {@link #convertFullContent(Row, CqlRowMetadata, CqlValuePath)}.
+ *
+ * @author Maciej Miklas
+ */
+@Named
+@EnableValidation
+public class DisplayRowConverter {
+	private final static Logger LOG = LoggerFactory.getLogger(DisplayRowConverter.class);
+
+	/** content is displayed not trimmed if trimming would remove only few characters */
+	private final static int MIN_TRIMMED_CHARS = 10;
+
+	@Inject
+	private DataExtractor extractor;
+
+	@Inject
+	private DataConverter converter;
+
+	public @NotNull CqlDisplayRow convert(@NotNull Row row, int index, @NotNull CqlRowMetadata metadata) {
+		return convert(row, index, extractor.compile(metadata, row.getColumnDefinitions()));
+	}
+
+	/**
+	 * @param firstIndex
+	 *            position of the first converted row within query result
+	 * @return function converting following rows of single query result - {@link ColumnPlan} is compiled together
+	 *         with the first row and reused for following rows
+	 */
+	public @NotNull Function<Row, CqlDisplayRow> converter(@NotNull CqlRowMetadata metadata, int firstIndex) {
+		return new Function<Row, CqlDisplayRow>() {
+			private ColumnPlan plan;
+
+			private int index = firstIndex;
+
+			@Override
+			public CqlDisplayRow apply(Row row) {
+				if (plan == null) {
+					plan = extractor.compile(metadata, row.getColumnDefinitions());
+				}
+				return convert(row, index++, plan);
+			}
+		};
+	}
+
+	public @NotNull CqlDisplayRow convert(@NotNull Row row, int index, @NotNull ColumnPlan plan) {
+		ImmutableList.Builder<CqlDisplayValue> values = ImmutableList.builder();
+		for (int col = 0; col < plan.size(); col++) {
+			values.add(convertColumn(row, plan, col));
+		}
+
+		String partitionKeyValue = null;
+		if (plan.partitionKeyIndex >= 0) {
+			partitionKeyValue = converter.convert(plan.readSingle(row, plan.partitionKeyIndex));
+		}
+
+		CqlDisplayRow displayRow = new CqlDisplayRow(index, values.build(), partitionKeyValue);
+		LOG.trace("Converted: {}", displayRow);
+		return displayRow;
+	}
+
+	/**
+	 * @param row
+	 *            row on {@link CqlValuePath#rowIndex}
+	 * @return not trimmed content of value on given path, or empty if path does not point to not null value
+	 */
+	public @NotNull Optional<String> convertFullContent(@NotNull Row row, @NotNull CqlRowMetadata metadata,
+			@NotNull CqlValuePath path) {
+		ColumnPlan plan = extractor.compile(metadata, row.getColumnDefinitions());
+		int col = path.columnIndex;
+		if (col < 0 || col >= plan.size() || plan.isNull(row, col)) {
+			return Optional.empty();
+		}
+
+		Object value;
+		switch (plan.kind(col)) {
+		case COLLECTION:
+			value = path.elementIndex < 0 ? null : Iterables.get(plan.readCollection(row, col), path.elementIndex,
+					null);
+			break;
+
+		case MAP:
+			Map.Entry<?, ?> entry = path.elementIndex < 0 ? null : Iterables.get(plan.readMap(row, col).entrySet(),
+					path.elementIndex, null);
+			value = entry == null ? null : path.mapKey ? entry.getKey() : entry.getValue();
+			break;
+
+		default:
+			value = plan.readSingle(row, col);
+		}
+		return Optional.ofNullable(converter.convert(value));
+	}
+
+	private CqlDisplayValue convertColumn(Row row, ColumnPlan plan, int col) {
+		if (plan.isNull(row, col)) {
+			return CqlDisplayValue.EMPTY;
+		}
+
+		CqlDisplayValue value;
+		switch (plan.kind(col)) {
+		case COLLECTION:
+			value = CqlDisplayValue.collection(plan.readCollection(row, col).stream()
+					.map(val -> convertValue(val, true)).collect(toImmutableList()));
+			break;
+
+		case MAP:
+			value = CqlDisplayValue.map(plan.readMap(row, col).entrySet().stream()
+					.map(e -> Maps.immutableEntry(convertValue(e.getKey(), true), convertValue(e.getValue(), true)))
+					.collect(toImmutableList()));
+			break;
+
+		default:
+			value = convertValue(plan.readSingle(row, col), false);
+		}
+		return value;
+	}
+
+	private CqlDisplayValue convertValue(Object value, boolean embeddedColumn) {
+		String converted = converter.convert(value);
+		String convertedNotNull = converted == null ? "" : converted;
+		String trimmed = converter.trimColumnContent(convertedNotNull, embeddedColumn);
+		if (convertedNotNull.length() - trimmed.length() > MIN_TRIMMED_CHARS) {
+			return CqlDisplayValue.single(trimmed, converter.trimColumnTooltipContent(convertedNotNull));
+		}
+		return CqlDisplayValue.single(convertedNotNull, null);
+	}
+}
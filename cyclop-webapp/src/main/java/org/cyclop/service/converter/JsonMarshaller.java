@@ -16,12 +16,15 @@
  */
 package org.cyclop.service.converter;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
 import javax.inject.Named;
 import javax.validation.constraints.NotNull;
 
+import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -75,6 +78,39 @@ public class JsonMarshaller {
 		return unmarshalObj;
 	}
 
+	/**
+	 * reads JSON directly from given stream without copying it into String, stream gets closed
+	 *
+	 * @throws EOFException
+	 *             if stream ends before JSON is complete
+	 */
+	public @NotNull <T> T unmarshal(@NotNull Class<T> clazz, @NotNull InputStream input) throws EOFException {
+
+		T unmarshalObj;
+		try {
+			unmarshalObj = objectMapper.get().readValue(input, clazz);
+		} catch (JsonProcessingException e) {
+			if (isEndOfInput(e)) {
+				EOFException eof = new EOFException(e.getMessage());
+				eof.initCause(e);
+				throw eof;
+			}
+			throw new ServiceException("Got JsonProcessingException during json unmarshalling: " + e.getMessage(), e);
+		} catch (EOFException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ServiceException("Got IOException during json unmarshalling: " + e.getMessage(), e);
+		}
+		LOG.trace("Unmarshaled JSON stream to {}", unmarshalObj);
+		return unmarshalObj;
+	}
+
+	/** jackson reports truncated content as parse error, or as mapping error if there is no content at all */
+	private static boolean isEndOfInput(JsonProcessingException e) {
+		String message = e.getMessage();
+		return message != null && (message.contains("end-of-input") || message.contains("end of input"));
+	}
+
 	public @NotNull String marshal(@NotNull Object obj) {
 		byte[] marshalBytes;
 		try {
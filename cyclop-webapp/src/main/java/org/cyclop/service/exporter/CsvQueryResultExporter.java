@@ -17,10 +17,12 @@
 package org.cyclop.service.exporter;
 
 import java.io.OutputStream;
+import java.util.function.Supplier;
 
 import javax.validation.constraints.NotNull;
 
 import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
 
 /** @author Maciej Miklas */
 public interface CsvQueryResultExporter {
@@ -29,4 +31,16 @@ public interface CsvQueryResultExporter {
 
 	@NotNull
 	String exportAsCsv(@NotNull CqlQuery query);
+
+	/**
+	 * prepares query to be executed as it would be executed for export - this method requires user's session, but
+	 * returned supplier executes the query in any thread. Its result can be exported by
+	 * {@link #exportAsCsv(CqlQuery, CqlQueryResult, OutputStream, ExportProgress)}
+	 */
+	@NotNull
+	Supplier<CqlQueryResult> prepare(@NotNull CqlQuery query);
+
+	/** @return amount of exported rows - result is closed once export is done, even if it stops before the last row */
+	long exportAsCsv(@NotNull CqlQuery query, @NotNull CqlQueryResult result, @NotNull OutputStream output,
+			@NotNull ExportProgress progress);
 }
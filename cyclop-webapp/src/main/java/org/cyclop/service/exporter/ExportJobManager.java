@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import javax.validation.constraints.NotNull;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.service.exporter.model.ExportJob;
+
+/**
+ * Runs CSV exports in background - export file is written to disk and can be downloaded once job is done, until it
+ * expires. Job is visible only to its owner - the user who has submitted it.
+ * <p>
+ * Job reads query result trough Cassandra session of its owner. When owner's HTTP session expires before export is
+ * done, and no other session uses the same credentials, connection to cluster is closed and job ends as
+ * {@link ExportJob.State#FAILED} - its file is removed.
+ *
+ * @author Maciej Miklas
+ */
+public interface ExportJobManager {
+
+	/**
+	 * executes query and schedules export of its result - query is executed in caller thread, because it requires
+	 * user's session
+	 *
+	 * @throws org.cyclop.model.exception.ServiceException
+	 *             if there are too many exports or disk quota has been reached
+	 */
+	@NotNull
+	ExportJob submit(@NotNull CqlQuery query, @NotNull UserIdentifier owner);
+
+	/** @return empty if job does not exist, or it belongs to another user */
+	@NotNull
+	Optional<ExportJob> find(@NotNull String jobId, @NotNull UserIdentifier owner);
+
+	/** @return export file of finished job - it can be compressed, see {@link ExportJob#fileName} */
+	@NotNull
+	Optional<Path> findResult(@NotNull String jobId, @NotNull UserIdentifier owner);
+
+	/** stops running job and removes its file, jobs of other users are ignored */
+	void cancel(@NotNull String jobId, @NotNull UserIdentifier owner);
+}
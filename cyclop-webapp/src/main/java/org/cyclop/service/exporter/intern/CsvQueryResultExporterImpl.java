@@ -17,35 +17,34 @@
 package org.cyclop.service.exporter.intern;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.cyclop.common.AppConfig;
-import org.cyclop.model.CqlColumnValue;
-import org.cyclop.model.CqlDataType;
 import org.cyclop.model.CqlExtendedColumnName;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.exception.ServiceException;
 import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.service.converter.ColumnPlan;
 import org.cyclop.service.converter.DataConverter;
 import org.cyclop.service.converter.DataExtractor;
 import org.cyclop.service.exporter.CsvQueryResultExporter;
+import org.cyclop.service.exporter.ExportProgress;
 import org.cyclop.validation.EnableValidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.Row;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 
 /** @author Maciej Miklas */
 @Named
@@ -81,148 +80,137 @@ public class CsvQueryResultExporterImpl implements CsvQueryResultExporter {
 
 	@Override
 	public void exportAsCsv(CqlQuery query, OutputStream output) {
-		LOG.debug("Starting CSV export for {}", query);
-
-		PrintWriter out = new PrintWriter(output);
-		CqlQueryResult result = queryService.execute(query, false);
-
-		// header
-		appendHeader(query, out);
-
-		// column names
-		ImmutableList<CqlExtendedColumnName> columns = result.rowMetadata.columns;
-		appendColumns(out, columns);
-		out.append(conf.separatorRow);
-
-		// content
-		result.forEach(row -> {
-			appendRow(out, row, columns);
-			out.append(conf.separatorRow);
-		});
+		exportAsCsv(query, prepare(query).get(), output, ExportProgress.NONE);
+	}
 
-		out.flush();
-		out.close();
+	@Override
+	public Supplier<CqlQueryResult> prepare(CqlQuery query) {
+		return queryService.prepareFullScan(query, conf.parallel ? conf.parallelThreadsProExport : 0,
+				conf.parallelOrdered);
 	}
 
-	private void appendRow(PrintWriter out, Row row, List<CqlExtendedColumnName> cols) {
-		LOG.debug("Appending next row");
-		Iterator<CqlExtendedColumnName> it = cols.iterator();
-		while (it.hasNext()) {
-			CqlExtendedColumnName column = it.next();
-			CqlDataType dataType = column.dataType;
+	@Override
+	public long exportAsCsv(CqlQuery query, CqlQueryResult result, OutputStream output, ExportProgress progress) {
+		LOG.debug("Starting CSV export for {}", query);
+		long startTime = System.currentTimeMillis();
+
+		long rows = 0;
+		try (CsvWriter out = new CsvWriter(output, conf)) {
+
+			// header
+			out.plain(query.part);
+			out.raw(conf.separatorQuery);
+
+			// column names
+			appendColumns(out, result.rowMetadata.columns);
+			out.raw(conf.separatorRow);
+
+			// content - writers are created with the first row and reused for all following rows
+			ColumnWriter[] writers = null;
+			for (Row row : result) {
+				if (writers == null) {
+					writers = createWriters(extractor.compile(result.rowMetadata, row.getColumnDefinitions()));
+				}
+				appendRow(out, row, writers);
+				out.raw(conf.separatorRow);
+				rows++;
+				if (!progress.exported(rows)) {
+					LOG.info("CSV export stopped after {} rows for {}", rows, query);
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new ServiceException("CSV export failed after " + rows + " rows: " + e.getMessage(), e);
+		} finally {
+			// export might stop before all rows are read
+			result.close();
+		}
 
-			if (dataType.name == DataType.Name.SET || dataType.name == DataType.Name.LIST) {
-				appendCollection(out, row, column);
+		long time = Math.max(1, System.currentTimeMillis() - startTime);
+		LOG.info("Exported {} rows in {} ms ({} rows/s) for {}", rows, time, rows * 1000 / time, query);
+		return rows;
+	}
 
-			} else if (dataType.name == DataType.Name.MAP) {
-				appendMap(out, row, column);
-			} else {
-				appendSingleValue(out, row, column);
+	private void appendRow(CsvWriter out, Row row, ColumnWriter[] writers) throws IOException {
+		for (int col = 0; col < writers.length; col++) {
+			if (col > 0) {
+				out.raw(conf.separatorColumn);
 			}
+			writers[col].write(out, row);
+		}
+	}
 
-			if (it.hasNext()) {
-				out.append(conf.separatorColumn);
+	private ColumnWriter[] createWriters(ColumnPlan plan) {
+		ColumnWriter[] writers = new ColumnWriter[plan.size()];
+		for (int col = 0; col < writers.length; col++) {
+			int column = col;
+			switch (plan.kind(col)) {
+			case COLLECTION:
+				writers[col] = (out, row) -> appendCollection(out, plan.readCollection(row, column));
+				break;
+
+			case MAP:
+				writers[col] = (out, row) -> appendMap(out, plan.readMap(row, column));
+				break;
+
+			default:
+				if (plan.columns.get(col).dataType.isString()) {
+					writers[col] = (out, row) -> out.value((String) plan.readSingle(row, column));
+				} else {
+					writers[col] = (out, row) -> out.value(converter.convert(plan.readSingle(row, column)));
+				}
 			}
 		}
+		return writers;
 	}
 
-	private void appendMap(PrintWriter out, Row row, CqlExtendedColumnName column) {
-		ImmutableSet<Map.Entry<CqlColumnValue, CqlColumnValue>> displayMap = extractor.extractMap(row, column)
-				.entrySet();
-		Iterator<Map.Entry<CqlColumnValue, CqlColumnValue>> it = displayMap.iterator();
-
-		LOG.trace("Appending: {}", displayMap);
-
-		StringBuilder mapBuf = new StringBuilder();
+	private void appendMap(CsvWriter out, Map<?, ?> map) throws IOException {
+		StringBuilder mapBuf = out.nested();
+		Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
 		while (it.hasNext()) {
-			Map.Entry<CqlColumnValue, CqlColumnValue> entry = it.next();
-
-			CqlColumnValue key = entry.getKey();
-			String keyText = esc(converter.convert(key.value));
-			mapBuf.append(keyText);
-
+			Map.Entry<?, ?> entry = it.next();
+			out.escape(mapBuf, converter.convert(entry.getKey()));
 			mapBuf.append(conf.separatorMap);
-
-			CqlColumnValue val = entry.getValue();
-			String valText = esc(converter.convert(val.value));
-			mapBuf.append(valText);
+			out.escape(mapBuf, converter.convert(entry.getValue()));
 
 			if (it.hasNext()) {
 				mapBuf.append(conf.separatorList);
 			}
 		}
-
-		String mapVal = esc(mapBuf.toString());
-		LOG.trace("Appended map: {}", mapVal);
-		out.append(mapVal);
+		out.value(mapBuf);
 	}
 
-	private void appendCollection(PrintWriter out, Row row, CqlExtendedColumnName column) {
-		ImmutableList<CqlColumnValue> content = extractor.extractCollection(row, column);
-		LOG.trace("Appending {}", content);
-		Iterator<CqlColumnValue> contentIt = content.iterator();
-		StringBuilder listBuild = new StringBuilder();
-		while (contentIt.hasNext()) {
-			CqlColumnValue cqlColumnValue = contentIt.next();
-			String valText = esc(converter.convert(cqlColumnValue.value));
-			listBuild.append(valText);
-			if (contentIt.hasNext()) {
-				listBuild.append(conf.separatorList);
+	private void appendCollection(CsvWriter out, Collection<?> content) throws IOException {
+		StringBuilder listBuf = out.nested();
+		Iterator<?> it = content.iterator();
+		while (it.hasNext()) {
+			out.escape(listBuf, converter.convert(it.next()));
+			if (it.hasNext()) {
+				listBuf.append(conf.separatorList);
 			}
 		}
-		String colVal = esc(listBuild.toString());
-		LOG.trace("Append collection: {}", colVal);
-		out.append(colVal);
-	}
-
-	private void appendSingleValue(PrintWriter out, Row row, CqlExtendedColumnName column) {
-		CqlColumnValue cqlColumnValue = extractor.extractSingleValue(row, column);
-		String valText = esc(converter.convert(cqlColumnValue.value));
-		LOG.trace("Append single value: {}", valText);
-		out.append(valText);
-	}
-
-	private void appendHeader(CqlQuery query, PrintWriter out) {
-		String headerVal = prep(query.part);
-		LOG.trace("Append header: {}", headerVal);
-		out.append(headerVal);
-		out.append(conf.separatorQuery);
+		out.value(listBuf);
 	}
 
-	private void appendColumns(PrintWriter out, List<CqlExtendedColumnName> columns) {
-		if (columns.isEmpty()) {
-			return;
-		}
-
+	private void appendColumns(CsvWriter out, List<CqlExtendedColumnName> columns) throws IOException {
 		LOG.trace("Appending {}", columns);
 
 		Iterator<CqlExtendedColumnName> commonColsIt = columns.iterator();
 		while (commonColsIt.hasNext()) {
 			CqlExtendedColumnName next = commonColsIt.next();
-			out.append(prep(esc(next.toDisplayString())));
+			StringBuilder colBuf = out.nested();
+			out.escape(colBuf, next.toDisplayString());
+			out.plain(colBuf);
 
 			if (commonColsIt.hasNext()) {
-				out.append(conf.separatorColumn);
+				out.raw(conf.separatorColumn);
 			}
 		}
 	}
 
-	private String prep(String val) {
-		if (val == null) {
-			val = "";
-		}
-		if (conf.trim) {
-			val = val.trim();
-		}
-
-		if (conf.removeCrChars) {
-			val = val.replaceAll("[\n\r]", "");
-		}
-
-		return val;
-	}
-
-	private String esc(String val) {
-		return conf.valueBracketStart + prep(val) + conf.valueBracketEnd;
+	/** Writes single column of a row - it is created once per column and contains type specific logic */
+	@FunctionalInterface
+	private interface ColumnWriter {
+		void write(CsvWriter out, Row row) throws IOException;
 	}
 }
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter.intern;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.cyclop.common.AppConfig;
+
+/**
+ * Writes CSV content into reusable char buffer, which is encoded with configured charset only when full. Values are
+ * trimmed and cleaned from CR characters while being copied into the buffer - this replaces the chain of string
+ * operations executed before for each exported cell.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class CsvWriter implements Closeable {
+
+	private final Writer writer;
+
+	private final char[] buf;
+
+	private int pos = 0;
+
+	private final boolean trim;
+
+	private final boolean removeCrChars;
+
+	private final String bracketStart;
+
+	private final String bracketEnd;
+
+	/** reused for values containing other values, like collections */
+	private final StringBuilder nested = new StringBuilder();
+
+	CsvWriter(OutputStream output, AppConfig.QueryExport conf) {
+		this.writer = new OutputStreamWriter(output, Charset.forName(conf.encoding));
+		this.buf = new char[conf.bufferSize];
+		this.trim = conf.trim;
+		this.removeCrChars = conf.removeCrChars;
+		this.bracketStart = conf.valueBracketStart;
+		this.bracketEnd = conf.valueBracketEnd;
+	}
+
+	/** writes given text without any changes - used for separators */
+	public void raw(String text) throws IOException {
+		int len = text.length();
+		if (len > buf.length - pos) {
+			flushBuffer();
+			if (len > buf.length) {
+				writer.write(text);
+				return;
+			}
+		}
+		text.getChars(0, len, buf, pos);
+		pos += len;
+	}
+
+	/** writes trimmed text with removed CR characters, but without value brackets */
+	public void plain(CharSequence text) throws IOException {
+		if (text == null) {
+			return;
+		}
+		int end = end(text);
+		for (int idx = start(text, end); idx < end; idx++) {
+			char ch = text.charAt(idx);
+			if (removeCrChars && (ch == '\n' || ch == '\r')) {
+				continue;
+			}
+			if (pos == buf.length) {
+				flushBuffer();
+			}
+			buf[pos++] = ch;
+		}
+	}
+
+	/** writes value surrounded by brackets */
+	public void value(CharSequence text) throws IOException {
+		raw(bracketStart);
+		plain(text);
+		raw(bracketEnd);
+	}
+
+	/**
+	 * @return empty builder for values containing other values - they have to be escaped with
+	 *         {@link #escape(StringBuilder, CharSequence)}. Builder is reused, so it is valid until next call
+	 */
+	public StringBuilder nested() {
+		nested.setLength(0);
+		return nested;
+	}
+
+	/** appends to given builder the same content as {@link #value(CharSequence)} would write */
+	public void escape(StringBuilder builder, CharSequence text) {
+		builder.append(bracketStart);
+		if (text != null) {
+			int end = end(text);
+			for (int idx = start(text, end); idx < end; idx++) {
+				char ch = text.charAt(idx);
+				if (removeCrChars && (ch == '\n' || ch == '\r')) {
+					continue;
+				}
+				builder.append(ch);
+			}
+		}
+		builder.append(bracketEnd);
+	}
+
+	public void flush() throws IOException {
+		flushBuffer();
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		writer.close();
+	}
+
+	private void flushBuffer() throws IOException {
+		if (pos > 0) {
+			writer.write(buf, 0, pos);
+			pos = 0;
+		}
+	}
+
+	/** same whitespace definition as {@link String#trim()} */
+	private int start(CharSequence text, int end) {
+		int start = 0;
+		if (trim) {
+			while (start < end && text.charAt(start) <= ' ') {
+				start++;
+			}
+		}
+		return start;
+	}
+
+	private int end(CharSequence text) {
+		int end = text.length();
+		if (trim) {
+			while (end > 0 && text.charAt(end - 1) <= ' ') {
+				end--;
+			}
+		}
+		return end;
+	}
+}
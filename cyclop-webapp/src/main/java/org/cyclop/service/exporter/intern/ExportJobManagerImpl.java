@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter.intern;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.model.exception.ServiceException;
+import org.cyclop.service.exporter.CsvQueryResultExporter;
+import org.cyclop.service.exporter.ExportJobManager;
+import org.cyclop.service.exporter.model.ExportJob;
+import org.cyclop.service.exporter.model.ExportJob.State;
+import org.cyclop.validation.EnableValidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+
+import com.google.common.io.CountingOutputStream;
+
+/** @author Maciej Miklas */
+@Named
+@EnableValidation
+@ThreadSafe
+public class ExportJobManagerImpl implements ExportJobManager {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ExportJobManagerImpl.class);
+
+	private final static int CLEANUP_MILLIS = 60000;
+
+	/** disk quota is verified after given amount of exported rows */
+	private final static int QUOTA_CHECK_ROWS = 1000;
+
+	@Inject
+	private CsvQueryResultExporter exporter;
+
+	@Inject
+	private AppConfig.ExportJobs conf;
+
+	@Inject
+	private AppConfig.QueryExport exportConf;
+
+	@Inject
+	@Named("exportJobExecutor")
+	private AsyncTaskExecutor executor;
+
+	@Inject
+	@Named("cyclop.scheduler")
+	private TaskScheduler scheduler;
+
+	private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+	@Override
+	public ExportJob submit(CqlQuery query, UserIdentifier owner) {
+		long active = jobs.values().stream().filter(job -> !job.isFinished()).count();
+		if (active >= conf.maxRunning + conf.maxQueued) {
+			throw new ServiceException("Too many exports are running (" + active + ") - try again later");
+		}
+		if (usedBytes() >= quotaBytes()) {
+			throw new ServiceException("Disk quota for exports (" + conf.diskQuotaMb
+					+ "MB) has been reached - try again later");
+		}
+
+		// query is executed once the job gets its thread - only values from user's session are bound here
+		Supplier<CqlQueryResult> execution = exporter.prepare(query);
+		Job job = new Job(UUID.randomUUID().toString(), owner, query, createFileName());
+		jobs.put(job.id, job);
+		try {
+			job.future = executor.submit(() -> run(job, execution));
+		} catch (TaskRejectedException e) {
+			jobs.remove(job.id);
+			throw new ServiceException("Too many exports are running - try again later", e);
+		}
+		LOG.debug("Submitted export job: {}", job.id);
+		return job.snapshot();
+	}
+
+	@Override
+	public Optional<ExportJob> find(String jobId, UserIdentifier owner) {
+		return findJob(jobId, owner).map(Job::snapshot);
+	}
+
+	@Override
+	public Optional<Path> findResult(String jobId, UserIdentifier owner) {
+		return findJob(jobId, owner).filter(job -> job.state == State.DONE).map(job -> job.file);
+	}
+
+	@Override
+	public void cancel(String jobId, UserIdentifier owner) {
+		Job job = findJob(jobId, owner).orElse(null);
+		if (job == null) {
+			return;
+		}
+		LOG.debug("Cancelling export job: {}", jobId);
+		job.cancelled = true;
+		Future<?> future = job.future;
+		if (future != null) {
+			future.cancel(false);
+		}
+		synchronized (job) {
+			if (job.state == State.QUEUED) {
+				job.state = State.CANCELLED;
+				job.finished = System.currentTimeMillis();
+			} else if (job.state == State.DONE) {
+				delete(job);
+				jobs.remove(jobId);
+			}
+		}
+	}
+
+	private Optional<Job> findJob(String jobId, UserIdentifier owner) {
+		Job job = jobs.get(jobId);
+		if (job != null && !job.owner.equals(owner)) {
+			LOG.warn("User {} has no access to export job {}", owner, jobId);
+			return Optional.empty();
+		}
+		return Optional.ofNullable(job);
+	}
+
+	@PostConstruct
+	void init() {
+		scheduler.scheduleWithFixedDelay(this::removeExpired, CLEANUP_MILLIS);
+	}
+
+	private void removeExpired() {
+		long expiry = System.currentTimeMillis() - conf.expirySeconds * 1000L;
+		for (Job job : jobs.values()) {
+			if (job.isFinished() && job.finished < expiry) {
+				LOG.debug("Removing expired export job: {}", job.id);
+				delete(job);
+				jobs.remove(job.id);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void removeAll() {
+		for (Job job : jobs.values()) {
+			job.cancelled = true;
+			delete(job);
+		}
+		jobs.clear();
+	}
+
+	private void run(Job job, Supplier<CqlQueryResult> execution) {
+		synchronized (job) {
+			if (job.cancelled) {
+				job.state = State.CANCELLED;
+				job.finished = System.currentTimeMillis();
+				return;
+			}
+			job.state = State.RUNNING;
+		}
+
+		State state;
+		try (CqlQueryResult result = execution.get()) {
+			job.file = Files.createTempFile(Paths.get(conf.folder), "cyclop-export-", conf.compress ? ".csv.gz"
+					: ".csv");
+			try (CountingOutputStream counting = new CountingOutputStream(Files.newOutputStream(job.file))) {
+				job.counter = counting;
+				OutputStream out = conf.compress ? new GZIPOutputStream(counting, exportConf.bufferSize) : counting;
+				exporter.exportAsCsv(job.query, result, out, rows -> checkProgress(job, rows));
+			}
+			state = job.cancelled ? State.CANCELLED : job.error != null ? State.FAILED : State.DONE;
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Export job {} failed: {}", job.id, e.getMessage());
+			LOG.debug(e.getMessage(), e);
+			job.error = e.getMessage();
+			state = State.FAILED;
+		}
+
+		synchronized (job) {
+			job.state = state;
+			job.finished = System.currentTimeMillis();
+			if (state != State.DONE) {
+				delete(job);
+			}
+		}
+		LOG.debug("Finished export job: {}", job.snapshot());
+	}
+
+	private boolean checkProgress(Job job, long rows) {
+		job.rows = rows;
+		if (job.cancelled) {
+			return false;
+		}
+		if (rows % QUOTA_CHECK_ROWS == 0 && usedBytes() > quotaBytes()) {
+			job.error = "Disk quota for exports (" + conf.diskQuotaMb + "MB) has been reached";
+			return false;
+		}
+		return true;
+	}
+
+	private long usedBytes() {
+		return jobs.values().stream().mapToLong(Job::bytes).sum();
+	}
+
+	private long quotaBytes() {
+		return conf.diskQuotaMb * 1024L * 1024L;
+	}
+
+	private String createFileName() {
+		SimpleDateFormat formatter = new SimpleDateFormat(exportConf.fileNameDate);
+		String fileName = exportConf.fileName.replace("DATE", formatter.format(new Date()));
+		return conf.compress ? fileName + ".gz" : fileName;
+	}
+
+	private void delete(Job job) {
+		Path file = job.file;
+		job.counter = null;
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOG.warn("Could not remove export file {}: {}", file, e.getMessage());
+		}
+	}
+
+	private static final class Job {
+		private final String id;
+
+		private final UserIdentifier owner;
+
+		private final CqlQuery query;
+
+		private final String fileName;
+
+		private volatile State state = State.QUEUED;
+
+		private volatile Future<?> future;
+
+		private volatile Path file;
+
+		/** null if file does not exist */
+		private volatile CountingOutputStream counter;
+
+		private volatile long rows;
+
+		private volatile String error;
+
+		private volatile boolean cancelled;
+
+		private volatile long finished;
+
+		private Job(String id, UserIdentifier owner, CqlQuery query, String fileName) {
+			this.id = id;
+			this.owner = owner;
+			this.query = query;
+			this.fileName = fileName;
+		}
+
+		private boolean isFinished() {
+			return state != State.QUEUED && state != State.RUNNING;
+		}
+
+		private long bytes() {
+			CountingOutputStream cnt = counter;
+			return cnt == null ? 0 : cnt.getCount();
+		}
+
+		private ExportJob snapshot() {
+			return new ExportJob(id, owner, query, state, rows, bytes(), fileName, error);
+		}
+	}
+}
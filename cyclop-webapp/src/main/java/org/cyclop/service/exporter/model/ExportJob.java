@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter.model;
+
+import java.io.Serializable;
+
+import net.jcip.annotations.Immutable;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.UserIdentifier;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Snapshot of export running in background
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class ExportJob implements Serializable {
+
+	public final String id;
+
+	/** user who has submitted the job */
+	public final UserIdentifier owner;
+
+	public final CqlQuery query;
+
+	public final State state;
+
+	public final long rows;
+
+	/** size of export file written so far */
+	public final long bytes;
+
+	/** name of downloaded file */
+	public final String fileName;
+
+	/** null if job did not fail */
+	public final String error;
+
+	public ExportJob(String id, UserIdentifier owner, CqlQuery query, State state, long rows, long bytes,
+			String fileName, String error) {
+		this.id = id;
+		this.owner = owner;
+		this.query = query;
+		this.state = state;
+		this.rows = rows;
+		this.bytes = bytes;
+		this.fileName = fileName;
+		this.error = error;
+	}
+
+	public boolean isFinished() {
+		return state != State.QUEUED && state != State.RUNNING;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("id", id).add("owner", owner).add("query", query)
+				.add("state", state).add("rows", rows).add("bytes", bytes).add("fileName", fileName)
+				.add("error", error).toString();
+	}
+
+	public static enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED
+	}
+}
@@ -17,12 +17,18 @@
 package org.cyclop.service.importer.intern;
 
 import java.io.InputStream;
-import java.util.Scanner;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.service.common.FileStorage;
 import org.cyclop.service.importer.QueryImporter;
 import org.cyclop.service.importer.ResultWriter;
 import org.cyclop.service.importer.model.ImportConfig;
@@ -31,6 +37,10 @@ import org.cyclop.validation.EnableValidation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingInputStream;
+
 /** @author Maciej Miklas */
 @EnableValidation
 abstract class AbstractImporter implements QueryImporter {
@@ -39,26 +49,100 @@ abstract class AbstractImporter implements QueryImporter {
 	@Inject
 	protected AppConfig conf;
 
+	@Inject
+	private FileStorage storage;
+
+	@Inject
+	private ImportProgressRegistry progressRegistry;
+
 	@Override
 	public final ImportStats importScript(InputStream input, ResultWriter resultWriter, ImportConfig config) {
 		LOG.debug("Starting query import");
 		StopWatch timer = new StopWatch();
 		timer.start();
 
-		StatsCollector status = new StatsCollector();
-		Scanner scanner = new Scanner(input, conf.queryImport.encoding);
-		scanner.useDelimiter(conf.queryImport.listSeparatorRegEx);
+		CountingInputStream countingInput = new CountingInputStream(input);
+		final StatsCollector status = new StatsCollector(countingInput, config.getScriptSize());
+		final StatementSplitter splitter = new StatementSplitter(new InputStreamReader(countingInput,
+				Charset.forName(conf.queryImport.encoding)));
+		Iterator<String> statements = new ForwardingIterator<String>() {
+			@Override
+			protected Iterator<String> delegate() {
+				return splitter;
+			}
+
+			@Override
+			public String next() {
+				String next = super.next();
+				status.parsed.incrementAndGet();
+				return next;
+			}
+		};
 
-		LOG.debug("Executing import");
-		execImport(scanner, resultWriter, status, config);
+		ImportThrottle throttle = ImportThrottle.create(config, conf.queryImport.adaptiveStartRate);
+		CheckpointTracker checkpoint = CheckpointTracker.create(storage, config,
+				TimeUnit.SECONDS.toMillis(conf.queryImport.checkpointIntervalSeconds));
+		long skipped = skip(statements, checkpoint.getSkip());
+
+		String progressId = config.getProgressId();
+		if (progressId != null) {
+			progressRegistry.register(progressId, status);
+		}
+		try {
+			LOG.debug("Executing import");
+			execImport(statements, resultWriter, status, throttle, checkpoint, config);
+			checkpoint.finish(!statements.hasNext());
+		} finally {
+			if (progressId != null) {
+				progressRegistry.remove(progressId);
+			}
+		}
 
 		timer.stop();
-		ImportStats stats = new ImportStats(timer, status.success.get(), status.error.get());
+		ImportStats stats = new ImportStats(timer, status.success.get(), status.error.get(), skipped,
+				status.prepared.get(), status.batches.get(), status.maxInFlight.get(),
+				ImmutableList.copyOf(status.workers), throttle.getStatementRate());
 
 		LOG.debug("Import done: {}", stats);
 		return stats;
 	}
 
-	abstract void execImport(Scanner scanner, ResultWriter resultWriter, StatsCollector status, ImportConfig config);
+	/**
+	 * skips statements applied by previous import of the same script - the last skipped USE is replayed, so that
+	 * following statements are executed in the same key space as they would be without checkpoint
+	 */
+	private long skip(Iterator<String> statements, long amount) {
+		long skipped = 0;
+		CqlQuery lastUse = null;
+		while (skipped < amount && statements.hasNext()) {
+			CqlQuery query = new CqlQuery(CqlQueryType.UNKNOWN, statements.next());
+			if (query.partLc.startsWith("use ")) {
+				lastUse = query;
+			}
+			skipped++;
+		}
+		if (skipped > 0) {
+			LOG.info("Resuming import - skipped {} statements applied by previous import", skipped);
+		}
+		if (lastUse != null) {
+			replayUse(lastUse);
+		}
+		return skipped;
+	}
+
+	/**
+	 * Called on resumed import with the last USE skipped from its script. Importers which reject USE have nothing to
+	 * restore.
+	 */
+	void replayUse(CqlQuery use) {
+	}
+
+	/**
+	 * @param statements CQL statements read from import script while iterating
+	 * @param throttle has to be acquired before each query execution
+	 * @param checkpoint numbers statements in order they are read and has to be informed when they are done
+	 */
+	abstract void execImport(Iterator<String> statements, ResultWriter resultWriter, StatsCollector status,
+			ImportThrottle throttle, CheckpointTracker checkpoint, ImportConfig config);
 
 }
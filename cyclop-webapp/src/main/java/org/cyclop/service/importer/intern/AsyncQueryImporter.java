@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.cyclop.model.CassandraVersion;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.service.cassandra.CassandraSession;
+import org.cyclop.service.importer.QueryImporter;
+import org.cyclop.service.importer.ResultWriter;
+import org.cyclop.service.importer.intern.PartitionBatcher.Batch;
+import org.cyclop.service.importer.intern.PartitionBatcher.Entry;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.service.queryprotocoling.HistoryService;
+import org.cyclop.validation.EnableValidation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Pipelines statements trough {@link Session#executeAsync(Statement)} from single thread. Amount of requests in flight
+ * is limited for each import and for all imports together - this replaces thread count as unit of parallelism.
+ * <p>
+ * Statements writing into the same partition can be grouped into unlogged batches, each batch is a single request
+ * routed by partition key of its statements.
+ *
+ * @author Maciej Miklas
+ */
+@Named(QueryImporter.IMPL_ASYNC)
+@EnableValidation
+public class AsyncQueryImporter extends AbstractImporter {
+
+	private final static Logger LOG = LoggerFactory.getLogger(AsyncQueryImporter.class);
+
+	@Inject
+	protected HistoryService historyService;
+
+	@Inject
+	private CassandraSession session;
+
+	/** requests in flight for all imports together */
+	private Semaphore inFlight;
+
+	@PostConstruct
+	void init() {
+		inFlight = new Semaphore(conf.queryImport.maxInFlight, true);
+	}
+
+	@Override
+	void execImport(Iterator<String> statements, ResultWriter resultWriter, StatsCollector status,
+			ImportThrottle throttle, CheckpointTracker checkpoint, ImportConfig iconfig) {
+		QueryHistory history = historyService.read();
+		ImportRecorder recorder = new ImportRecorder(status, iconfig, resultWriter, history, throttle,
+				checkpoint);
+		Session cassSession = session.getSession();
+		PreparedStatementCache prepared = PreparedStatementCache.create(cassSession, status, iconfig,
+				conf.queryImport.preparedCacheSize);
+		PartitionBatcher batcher = createBatcher(iconfig);
+
+		int maxInFlight = conf.queryImport.maxInFlightProImport;
+		Semaphore importInFlight = new Semaphore(maxInFlight);
+		LOG.debug("Starting async import with {} requests in flight", maxInFlight);
+		try {
+			int read = 0;
+			while (statements.hasNext() && status.canContinue(iconfig)) {
+				IndexedQuery query = new IndexedQuery(checkpoint.next(), new CqlQuery(CqlQueryType.UNKNOWN,
+						statements.next()));
+				read++;
+				if (recorder.rejectUse(query)) {
+					continue;
+				}
+				throttle.acquire(query.query);
+				Statement statement = prepared.statement(query.query);
+				if (batcher == null) {
+					execute(cassSession, Collections.singletonList(new Entry(query, statement)), recorder, status,
+							importInFlight);
+				} else {
+					for (Batch batch : batcher.add(query, statement)) {
+						execute(cassSession, batch.entries, recorder, status, importInFlight);
+						if (batch.ordered) {
+							awaitInFlight(importInFlight, maxInFlight);
+						}
+					}
+				}
+			}
+			LOG.debug("Read {} statements", read);
+
+			// pending statements are dropped when import breaks on error - checkpoint does not contain them
+			if (batcher != null && status.canContinue(iconfig)) {
+				for (Batch batch : batcher.drain()) {
+					execute(cassSession, batch.entries, recorder, status, importInFlight);
+				}
+			}
+
+			awaitInFlight(importInFlight, maxInFlight);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Import interrupted while waiting for in flight requests");
+		}
+
+		if (iconfig.isUpdateHistory()) {
+			historyService.store(history);
+		}
+	}
+
+	/** all permits are back once the last callback is trough */
+	private void awaitInFlight(Semaphore importInFlight, int maxInFlight) throws InterruptedException {
+		importInFlight.acquire(maxInFlight);
+		importInFlight.release(maxInFlight);
+	}
+
+	/** @return null if statements should not be batched */
+	private PartitionBatcher createBatcher(ImportConfig iconfig) {
+		if (!iconfig.isPartitionBatches()) {
+			return null;
+		}
+		if (!session.getCassandraVersion().after(CassandraVersion.VER_1_2)) {
+			LOG.debug("Cassandra {} does not support batch statements", session.getCassandraVersion());
+			return null;
+		}
+		return new PartitionBatcher(conf.queryImport.batchMaxSizeKb * 1024, conf.queryImport.queueSize, session
+				.getSession().getCluster().getMetadata());
+	}
+
+	/** executes group of statements as single request */
+	private void execute(Session cassSession, List<Entry> group, ImportRecorder recorder, StatsCollector status,
+			final Semaphore importInFlight) throws InterruptedException {
+		importInFlight.acquire();
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			importInFlight.release();
+			throw e;
+		}
+		execute(cassSession, group, recorder, status, new Runnable() {
+			@Override
+			public void run() {
+				inFlight.release();
+				importInFlight.release();
+			}
+		});
+	}
+
+	private void execute(final Session cassSession, final List<Entry> group, final ImportRecorder recorder,
+			final StatsCollector status, final Runnable onDone) {
+		final long startTime = System.currentTimeMillis();
+		ResultSetFuture future;
+		status.requestSent();
+		try {
+			LOG.debug("Executing {}", group);
+			future = cassSession.executeAsync(toStatement(group, status));
+		} catch (Exception e) {
+			status.requestDone();
+			try {
+				failure(group, e, recorder, startTime);
+			} finally {
+				onDone.run();
+			}
+			return;
+		}
+
+		// callback runs on driver's IO thread - it only records result, so it's cheap enough
+		Futures.addCallback(future, new FutureCallback<ResultSet>() {
+			@Override
+			public void onSuccess(ResultSet result) {
+				status.requestDone();
+				try {
+					for (Entry entry : group) {
+						recorder.success(entry.query, startTime);
+					}
+				} finally {
+					onDone.run();
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable error) {
+				status.requestDone();
+				if (group.size() > 1 && error instanceof QueryValidationException) {
+					LOG.debug("Batch rejected, executing its statements one by one: {}", error.getMessage());
+					executeEach(cassSession, group, recorder, status, onDone);
+					return;
+				}
+				try {
+					failure(group, error, recorder, startTime);
+				} finally {
+					onDone.run();
+				}
+			}
+		}, MoreExecutors.sameThreadExecutor());
+	}
+
+	/**
+	 * Single partition batch is applied as a whole, so none of statements from rejected batch has been written. They
+	 * are executed again one after another within request permit of the batch, so that errors are reported for
+	 * affected statements only, and amount of requests in flight does not grow
+	 */
+	private void executeEach(final Session cassSession, final List<Entry> group, final ImportRecorder recorder,
+			final StatsCollector status, final Runnable onDone) {
+		if (group.isEmpty()) {
+			onDone.run();
+			return;
+		}
+		execute(cassSession, group.subList(0, 1), recorder, status, new Runnable() {
+			@Override
+			public void run() {
+				executeEach(cassSession, group.subList(1, group.size()), recorder, status, onDone);
+			}
+		});
+	}
+
+	private Statement toStatement(List<Entry> group, StatsCollector status) {
+		if (group.size() == 1) {
+			return group.get(0).statement;
+		}
+		BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+		for (Entry entry : group) {
+			batch.add(entry.statement);
+		}
+		status.batches.getAndIncrement();
+		return batch;
+	}
+
+	private void failure(List<Entry> group, Throwable error, ImportRecorder recorder, long startTime) {
+		for (Entry entry : group) {
+			recorder.failure(entry.query, error, startTime);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.model.exception.ServiceException;
+import org.cyclop.service.common.FileStorage;
+import org.cyclop.service.importer.model.ImportCheckpoint;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Numbers statements in order they are read from import script and tracks which of them are done. Queries executed in
+ * parallel finish out of order - checkpoint contains only statements applied without gaps from the beginning of the
+ * script.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+final class CheckpointTracker {
+
+	private final static Logger LOG = LoggerFactory.getLogger(CheckpointTracker.class);
+
+	private final FileStorage storage;
+
+	private final UserIdentifier user;
+
+	/** null if checkpoints are disabled */
+	private final String scriptHash;
+
+	private final long intervalMillis;
+
+	private final long skip;
+
+	/** amount of statements handed out by {@link #next()} */
+	private long issued;
+
+	/** all statements with lower index are done */
+	private long applied;
+
+	/** done statements with index above {@link #applied} */
+	private final TreeSet<Long> pending = new TreeSet<>();
+
+	private volatile long lastStoreMillis = System.currentTimeMillis();
+
+	/** single checkpoint write at a time */
+	private final ReentrantLock storeLock = new ReentrantLock();
+
+	private CheckpointTracker(FileStorage storage, UserIdentifier user, String scriptHash, long intervalMillis,
+			long skip) {
+		this.storage = storage;
+		this.user = user;
+		this.scriptHash = scriptHash;
+		this.intervalMillis = intervalMillis;
+		this.skip = skip;
+		this.issued = skip;
+		this.applied = skip;
+	}
+
+	static CheckpointTracker create(FileStorage storage, ImportConfig iconfig, long intervalMillis) {
+		UserIdentifier user = iconfig.getCheckpointUser();
+		String scriptHash = iconfig.getScriptHash();
+		if (user == null || scriptHash == null || !storage.supported()) {
+			return new CheckpointTracker(storage, user, null, intervalMillis, 0);
+		}
+
+		long skip = 0;
+		if (iconfig.isResume()) {
+			Optional<ImportCheckpoint> checkpoint = read(storage, user);
+			if (checkpoint.isPresent() && scriptHash.equals(checkpoint.get().getScriptHash())) {
+				if (checkpoint.get().isFinished()) {
+					LOG.debug("Previous import has been finished - importing script again: {}", checkpoint.get());
+				} else {
+					skip = checkpoint.get().getApplied();
+					LOG.debug("Resuming import from {}", checkpoint.get());
+				}
+			}
+		}
+		return new CheckpointTracker(storage, user, scriptHash, intervalMillis, skip);
+	}
+
+	private static Optional<ImportCheckpoint> read(FileStorage storage, UserIdentifier user) {
+		try {
+			return storage.read(user, ImportCheckpoint.class);
+		} catch (ServiceException e) {
+			LOG.warn("Cannot read import checkpoint - starting from the beginning: {}", e.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/** @return amount of statements from the beginning of the script applied by previous import */
+	long getSkip() {
+		return skip;
+	}
+
+	/** has to be called in order of statements in import script */
+	synchronized long next() {
+		return issued++;
+	}
+
+	/** marks statement as applied - checkpoint never skips over statement that is not done */
+	void done(long index) {
+		if (scriptHash == null) {
+			return;
+		}
+		long snapshot;
+		synchronized (this) {
+			if (index == applied) {
+				applied++;
+				while (!pending.isEmpty() && pending.first() == applied) {
+					pending.pollFirst();
+					applied++;
+				}
+			} else {
+				pending.add(index);
+			}
+			snapshot = applied;
+		}
+		if (System.currentTimeMillis() - lastStoreMillis >= intervalMillis) {
+			store(snapshot);
+		}
+	}
+
+	/** @param endOfScript true if all statements has been read from import script */
+	void finish(boolean endOfScript) {
+		if (scriptHash == null) {
+			return;
+		}
+		long snapshot;
+		boolean finished;
+		synchronized (this) {
+			snapshot = applied;
+			finished = endOfScript && applied == issued;
+		}
+		// final checkpoint must not be lost, so it waits for the one being stored
+		storeLock.lock();
+		write(snapshot, finished);
+	}
+
+	private void store(long snapshot) {
+		// other thread is already storing - there is no need to wait, the next checkpoint will come
+		if (storeLock.tryLock()) {
+			write(snapshot, false);
+		}
+	}
+
+	/** caller has to hold {@link #storeLock} - it's released by this method */
+	private void write(long snapshot, boolean finished) {
+		try {
+			lastStoreMillis = System.currentTimeMillis();
+			storage.store(user, new ImportCheckpoint(scriptHash, snapshot, finished));
+			LOG.trace("Stored import checkpoint at {}", snapshot);
+		} catch (ServiceException e) {
+			LOG.warn("Cannot store import checkpoint: {}", e.getMessage());
+		} finally {
+			storeLock.unlock();
+		}
+	}
+}
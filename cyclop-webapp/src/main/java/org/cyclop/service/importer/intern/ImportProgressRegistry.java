@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Named;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.service.importer.ImportProgressService;
+import org.cyclop.service.importer.model.ImportProgress;
+
+/** @author Maciej Miklas */
+@Named
+@ThreadSafe
+public class ImportProgressRegistry implements ImportProgressService {
+
+	private final Map<String, StatsCollector> running = new ConcurrentHashMap<>();
+
+	@Override
+	public Optional<ImportProgress> getProgress(String progressId) {
+		StatsCollector status = running.get(progressId);
+		return status == null ? Optional.empty() : Optional.of(status.progress());
+	}
+
+	void register(String progressId, StatsCollector status) {
+		running.put(progressId, status);
+	}
+
+	void remove(String progressId) {
+		running.remove(progressId);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.model.exception.QueryException;
+import org.cyclop.service.importer.ResultWriter;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.exceptions.DriverException;
+
+/**
+ * Records outcome of single query executed by parallel or async import - shared by import threads and driver
+ * callbacks
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+final class ImportRecorder {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ImportRecorder.class);
+
+	private final StatsCollector status;
+
+	private final ImportConfig iconfig;
+
+	private final ResultWriter resultWriter;
+
+	private final QueryHistory history;
+
+	private final ImportThrottle throttle;
+
+	private final CheckpointTracker checkpoint;
+
+	ImportRecorder(StatsCollector status, ImportConfig iconfig, ResultWriter resultWriter, QueryHistory history,
+			ImportThrottle throttle, CheckpointTracker checkpoint) {
+		this.status = status;
+		this.iconfig = iconfig;
+		this.resultWriter = resultWriter;
+		this.history = history;
+		this.throttle = throttle;
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * driver session is shared with other users - its key space must not change
+	 *
+	 * @return true if query has been rejected and should not be executed
+	 */
+	boolean rejectUse(IndexedQuery iquery) {
+		CqlQuery query = iquery.query;
+		if (!query.partLc.startsWith("use ")) {
+			return false;
+		}
+		status.error.getAndIncrement();
+		resultWriter.error(query, new QueryException(
+				"USE is not supported by parallel import, qualify table names with key space instead", null), 0);
+		skipped(iquery);
+		return true;
+	}
+
+	void success(IndexedQuery iquery, long startTime) {
+		CqlQuery query = iquery.query;
+		long runTime = System.currentTimeMillis() - startTime;
+		if (iconfig.isUpdateHistory()) {
+			QueryEntry entry = new QueryEntry(query, runTime);
+			history.add(entry);
+		}
+		resultWriter.success(query, runTime);
+		status.latency.add(runTime);
+		status.success.getAndIncrement();
+		throttle.success();
+		checkpoint.done(iquery.index);
+	}
+
+	void failure(IndexedQuery iquery, Throwable error, long startTime) {
+		CqlQuery query = iquery.query;
+		long runTime = System.currentTimeMillis() - startTime;
+		status.latency.add(runTime);
+		throttle.failure(error);
+		if (error instanceof DriverException) {
+			LOG.debug(error.getMessage());
+			LOG.trace(error.getMessage(), error);
+
+			status.error.getAndIncrement();
+			resultWriter.error(query, new QueryException(error.getMessage(), (DriverException) error), runTime);
+		} else {
+			LOG.info("Unknown error while executing parallel import for: " + query + ", Msg:" + error.getMessage());
+			LOG.trace(error.getMessage(), error);
+
+			resultWriter.unknownError(query, asException(error), runTime);
+			status.error.getAndIncrement();
+		}
+		skipped(iquery);
+	}
+
+	/** failed statement is not repeated on resume only if import ignores errors */
+	private void skipped(IndexedQuery iquery) {
+		if (iconfig.isContinueWithErrors()) {
+			checkpoint.done(iquery.index);
+		}
+	}
+
+	private static Exception asException(Throwable error) {
+		return error instanceof Exception ? (Exception) error : new RuntimeException(error);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.QueryExecutionException;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Limits rate of single import - it's shared by all its workers. In adaptive mode statement rate is halved when
+ * cluster reports overload, and slowly raised again while queries succeed.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+final class ImportThrottle {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ImportThrottle.class);
+
+	/**
+	 * rate is halved at most once within this time - queries in flight would otherwise halve it many times. It's raised
+	 * at most once within this time as well, but not before this time has passed since last reduction.
+	 */
+	private final static long ADJUST_MILLIS = 1000;
+
+	private final static double MIN_RATE = 1;
+
+	private final static double MAX_ADAPTIVE_RATE = 1000000;
+
+	private final RateLimiter statements;
+
+	private final RateLimiter bytes;
+
+	private final boolean adaptive;
+
+	private final double maxStatementRate;
+
+	private final AtomicLong lastIncrease = new AtomicLong();
+
+	private final AtomicLong lastDecrease = new AtomicLong();
+
+	private ImportThrottle(RateLimiter statements, RateLimiter bytes, boolean adaptive, double maxStatementRate) {
+		this.statements = statements;
+		this.bytes = bytes;
+		this.adaptive = adaptive;
+		this.maxStatementRate = maxStatementRate;
+	}
+
+	/**
+	 * @param adaptiveStartRate
+	 *            initial statement rate for adaptive mode, when config does not limit it
+	 */
+	static ImportThrottle create(ImportConfig iconfig, double adaptiveStartRate) {
+		double stRate = iconfig.getStatementsPerSecond();
+		boolean adaptive = iconfig.isAdaptiveThrottle();
+		RateLimiter statements = null;
+		if (stRate > 0) {
+			statements = RateLimiter.create(stRate);
+		} else if (adaptive) {
+			statements = RateLimiter.create(adaptiveStartRate);
+		}
+
+		long byRate = iconfig.getBytesPerSecond();
+		RateLimiter bytes = byRate > 0 ? RateLimiter.create(byRate) : null;
+		ImportThrottle throttle = new ImportThrottle(statements, bytes, adaptive, stRate > 0 ? stRate
+				: MAX_ADAPTIVE_RATE);
+		LOG.debug("Created import throttle: {}", iconfig);
+		return throttle;
+	}
+
+	/** blocks until query can be executed */
+	void acquire(CqlQuery query) {
+		if (statements != null) {
+			statements.acquire();
+		}
+		if (bytes != null) {
+			bytes.acquire(Math.max(1, query.part.getBytes(StandardCharsets.UTF_8).length));
+		}
+	}
+
+	void success() {
+		if (!adaptive || System.currentTimeMillis() - lastDecrease.get() < ADJUST_MILLIS || !canAdjust(lastIncrease)) {
+			return;
+		}
+		double rate = statements.getRate();
+		if (rate < maxStatementRate) {
+			statements.setRate(Math.min(maxStatementRate, rate * 1.1));
+		}
+	}
+
+	void failure(Throwable error) {
+		if (!adaptive || !isOverload(error) || !canAdjust(lastDecrease)) {
+			return;
+		}
+		double rate = Math.max(MIN_RATE, statements.getRate() / 2);
+		LOG.debug("Cluster overloaded, reducing import rate to {}/s", rate);
+		statements.setRate(rate);
+	}
+
+	/** @return current statement limit, 0 if statements are not limited */
+	double getStatementRate() {
+		return statements == null ? 0 : statements.getRate();
+	}
+
+	private static boolean canAdjust(AtomicLong lastAdjust) {
+		long now = System.currentTimeMillis();
+		long last = lastAdjust.get();
+		return now - last >= ADJUST_MILLIS && lastAdjust.compareAndSet(last, now);
+	}
+
+	/** driver 2.1 reports coordinator timeouts and overload trough those, also when wrapped by service exceptions */
+	private static boolean isOverload(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if (cause instanceof QueryExecutionException || cause instanceof NoHostAvailableException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -16,103 +16,125 @@
  */
 package org.cyclop.service.importer.intern;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import org.cyclop.model.CqlQuery;
-import org.cyclop.model.QueryEntry;
-import org.cyclop.model.QueryHistory;
-import org.cyclop.model.exception.QueryException;
-import org.cyclop.service.importer.ResultWriter;
+import org.cyclop.model.CqlQueryType;
 import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.service.importer.model.ImportStats.WorkerStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.exceptions.DriverException;
-import com.google.common.collect.ImmutableList;
+import com.datastax.driver.core.Statement;
 
-/** @author Maciej Miklas */
+/**
+ * Takes queries from the queue shared by all workers in small batches, so that slow statements do not hold back the
+ * whole import. Executes them until it takes {@link #END} or import has to be broken due to an error
+ *
+ * @author Maciej Miklas
+ */
 class ImportWorker implements Callable<Void> {
 
 	private final static Logger LOG = LoggerFactory.getLogger(ParallelQueryImporter.class);
 
-	private final int offset;
-
-	private final int amount;
+	/** marks end of import - worker that takes it puts it back for the others */
+	final static IndexedQuery END = new IndexedQuery(-1, new CqlQuery(CqlQueryType.UNKNOWN, "-- end of import"));
 
-	private final ImmutableList<CqlQuery> queries;
+	private final static int POLL_MILLIS = 100;
 
-	private final ResultWriter resultWriter;
+	private final BlockingQueue<IndexedQuery> queue;
 
 	private final StatsCollector status;
 
 	private final ImportConfig iconfig;
 
+	private final ImportRecorder recorder;
+
+	private final ImportThrottle throttle;
+
 	private final Session session;
 
-	private final QueryHistory history;
+	private final PreparedStatementCache prepared;
+
+	private final int batchSize;
+
+	private long busyNanos;
+
+	private int executed;
 
 	// TODO to many paraeters - use builder pattern
-	ImportWorker(int offset, int amount, ImmutableList<CqlQuery> queries, StatsCollector status, ImportConfig iconfig,
-			ResultWriter resultWriter, Session session, QueryHistory history) {
-		this.offset = offset;
-		this.amount = amount;
-		this.queries = queries;
+	ImportWorker(BlockingQueue<IndexedQuery> queue, StatsCollector status, ImportConfig iconfig, ImportRecorder recorder,
+			ImportThrottle throttle, Session session, PreparedStatementCache prepared, int batchSize) {
+		this.queue = queue;
 		this.status = status;
 		this.iconfig = iconfig;
-		this.resultWriter = resultWriter;
+		this.recorder = recorder;
+		this.throttle = throttle;
 		this.session = session;
-		this.history = history;
+		this.prepared = prepared;
+		this.batchSize = batchSize;
 	}
 
 	@Override
 	public Void call() throws Exception {
-		LOG.debug("Starting import thread with offset: {} for amount {}", offset, amount);
-
-		int lastQueryIndex = offset + amount;
-		for (int queryIdx = offset; queryIdx < lastQueryIndex; queryIdx++) {
-			if (!canContinue()) {
-				LOG.debug("Breaking import due to query execution error");
-				return null;
-			}
-			process(queryIdx);
+		LOG.debug("Starting import thread");
+		long startNanos = System.nanoTime();
+		try {
+			execute();
+		} finally {
+			status.workers.add(new WorkerStats(executed, TimeUnit.NANOSECONDS.toMillis(busyNanos),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
 		}
 		return null;
 	}
 
-	private void process(int queryIdx) {
-		CqlQuery query = queries.get(queryIdx);
+	private void execute() throws InterruptedException {
+		List<IndexedQuery> batch = new ArrayList<>(batchSize);
+		while (status.canContinue(iconfig)) {
+			IndexedQuery first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			if (first == null) {
+				continue;
+			}
+			batch.clear();
+			batch.add(first);
+			queue.drainTo(batch, batchSize - 1);
+
+			for (IndexedQuery query : batch) {
+				if (query == END) {
+					queue.offer(END);
+					return;
+				}
+				if (!status.canContinue(iconfig)) {
+					break;
+				}
+				process(query);
+			}
+		}
+		LOG.debug("Breaking import due to query execution error");
+	}
 
+	private void process(IndexedQuery query) {
+		if (recorder.rejectUse(query)) {
+			return;
+		}
+		throttle.acquire(query.query);
+		long startNanos = System.nanoTime();
 		long startTime = System.currentTimeMillis();
 		try {
-			LOG.debug("Executing {} with offset {}", query, queryIdx);
-			session.execute(query.part);
-
-			long runTime = System.currentTimeMillis() - startTime;
-			if (iconfig.isUpdateHistory()) {
-				QueryEntry entry = new QueryEntry(query, runTime);
-				history.add(entry);
-			}
-			resultWriter.success(query, runTime);
-			status.success.getAndIncrement();
-		} catch (DriverException e) {
-			LOG.debug(e.getMessage());
-			LOG.trace(e.getMessage(), e);
-
-			status.error.getAndIncrement();
-			resultWriter.error(query, new QueryException(e.getMessage(), e), System.currentTimeMillis() - startTime);
+			LOG.debug("Executing {}", query);
+			Statement statement = prepared.statement(query.query);
+			session.execute(statement);
+			recorder.success(query, startTime);
 		} catch (Exception e) {
-			LOG.info("Unknown error while executing parallel import for: " + query + ", Msg:" + e.getMessage());
-			LOG.trace(e.getMessage(), e);
-
-			resultWriter.unknownError(query, e, System.currentTimeMillis() - startTime);
-			status.error.getAndIncrement();
+			recorder.failure(query, e, startTime);
+		} finally {
+			busyNanos += System.nanoTime() - startNanos;
+			executed++;
 		}
 	}
-
-	private boolean canContinue() {
-		int errors = status.error.get();
-		boolean can = errors == 0 || (errors > 0 && iconfig.isContinueWithErrors());
-		return can;
-	}
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import net.jcip.annotations.Immutable;
+
+import org.cyclop.model.CqlQuery;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Query together with position of its statement in import script
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+final class IndexedQuery {
+
+	final long index;
+
+	final CqlQuery query;
+
+	IndexedQuery(long index, CqlQuery query) {
+		this.index = index;
+		this.query = query;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("index", index).add("query", query).toString();
+	}
+}
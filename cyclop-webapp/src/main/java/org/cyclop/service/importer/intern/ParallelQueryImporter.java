@@ -17,16 +17,17 @@
 package org.cyclop.service.importer.intern;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang3.time.StopWatch;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryType;
 import org.cyclop.model.QueryHistory;
@@ -40,7 +41,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.Session;
-import com.google.common.collect.ImmutableList;
 
 /** @author Maciej Miklas */
 @Named(QueryImporter.IMPL_PARALLEL)
@@ -49,6 +49,8 @@ public class ParallelQueryImporter extends AbstractImporter {
 
 	private final static Logger LOG = LoggerFactory.getLogger(ParallelQueryImporter.class);
 
+	private final static int OFFER_MILLIS = 100;
+
 	@Inject
 	protected HistoryService historyService;
 
@@ -60,50 +62,81 @@ public class ParallelQueryImporter extends AbstractImporter {
 	private ExecutorService executor;
 
 	@Override
-	void execImport(Scanner scanner, ResultWriter resultWriter, StatsCollector status, ImportConfig iconfig) {
-		ImmutableList<CqlQuery> queries = parse(scanner);
-		if (queries.isEmpty()) {
-			LOG.debug("No data to import");
-			return;
-		}
-
+	void execImport(Iterator<String> statements, ResultWriter resultWriter, StatsCollector status,
+			ImportThrottle throttle, CheckpointTracker checkpoint, ImportConfig iconfig) {
 		QueryHistory history = historyService.read();
 
-		List<Future<Void>> futures = startWorkers(queries, resultWriter, status, iconfig, history);
+		// statements are read while workers execute them - queue limits amount of statements held in memory
+		BlockingQueue<IndexedQuery> queue = new ArrayBlockingQueue<>(conf.queryImport.queueSize);
+		List<Future<Void>> futures = startWorkers(queue, resultWriter, status, throttle, checkpoint, iconfig,
+				history);
+		feedWorkers(statements, queue, futures, status, checkpoint, iconfig);
 		waitForImport(futures);
+		LOG.debug("Workers done: {}", status.workers);
 
 		if (iconfig.isUpdateHistory()) {
 			historyService.store(history);
 		}
 	}
 
-	private List<Future<Void>> startWorkers(ImmutableList<CqlQuery> queries, ResultWriter resultWriter,
-			StatsCollector status, ImportConfig iconfig, QueryHistory history) {
-
-		final int queriesSize = queries.size();
-		final int proThread = Math.max(1, queriesSize / conf.queryImport.maxThreadsProImport);
-
-		LOG.debug("Starting parallel import for {} queries, {} pro thread", queriesSize, proThread);
+	private List<Future<Void>> startWorkers(BlockingQueue<IndexedQuery> queue, ResultWriter resultWriter,
+			StatsCollector status, ImportThrottle throttle, CheckpointTracker checkpoint, ImportConfig iconfig,
+			QueryHistory history) {
+		int workers = conf.queryImport.maxThreadsProImport;
+		LOG.debug("Starting parallel import with {} threads", workers);
 		Session cassSession = session.getSession();
+		ImportRecorder recorder = new ImportRecorder(status, iconfig, resultWriter, history, throttle,
+				checkpoint);
+		PreparedStatementCache prepared = PreparedStatementCache.create(cassSession, status, iconfig,
+				conf.queryImport.preparedCacheSize);
+
+		List<Future<Void>> futures = new ArrayList<>(workers);
+		for (int idx = 0; idx < workers; idx++) {
+			ImportWorker task = new ImportWorker(queue, status, iconfig, recorder, throttle, cassSession,
+					prepared, conf.queryImport.batchSize);
+			futures.add(executor.submit(task));
+		}
+		return futures;
+	}
 
-		List<Future<Void>> futures = new ArrayList<>();
-		int startIndex = 0;
-		int remaining = queriesSize;
-		while (remaining > 0) {
-			remaining -= proThread;
-			int amount = remaining > 0 ? proThread : remaining + proThread;
-
-			LOG.debug("Starting thread with start index: {} and amount: {}, remaining: {}", startIndex, amount,
-					remaining);
+	private void feedWorkers(Iterator<String> statements, BlockingQueue<IndexedQuery> queue,
+			List<Future<Void>> futures, StatsCollector status, CheckpointTracker checkpoint, ImportConfig iconfig) {
+		try {
+			int read = 0;
+			while (statements.hasNext() && status.canContinue(iconfig)) {
+				CqlQuery query = new CqlQuery(CqlQueryType.UNKNOWN, statements.next());
+				if (!offer(queue, new IndexedQuery(checkpoint.next(), query), futures)) {
+					break;
+				}
+				read++;
+			}
+			LOG.debug("Read {} statements", read);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.warn("Import interrupted while reading statements");
+		} finally {
+			endWorkers(queue, futures);
+		}
+	}
 
-			ImportWorker task = new ImportWorker(startIndex, amount, queries, status, iconfig, resultWriter,
-					cassSession, history);
+	private void endWorkers(BlockingQueue<IndexedQuery> queue, List<Future<Void>> futures) {
+		try {
+			offer(queue, ImportWorker.END, futures);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			futures.forEach(future -> future.cancel(true));
+		}
+	}
 
-			Future<Void> future = executor.submit(task);
-			futures.add(future);
-			startIndex += amount;
+	/** @return false if all workers are done, and there is nobody to take queries from queue */
+	private boolean offer(BlockingQueue<IndexedQuery> queue, IndexedQuery query, List<Future<Void>> futures)
+			throws InterruptedException {
+		while (!queue.offer(query, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+			if (futures.stream().allMatch(Future::isDone)) {
+				return false;
+			}
 		}
-		return futures;
+		return true;
 	}
 
 	private void waitForImport(List<Future<Void>> futures) {
@@ -119,30 +152,4 @@ public class ParallelQueryImporter extends AbstractImporter {
 			}
 		}
 	}
-
-	private ImmutableList<CqlQuery> parse(Scanner scanner) {
-		StopWatch timer = null;
-		if (LOG.isDebugEnabled()) {
-			timer = new StopWatch();
-			timer.start();
-		}
-
-		ImmutableList.Builder<CqlQuery> build = ImmutableList.builder();
-		while (scanner.hasNext()) {
-			String nextStr = StringUtils.trimToNull(scanner.next());
-			if (nextStr == null) {
-				continue;
-			}
-			CqlQuery query = new CqlQuery(CqlQueryType.UNKNOWN, nextStr);
-			build.add(query);
-		}
-		ImmutableList<CqlQuery> res = build.build();
-
-		if (LOG.isDebugEnabled()) {
-			timer.stop();
-			LOG.debug("Parsed {} queries in {}", res.size(), timer.toString());
-		}
-		return res;
-	}
-
 }
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Groups import statements by partition they write to, so that each group can be executed as single unlogged
+ * batch. Partition is known only for bound statements with bound partition key - other statements and counter
+ * updates are returned for execution right away.
+ * <p>
+ * All statements in a batch get the same write timestamp, so statements writing the same row would not be applied
+ * in script order - delete followed by insert would lose the insert. Statement writing a row which is already in the
+ * group of its partition closes this group, and the group is returned as {@link Batch#ordered}.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class PartitionBatcher {
+
+	private final int maxBatchBytes;
+
+	private final int maxPending;
+
+	/** in order of creation, so that the oldest group is executed first when there are too many pending statements */
+	private final Map<Partition, Group> groups = new LinkedHashMap<>();
+
+	private int pending = 0;
+
+	private final Metadata metadata;
+
+	/** primary key column names by keyspace and table */
+	private final Map<String, List<String>> primaryKeys = new HashMap<>();
+
+	/**
+	 * @param maxBatchBytes
+	 *            group is ready for execution once its statements reach this size
+	 * @param maxPending
+	 *            limits amount of statements held by all groups together
+	 * @param metadata
+	 *            provides primary keys, so that statements writing the same row are not batched together
+	 */
+	PartitionBatcher(int maxBatchBytes, int maxPending, Metadata metadata) {
+		this.maxBatchBytes = maxBatchBytes;
+		this.maxPending = maxPending;
+		this.metadata = metadata;
+	}
+
+	/** @return groups that are ready for execution, each group contains statements for single partition */
+	List<Batch> add(IndexedQuery query, Statement statement) {
+		Optional<Partition> partition = partition(statement);
+		if (!partition.isPresent()) {
+			Entry entry = new Entry(query, statement);
+			return Collections.singletonList(new Batch(Collections.singletonList(entry), false));
+		}
+		Entry entry = new Entry(query, statement, rowKey(partition.get(), (BoundStatement) statement));
+
+		List<Batch> ready = new ArrayList<>(1);
+		Group group = groups.get(partition.get());
+		if (group != null && group.writes(entry.rowKey)) {
+			ready.add(new Batch(remove(partition.get()), true));
+			group = null;
+		}
+		if (group != null && group.bytes + entry.bytes > maxBatchBytes) {
+			ready.add(new Batch(remove(partition.get()), false));
+			group = null;
+		}
+		if (group == null) {
+			group = new Group();
+			groups.put(partition.get(), group);
+		}
+		group.entries.add(entry);
+		group.bytes += entry.bytes;
+		pending++;
+
+		if (group.bytes >= maxBatchBytes) {
+			ready.add(new Batch(remove(partition.get()), false));
+		}
+		Iterator<Partition> eldest = groups.keySet().iterator();
+		while (pending > maxPending && eldest.hasNext()) {
+			Partition next = eldest.next();
+			Group removed = groups.get(next);
+			eldest.remove();
+			pending -= removed.entries.size();
+			ready.add(new Batch(removed.entries, false));
+		}
+		return ready;
+	}
+
+	/** @return all groups which are not executed yet */
+	List<Batch> drain() {
+		List<Batch> ready = new ArrayList<>(groups.size());
+		for (Group group : groups.values()) {
+			ready.add(new Batch(group.entries, false));
+		}
+		groups.clear();
+		pending = 0;
+		return ready;
+	}
+
+	private List<Entry> remove(Partition partition) {
+		Group group = groups.remove(partition);
+		pending -= group.entries.size();
+		return group.entries;
+	}
+
+	/**
+	 * @return values of primary key columns bound in given statement, null for columns which are not bound or bound
+	 *         more than once (IN clause) - such statement might write any row with matching bound values
+	 */
+	private RowKey rowKey(Partition partition, BoundStatement bound) {
+		List<String> primaryKey = primaryKey(partition);
+		ByteBuffer[] values = new ByteBuffer[primaryKey.size()];
+		boolean[] multiple = new boolean[primaryKey.size()];
+		ColumnDefinitions variables = bound.preparedStatement().getVariables();
+		for (int idx = 0; idx < variables.size(); idx++) {
+			int pkIdx = primaryKey.indexOf(variables.getName(idx));
+			if (pkIdx < 0) {
+				continue;
+			}
+			multiple[pkIdx] |= values[pkIdx] != null;
+			values[pkIdx] = multiple[pkIdx] ? null : bound.getBytesUnsafe(idx);
+		}
+		return new RowKey(values);
+	}
+
+	/** @return empty list if table is not known - statement is then treated as writing any row of its partition */
+	private List<String> primaryKey(Partition partition) {
+		String name = partition.keyspace + "." + partition.table;
+		List<String> primaryKey = primaryKeys.get(name);
+		if (primaryKey == null) {
+			primaryKey = new ArrayList<>();
+			KeyspaceMetadata keyspace = metadata.getKeyspace(Metadata.quote(partition.keyspace));
+			TableMetadata table = keyspace == null ? null : keyspace.getTable(Metadata.quote(partition.table));
+			if (table != null) {
+				for (ColumnMetadata column : table.getPrimaryKey()) {
+					primaryKey.add(column.getName());
+				}
+			}
+			primaryKeys.put(name, primaryKey);
+		}
+		return primaryKey;
+	}
+
+	private static Optional<Partition> partition(Statement statement) {
+		if (!(statement instanceof BoundStatement)) {
+			return Optional.empty();
+		}
+		BoundStatement bound = (BoundStatement) statement;
+		ByteBuffer routingKey = bound.getRoutingKey();
+		ColumnDefinitions variables = bound.preparedStatement().getVariables();
+		if (routingKey == null || variables.size() == 0) {
+			return Optional.empty();
+		}
+
+		// counter updates can be batched only with other counter updates and are not idempotent
+		for (int idx = 0; idx < variables.size(); idx++) {
+			if (variables.getType(idx).getName() == DataType.Name.COUNTER) {
+				return Optional.empty();
+			}
+		}
+		return Optional.of(new Partition(variables.getKeyspace(0), variables.getTable(0), routingKey));
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("groups", groups.size()).add("pending", pending).toString();
+	}
+
+	@Immutable
+	static final class Entry {
+
+		final IndexedQuery query;
+
+		final Statement statement;
+
+		private final int bytes;
+
+		/** null if statement is not batched */
+		private final RowKey rowKey;
+
+		Entry(IndexedQuery query, Statement statement) {
+			this(query, statement, null);
+		}
+
+		private Entry(IndexedQuery query, Statement statement, RowKey rowKey) {
+			this.query = query;
+			this.statement = statement;
+			this.rowKey = rowKey;
+			this.bytes = query.query.part.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("query", query).toString();
+		}
+	}
+
+	/** statements for single partition */
+	@Immutable
+	static final class Batch {
+
+		final List<Entry> entries;
+
+		/**
+		 * true if statements following this batch write the same rows, so they can be executed only after this batch
+		 * has been applied
+		 */
+		final boolean ordered;
+
+		private Batch(List<Entry> entries, boolean ordered) {
+			this.entries = entries;
+			this.ordered = ordered;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("entries", entries).add("ordered", ordered).toString();
+		}
+	}
+
+	private static final class Group {
+
+		private final List<Entry> entries = new ArrayList<>();
+
+		private int bytes = 0;
+
+		private boolean writes(RowKey rowKey) {
+			for (Entry entry : entries) {
+				if (entry.rowKey.overlaps(rowKey)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Immutable
+	private static final class RowKey {
+
+		private final ByteBuffer[] values;
+
+		private RowKey(ByteBuffer[] values) {
+			this.values = values;
+		}
+
+		/** @return true if both keys might address the same row - bound values are equal where both are bound */
+		private boolean overlaps(RowKey other) {
+			for (int idx = 0; idx < values.length; idx++) {
+				if (values[idx] != null && other.values[idx] != null && !values[idx].equals(other.values[idx])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Immutable
+	private static final class Partition {
+
+		private final String keyspace;
+
+		private final String table;
+
+		private final ByteBuffer routingKey;
+
+		private Partition(String keyspace, String table, ByteBuffer routingKey) {
+			this.keyspace = keyspace;
+			this.table = table;
+			this.routingKey = routingKey;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(keyspace, table, routingKey);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Partition)) {
+				return false;
+			}
+			Partition other = (Partition) obj;
+			return Objects.equals(keyspace, other.keyspace) && Objects.equals(table, other.table)
+					&& Objects.equals(routingKey, other.routingKey);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.util.Optional;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Converts import statements into bound prepared statements, each statement shape is prepared once for single
+ * import. Statements without {@link StatementTemplate}, shapes that cannot be prepared and literals that cannot be
+ * converted to bind values are executed as plain strings.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+final class PreparedStatementCache {
+
+	private final static Logger LOG = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+	/** empty value marks shapes rejected by cassandra, so that they are not prepared again */
+	private final LoadingCache<String, Optional<PreparedStatement>> prepared;
+
+	private final StatsCollector status;
+
+	private PreparedStatementCache(LoadingCache<String, Optional<PreparedStatement>> prepared, StatsCollector status) {
+		this.prepared = prepared;
+		this.status = status;
+	}
+
+	/** @return cache which does not prepare statements, if import config does not enable it */
+	static PreparedStatementCache create(final Session session, StatsCollector status, ImportConfig iconfig,
+			int maxSize) {
+		if (!iconfig.isPrepareStatements() && !iconfig.isPartitionBatches()) {
+			return new PreparedStatementCache(null, status);
+		}
+		LoadingCache<String, Optional<PreparedStatement>> prepared = CacheBuilder.newBuilder().maximumSize(maxSize)
+				.build(new CacheLoader<String, Optional<PreparedStatement>>() {
+
+					@Override
+					public Optional<PreparedStatement> load(String shape) {
+						try {
+							LOG.debug("Preparing import statement: {}", shape);
+							return Optional.of(session.prepare(shape));
+						} catch (QueryValidationException e) {
+							LOG.debug("Cannot prepare import statement: {} - {}", shape, e.getMessage());
+							return Optional.empty();
+						}
+					}
+				});
+		return new PreparedStatementCache(prepared, status);
+	}
+
+	Statement statement(CqlQuery query) {
+		if (prepared != null) {
+			Optional<StatementTemplate> template = StatementTemplate.parse(query.part);
+			if (template.isPresent()) {
+				Optional<Statement> bound = bind(template.get());
+				if (bound.isPresent()) {
+					status.prepared.getAndIncrement();
+					return bound.get();
+				}
+			}
+		}
+		return new SimpleStatement(query.part);
+	}
+
+	private Optional<Statement> bind(StatementTemplate template) {
+		Optional<PreparedStatement> statement;
+		try {
+			statement = prepared.getUnchecked(template.shape);
+		} catch (UncheckedExecutionException e) {
+			// cluster might be temporarily not available - plain statement will report it
+			LOG.debug("Error preparing import statement: {} - {}", template.shape, e.getMessage());
+			return Optional.empty();
+		}
+		if (!statement.isPresent()) {
+			return Optional.empty();
+		}
+
+		ColumnDefinitions variables = statement.get().getVariables();
+		if (variables.size() != template.literals.size()) {
+			return Optional.empty();
+		}
+		Object[] values = new Object[variables.size()];
+		try {
+			for (int idx = 0; idx < values.length; idx++) {
+				values[idx] = toValue(variables.getType(idx), template.literals.get(idx));
+			}
+		} catch (InvalidTypeException | IllegalArgumentException e) {
+			LOG.trace("Cannot bind literals of: {} - {}", template, e.getMessage());
+			return Optional.empty();
+		}
+		return Optional.of(statement.get().bind(values));
+	}
+
+	/**
+	 * driver parses quoted timestamps in local time zone, and cassandra in its own, so only numeric timestamps are
+	 * bound
+	 */
+	private static Object toValue(DataType type, String literal) {
+		if (type.getName() == DataType.Name.TIMESTAMP && literal.startsWith("'")) {
+			throw new IllegalArgumentException("Quoted timestamp: " + literal);
+		}
+		return type.parse(literal);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("enabled", prepared != null)
+				.add("size", prepared == null ? 0 : prepared.size()).toString();
+	}
+}
@@ -16,12 +16,11 @@
  */
 package org.cyclop.service.importer.intern;
 
-import java.util.Scanner;
+import java.util.Iterator;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang.StringUtils;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryType;
 import org.cyclop.model.exception.QueryException;
@@ -44,29 +43,47 @@ public class SerialQueryImporter extends AbstractImporter {
 	protected QueryService queryService;
 
 	@Override
-	void execImport(Scanner scanner, ResultWriter resultWriter, StatsCollector status, ImportConfig config) {
-		while (scanner.hasNext()) {
-			String nextStr = StringUtils.trimToNull(scanner.next());
-			if (nextStr == null) {
-				continue;
-			}
-			CqlQuery query = new CqlQuery(CqlQueryType.UNKNOWN, nextStr);
+	void replayUse(CqlQuery use) {
+		LOG.debug("Replaying skipped: {}", use);
+		try {
+			queryService.executeSimple(use, false);
+		} catch (QueryException e) {
+			// following statements will report missing key space
+			LOG.warn("Cannot replay skipped {} - {}", use, e.getMessage());
+		}
+	}
+
+	@Override
+	void execImport(Iterator<String> statements, ResultWriter resultWriter, StatsCollector status,
+			ImportThrottle throttle, CheckpointTracker checkpoint, ImportConfig config) {
+		while (statements.hasNext()) {
+			CqlQuery query = new CqlQuery(CqlQueryType.UNKNOWN, statements.next());
+			long index = checkpoint.next();
+			throttle.acquire(query);
 			long startTime = System.currentTimeMillis();
 			try {
 				LOG.debug("Executing: {}", query);
 				queryService.executeSimple(query, config.isUpdateHistory());
-				resultWriter.success(query, System.currentTimeMillis() - startTime);
+				long runTime = System.currentTimeMillis() - startTime;
+				resultWriter.success(query, runTime);
+				status.latency.add(runTime);
 				status.success.getAndIncrement();
+				throttle.success();
+				checkpoint.done(index);
 			} catch (QueryException e) {
+				throttle.failure(e);
 				status.error.getAndIncrement();
 				LOG.debug(e.getMessage());
 				LOG.trace(e.getMessage(), e);
-				resultWriter.error(query, e, System.currentTimeMillis() - startTime);
+				long runTime = System.currentTimeMillis() - startTime;
+				resultWriter.error(query, e, runTime);
+				status.latency.add(runTime);
 
 				if (!config.isContinueWithErrors()) {
 					LOG.debug("Breaking import due to an error");
 					break;
 				}
+				checkpoint.done(index);
 			}
 		}
 	}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.cyclop.model.exception.ServiceException;
+
+/**
+ * Splits CQL script into statements while reading it, so that only the statement being read is held in memory.
+ * <p>
+ * Statement ends with semicolon followed by white space or end of script. Semicolon does not end statement when it's
+ * within quoted string or identifier, within comment or within BATCH block - such statement ends after APPLY BATCH.
+ * Comments are removed. Quoted string that contains semicolon followed by line break is treated as not terminated -
+ * statement ends there and will fail on execution, but following statements are not lost.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class StatementSplitter implements Iterator<String> {
+
+	private final static int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+
+	private final char[] buf = new char[BUFFER_SIZE];
+
+	private int pos = 0;
+
+	private int limit = 0;
+
+	private final StringBuilder statement = new StringBuilder();
+
+	private String next;
+
+	StatementSplitter(Reader reader) {
+		this.reader = reader;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			try {
+				next = readStatement();
+			} catch (IOException e) {
+				throw new ServiceException("Error reading CQL script: " + e.getMessage(), e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		String res = next;
+		next = null;
+		return res;
+	}
+
+	/** @return null if there are no more statements */
+	private String readStatement() throws IOException {
+		statement.setLength(0);
+		char quote = 0;
+		int ch;
+		while ((ch = read()) != -1) {
+			char chr = (char) ch;
+			if (quote == '$') {
+				statement.append(chr);
+				if (chr == '$' && peek() == '$') {
+					statement.append((char) read());
+					quote = 0;
+				}
+			} else if (quote != 0) {
+				if (chr == ';' && isLineBreak(peek())) {
+					String res = trimmed();
+					if (res != null) {
+						return res;
+					}
+					quote = 0;
+					continue;
+				}
+				statement.append(chr);
+				if (chr == quote) {
+					quote = 0;
+				}
+			} else if ((chr == '-' && peek() == '-') || (chr == '/' && peek() == '/')) {
+				skipLine();
+			} else if (chr == '/' && peek() == '*') {
+				read();
+				skipBlockComment();
+				statement.append(' ');
+			} else if (chr == ';' && (peek() == -1 || Character.isWhitespace(peek())) && !isInBatch()) {
+				String res = trimmed();
+				if (res != null) {
+					return res;
+				}
+			} else {
+				statement.append(chr);
+				if (chr == '\'' || chr == '"') {
+					quote = chr;
+				} else if (chr == '$' && peek() == '$') {
+					statement.append((char) read());
+					quote = '$';
+				}
+			}
+		}
+		return trimmed();
+	}
+
+	/** @return statement without surrounding white spaces, or null if it's empty */
+	private String trimmed() {
+		String res = statement.toString().trim();
+		statement.setLength(0);
+		return res.isEmpty() ? null : res;
+	}
+
+	/** @return true if statement begins BATCH that has not been applied yet */
+	private boolean isInBatch() {
+		int start = 0;
+		while (start < statement.length() && Character.isWhitespace(statement.charAt(start))) {
+			start++;
+		}
+		if (matchForwards(start, "begin") < 0) {
+			return false;
+		}
+		int end = skipWhiteSpaceBackwards(statement.length());
+		end = matchBackwards(end, "batch");
+		if (end < 0 || end == skipWhiteSpaceBackwards(end)) {
+			return true;
+		}
+		return matchBackwards(skipWhiteSpaceBackwards(end), "apply") < 0;
+	}
+
+	private int skipWhiteSpaceBackwards(int end) {
+		while (end > 0 && Character.isWhitespace(statement.charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+
+	/** @return index where given word starts, if statement contains it before given position, otherwise -1 */
+	private int matchBackwards(int end, String word) {
+		int start = end - word.length();
+		return start >= 0 && matchForwards(start, word) >= 0 ? start : -1;
+	}
+
+	/** @return index after given word, if statement contains it at given position, otherwise -1 */
+	private int matchForwards(int start, String word) {
+		if (start + word.length() > statement.length()) {
+			return -1;
+		}
+		for (int idx = 0; idx < word.length(); idx++) {
+			if (Character.toLowerCase(statement.charAt(start + idx)) != word.charAt(idx)) {
+				return -1;
+			}
+		}
+		return start + word.length();
+	}
+
+	private void skipLine() throws IOException {
+		int ch;
+		while ((ch = read()) != -1) {
+			if (ch == '\n') {
+				statement.append('\n');
+				return;
+			}
+		}
+	}
+
+	private void skipBlockComment() throws IOException {
+		int ch;
+		while ((ch = read()) != -1) {
+			if (ch == '*' && peek() == '/') {
+				read();
+				return;
+			}
+		}
+	}
+
+	private static boolean isLineBreak(int ch) {
+		return ch == -1 || ch == '\n' || ch == '\r';
+	}
+
+	private int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buf[pos++];
+	}
+
+	private int peek() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buf[pos];
+	}
+
+	/** @return false on end of input */
+	private boolean fill() throws IOException {
+		while (pos == limit) {
+			int read = reader.read(buf, 0, buf.length);
+			if (read == -1) {
+				return false;
+			}
+			pos = 0;
+			limit = read;
+		}
+		return true;
+	}
+}
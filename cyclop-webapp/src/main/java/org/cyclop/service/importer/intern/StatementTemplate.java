@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * INSERT, UPDATE or DELETE statement with literals replaced by bind markers. Statements that differ only in literal
+ * values have the same shape, so that it can be prepared once.
+ * <p>
+ * Only literals that can be safely bound are replaced: strings, numbers, blobs and uuids. Statements containing
+ * collection literals, comments, bind markers or dollar quoted strings have no template.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+final class StatementTemplate {
+
+	private final static Pattern UUID = Pattern
+			.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+	private final static Pattern BLOB = Pattern.compile("0[xX][0-9a-fA-F]*");
+
+	private final static Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+	private final static Pattern IDENTIFIER = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+	private final static ImmutableList<String> TEMPLATE_TYPES = ImmutableList.of("insert", "update", "delete");
+
+	/** statement with bind markers instead of literals, whitespace is normalized */
+	final String shape;
+
+	/** literals in CQL notation, in the order of bind markers */
+	final ImmutableList<String> literals;
+
+	private StatementTemplate(String shape, ImmutableList<String> literals) {
+		this.shape = shape;
+		this.literals = literals;
+	}
+
+	static Optional<StatementTemplate> parse(String cql) {
+		Matcher ident = IDENTIFIER.matcher(cql.trim());
+		if (!ident.lookingAt() || !TEMPLATE_TYPES.contains(ident.group().toLowerCase())) {
+			return Optional.empty();
+		}
+		StringBuilder shape = new StringBuilder(cql.length());
+		ImmutableList.Builder<String> literals = ImmutableList.builder();
+
+		int pos = 0;
+		int len = cql.length();
+		char last = ' ';
+		while (pos < len) {
+			char ch = cql.charAt(pos);
+			if (Character.isWhitespace(ch)) {
+				pos++;
+				continue;
+			}
+			if (shape.length() > 0 && pos > 0 && Character.isWhitespace(cql.charAt(pos - 1))) {
+				shape.append(' ');
+			}
+
+			int end;
+			if (ch == '\'') {
+				end = endOfString(cql, pos);
+				if (end < 0) {
+					return Optional.empty();
+				}
+				literals.add(cql.substring(pos, end));
+				shape.append('?');
+
+			} else if (ch == '"') {
+				end = cql.indexOf('"', pos + 1);
+				if (end < 0) {
+					return Optional.empty();
+				}
+				end++;
+				shape.append(cql, pos, end);
+
+			} else if ((end = match(UUID, cql, pos)) > 0 || (end = match(BLOB, cql, pos)) > 0
+					|| (end = matchNumber(cql, pos, last)) > 0) {
+				literals.add(cql.substring(pos, end));
+				shape.append('?');
+
+			} else if ((end = match(IDENTIFIER, cql, pos)) > 0) {
+				shape.append(cql, pos, end);
+
+			} else if (ch == '{' || ch == '[' || ch == '?' || ch == ':' || ch == '$' || ch == '/'
+					|| (ch == '-' && pos + 1 < len && cql.charAt(pos + 1) == '-')) {
+				// collections, existing bind markers and comments
+				return Optional.empty();
+
+			} else {
+				end = pos + 1;
+				shape.append(ch);
+			}
+			last = cql.charAt(end - 1);
+			pos = end;
+		}
+		return Optional.of(new StatementTemplate(shape.toString(), literals.build()));
+	}
+
+	/** @return position after closing quote, -1 if string is not closed */
+	private static int endOfString(String cql, int start) {
+		int pos = start + 1;
+		while (pos < cql.length()) {
+			if (cql.charAt(pos) == '\'') {
+				if (pos + 1 < cql.length() && cql.charAt(pos + 1) == '\'') {
+					pos += 2;
+					continue;
+				}
+				return pos + 1;
+			}
+			pos++;
+		}
+		return -1;
+	}
+
+	/** minus belongs to number only if it cannot be an operator */
+	private static int matchNumber(String cql, int pos, char last) {
+		if (cql.charAt(pos) == '-' && "=,(<>".indexOf(last) < 0) {
+			return -1;
+		}
+		return match(NUMBER, cql, pos);
+	}
+
+	/** @return end of the match if literal is not followed by identifier characters, -1 otherwise */
+	private static int match(Pattern pattern, String cql, int pos) {
+		Matcher matcher = pattern.matcher(cql).region(pos, cql.length());
+		if (!matcher.lookingAt()) {
+			return -1;
+		}
+		int end = matcher.end();
+		if (end < cql.length()) {
+			char next = cql.charAt(end);
+			if (Character.isLetterOrDigit(next) || next == '_') {
+				return -1;
+			}
+		}
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("shape", shape).add("literals", literals).toString();
+	}
+}
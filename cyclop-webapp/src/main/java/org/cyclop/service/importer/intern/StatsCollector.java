@@ -16,22 +16,123 @@
  */
 package org.cyclop.service.importer.intern;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.jcip.annotations.ThreadSafe;
 
+import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.service.importer.model.ImportProgress;
+import org.cyclop.service.importer.model.ImportStats.WorkerStats;
+import org.cyclop.service.importer.model.LatencyHistogram;
+
 import com.google.common.base.MoreObjects;
+import com.google.common.io.CountingInputStream;
 
 /** @author Maciej Miklas */
 @ThreadSafe
 final class StatsCollector {
 
+	/** current rate is measured over at least this time */
+	private final static long RATE_WINDOW_MILLIS = 2000;
+
 	public final AtomicInteger error = new AtomicInteger(0);
 
 	public final AtomicInteger success = new AtomicInteger(0);
 
+	/** statements executed as bound prepared statements */
+	public final AtomicInteger prepared = new AtomicInteger(0);
+
+	/** unlogged batches executed instead of single statements */
+	public final AtomicInteger batches = new AtomicInteger(0);
+
+	/** statements read from import script */
+	public final AtomicLong parsed = new AtomicLong(0);
+
+	/** highest amount of requests in flight at the same time */
+	public final AtomicInteger maxInFlight = new AtomicInteger(0);
+
+	public final LatencyHistogram latency = new LatencyHistogram();
+
+	/** filled by import threads when they are done */
+	public final Queue<WorkerStats> workers = new ConcurrentLinkedQueue<>();
+
+	/** requests sent and not yet completed */
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+
+	private final CountingInputStream input;
+
+	private final long bytesTotal;
+
+	private final long startMillis = System.currentTimeMillis();
+
+	/** guarded by this */
+	private long windowMillis = startMillis;
+
+	/** guarded by this */
+	private long windowExecuted = 0;
+
+	/** guarded by this, -1 until first rate window is closed */
+	private double currentRate = -1;
+
+	/**
+	 * @param input import script - amount of read bytes is used for progress
+	 * @param bytesTotal size of import script, 0 if unknown
+	 */
+	StatsCollector(CountingInputStream input, long bytesTotal) {
+		this.input = input;
+		this.bytesTotal = bytesTotal;
+	}
+
+	public boolean canContinue(ImportConfig iconfig) {
+		return error.get() == 0 || iconfig.isContinueWithErrors();
+	}
+
+	void requestSent() {
+		maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+	}
+
+	void requestDone() {
+		inFlight.decrementAndGet();
+	}
+
+	ImportProgress progress() {
+		long now = System.currentTimeMillis();
+		long failed = error.get();
+		long executed = success.get() + failed;
+		long bytesRead = input.getCount();
+
+		long runMillis = now - startMillis;
+		double averageRate = runMillis == 0 ? 0 : executed * 1000d / runMillis;
+		double rate = currentRate(now, executed);
+		if (rate < 0) {
+			rate = averageRate;
+		}
+
+		long etaSeconds = -1;
+		if (bytesTotal > 0 && bytesRead > 0) {
+			etaSeconds = (long) ((bytesTotal - Math.min(bytesTotal, bytesRead)) * (runMillis / 1000d) / bytesRead);
+		}
+		return new ImportProgress(parsed.get(), executed, failed, rate, averageRate, latency.getPercentile(50),
+				latency.getPercentile(99), bytesRead, bytesTotal, etaSeconds);
+	}
+
+	private synchronized double currentRate(long now, long executed) {
+		long window = now - windowMillis;
+		if (window >= RATE_WINDOW_MILLIS) {
+			currentRate = (executed - windowExecuted) * 1000d / window;
+			windowMillis = now;
+			windowExecuted = executed;
+		}
+		return currentRate;
+	}
+
 	@Override
 	public String toString() {
-		return MoreObjects.toStringHelper(this).add("error", error).add("success", success).toString();
+		return MoreObjects.toStringHelper(this).add("error", error).add("success", success).add("parsed", parsed)
+				.add("prepared", prepared).add("batches", batches).add("maxInFlight", maxInFlight)
+				.add("latency", latency).add("workers", workers).toString();
 	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.model;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Progress of import script, it's stored periodically while import is running, so that it can be resumed.
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public final class ImportCheckpoint implements Serializable {
+
+	/** identifies import script - hash of its content */
+	@XmlElement(name = "sh")
+	private String scriptHash;
+
+	/** amount of statements from the beginning of the script that are applied without gaps */
+	@XmlElement(name = "ap")
+	private long applied;
+
+	/** true if import has reached end of script */
+	@XmlElement(name = "fi")
+	private boolean finished;
+
+	@XmlElement(name = "up")
+	private long updatedMillis;
+
+	/** for unmarshalling */
+	ImportCheckpoint() {
+	}
+
+	public ImportCheckpoint(String scriptHash, long applied, boolean finished) {
+		this.scriptHash = scriptHash;
+		this.applied = applied;
+		this.finished = finished;
+		this.updatedMillis = System.currentTimeMillis();
+	}
+
+	public String getScriptHash() {
+		return scriptHash;
+	}
+
+	public long getApplied() {
+		return applied;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public long getUpdatedMillis() {
+		return updatedMillis;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("scriptHash", scriptHash).add("applied", applied)
+				.add("finished", finished).add("updatedMillis", updatedMillis).toString();
+	}
+}
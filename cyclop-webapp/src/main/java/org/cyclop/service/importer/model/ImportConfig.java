@@ -16,6 +16,8 @@
  */
 package org.cyclop.service.importer.model;
 
+import org.cyclop.model.UserIdentifier;
+
 import com.google.common.base.MoreObjects;
 
 /** @author Maciej Miklas */
@@ -25,6 +27,26 @@ public class ImportConfig {
 
 	private boolean continueWithErrors = false;
 
+	private double statementsPerSecond = 0;
+
+	private long bytesPerSecond = 0;
+
+	private boolean adaptiveThrottle = false;
+
+	private UserIdentifier checkpointUser;
+
+	private String scriptHash;
+
+	private boolean resume = false;
+
+	private boolean prepareStatements = false;
+
+	private boolean partitionBatches = false;
+
+	private String progressId;
+
+	private long scriptSize = 0;
+
 	public ImportConfig withUpdateHistory(boolean updateHistory) {
 		this.updateHistory = updateHistory;
 		return this;
@@ -35,6 +57,74 @@ public class ImportConfig {
 		return this;
 	}
 
+	/** @param statementsPerSecond 0 for no limit */
+	public ImportConfig withStatementsPerSecond(double statementsPerSecond) {
+		this.statementsPerSecond = statementsPerSecond;
+		return this;
+	}
+
+	/** @param bytesPerSecond limits size of executed statements, 0 for no limit */
+	public ImportConfig withBytesPerSecond(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+		return this;
+	}
+
+	/** @param adaptiveThrottle reduce statement rate when cluster reports timeouts or overload */
+	public ImportConfig withAdaptiveThrottle(boolean adaptiveThrottle) {
+		this.adaptiveThrottle = adaptiveThrottle;
+		return this;
+	}
+
+	/**
+	 * Import will periodically store checkpoints for given user
+	 *
+	 * @param scriptHash identifies import script
+	 */
+	public ImportConfig withCheckpoint(UserIdentifier checkpointUser, String scriptHash) {
+		this.checkpointUser = checkpointUser;
+		this.scriptHash = scriptHash;
+		return this;
+	}
+
+	/**
+	 * @param resume
+	 *            skip statements applied by previous import of the same script, unless this import has been finished
+	 */
+	public ImportConfig withResume(boolean resume) {
+		this.resume = resume;
+		return this;
+	}
+
+	/**
+	 * @param prepareStatements execute INSERT, UPDATE and DELETE statements that differ only in literals as single
+	 *            prepared statement. It's supported by parallel imports only.
+	 */
+	public ImportConfig withPrepareStatements(boolean prepareStatements) {
+		this.prepareStatements = prepareStatements;
+		return this;
+	}
+
+	/**
+	 * @param partitionBatches group statements writing into the same partition into unlogged batches. Statements are
+	 *            prepared in order to find their partition key. It's supported by async parallel import only.
+	 */
+	public ImportConfig withPartitionBatches(boolean partitionBatches) {
+		this.partitionBatches = partitionBatches;
+		return this;
+	}
+
+	/**
+	 * Progress of running import will be available trough
+	 * {@link org.cyclop.service.importer.ImportProgressService}
+	 *
+	 * @param scriptSize in bytes, 0 if unknown
+	 */
+	public ImportConfig withProgress(String progressId, long scriptSize) {
+		this.progressId = progressId;
+		this.scriptSize = scriptSize;
+		return this;
+	}
+
 	public boolean isUpdateHistory() {
 		return updateHistory;
 	}
@@ -43,9 +133,53 @@ public class ImportConfig {
 		return continueWithErrors;
 	}
 
+	public double getStatementsPerSecond() {
+		return statementsPerSecond;
+	}
+
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	public boolean isAdaptiveThrottle() {
+		return adaptiveThrottle;
+	}
+
+	public UserIdentifier getCheckpointUser() {
+		return checkpointUser;
+	}
+
+	public String getScriptHash() {
+		return scriptHash;
+	}
+
+	public boolean isResume() {
+		return resume;
+	}
+
+	public boolean isPrepareStatements() {
+		return prepareStatements;
+	}
+
+	public boolean isPartitionBatches() {
+		return partitionBatches;
+	}
+
+	public String getProgressId() {
+		return progressId;
+	}
+
+	public long getScriptSize() {
+		return scriptSize;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("updateHistory", updateHistory)
-				.add("continueWithErrors", continueWithErrors).toString();
+				.add("continueWithErrors", continueWithErrors).add("statementsPerSecond", statementsPerSecond)
+				.add("bytesPerSecond", bytesPerSecond).add("adaptiveThrottle", adaptiveThrottle)
+				.add("checkpointUser", checkpointUser).add("scriptHash", scriptHash).add("resume", resume)
+				.add("prepareStatements", prepareStatements).add("partitionBatches", partitionBatches)
+				.add("progressId", progressId).add("scriptSize", scriptSize).toString();
 	}
 }
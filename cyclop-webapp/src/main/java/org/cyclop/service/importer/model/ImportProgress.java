@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.model;
+
+import java.io.Serializable;
+
+import net.jcip.annotations.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Snapshot of running import
+ *
+ * @author Maciej Miklas
+ */
+@Immutable
+public final class ImportProgress implements Serializable {
+
+	/** statements read from import script, including those skipped on resume */
+	public final long parsed;
+
+	/** executed statements, including failed ones */
+	public final long executed;
+
+	public final long failed;
+
+	/** statements per second within last few seconds */
+	public final double currentRate;
+
+	/** statements per second since import has started */
+	public final double averageRate;
+
+	public final long latencyP50;
+
+	public final long latencyP99;
+
+	/** bytes read from import script */
+	public final long bytesRead;
+
+	/** size of import script, 0 if unknown */
+	public final long bytesTotal;
+
+	/** estimated remaining time based on bytes read so far, -1 if unknown */
+	public final long etaSeconds;
+
+	public ImportProgress(long parsed, long executed, long failed, double currentRate, double averageRate,
+			long latencyP50, long latencyP99, long bytesRead, long bytesTotal, long etaSeconds) {
+		this.parsed = parsed;
+		this.executed = executed;
+		this.failed = failed;
+		this.currentRate = currentRate;
+		this.averageRate = averageRate;
+		this.latencyP50 = latencyP50;
+		this.latencyP99 = latencyP99;
+		this.bytesRead = bytesRead;
+		this.bytesTotal = bytesTotal;
+		this.etaSeconds = etaSeconds;
+	}
+
+	/** @return read percentage of import script, -1 if its size is unknown */
+	public int getPercentRead() {
+		return bytesTotal <= 0 ? -1 : (int) Math.min(100, bytesRead * 100 / bytesTotal);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("parsed", parsed).add("executed", executed).add("failed", failed)
+				.add("currentRate", currentRate).add("averageRate", averageRate).add("latencyP50", latencyP50)
+				.add("latencyP99", latencyP99).add("bytesRead", bytesRead).add("bytesTotal", bytesTotal)
+				.add("etaSeconds", etaSeconds).toString();
+	}
+}
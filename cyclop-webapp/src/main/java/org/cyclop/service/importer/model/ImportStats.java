@@ -18,11 +18,14 @@ package org.cyclop.service.importer.model;
 
 import java.io.Serializable;
 
+import javax.validation.constraints.NotNull;
+
 import net.jcip.annotations.Immutable;
 
 import org.apache.commons.lang3.time.StopWatch;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
 
 @Immutable
 public class ImportStats implements Serializable {
@@ -33,15 +36,81 @@ public class ImportStats implements Serializable {
 
 	public final int errorCount;
 
+	/** statements applied by previous import that has been resumed */
+	public final long skippedCount;
+
+	/** statements executed as bound prepared statements */
+	public final int preparedCount;
+
+	/** unlogged batches executed instead of single statements */
+	public final int batchCount;
+
+	/** highest amount of requests in flight at the same time, 0 if import does not pipeline requests */
+	public final int maxInFlightCount;
+
+	/** one entry for each import thread, empty if import does not use worker threads */
+	@NotNull
+	public final ImmutableList<WorkerStats> workers;
+
+	/** statement rate limit at the end of throttled import, 0 if import was not throttled */
+	public final double throttleRate;
+
 	public ImportStats(StopWatch runtime, int successCount, int errorCount) {
+		this(runtime, successCount, errorCount, 0, 0, 0, 0, ImmutableList.of(), 0);
+	}
+
+	public ImportStats(StopWatch runtime, int successCount, int errorCount, long skippedCount, int preparedCount,
+			int batchCount, int maxInFlightCount, ImmutableList<WorkerStats> workers, double throttleRate) {
 		this.runtime = runtime;
 		this.successCount = successCount;
 		this.errorCount = errorCount;
+		this.skippedCount = skippedCount;
+		this.preparedCount = preparedCount;
+		this.batchCount = batchCount;
+		this.maxInFlightCount = maxInFlightCount;
+		this.workers = workers;
+		this.throttleRate = throttleRate;
+	}
+
+	/** @return average amount of executed statements per second */
+	public double getRate() {
+		long millis = runtime == null ? 0 : runtime.getTime();
+		return millis == 0 ? 0 : (successCount + errorCount) * 1000d / millis;
 	}
 
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("runtime", runtime).add("successCount", successCount)
-				.add("errorCount", errorCount).toString();
+				.add("errorCount", errorCount).add("skippedCount", skippedCount).add("preparedCount", preparedCount)
+				.add("batchCount", batchCount).add("maxInFlightCount", maxInFlightCount)
+				.add("throttleRate", throttleRate).add("workers", workers).toString();
+	}
+
+	/** Shows how long single import thread was busy executing queries, compared to its whole run time */
+	@Immutable
+	public static final class WorkerStats implements Serializable {
+
+		public final int executed;
+
+		public final long busyMillis;
+
+		public final long runMillis;
+
+		public WorkerStats(int executed, long busyMillis, long runMillis) {
+			this.executed = executed;
+			this.busyMillis = busyMillis;
+			this.runMillis = runMillis;
+		}
+
+		/** @return percentage of run time spent on executing queries */
+		public int getUtilization() {
+			return runMillis == 0 ? 0 : (int) (busyMillis * 100 / runMillis);
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("executed", executed).add("busyMillis", busyMillis)
+					.add("runMillis", runMillis).add("utilization", getUtilization()).toString();
+		}
 	}
 }
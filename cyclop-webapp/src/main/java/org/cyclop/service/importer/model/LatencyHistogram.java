@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.model;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.jcip.annotations.ThreadSafe;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Lock free histogram of query run times in milliseconds. Each power of two range is divided into four buckets, so
+ * that percentiles have precision of about 25% with fixed memory.
+ *
+ * @author Maciej Miklas
+ */
+@ThreadSafe
+public final class LatencyHistogram implements Serializable {
+
+	private final static int SUB_BUCKETS = 4;
+
+	private final static int SUB_BITS = 2;
+
+	private final static int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	public void add(long millis) {
+		counts.incrementAndGet(bucket(Math.max(0, millis)));
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int idx = 0; idx < BUCKETS; idx++) {
+			count += counts.get(idx);
+		}
+		return count;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return upper bound of the bucket containing given percentile, 0 if histogram is empty
+	 */
+	public long getPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int idx = 0; idx < BUCKETS; idx++) {
+			seen += counts.get(idx);
+			if (seen >= target) {
+				return upperBound(idx);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exp - SUB_BITS) * SUB_BUCKETS + sub;
+	}
+
+	static long lowerBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exp = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+	}
+
+	static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("count", getCount()).add("p50", getPercentile(50))
+				.add("p99", getPercentile(99)).toString();
+	}
+}
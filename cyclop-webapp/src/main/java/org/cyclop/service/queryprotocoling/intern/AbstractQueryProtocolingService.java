@@ -18,6 +18,7 @@ package org.cyclop.service.queryprotocoling.intern;
 
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -61,6 +62,10 @@ abstract class AbstractQueryProtocolingService<H> implements QueryProtocolingSer
 
 	protected abstract H createEmpty();
 
+	protected Optional<H> readStored(UserIdentifier user) {
+		return storage.read(user, getClazz());
+	}
+
 	protected UserIdentifier getUser() {
 		final UserIdentifier fromCookie = um.readIdentifier();
 		if (identifier == null) {
@@ -78,39 +83,42 @@ abstract class AbstractQueryProtocolingService<H> implements QueryProtocolingSer
 		return identifier;
 	}
 
+	/** replaces identifier of this session - new one is stored as cookie on next {@link #getUser()} */
+	protected void setUser(UserIdentifier identifier) {
+		this.identifier = identifier;
+	}
+
 	@Override
 	public void store(@NotNull H newHistory) {
 		LOG.debug("String history");
 		history.set(newHistory);
 		final UserIdentifier user = getUser();
-
-		// this synchronization ensures that history will be not added to write
-		// queue while it's being read from
-		// disk in #readHistory()
-		synchronized (asyncFileStore) {
-			asyncFileStore.store(user, newHistory);
-		}
+		asyncFileStore.store(user, newHistory);
 	}
 
 	@Override
 	public @NotNull H read() {
 		LOG.debug("Accessing history");
 		if (history.get() == null) {
-			synchronized (asyncFileStore) {
+			final UserIdentifier user = getUser();
+
+			// lock ensures that history will be not flushed from write queue
+			// to disk while it's being read
+			final Lock lock = asyncFileStore.getLock(user);
+			lock.lock();
+			try {
 				LOG.debug("Reading history");
 				if (history.get() == null) {
-					final UserIdentifier user = getUser();
 
 					// history can be in write queue when user closes http
 					// session and opens new few seconds later.
 					// in this case async queue might be not flushed to disk yet
-					final Optional<H> readOpt = asyncFileStore.getFromWriteQueue(user);
-					H read = null;
-					if (!readOpt.isPresent()) {
-						read = storage.read(user, getClazz()).orElse(createEmpty());
-					}
+					final Optional<H> readOpt = asyncFileStore.getFromWriteQueue(user, getClazz());
+					H read = readOpt.isPresent() ? readOpt.get() : readStored(user).orElse(createEmpty());
 					history.set(read);
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 		return history.get();
@@ -16,14 +16,27 @@
  */
 package org.cyclop.service.queryprotocoling.intern;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
 import org.cyclop.model.QueryHistory;
 import org.cyclop.model.UserIdentifier;
 import org.cyclop.service.common.FileStorage;
@@ -31,61 +44,202 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 
-/** @author Maciej Miklas */
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Write-behind store shared by history and favourites of all users. Storing only replaces pending entity of given
+ * user in lock free queue, so that multiple changes between two flushes are written once. Flush writes pending
+ * entities in parallel, entities of single user are written one after another under the lock returned by
+ * {@link #getLock(UserIdentifier)}.
+ *
+ * @author Maciej Miklas
+ */
 @Named
+@ThreadSafe
 class AsyncFileStore<H> {
 
-	private final static int FLUSH_MILIS = 30000;
+	private final static Logger LOG = LoggerFactory.getLogger(AsyncFileStore.class);
+
+	private final static String FLUSH_MILLIS = "${fileStore.flushIntervalMillis:30000}";
+
+	private final static int LOCK_STRIPES = 64;
 
 	@Inject
 	private FileStorage fileStorage;
 
-	private final static Logger LOG = LoggerFactory.getLogger(AsyncFileStore.class);
+	@Inject
+	private HistoryJournal historyJournal;
+
+	@Inject
+	@Named("fileStoreExecutor")
+	private ExecutorService flushExecutor;
+
+	private final ConcurrentMap<QueueKey, Object> diskQueue = new ConcurrentHashMap<>();
+
+	private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+	private final AtomicLong flushCount = new AtomicLong();
 
-	private final Map<UserIdentifier, H> diskQueue = new HashMap<>();
+	private final AtomicLong flushedEntities = new AtomicLong();
+
+	private volatile long lastFlushMillis;
+
+	private volatile long maxFlushMillis;
 
 	public void store(UserIdentifier identifier, H history) {
-		synchronized (diskQueue) {
-			diskQueue.put(identifier, history);
-		}
+		diskQueue.put(new QueueKey(identifier, history.getClass()), history);
 	}
 
-	public Optional<H> getFromWriteQueue(UserIdentifier identifier) {
-		LOG.debug("Reading history from queue for: {}", identifier);
-		synchronized (diskQueue) {
-			final H hist = diskQueue.get(identifier);
-			LOG.trace("Found history: {}", hist);
-			return Optional.ofNullable(hist);
-		}
+	public Optional<H> getFromWriteQueue(UserIdentifier identifier, Class<H> clazz) {
+		LOG.debug("Reading {} from queue for: {}", clazz.getSimpleName(), identifier);
+		final H hist = clazz.cast(diskQueue.get(new QueueKey(identifier, clazz)));
+		LOG.trace("Found history: {}", hist);
+		return Optional.ofNullable(hist);
 	}
 
 	/**
-	 * method must be synchronized to avoid parallel write access on files for
-	 * single user-id. Second synchronization block on map ensures short lock
-	 * time on map, so that {@link #store(UserIdentifier, QueryHistory)} method
-	 * block time is reduced
+	 * @return lock held while entities of given user are being written to disk - reading them from disk under this
+	 *         lock ensures that the queue and the files are consistent
 	 */
-	@Scheduled(initialDelay = FLUSH_MILIS, fixedDelay = FLUSH_MILIS)
+	public Lock getLock(UserIdentifier identifier) {
+		return locks.get(identifier);
+	}
+
+	@Scheduled(initialDelayString = FLUSH_MILLIS, fixedDelayString = FLUSH_MILLIS)
 	@PreDestroy
-	public synchronized void flush() {
-		LOG.debug("Flushing history");
-		while (true) {
-			UserIdentifier identifier;
-			H history;
-
-			// synchronize #historyMap only for short time to not block
-			// store(...) function by file operation
-			synchronized (diskQueue) {
-				LOG.debug("Got into mutex");
-				if (diskQueue.isEmpty()) {
-					LOG.debug("Flush done - no more entries found");
-					return;
+	public void flush() {
+		List<Callable<Void>> tasks = new ArrayList<>(diskQueue.size());
+		for (QueueKey key : diskQueue.keySet()) {
+			tasks.add(() -> {
+				flush(key);
+				return null;
+			});
+		}
+		if (tasks.isEmpty()) {
+			LOG.debug("Flush done - no entries found");
+			return;
+		}
+		LOG.debug("Flushing {} entries", tasks.size());
+		long start = System.currentTimeMillis();
+		try {
+			for (Future<Void> result : flushExecutor.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch (RejectedExecutionException e) {
+			LOG.debug("Flush executor is not available, flushing in current thread: {}", e.getMessage());
+			for (QueueKey key : diskQueue.keySet()) {
+				flush(key);
+			}
+		} catch (InterruptedException e) {
+			LOG.warn("Flush has been interrupted");
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.error("Flush failed: " + e.getMessage(), e.getCause());
+		}
+
+		long millis = System.currentTimeMillis() - start;
+		lastFlushMillis = millis;
+		maxFlushMillis = Math.max(maxFlushMillis, millis);
+		flushCount.incrementAndGet();
+		LOG.debug("Flush done: {}", getStats());
+	}
+
+	private void flush(QueueKey key) {
+		Lock lock = getLock(key.identifier);
+		lock.lock();
+		try {
+			// removed under the lock, so that entity is either still in the queue, or already on disk
+			Object entity = diskQueue.remove(key);
+			if (entity == null) {
+				return;
+			}
+			try {
+				if (entity instanceof QueryHistory) {
+					historyJournal.store(key.identifier, (QueryHistory) entity);
+				} else {
+					fileStorage.store(key.identifier, entity);
 				}
-				identifier = diskQueue.keySet().iterator().next();
-				history = diskQueue.remove(identifier);
+				flushedEntities.incrementAndGet();
+			} catch (RuntimeException e) {
+				LOG.error("Cannot store " + key + ": " + e.getMessage(), e);
 			}
-			fileStorage.store(identifier, history);
+		} finally {
+			lock.unlock();
 		}
 	}
 
+	public Stats getStats() {
+		return new Stats(diskQueue.size(), flushCount.get(), flushedEntities.get(), lastFlushMillis,
+				maxFlushMillis, fileStorage.getLockRetryCount());
+	}
+
+	/** @author Maciej Miklas */
+	@Immutable
+	public final static class Stats {
+
+		/** entities waiting for flush */
+		public final int queueSize;
+
+		public final long flushCount;
+
+		public final long flushedEntities;
+
+		public final long lastFlushMillis;
+
+		public final long maxFlushMillis;
+
+		/** retries of file lock in {@link FileStorage} - it grows when single file is accessed in parallel */
+		public final int lockRetryCount;
+
+		Stats(int queueSize, long flushCount, long flushedEntities, long lastFlushMillis, long maxFlushMillis,
+				int lockRetryCount) {
+			this.queueSize = queueSize;
+			this.flushCount = flushCount;
+			this.flushedEntities = flushedEntities;
+			this.lastFlushMillis = lastFlushMillis;
+			this.maxFlushMillis = maxFlushMillis;
+			this.lockRetryCount = lockRetryCount;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("queueSize", queueSize).add("flushCount", flushCount)
+					.add("flushedEntities", flushedEntities).add("lastFlushMillis", lastFlushMillis)
+					.add("maxFlushMillis", maxFlushMillis).add("lockRetryCount", lockRetryCount).toString();
+		}
+	}
+
+	/** history and favourites of single user are queued separately */
+	@Immutable
+	private final static class QueueKey {
+
+		private final UserIdentifier identifier;
+
+		private final Class<?> clazz;
+
+		QueueKey(UserIdentifier identifier, Class<?> clazz) {
+			this.identifier = identifier;
+			this.clazz = clazz;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(identifier, clazz);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof QueueKey)) {
+				return false;
+			}
+			QueueKey other = (QueueKey) obj;
+			return identifier.equals(other.identifier) && clazz.equals(other.clazz);
+		}
+
+		@Override
+		public String toString() {
+			return clazz.getSimpleName() + "-" + identifier;
+		}
+	}
 }
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.queryprotocoling.intern;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.service.common.FileStorage;
+import org.cyclop.service.common.FileStorage.Journal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Stores query history as journal: entries added since last flush are appended as single line, and the whole
+ * history is written only when journal holds twice as many entries as history can contain, or when history has been
+ * cleared. Reading replays all lines in order.
+ *
+ * @author Maciej Miklas
+ */
+@Named
+@ThreadSafe
+class HistoryJournal {
+
+	private final static Logger LOG = LoggerFactory.getLogger(HistoryJournal.class);
+
+	private final static int COMPACT_FACTOR = 2;
+
+	private final static int MAX_TRACKED_USERS = 10000;
+
+	@Inject
+	private FileStorage fileStorage;
+
+	@Inject
+	private AppConfig config;
+
+	/**
+	 * amount of entries in journal of each user. It's unknown after restart, or for users that were not active for
+	 * long time - their journal gets compacted on next write, which also removes incomplete lines
+	 */
+	private final Cache<UserIdentifier, Integer> journalEntries = CacheBuilder.newBuilder()
+			.maximumSize(MAX_TRACKED_USERS).build();
+
+	public void store(UserIdentifier user, QueryHistory history) {
+		Optional<ImmutableList<QueryEntry>> appended;
+		Integer entries = journalEntries.getIfPresent(user);
+		QueryHistory snapshot = null;
+
+		// drain and snapshot together, so that the same entry is not appended after it's been compacted
+		history.getLock().lock();
+		try {
+			appended = history.drainAppended();
+			if (!appended.isPresent() || entries == null
+					|| entries + appended.get().size() > config.history.entriesLimit * COMPACT_FACTOR
+					|| !fileStorage.journalExists(user, QueryHistory.class)) {
+				snapshot = new QueryHistory();
+				snapshot.addAll(history);
+			}
+		} finally {
+			history.getLock().unlock();
+		}
+
+		if (snapshot != null) {
+			fileStorage.compact(user, snapshot);
+			journalEntries.put(user, snapshot.size());
+			return;
+		}
+
+		ImmutableList<QueryEntry> newEntries = appended.get();
+		if (newEntries.isEmpty()) {
+			LOG.debug("No new history entries for {}", user);
+			return;
+		}
+		QueryHistory record = new QueryHistory();
+		for (QueryEntry entry : newEntries) {
+			record.add(entry);
+		}
+		fileStorage.append(user, record);
+		journalEntries.put(user, entries + newEntries.size());
+	}
+
+	public Optional<QueryHistory> read(UserIdentifier user) {
+		if (!fileStorage.journalExists(user, QueryHistory.class)) {
+			// history stored before it has been moved to journal
+			return fileStorage.read(user, QueryHistory.class);
+		}
+
+		Journal<QueryHistory> journal = fileStorage.readJournal(user, QueryHistory.class);
+		QueryHistory history = new QueryHistory();
+		int entries = 0;
+		for (QueryHistory record : journal.entities) {
+			history.addAll(record);
+			entries += record.size();
+		}
+
+		// replayed entries are already stored
+		history.drainAppended();
+		if (journal.damaged) {
+			// unknown amount of entries forces compaction on next write, so that nothing is appended to broken tail
+			journalEntries.invalidate(user);
+		} else {
+			journalEntries.put(user, entries);
+		}
+		LOG.debug("Replayed {} journal entries for {}", entries, user);
+		return Optional.of(history);
+	}
+}
@@ -16,6 +16,9 @@
  */
 package org.cyclop.service.queryprotocoling.intern;
 
+import java.util.Optional;
+
+import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.constraints.NotNull;
 
@@ -23,6 +26,7 @@ import net.jcip.annotations.NotThreadSafe;
 
 import org.cyclop.model.QueryEntry;
 import org.cyclop.model.QueryHistory;
+import org.cyclop.model.UserIdentifier;
 import org.cyclop.service.queryprotocoling.HistoryService;
 import org.cyclop.validation.EnableValidation;
 import org.springframework.context.annotation.Scope;
@@ -35,9 +39,17 @@ import org.springframework.context.annotation.ScopedProxyMode;
 @EnableValidation
 public class HistoryServiceImpl extends AbstractQueryProtocolingService<QueryHistory> implements HistoryService {
 
+	@Inject
+	private HistoryJournal journal;
+
 	protected HistoryServiceImpl() {
 	}
 
+	@Override
+	protected Optional<QueryHistory> readStored(UserIdentifier user) {
+		return journal.read(user);
+	}
+
 	@Override
 	protected Class<QueryHistory> getClazz() {
 		return QueryHistory.class;
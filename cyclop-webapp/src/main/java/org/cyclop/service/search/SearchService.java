@@ -18,9 +18,11 @@ package org.cyclop.service.search;
 
 import java.util.Optional;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.cyclop.model.FilterResult;
+import org.cyclop.model.SearchIndex;
 
 import com.google.common.collect.ImmutableCollection;
 
@@ -29,4 +31,14 @@ public interface SearchService<T> {
 	@NotNull
 	Optional<FilterResult<T>> filter(@NotNull ImmutableCollection<T> input, @NotNull FieldAccessor<T> accessor,
 			String... keywords);
+
+	/**
+	 * Same as {@link #filter(ImmutableCollection, FieldAccessor, String...)}, but only elements found in index are
+	 * ranked
+	 *
+	 * @param limit
+	 *            max amount of returned elements, these are the best ranked ones
+	 */
+	@NotNull
+	Optional<FilterResult<T>> filter(@NotNull SearchIndex<T> index, @Min(1) int limit, String... keywords);
 }
@@ -25,6 +25,7 @@ import java.util.TreeMap;
 import javax.inject.Named;
 
 import org.cyclop.model.FilterResult;
+import org.cyclop.model.SearchIndex;
 import org.cyclop.service.search.FieldAccessor;
 import org.cyclop.service.search.SearchService;
 import org.cyclop.validation.EnableValidation;
@@ -67,6 +68,16 @@ public class SearchServiceImpl<T> implements SearchService<T> {
 		return Optional.of(new FilterResult<T>(result, normKeywords));
 	}
 
+	@Override
+	public Optional<FilterResult<T>> filter(SearchIndex<T> index, int limit, String... keywords) {
+		ImmutableSet<String> normKeywords = normalize(keywords);
+		if (normKeywords.isEmpty()) {
+			return Optional.empty();
+		}
+		ImmutableList<T> result = index.search(normKeywords, limit);
+		return Optional.of(new FilterResult<T>(result, normKeywords));
+	}
+
 	private ImmutableList<T> mapResult(SortedMap<WeightSortingKey, T> sorted) {
 		ImmutableList.Builder<T> resList = ImmutableList.builder();
 		for (T val : sorted.values()) {
@@ -21,31 +21,40 @@ import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.Panel;
-import org.cyclop.model.CqlColumnValue;
-import org.cyclop.model.CqlPartitionKeyValue;
+import org.cyclop.model.CqlDisplayValue;
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlValuePath;
 
 import com.google.common.collect.ImmutableList;
 
 /** @author Maciej Miklas */
 class CollectionViewPanel extends Panel {
-	private final ImmutableList<CqlColumnValue> content;
-	private final CqlPartitionKeyValue cqlPartitionKeyValue;
+	private final ImmutableList<CqlDisplayValue> content;
+	private final String partitionKeyValue;
+	private final CqlExtendedColumnName columnName;
+	private final CqlValuePath path;
+	private final ValueLoader loader;
 
-	CollectionViewPanel(String id, CqlPartitionKeyValue cqlPartitionKeyValue, ImmutableList<CqlColumnValue> content) {
+	CollectionViewPanel(String id, String partitionKeyValue, CqlExtendedColumnName columnName,
+			ImmutableList<CqlDisplayValue> content, CqlValuePath path, ValueLoader loader) {
 		super(id);
 		this.content = content;
-		this.cqlPartitionKeyValue = cqlPartitionKeyValue;
+		this.partitionKeyValue = partitionKeyValue;
+		this.columnName = columnName;
+		this.path = path;
+		this.loader = loader;
 	}
 
 	@Override
 	protected void onInitialize() {
 		super.onInitialize();
 
-		ListView<CqlColumnValue> cqlCollectionListEntry = new ListView<CqlColumnValue>("listEntry", content) {
+		ListView<CqlDisplayValue> cqlCollectionListEntry = new ListView<CqlDisplayValue>("listEntry", content) {
 			@Override
-			protected void populateItem(ListItem<CqlColumnValue> item) {
-				CqlColumnValue cqlColumnValue = item.getModelObject();
-				Component entry = new ColumnValuePanel("entryValue", cqlPartitionKeyValue, cqlColumnValue, true);
+			protected void populateItem(ListItem<CqlDisplayValue> item) {
+				CqlDisplayValue value = item.getModelObject();
+				Component entry = new ColumnValuePanel("entryValue", partitionKeyValue, columnName, value,
+						path.element(item.getIndex()), loader);
 				item.add(entry);
 			}
 		};
@@ -16,8 +16,6 @@
  */
 package org.cyclop.web.components.column;
 
-import javax.inject.Inject;
-
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.AjaxRequestTarget;
@@ -25,11 +23,9 @@ import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.panel.Panel;
-import org.apache.wicket.model.IModel;
-import org.cyclop.model.CqlColumnValue;
+import org.cyclop.model.CqlDisplayValue;
 import org.cyclop.model.CqlExtendedColumnName;
-import org.cyclop.model.CqlPartitionKeyValue;
-import org.cyclop.service.converter.DataConverter;
+import org.cyclop.model.CqlValuePath;
 import org.cyclop.web.components.infodialog.InfoDialog;
 
 /** @author Maciej Miklas */
@@ -37,24 +33,27 @@ class ColumnValuePanel extends Panel {
 
 	private InfoDialog infoDialog;
 
-	@Inject
-	private DataConverter converter;
+	private final CqlDisplayValue value;
+
+	private final String partitionKeyValue;
 
-	private final CqlColumnValue cqlColumnValue;
+	private final CqlExtendedColumnName columnName;
 
-	private final CqlPartitionKeyValue cqlPartitionKeyValue;
-	private final boolean embeddedColumn;
+	private final CqlValuePath path;
 
-	ColumnValuePanel(String componentId, CqlPartitionKeyValue cqlPartitionKeyValue, CqlColumnValue cqlColumnValue,
-			boolean embeddedColumn) {
+	private final ValueLoader loader;
+
+	ColumnValuePanel(String componentId, String partitionKeyValue, CqlExtendedColumnName columnName,
+			CqlDisplayValue value, CqlValuePath path, ValueLoader loader) {
 		super(componentId);
-		this.cqlColumnValue = cqlColumnValue;
-		this.cqlPartitionKeyValue = cqlPartitionKeyValue;
-		this.embeddedColumn = embeddedColumn;
+		this.value = value;
+		this.partitionKeyValue = partitionKeyValue;
+		this.columnName = columnName;
+		this.path = path;
+		this.loader = loader;
 	}
 
-	private String crateInfoDialogTitle(CqlPartitionKeyValue cqlPartitionKeyValue, CqlExtendedColumnName columnName) {
-		String partitionKeyValue = cqlPartitionKeyValue == null ? null : converter.convert(cqlPartitionKeyValue.value);
+	private String crateInfoDialogTitle() {
 		return (partitionKeyValue == null ? "Key" : partitionKeyValue) + " -> " + columnName.toDisplayString();
 	}
 
@@ -62,10 +61,8 @@ class ColumnValuePanel extends Panel {
 	protected void onInitialize() {
 		super.onInitialize();
 
-		String convertedValue = converter.convert(cqlColumnValue.value);
-		final String convertedValueNotNull = convertedValue == null ? "" : convertedValue;
-		final String trimmedEntry = converter.trimColumnContent(convertedValueNotNull, embeddedColumn);
-		boolean trimmed = convertedValueNotNull.length() - trimmedEntry.length() > 10;
+		boolean trimmed = value.isTrimmed();
+		final String trimmedEntry = value.content;
 
 		infoDialog = new InfoDialog("columnContentDialog");
 		infoDialog.setVisible(trimmed);
@@ -77,28 +74,14 @@ class ColumnValuePanel extends Panel {
 			fullContentLink = new AjaxFallbackLink<Object>("columnContentLink") {
 				@Override
 				public void onClick(AjaxRequestTarget target) {
-					String title = crateInfoDialogTitle(cqlPartitionKeyValue, cqlColumnValue.columnName);
-					infoDialog.open(target, this.getMarkupId(), title, convertedValueNotNull);
+					String title = crateInfoDialogTitle();
+					String fullContent = loader.load(path).orElse(value.tooltip);
+					infoDialog.open(target, this.getMarkupId(), title, fullContent);
 				}
 			};
 
 			columnContent = new Label("columnContent", trimmedEntry);
-			fullContentLink.add(new AttributeModifier("title", new IModel<String>() {
-
-				@Override
-				public void detach() {
-				}
-
-				@Override
-				public String getObject() {
-					String conv = converter.trimColumnTooltipContent(convertedValueNotNull);
-					return conv;
-				}
-
-				@Override
-				public void setObject(String object) {
-				}
-			}));
+			fullContentLink.add(new AttributeModifier("title", value.tooltip));
 
 		} else {
 			fullContentLink = new Label("columnContentLink", "") {
@@ -110,7 +93,7 @@ class ColumnValuePanel extends Panel {
 					super.onComponentTag(tag);
 				}
 			};
-			columnContent = new Label("columnContent", convertedValueNotNull);
+			columnContent = new Label("columnContent", trimmedEntry);
 			fullContentLink.setRenderBodyOnly(true);
 		}
 		add(fullContentLink);
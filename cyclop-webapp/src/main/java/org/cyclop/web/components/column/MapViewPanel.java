@@ -16,8 +16,6 @@
  */
 package org.cyclop.web.components.column;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.wicket.Component;
@@ -25,43 +23,50 @@ import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.panel.Panel;
-import org.cyclop.model.CqlColumnValue;
-import org.cyclop.model.CqlPartitionKeyValue;
+import org.cyclop.model.CqlDisplayValue;
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlValuePath;
 
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 
 /** @author Maciej Miklas */
 class MapViewPanel extends Panel {
 
-	private final ImmutableMap<CqlColumnValue, CqlColumnValue> content;
-	private final CqlPartitionKeyValue cqlPartitionKeyValue;
+	private final ImmutableList<Map.Entry<CqlDisplayValue, CqlDisplayValue>> content;
+	private final String partitionKeyValue;
+	private final CqlExtendedColumnName columnName;
+	private final CqlValuePath path;
+	private final ValueLoader loader;
 
-	MapViewPanel(String id, CqlPartitionKeyValue cqlPartitionKeyValue,
-			ImmutableMap<CqlColumnValue, CqlColumnValue> content) {
+	MapViewPanel(String id, String partitionKeyValue, CqlExtendedColumnName columnName,
+			ImmutableList<Map.Entry<CqlDisplayValue, CqlDisplayValue>> content, CqlValuePath path,
+			ValueLoader loader) {
 		super(id);
 		this.content = content;
-		this.cqlPartitionKeyValue = cqlPartitionKeyValue;
+		this.partitionKeyValue = partitionKeyValue;
+		this.columnName = columnName;
+		this.path = path;
+		this.loader = loader;
 	}
 
 	@Override
 	protected void onInitialize() {
 		super.onInitialize();
 
-		List<Map.Entry<CqlColumnValue, CqlColumnValue>> keysList = new ArrayList<>(content.size());
-		keysList.addAll(content.entrySet());
-
-		ListView<Map.Entry<CqlColumnValue, CqlColumnValue>> cqlCollectionListEntry = new ListView<Map.Entry<CqlColumnValue, CqlColumnValue>>(
-				"cqlMapEntry", keysList) {
+		ListView<Map.Entry<CqlDisplayValue, CqlDisplayValue>> cqlCollectionListEntry = new ListView<Map.Entry<CqlDisplayValue, CqlDisplayValue>>(
+				"cqlMapEntry", content) {
 			@Override
-			protected void populateItem(ListItem<Map.Entry<CqlColumnValue, CqlColumnValue>> item) {
-				Map.Entry<CqlColumnValue, CqlColumnValue> entry = item.getModelObject();
-				CqlColumnValue key = entry.getKey();
-				CqlColumnValue value = entry.getValue();
+			protected void populateItem(ListItem<Map.Entry<CqlDisplayValue, CqlDisplayValue>> item) {
+				Map.Entry<CqlDisplayValue, CqlDisplayValue> entry = item.getModelObject();
+				CqlDisplayValue key = entry.getKey();
+				CqlDisplayValue value = entry.getValue();
 
-				Component cqlMapKeyComp = new ColumnValuePanel("cqlMapKey", cqlPartitionKeyValue, key, true);
+				Component cqlMapKeyComp = new ColumnValuePanel("cqlMapKey", partitionKeyValue, columnName, key,
+						path.mapKey(item.getIndex()), loader);
 				item.add(cqlMapKeyComp);
 
-				Component cqlMapValueComp = new ColumnValuePanel("cqlMapValue", cqlPartitionKeyValue, value, true);
+				Component cqlMapValueComp = new ColumnValuePanel("cqlMapValue", partitionKeyValue, columnName, value,
+						path.mapValue(item.getIndex()), loader);
 				item.add(cqlMapValueComp);
 			}
 		};
@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.column;
+
+import java.io.Serializable;
+import java.util.Optional;
+
+import org.cyclop.model.CqlDisplayValue;
+import org.cyclop.model.CqlValuePath;
+
+/**
+ * Reads again not trimmed content of {@link CqlDisplayValue} - it's called when user opens the value in info dialog.
+ *
+ * @author Maciej Miklas
+ */
+public interface ValueLoader extends Serializable {
+
+	/** @return not trimmed content of value on given path, or empty if it cannot be read anymore */
+	Optional<String> load(CqlValuePath path);
+}
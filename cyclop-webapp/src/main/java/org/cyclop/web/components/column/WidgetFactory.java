@@ -18,56 +18,30 @@ package org.cyclop.web.components.column;
 
 import java.util.Optional;
 
-import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.constraints.NotNull;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.behavior.AttributeAppender;
 import org.apache.wicket.markup.html.basic.Label;
-import org.cyclop.model.CqlColumnValue;
-import org.cyclop.model.CqlDataType;
+import org.cyclop.model.CqlDisplayValue;
 import org.cyclop.model.CqlExtendedColumnName;
-import org.cyclop.model.CqlPartitionKey;
-import org.cyclop.model.CqlPartitionKeyValue;
+import org.cyclop.model.CqlValuePath;
 import org.cyclop.service.converter.DataConverter;
-import org.cyclop.service.converter.DataExtractor;
 import org.cyclop.validation.EnableValidation;
 
-import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Row;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-
 /** @author Maciej Miklas */
 @Named
 @EnableValidation
 public class WidgetFactory {
 
-	@Inject
-	private DataExtractor extractor;
-
 	protected WidgetFactory() {
 	}
 
-	private Component createForCollection(Row row, CqlPartitionKeyValue cqlPartitionKeyValue,
-			CqlExtendedColumnName column, String componentId) {
-		ImmutableList<CqlColumnValue> content = extractor.extractCollection(row, column);
-		Component comp;
-		if (content.isEmpty()) {
-			comp = createForEmptyColumn(componentId);
-		} else {
-			comp = new CollectionViewPanel(componentId, cqlPartitionKeyValue, content);
-		}
-
-		return comp;
-	}
-
-	public void addColumnTitle(Component colValue, Optional<CqlPartitionKeyValue> partitionKey,
-			CqlExtendedColumnName column) {
+	public void addColumnTitle(Component colValue, Optional<String> partitionKeyValue, CqlExtendedColumnName column) {
 		StringBuilder title = new StringBuilder();
-		if (partitionKey.isPresent()) {
-			title.append(partitionKey.get().value);
+		if (partitionKeyValue.isPresent()) {
+			title.append(partitionKeyValue.get());
 			title.append(" -> ");
 		}
 		title.append(column.part);
@@ -75,62 +49,36 @@ public class WidgetFactory {
 		colValue.add(new AttributeAppender("title", title.toString()));
 	}
 
-	public @NotNull Component createColumnValue(@NotNull Row row, @NotNull Optional<CqlPartitionKey> partitionKey,
-			@NotNull CqlExtendedColumnName column, @NotNull String componentId) {
-
-		Component colValue = createForDataType(row, partitionKey, column, componentId).orElse(
-				createForEmptyColumn(componentId));
-		return colValue;
-	}
-
-	private Optional<Component> createForDataType(Row row, Optional<CqlPartitionKey> partitionKey,
-			CqlExtendedColumnName column,			String componentId) {
-		String partLc = column.partLc;
-		if (row.isNull(partLc)) {
-			return Optional.empty();
-		}
-
-		CqlPartitionKeyValue cqlPartitionKeyValue = null;
-		if (partitionKey.isPresent()) {
-			cqlPartitionKeyValue = extractor.extractPartitionKey(row, partitionKey.get());
-		}
+	/**
+	 * @param path
+	 *            position of the value within query result
+	 * @param loader
+	 *            reads not trimmed content of the value, when user opens it in info dialog
+	 */
+	public @NotNull Component createColumnValue(@NotNull CqlDisplayValue value,
+			@NotNull Optional<String> partitionKeyValue, @NotNull CqlExtendedColumnName column,
+			@NotNull CqlValuePath path, @NotNull ValueLoader loader, @NotNull String componentId) {
+		String keyValue = partitionKeyValue.orElse(null);
 
 		Component component;
-		CqlDataType dataType = column.dataType;
-		if (dataType.name == DataType.Name.SET || dataType.name == DataType.Name.LIST) {
-			component = createForCollection(row, cqlPartitionKeyValue, column, componentId);
-
-		} else if (dataType.name == DataType.Name.MAP) {
-			component = createForMap(row, cqlPartitionKeyValue, column, componentId);
-
-		} else {
-			component = createForSingleValue(row, cqlPartitionKeyValue, column, componentId);
+		switch (value.type) {
+		case COLLECTION:
+			component = new CollectionViewPanel(componentId, keyValue, column, value.collection, path, loader);
+			break;
+		case MAP:
+			component = new MapViewPanel(componentId, keyValue, column, value.map, path, loader);
+			break;
+		case SINGLE:
+			component = new ColumnValuePanel(componentId, keyValue, column, value, path, loader);
+			break;
+		default:
+			component = createForEmptyColumn(componentId);
 		}
-		return Optional.of(component);
+		return component;
 	}
 
 	private Label createForEmptyColumn(String componentId) {
 		return new Label(componentId, DataConverter.EMPTY_COL_VALUE);
 	}
 
-	private Component createForMap(Row row, CqlPartitionKeyValue cqlPartitionKeyValue, CqlExtendedColumnName column,
-			String componentId) {
-		ImmutableMap<CqlColumnValue, CqlColumnValue> displayMap = extractor.extractMap(row, column);
-		Component comp;
-		if (displayMap.isEmpty()) {
-			comp = createForEmptyColumn(componentId);
-		} else {
-			comp = new MapViewPanel(componentId, cqlPartitionKeyValue, displayMap);
-		}
-
-		return comp;
-	}
-
-	private Component createForSingleValue(Row row, CqlPartitionKeyValue cqlPartitionKeyValue,
-			CqlExtendedColumnName column, String componentId) {
-		CqlColumnValue cqlColumnValue = extractor.extractSingleValue(row, column);
-		Component component = new ColumnValuePanel(componentId, cqlPartitionKeyValue, cqlColumnValue, false);
-		return component;
-	}
-
 }
@@ -37,14 +37,15 @@ import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
 import org.apache.wicket.util.string.Strings;
+import org.cyclop.common.AppConfig;
 import org.cyclop.common.StringHelper;
 import org.cyclop.common.StringHelper.StringDecorator;
 import org.cyclop.model.FilterResult;
 import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryHistory;
 import org.cyclop.model.UserPreferences;
 import org.cyclop.service.converter.DataConverter;
 import org.cyclop.service.queryprotocoling.HistoryService;
-import org.cyclop.service.search.FieldAccessor;
 import org.cyclop.service.search.SearchService;
 import org.cyclop.service.um.UserManager;
 import org.cyclop.web.common.AjaxReloadSupport;
@@ -82,8 +83,6 @@ public class HistoryPanel extends Panel implements AjaxReloadSupport {
 
 	private ImmutableSet<String> filterKeywords;
 
-	private final static QueryEntryFieldAccessor FILTER_ACCESSOR = new QueryEntryFieldAccessor();
-
 	private final static KeywordDecorator KEYWORD_DECORATOR = new KeywordDecorator();
 
 	private WebMarkupContainer historyTable;
@@ -240,21 +239,25 @@ public class HistoryPanel extends Panel implements AjaxReloadSupport {
 
 		@Override
 		protected void onUpdate(AjaxRequestTarget target) {
-			ImmutableList<QueryEntry> historyToUpdate = historyService.read().copyAsList();
+			QueryHistory history = historyService.read();
+			ImmutableList<QueryEntry> historyToUpdate = null;
 			ImmutableSet<String> kwds = null;
 
 			String filterValue = filterFieldModel.getObject();
 			filterValue = StringUtils.trimToNull(filterValue);
 			if (filterValue != null) {
 				String[] kwdsArr = filterValue.split(" ");
-				Optional<FilterResult<QueryEntry>> filterResult = searchService.filter(historyToUpdate, FILTER_ACCESSOR,
-						kwdsArr);
+				Optional<FilterResult<QueryEntry>> filterResult = searchService.filter(history.getIndex(),
+						AppConfig.get().history.filterLimit, kwdsArr);
 				if (filterResult.isPresent()) {
 					FilterResult<QueryEntry> res = filterResult.get();
 					historyToUpdate = res.result;
 					kwds = res.normalizedKeywords;
 				}
 			}
+			if (historyToUpdate == null) {
+				historyToUpdate = history.copyAsList();
+			}
 
 			rebuildHistoryTable(historyToUpdate, kwds);
 			target.add(historyPager, historyTable);
@@ -279,11 +282,4 @@ public class HistoryPanel extends Panel implements AjaxReloadSupport {
 		}
 	}
 
-	private final static class QueryEntryFieldAccessor implements FieldAccessor<QueryEntry> {
-		@Override
-		public String getText(QueryEntry obj) {
-			return obj.query.partLc;
-		}
-	}
-
 }
@@ -16,9 +16,12 @@
  */
 package org.cyclop.web.panels.queryeditor;
 
+import java.util.Optional;
+
 import javax.inject.Inject;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.authroles.authorization.strategies.role.Roles;
 import org.apache.wicket.authroles.authorization.strategies.role.annotations.AuthorizeInstantiation;
@@ -31,12 +34,15 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.util.string.StringValue;
+import org.apache.wicket.util.time.Duration;
+import org.cyclop.common.AppConfig;
 import org.cyclop.model.ContextCqlCompletion;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.UserPreferences;
+import org.cyclop.service.cassandra.QueryHandle;
 import org.cyclop.service.cassandra.QueryService;
-import org.cyclop.service.exporter.CsvQueryResultExporter;
+import org.cyclop.service.exporter.ExportJobManager;
 import org.cyclop.service.um.UserManager;
 import org.cyclop.web.panels.queryeditor.buttons.ButtonsPanel;
 import org.cyclop.web.panels.queryeditor.completionhint.CompletionHintPanel;
@@ -60,14 +66,17 @@ public class QueryEditorPanel extends Panel {
 
 	private CompletionHintPanel cqlCompletionHintPanel;
 
-	private boolean queryRunning = false;
+	/** lost on page serialization - poller will then end with error */
+	private transient QueryHandle runningQuery;
+
+	private WebMarkupContainer queryPoller;
 
 	private CqlQuery lastQuery;
 
 	private QueryResultExport queryResultExport;
 
 	@Inject
-	private CsvQueryResultExporter exporter;
+	private ExportJobManager exportJobManager;
 
 	@Inject
 	private UserManager userManager;
@@ -113,9 +122,13 @@ public class QueryEditorPanel extends Panel {
 		Form<String> editorForm = initForm(queryEditorPanel);
 		initButtons(queryEditorPanel, editorForm);
 
-		queryResultExport = new QueryResultExport(this, exporter);
+		queryResultExport = new QueryResultExport(this, exportJobManager, userManager);
 
 		queryErrorDialog = initQueryErrorDialog();
+
+		queryPoller = new WebMarkupContainer("queryPoller");
+		queryPoller.setOutputMarkupId(true);
+		add(queryPoller);
 	}
 
 	private Form<String> initForm(EditorPanel queryEditorPanel) {
@@ -170,7 +183,9 @@ public class QueryEditorPanel extends Panel {
 		});
 		buttonsPanel.withExportQueryResult(t -> queryResultExport.initiateDownload(t, lastQuery));
 		buttonsPanel.withExecQuery(t -> handleExecQuery(t, editorPanel), editorForm);
+		buttonsPanel.withCancelQuery(t -> handleCancelQuery());
 		buttonsPanel.withAddToFavourites();
+		buttonsPanel.withFetchSize();
 		add(buttonsPanel);
 		return buttonsPanel;
 	}
@@ -178,7 +193,7 @@ public class QueryEditorPanel extends Panel {
 	private void handleExecQuery(AjaxRequestTarget target, EditorPanel editorPanel) {
 		// this cannot happen, because java script disables execute
 		// button - it's DOS prevention
-		if (queryRunning) {
+		if (runningQuery != null) {
 			LOG.warn("Query still running - cannot execute second one");
 			return;
 		}
@@ -186,28 +201,85 @@ public class QueryEditorPanel extends Panel {
 		CqlQuery query = editorPanel.getEditorContent();
 
 		if (query == null) {
+			target.appendJavaScript("queryExecutedResponse()");
+			return;
+		}
+		try {
+			runningQuery = queryService.executeAsync(query, true, userManager.readPreferences().getFetchSize());
+		} catch (Exception e) {
+			showQueryError(e);
+			finishQuery(target, editorPanel);
 			return;
 		}
-		queryRunning = true;
+
+		queryPoller.add(new QueryPollBehavior(editorPanel));
+		target.add(queryPoller);
+	}
+
+	private void handleCancelQuery() {
+		QueryHandle query = runningQuery;
+		if (query != null) {
+			// poller will display cancellation error
+			query.cancel();
+		}
+	}
+
+	/** @return true if query is not running anymore */
+	private boolean pollQuery(EditorPanel editorPanel) {
+		if (runningQuery == null) {
+			showQueryError(new IllegalStateException("Query result is not available anymore"));
+			return true;
+		}
 		try {
-			CqlQueryResult queryResult = queryService.execute(query);
-			lastQuery = query;
-			queryResultModel.setObject(queryResult);
+			Optional<CqlQueryResult> queryResult = runningQuery.poll();
+			if (!queryResult.isPresent()) {
+				return false;
+			}
+			lastQuery = runningQuery.getQuery();
+			queryResultModel.setObject(queryResult.get());
 			queryResultPanel.modelChanged();
 			queryResultPanel.setVisible(true);
 			queryErrorDialog.setVisible(false);
 		} catch (Exception e) {
-			queryErrorDialog.setVisible(true);
-			queryResultPanel.setVisible(false);
-			queryErrorModel.setObject(e.getMessage());
-		} finally {
-			queryRunning = false;
+			showQueryError(e);
 		}
+		return true;
+	}
+
+	private void showQueryError(Exception e) {
+		queryErrorDialog.setVisible(true);
+		queryResultPanel.setVisible(false);
+		queryErrorModel.setObject(e.getMessage());
+	}
+
+	private void finishQuery(AjaxRequestTarget target, EditorPanel editorPanel) {
+		runningQuery = null;
 		editorPanel.resetCompletion();
 
 		target.add(queryErrorDialog);
 		target.add(queryResultPanel);
 		QueryResultPanel.appendQeuryResultJs(target);
+		target.appendJavaScript("queryExecutedResponse()");
+	}
+
+	private final class QueryPollBehavior extends AbstractAjaxTimerBehavior {
+
+		private final EditorPanel editorPanel;
+
+		private QueryPollBehavior(EditorPanel editorPanel) {
+			super(Duration.milliseconds(AppConfig.get().queryEditor.queryPollMillis));
+			this.editorPanel = editorPanel;
+		}
+
+		@Override
+		protected void onTimer(AjaxRequestTarget target) {
+			if (!pollQuery(editorPanel)) {
+				return;
+			}
+			stop(target);
+			queryPoller.remove(this);
+			finishQuery(target, editorPanel);
+		}
 	}
 
 	private final class CompletionChangeHelp implements CompletionChangeListener {
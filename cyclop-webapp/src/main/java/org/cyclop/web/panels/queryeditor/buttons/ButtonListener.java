@@ -28,6 +28,11 @@ public interface ButtonListener extends Serializable {
 		void onClick(AjaxRequestTarget target);
 	}
 
+	@FunctionalInterface
+	interface CancelQuery {
+		void onClick(AjaxRequestTarget target);
+	}
+
 	@FunctionalInterface
 	interface ExportQueryResult {
 		void onClick(AjaxRequestTarget target);
@@ -18,14 +18,19 @@ package org.cyclop.web.panels.queryeditor.buttons;
 
 import javax.inject.Inject;
 
+import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.form.AjaxFormComponentUpdatingBehavior;
 import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
 import org.apache.wicket.ajax.markup.html.form.AjaxButton;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.cyclop.common.AppConfig;
 import org.cyclop.model.UserPreferences;
 import org.cyclop.service.um.UserManager;
 import org.cyclop.web.components.buttons.IconButton;
@@ -80,6 +85,41 @@ public class ButtonsPanel extends Panel {
 		return this;
 	}
 
+	/**
+	 * empty field stands for cassandra.fetchSize from configuration, it's shown as placeholder. Larger values than
+	 * cassandra.fetchSize.max are reduced to it
+	 */
+	public ButtonsPanel withFetchSize() {
+		AppConfig.Cassandra config = AppConfig.get().cassandra;
+		TextField<Integer> fetchSize = new TextField<>("fetchSize", new IModel<Integer>() {
+			@Override
+			public Integer getObject() {
+				int size = userManager.readPreferences().getFetchSize();
+				return size > 0 ? size : null;
+			}
+
+			@Override
+			public void setObject(Integer size) {
+				UserPreferences preferences = userManager.readPreferences();
+				preferences.setFetchSize(size == null ? 0 : Math.max(0, Math.min(config.maxFetchSize, size)));
+				userManager.storePreferences(preferences);
+			}
+
+			@Override
+			public void detach() {
+			}
+		}, Integer.class);
+		fetchSize.add(new AttributeModifier("placeholder", String.valueOf(config.fetchSize)));
+		fetchSize.add(new AttributeModifier("max", String.valueOf(config.maxFetchSize)));
+		fetchSize.add(new AjaxFormComponentUpdatingBehavior("change") {
+			@Override
+			protected void onUpdate(AjaxRequestTarget target) {
+			}
+		});
+		add(fetchSize);
+		return this;
+	}
+
 	public ButtonsPanel withExportQueryResult(final ButtonListener.ExportQueryResult buttonListener) {
 		AjaxFallbackLink<Void> exportQueryResult = new AjaxFallbackLink<Void>("exportQueryResult") {
 			@Override
@@ -96,13 +136,24 @@ public class ButtonsPanel extends Panel {
 			@Override
 			protected void onSubmit(AjaxRequestTarget target, Form<?> form) {
 				buttonListener.onClick(target);
-				target.appendJavaScript("queryExecutedResponse()");
 			}
 		};
 		add(execQuery);
 		return this;
 	}
 
+	/** button is visible only while query is running - see buttons.js */
+	public ButtonsPanel withCancelQuery(final ButtonListener.CancelQuery buttonListener) {
+		AjaxFallbackLink<Void> cancelQuery = new AjaxFallbackLink<Void>("cancelQuery") {
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				buttonListener.onClick(target);
+			}
+		};
+		add(cancelQuery);
+		return this;
+	}
+
 	public ButtonsPanel withAddToFavourites() {
 		AjaxFallbackLink<Void> addToFavourites = new AjaxFallbackLink<Void>("addToFavourites") {
 			@Override
@@ -37,6 +37,7 @@ $(function () {
 		$(".cq-queryResult").hide();
 		$(".cq-queryHint-dialog").hide();
 		$(".cq-ExecuteQueryButton").addClass("disabled");
+		$(".cq-CancelQueryButton").show();
 	});
 
 	// cq-BookmarkButton
@@ -75,4 +76,5 @@ $(function () {
 function queryExecutedResponse() {
 	$(".cq-queryProgressBar").hide();
 	$(".cq-ExecuteQueryButton").removeClass("disabled");
+	$(".cq-CancelQueryButton").hide();
 }
\ No newline at end of file
@@ -23,7 +23,7 @@ import org.apache.wicket.request.resource.ContentDisposition;
 import org.apache.wicket.util.resource.IResourceStream;
 
 /** @author Maciej Miklas */
-abstract class DownloadBehavior extends AbstractAjaxBehavior {
+public abstract class DownloadBehavior extends AbstractAjaxBehavior {
 
 	protected DownloadBehavior() {
 	}
@@ -16,70 +16,195 @@
  */
 package org.cyclop.web.panels.queryeditor.export;
 
-import java.io.IOException;
-import java.io.OutputStream;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Path;
+import java.util.Optional;
 
 import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.ajax.AbstractAjaxTimerBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
-import org.apache.wicket.util.resource.AbstractResourceStreamWriter;
+import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.file.File;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.FileResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Duration;
 import org.cyclop.common.AppConfig;
 import org.cyclop.model.CqlQuery;
-import org.cyclop.service.exporter.CsvQueryResultExporter;
+import org.cyclop.service.exporter.ExportJobManager;
+import org.cyclop.service.exporter.model.ExportJob;
+import org.cyclop.service.um.UserManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** @author Maciej Miklas */
+/**
+ * Export runs in background as {@link ExportJob} - its progress is polled and file gets downloaded once job is done.
+ * Download link remains available until job expires.
+ *
+ * @author Maciej Miklas
+ */
 public class QueryResultExport implements Serializable {
 
 	private final static Logger LOG = LoggerFactory.getLogger(QueryResultExport.class);
 
-	private final static AppConfig.QueryExport conf = AppConfig.get().queryExport;
-
 	private final Downloader downloader;
 
-	private final CsvQueryResultExporter exporter;
+	private final ExportJobManager jobManager;
+
+	private final UserManager userManager;
+
+	private final WebMarkupContainer status;
+
+	/** null before first export */
+	private ExportJob job;
 
-	private CqlQuery query;
+	/** error that occurred before job could be started */
+	private String submitError;
 
-	public QueryResultExport(MarkupContainer parent, CsvQueryResultExporter exporter) {
-		this.exporter = exporter;
+	public QueryResultExport(MarkupContainer parent, ExportJobManager jobManager, UserManager userManager) {
+		this.jobManager = jobManager;
+		this.userManager = userManager;
 		this.downloader = new Downloader();
 		parent.add(downloader);
+
+		status = new WebMarkupContainer("exportStatus");
+		status.setOutputMarkupPlaceholderTag(true);
+		status.setVisible(false);
+		parent.add(status);
+
+		status.add(new Label("exportStatusText", new StatusModel()));
+		status.add(new AjaxFallbackLink<Void>("exportDownload") {
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				downloader.initiateDownload(target);
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(job != null && job.state == ExportJob.State.DONE);
+			}
+		});
+		status.add(new AjaxFallbackLink<Void>("exportCancel") {
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				if (job != null) {
+					jobManager.cancel(job.id, userManager.readIdentifier());
+					refreshJob();
+				}
+				target.add(status);
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(job != null && !job.isFinished());
+			}
+		});
 	}
 
 	public void initiateDownload(AjaxRequestTarget target, CqlQuery query) {
-		downloader.initiateDownload(target);
-		this.query = query;
+		status.getBehaviors(ExportPollBehavior.class).forEach(status::remove);
+		status.setVisible(true);
+		target.add(status);
+		job = null;
+		submitError = null;
+		if (query == null) {
+			submitError = "Execute query before exporting its result";
+			return;
+		}
+
+		try {
+			job = jobManager.submit(query, userManager.readIdentifier());
+		} catch (Exception e) {
+			LOG.debug("Could not start export: {}", e.getMessage());
+			submitError = e.getMessage();
+			return;
+		}
+		status.add(new ExportPollBehavior());
+	}
+
+	private void refreshJob() {
+		if (job == null) {
+			return;
+		}
+		Optional<ExportJob> current = jobManager.find(job.id, userManager.readIdentifier());
+		if (current.isPresent()) {
+			job = current.get();
+		} else {
+			submitError = "Export is not available anymore";
+			job = null;
+		}
+	}
+
+	private final class ExportPollBehavior extends AbstractAjaxTimerBehavior {
+
+		private ExportPollBehavior() {
+			super(Duration.milliseconds(AppConfig.get().queryEditor.queryPollMillis));
+		}
+
+		@Override
+		protected void onTimer(AjaxRequestTarget target) {
+			refreshJob();
+			target.add(status);
+			if (job != null && !job.isFinished()) {
+				return;
+			}
+			stop(target);
+			status.remove(this);
+			if (job != null && job.state == ExportJob.State.DONE) {
+				downloader.initiateDownload(target);
+			}
+		}
+	}
+
+	private final class StatusModel extends AbstractReadOnlyModel<String> {
+
+		@Override
+		public String getObject() {
+			if (job == null) {
+				return submitError;
+			}
+			String size = Bytes.bytes(job.bytes).toString();
+			switch (job.state) {
+			case QUEUED:
+				return "Export is waiting for execution";
+
+			case RUNNING:
+				return "Exporting: " + job.rows + " rows, " + size;
+
+			case DONE:
+				return "Export finished: " + job.rows + " rows, " + size;
+
+			case CANCELLED:
+				return "Export cancelled after " + job.rows + " rows";
+
+			default:
+				return "Export failed after " + job.rows + " rows: " + job.error;
+			}
+		}
 	}
 
 	private final class Downloader extends DownloadBehavior {
 
 		@Override
 		protected String getFileName() {
-			SimpleDateFormat formatter = new SimpleDateFormat(conf.fileNameDate);
-			String fileName = conf.fileName.replace("DATE", formatter.format(new Date()));
-			LOG.debug("CSV export file name: {}", fileName);
-			return fileName;
+			return job == null ? "no_data.csv" : job.fileName;
 		}
 
 		@Override
 		protected IResourceStream getResourceStream() {
-			if (query == null) {
+			Optional<Path> file = job == null ? Optional.empty() : jobManager.findResult(job.id,
+					userManager.readIdentifier());
+			if (!file.isPresent()) {
 				return new StringResourceStream("No Data");
 			}
-
-			return new AbstractResourceStreamWriter() {
-
-				@Override
-				public void write(OutputStream output) throws IOException {
-					exporter.exportAsCsv(query, output);
-				}
-			};
+			LOG.debug("Downloading export: {}", file.get());
+			return new FileResourceStream(new File(file.get().toFile()));
 		}
 	}
 }
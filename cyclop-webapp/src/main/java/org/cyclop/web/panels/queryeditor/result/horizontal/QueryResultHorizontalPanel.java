@@ -18,8 +18,6 @@ package org.cyclop.web.panels.queryeditor.result.horizontal;
 
 import java.util.Optional;
 
-import javax.inject.Inject;
-
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
@@ -28,23 +26,17 @@ import org.apache.wicket.markup.html.list.ListView;
 import org.apache.wicket.markup.html.navigation.paging.IPageableItems;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
+import org.cyclop.model.CqlDisplayRow;
 import org.cyclop.model.CqlExtendedColumnName;
-import org.cyclop.model.CqlPartitionKey;
-import org.cyclop.model.CqlPartitionKeyValue;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.CqlRowMetadata;
-import org.cyclop.service.converter.DataExtractor;
+import org.cyclop.model.CqlValuePath;
 import org.cyclop.web.components.iterablegrid.IterableGridView;
 import org.cyclop.web.panels.queryeditor.result.QueryResultPanel;
 
-import com.datastax.driver.core.Row;
-
 /** @author Maciej Miklas */
 public final class QueryResultHorizontalPanel extends QueryResultPanel {
 
-	@Inject
-	private DataExtractor extractor;
-
 	public QueryResultHorizontalPanel(String id, IModel<CqlQueryResult> model) {
 		super(id, model);
 	}
@@ -77,14 +69,14 @@ public final class QueryResultHorizontalPanel extends QueryResultPanel {
 	protected IPageableItems initRowsList(WebMarkupContainer resultTable, ColumnsModel columnsModel,
 			RowDataProvider rowDataProvider, IModel<CqlRowMetadata> metadataModel) {
 
-		IterableGridView<Row> rowsList = new IterableGridView<Row>("rowsList", rowDataProvider) {
+		IterableGridView<CqlDisplayRow> rowsList = new IterableGridView<CqlDisplayRow>("rowsList", rowDataProvider) {
 
 			@Override
-			protected void populateEmptyItem(Item<Row> item) {
+			protected void populateEmptyItem(Item<CqlDisplayRow> item) {
 			}
 
 			@Override
-			protected void populateItem(Item<Row> item) {
+			protected void populateItem(Item<CqlDisplayRow> item) {
 				populateRowKey(item, metadataModel);
 				populateColumnValues(item, metadataModel, columnsModel);
 			}
@@ -94,19 +86,16 @@ public final class QueryResultHorizontalPanel extends QueryResultPanel {
 		return rowsList;
 	}
 
-	private void populateRowKey(Item<Row> item, IModel<CqlRowMetadata> metadataModel) {
-		Row row = item.getModel().getObject();
+	private void populateRowKey(Item<CqlDisplayRow> item, IModel<CqlRowMetadata> metadataModel) {
+		CqlDisplayRow row = item.getModel().getObject();
 		Component rowKey = createRowKeyColumn("rowKey", row, metadataModel);
 		item.add(rowKey);
 	}
 
-	private void populateColumnValues(Item<Row> item, IModel<CqlRowMetadata> metadataModel, ColumnsModel columnsModel) {
-		CqlPartitionKey partitionKey = metadataModel.getObject().partitionKey;
-		Row row = item.getModel().getObject();
-
-		Optional<CqlPartitionKeyValue> cqlPartitionKeyValue = partitionKey == null ? Optional.empty() : Optional
-				.of(extractor.extractPartitionKey(row, partitionKey));
-		Optional<CqlPartitionKey> partitionKeyOpt = Optional.ofNullable(partitionKey);
+	private void populateColumnValues(Item<CqlDisplayRow> item, IModel<CqlRowMetadata> metadataModel,
+			ColumnsModel columnsModel) {
+		CqlDisplayRow row = item.getModel().getObject();
+		Optional<String> partitionKeyValue = Optional.ofNullable(row.partitionKeyValue);
 
 		ListView<CqlExtendedColumnName> columnValueList = new ListView<CqlExtendedColumnName>("columnValueList",
 				columnsModel) {
@@ -115,10 +104,11 @@ public final class QueryResultHorizontalPanel extends QueryResultPanel {
 			protected void populateItem(ListItem<CqlExtendedColumnName> item) {
 				CqlExtendedColumnName column = item.getModelObject();
 
-				Component component = widgetFactory.createColumnValue(row, partitionKeyOpt, column, "columnValue");
+				Component component = widgetFactory.createColumnValue(row.get(item.getIndex()), partitionKeyValue,
+						column, CqlValuePath.column(row.index, item.getIndex()), valueLoader(), "columnValue");
 				item.add(component);
 				component.setRenderBodyOnly(true);
-				widgetFactory.addColumnTitle(item, cqlPartitionKeyValue, column);
+				widgetFactory.addColumnTitle(item, partitionKeyValue, column);
 			}
 		};
 		item.add(columnValueList);
@@ -21,8 +21,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
-import javax.inject.Inject;
-
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
@@ -32,24 +30,18 @@ import org.apache.wicket.markup.html.navigation.paging.IPageableItems;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.cyclop.model.CqlDisplayRow;
 import org.cyclop.model.CqlExtendedColumnName;
-import org.cyclop.model.CqlPartitionKey;
-import org.cyclop.model.CqlPartitionKeyValue;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.CqlRowMetadata;
-import org.cyclop.service.converter.DataExtractor;
+import org.cyclop.model.CqlValuePath;
 import org.cyclop.web.components.iterablegrid.IterableGridView;
 import org.cyclop.web.panels.queryeditor.result.QueryResultPanel;
 
-import com.datastax.driver.core.Row;
-
 /** @author Maciej Miklas */
 public final class QueryResultVerticalPanel extends QueryResultPanel {
 
-	protected final IModel<List<? extends Row>> rowsModel;
-
-	@Inject
-	private DataExtractor extractor;
+	protected final IModel<List<? extends CqlDisplayRow>> rowsModel;
 
 	public QueryResultVerticalPanel(String id, IModel<CqlQueryResult> model, Optional<RowDataProvider> rowDataProvider) {
 		super(id, model, rowDataProvider);
@@ -79,8 +71,9 @@ public final class QueryResultVerticalPanel extends QueryResultPanel {
 	protected IPageableItems initRowNamesList(WebMarkupContainer resultTable, IModel<CqlRowMetadata> metadataModel,
 			RowDataProvider rowDataProvider) {
 
-		final List<Row> displayedRows = new ArrayList<>();
-		IterableGridView<Row> rowNamesList = new IterableGridView<Row>("rowNamesList", rowDataProvider) {
+		final List<CqlDisplayRow> displayedRows = new ArrayList<>();
+		IterableGridView<CqlDisplayRow> rowNamesList = new IterableGridView<CqlDisplayRow>("rowNamesList",
+				rowDataProvider) {
 
 			@Override
 			protected void onBeforeRender() {
@@ -89,13 +82,13 @@ public final class QueryResultVerticalPanel extends QueryResultPanel {
 			}
 
 			@Override
-			protected void populateEmptyItem(Item<Row> item) {
+			protected void populateEmptyItem(Item<CqlDisplayRow> item) {
 				item.add(new Label("rowName", EMPTYVAL));
 			}
 
 			@Override
-			protected void populateItem(Item<Row> item) {
-				Row row = item.getModel().getObject();
+			protected void populateItem(Item<CqlDisplayRow> item) {
+				CqlDisplayRow row = item.getModel().getObject();
 				displayedRows.add(row);
 				Component component = createRowKeyColumn("rowName", row, metadataModel);
 				item.add(component);
@@ -121,25 +114,20 @@ public final class QueryResultVerticalPanel extends QueryResultPanel {
 				Label columnNameLabel = new Label("columnName", columnName.part);
 				columnListRow.add(columnNameLabel);
 
-				ColumnsModel model = (ColumnsModel) getModel();
-				CqlRowMetadata result = model.getResult();
-				final Optional<CqlPartitionKey> partitionKey = Optional.ofNullable(result == null ? null : result
-						.partitionKey);
+				final int columnIndex = item.getIndex();
 
-				ListView<Row> columnValueList = new ListView<Row>("columnValueList", rowsModel) {
+				ListView<CqlDisplayRow> columnValueList = new ListView<CqlDisplayRow>("columnValueList", rowsModel) {
 
 					@Override
-					protected void populateItem(ListItem<Row> item) {
-						Row row = item.getModelObject();
+					protected void populateItem(ListItem<CqlDisplayRow> item) {
+						CqlDisplayRow row = item.getModelObject();
+						Optional<String> partitionKeyValue = Optional.ofNullable(row.partitionKeyValue);
 
-						Component component = widgetFactory.createColumnValue(row, partitionKey, columnName,
-								"columnValue");
+						Component component = widgetFactory.createColumnValue(row.get(columnIndex), partitionKeyValue,
+								columnName, CqlValuePath.column(row.index, columnIndex), valueLoader(), "columnValue");
 						item.add(component);
 						component.setRenderBodyOnly(true);
-
-						Optional<CqlPartitionKeyValue> cqlPartitionKeyValue = partitionKey.isPresent() ? Optional
-								.of(extractor.extractPartitionKey(row, partitionKey.get())) : Optional.empty();
-						widgetFactory.addColumnTitle(item, cqlPartitionKeyValue, columnName);
+						widgetFactory.addColumnTitle(item, partitionKeyValue, columnName);
 
 					}
 				};
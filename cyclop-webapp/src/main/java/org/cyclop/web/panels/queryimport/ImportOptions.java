@@ -28,12 +28,29 @@ public final class ImportOptions implements Serializable {
 
 	private boolean parallel = false;
 
+	/** null for no limit */
+	private Integer statementsPerSecond;
+
+	/** null for no limit */
+	private Integer kbPerSecond;
+
+	private boolean adaptiveThrottle = false;
+
+	private boolean resume = false;
+
+	private boolean prepareStatements = false;
+
+	private boolean partitionBatches = false;
+
 	private String scriptFile;
 
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("includeInHistory", includeInHistory)
-				.add("continueWithErrors", continueWithErrors).add("parallel", parallel).add("scriptFile", scriptFile)
+				.add("continueWithErrors", continueWithErrors).add("parallel", parallel).add("statementsPerSecond", statementsPerSecond)
+				.add("kbPerSecond", kbPerSecond).add("adaptiveThrottle", adaptiveThrottle).add("resume", resume)
+				.add("prepareStatements", prepareStatements)
+				.add("partitionBatches", partitionBatches).add("scriptFile", scriptFile)
 				.toString();
 	}
 
@@ -45,6 +62,54 @@ public final class ImportOptions implements Serializable {
 		this.parallel = parallel;
 	}
 
+	public Integer getStatementsPerSecond() {
+		return statementsPerSecond;
+	}
+
+	public void setStatementsPerSecond(Integer statementsPerSecond) {
+		this.statementsPerSecond = statementsPerSecond;
+	}
+
+	public Integer getKbPerSecond() {
+		return kbPerSecond;
+	}
+
+	public void setKbPerSecond(Integer kbPerSecond) {
+		this.kbPerSecond = kbPerSecond;
+	}
+
+	public boolean isAdaptiveThrottle() {
+		return adaptiveThrottle;
+	}
+
+	public void setAdaptiveThrottle(boolean adaptiveThrottle) {
+		this.adaptiveThrottle = adaptiveThrottle;
+	}
+
+	public boolean isResume() {
+		return resume;
+	}
+
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	public boolean isPrepareStatements() {
+		return prepareStatements;
+	}
+
+	public void setPrepareStatements(boolean prepareStatements) {
+		this.prepareStatements = prepareStatements;
+	}
+
+	public boolean isPartitionBatches() {
+		return partitionBatches;
+	}
+
+	public void setPartitionBatches(boolean partitionBatches) {
+		this.partitionBatches = partitionBatches;
+	}
+
 	public boolean isIncludeInHistory() {
 		return includeInHistory;
 	}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.panels.queryimport;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.authroles.authentication.AuthenticatedWebSession;
+import org.apache.wicket.injection.Injector;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.cyclop.service.converter.JsonMarshaller;
+import org.cyclop.service.importer.ImportProgressService;
+import org.cyclop.service.importer.model.ImportProgress;
+
+/**
+ * Returns progress of running import as JSON. It's a shared resource and not an ajax behavior, because page is locked
+ * by import request until it's done.
+ *
+ * @author Maciej Miklas
+ */
+public class ImportProgressResource extends AbstractResource {
+
+	public final static String PATH = "/importProgress";
+
+	public final static String PARAM_ID = "id";
+
+	public final static ResourceReference REFERENCE = new ResourceReference(ImportProgressResource.class,
+			"importProgress") {
+		@Override
+		public IResource getResource() {
+			return new ImportProgressResource();
+		}
+	};
+
+	@Inject
+	private ImportProgressService progressService;
+
+	@Inject
+	private JsonMarshaller marshaller;
+
+	public ImportProgressResource() {
+		Injector.get().inject(this);
+	}
+
+	@Override
+	protected ResourceResponse newResourceResponse(Attributes attributes) {
+		ResourceResponse response = new ResourceResponse();
+		response.disableCaching();
+		if (!AuthenticatedWebSession.get().isSignedIn()) {
+			response.setError(HttpServletResponse.SC_FORBIDDEN);
+			return response;
+		}
+		response.setContentType("application/json");
+		response.setTextEncoding("UTF-8");
+
+		String progressId = attributes.getParameters().get(PARAM_ID).toOptionalString();
+		Optional<ImportProgress> progress = progressId == null ? Optional.empty() : progressService
+				.getProgress(progressId);
+
+		// empty object means that import is not running
+		final String json = progress.isPresent() ? marshaller.marshal(progress.get()) : "{}";
+		response.setWriteCallback(new WriteCallback() {
+			@Override
+			public void writeData(Attributes attributes) {
+				attributes.getResponse().write(json);
+			}
+		});
+		return response;
+	}
+}
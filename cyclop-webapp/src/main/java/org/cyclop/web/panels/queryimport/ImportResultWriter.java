@@ -16,46 +16,251 @@
  */
 package org.cyclop.web.panels.queryimport;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.GZIPOutputStream;
 
 import net.jcip.annotations.ThreadSafe;
 
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.exception.QueryException;
 import org.cyclop.service.importer.ResultWriter;
+import org.cyclop.service.importer.model.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 
-/** @author Maciej Miklas */
+/**
+ * Keeps counters, latency histogram, errors and random sample of successful queries in memory. Result of each query
+ * is streamed into compressed log file.
+ * <p>
+ * Results are reported by driver IO threads, so they only queue log lines - compression and disk IO run in writer
+ * thread owned by this instance. Reporting thread never waits for the writer, lines that do not fit into full queue
+ * are dropped and their amount is noted at the end of the log.
+ *
+ * @author Maciej Miklas
+ */
 @ThreadSafe
-final class ImportResultWriter implements ResultWriter {
+final class ImportResultWriter implements ResultWriter, Closeable {
 
 	private final static Logger LOG = LoggerFactory.getLogger(QueryImportPanel.class);
 
-	private final ImmutableList.Builder<ImportResult> resultBuild = ImmutableList.builder();
+	/** marks end of log in {@link #logQueue} */
+	private final static String END = new String();
+
+	private final static int LOG_QUEUE_SIZE = 10000;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLong successCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private final int maxErrors;
+
+	private final AtomicInteger errorsKept = new AtomicInteger();
+
+	private final Queue<ImportResult> errors = new ConcurrentLinkedQueue<>();
+
+	/** reservoir sample of successful queries */
+	private final AtomicReferenceArray<ImportResult> successSample;
+
+	private final Path logFile;
 
-	public synchronized ImmutableList<ImportResult> getResult() {
-		return resultBuild.build();
+	/** log lines waiting for {@link #logWriter} */
+	private final BlockingQueue<String> logQueue = new LinkedBlockingQueue<>(LOG_QUEUE_SIZE);
+
+	/** lines not logged because disk could not keep up with import */
+	private final AtomicLong droppedLogLines = new AtomicLong();
+
+	private final Thread logWriter;
+
+	/** null if log cannot be written - accessed only by {@link #logWriter} */
+	private Writer log;
+
+	public ImportResultWriter(Path logFile, int maxErrors, int successSample) {
+		this.logFile = logFile;
+		this.maxErrors = maxErrors;
+		this.successSample = new AtomicReferenceArray<>(successSample);
+		try {
+			log = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(logFile)),
+					StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			LOG.warn("Cannot create import log: {} - {}", logFile, e.getMessage());
+		}
+		logWriter = new Thread(this::writeLog, "cyclop-import-log");
+		logWriter.setDaemon(true);
+		logWriter.start();
+	}
+
+	/** @return errors and sample of successful queries */
+	public ImmutableList<ImportResult> getResult() {
+		ImmutableList.Builder<ImportResult> builder = ImmutableList.builder();
+		builder.addAll(errors);
+		for (int idx = 0; idx < successSample.length(); idx++) {
+			ImportResult res = successSample.get(idx);
+			if (res != null) {
+				builder.add(res);
+			}
+		}
+		return builder.build();
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getSuccessCount() {
+		return successCount.get();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/** @return file containing result of each query, available after {@link #close()} */
+	public Path getLogFile() {
+		return logFile;
+	}
+
+	/** @return amount of query results missing in {@link #getLogFile()} */
+	public long getDroppedLogLines() {
+		return droppedLogLines.get();
 	}
 
 	@Override
-	public synchronized void success(CqlQuery query, long runtime) {
-		resultBuild.add(new ImportResult(query, runtime));
+	public void success(CqlQuery query, long runtime) {
+		long seen = successCount.getAndIncrement();
+		latency.add(runtime);
+		sample(new ImportResult(query, runtime), seen);
+		log(runtime, "OK", query, null);
 	}
 
 	@Override
-	public synchronized void error(CqlQuery query, QueryException error, long runtime) {
-		resultBuild.add(new ImportResult(query, error.getMessage(), runtime));
+	public void error(CqlQuery query, QueryException error, long runtime) {
+		errorCount.getAndIncrement();
+		latency.add(runtime);
+		keepError(new ImportResult(query, error.getMessage(), runtime));
+		log(runtime, "ERROR", query, error.getMessage());
 	}
 
 	@Override
-	public synchronized void unknownError(CqlQuery query, Exception ex, long runtime) {
+	public void unknownError(CqlQuery query, Exception ex, long runtime) {
 		String errorRef = UUID.randomUUID().toString();
 		String errorMsg = "Unhandled exception, Error ID: " + errorRef;
 		LOG.error(errorMsg, ex);
-		resultBuild.add(new ImportResult(query, errorMsg, runtime));
+		errorCount.getAndIncrement();
+		latency.add(runtime);
+		keepError(new ImportResult(query, errorMsg, runtime));
+		log(runtime, "ERROR", query, errorMsg);
+	}
+
+	private void keepError(ImportResult result) {
+		if (errorsKept.getAndIncrement() < maxErrors) {
+			errors.add(result);
+		}
+	}
+
+	private void sample(ImportResult result, long seen) {
+		int size = successSample.length();
+		if (seen < size) {
+			successSample.set((int) seen, result);
+			return;
+		}
+		long replace = ThreadLocalRandom.current().nextLong(seen + 1);
+		if (replace < size) {
+			successSample.set((int) replace, result);
+		}
+	}
+
+	private void log(long runtime, String status, CqlQuery query, String error) {
+		StringBuilder line = new StringBuilder();
+		line.append(runtime).append('\t').append(status).append('\t').append(singleLine(query.part));
+		if (error != null) {
+			line.append('\t').append(singleLine(error));
+		}
+		line.append('\n');
+		if (!logQueue.offer(line.toString())) {
+			droppedLogLines.getAndIncrement();
+		}
 	}
 
+	/** runs in {@link #logWriter} until {@link #END} */
+	private void writeLog() {
+		try {
+			String line;
+			while ((line = logQueue.take()) != END) {
+				write(line);
+			}
+			long dropped = droppedLogLines.get();
+			if (dropped > 0) {
+				LOG.warn("Import log {} is missing {} results - disk could not keep up with import", logFile, dropped);
+				write("# " + dropped + " results have not been logged\n");
+			}
+		} catch (InterruptedException e) {
+			LOG.warn("Import log writer interrupted: {}", logFile);
+		} finally {
+			closeLog();
+		}
+	}
+
+	private void write(String line) {
+		if (log == null) {
+			return;
+		}
+		try {
+			log.write(line);
+		} catch (IOException e) {
+			LOG.warn("Cannot write import log: {} - {}", logFile, e.getMessage());
+			closeLog();
+		}
+	}
+
+	private static String singleLine(String str) {
+		return str.replace('\n', ' ').replace('\r', ' ').replace('\t', ' ');
+	}
+
+	private void closeLog() {
+		if (log == null) {
+			return;
+		}
+		try {
+			log.close();
+		} catch (IOException e) {
+			LOG.warn("Cannot close import log: {} - {}", logFile, e.getMessage());
+		}
+		log = null;
+	}
+
+	/** waits until all queued lines are written */
+	@Override
+	public void close() {
+		if (!logWriter.isAlive()) {
+			return;
+		}
+		try {
+			logQueue.put(END);
+			logWriter.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logWriter.interrupt();
+			LOG.warn("Interrupted while closing import log: {}", logFile);
+		}
+	}
 }
@@ -16,21 +16,29 @@
  */
 package org.cyclop.web.panels.queryimport;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.UUID;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
 import org.apache.wicket.ajax.markup.html.form.AjaxButton;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.form.upload.FileUpload;
 import org.apache.wicket.markup.html.form.upload.FileUploadField;
 import org.apache.wicket.markup.html.list.ListItem;
@@ -38,21 +46,32 @@ import org.apache.wicket.markup.html.list.PageableListView;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.CompoundPropertyModel;
 import org.apache.wicket.protocol.http.WebSession;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.JavaScriptResourceReference;
+import org.apache.wicket.util.file.File;
 import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
 import org.cyclop.common.AppConfig;
 import org.cyclop.model.UserPreferences;
+import org.cyclop.model.exception.ServiceException;
 import org.cyclop.service.importer.QueryImporter;
 import org.cyclop.service.importer.model.ImportConfig;
 import org.cyclop.service.importer.model.ImportStats;
+import org.cyclop.service.importer.model.LatencyHistogram;
 import org.cyclop.service.um.UserManager;
 import org.cyclop.web.common.ImmutableListModel;
 import org.cyclop.web.common.JsFunctionBuilder;
 import org.cyclop.web.components.pagination.BootstrapPagingNavigator;
 import org.cyclop.web.components.pagination.PagerConfigurator;
+import org.cyclop.web.panels.queryeditor.export.DownloadBehavior;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+
 /** @author Maciej Miklas */
 public class QueryImportPanel extends Panel {
 
@@ -67,6 +86,12 @@ public class QueryImportPanel extends Panel {
 
 	private WebMarkupContainer importResultContainer;
 
+	/** result of each query executed by last import */
+	private File resultLog;
+
+	/** identifies imports started by this panel in {@link ImportProgressResource} */
+	private final String progressId = UUID.randomUUID().toString();
+
 	@Inject
 	@Named(QueryImporter.IMPL_SERIAL)
 	private QueryImporter serialImporter;
@@ -75,6 +100,10 @@ public class QueryImportPanel extends Panel {
 	@Named(QueryImporter.IMPL_PARALLEL)
 	private QueryImporter parallelImporter;
 
+	@Inject
+	@Named(QueryImporter.IMPL_ASYNC)
+	private QueryImporter asyncImporter;
+
 	@Inject
 	private UserManager um;
 
@@ -113,30 +142,88 @@ public class QueryImportPanel extends Panel {
 		return importOptions;
 	}
 
-	private String createStatsMessage(ImportStats stats) {
+	/**
+	 * log of previous import gets overwritten - file is created once for the panel, so that it's registered for
+	 * deletion on exit only once
+	 */
+	private Path createResultLog() {
+		if (resultLog != null && resultLog.exists()) {
+			return resultLog.toPath();
+		}
+		try {
+			Path folder = Paths.get(conf.queryImport.resultFolder);
+			resultLog = new File(Files.createTempFile(folder, "cyclop-import-", ".log.gz").toFile());
+			resultLog.deleteOnExit();
+			return resultLog.toPath();
+		} catch (IOException e) {
+			throw new ServiceException("Error creating import log: " + e.getMessage(), e);
+		}
+	}
+
+	private void deleteResultLog() {
+		if (resultLog != null && resultLog.exists() && !resultLog.delete()) {
+			LOG.warn("Cannot delete import log: {}", resultLog);
+		}
+		resultLog = null;
+	}
+
+	@Override
+	protected void onRemove() {
+		deleteResultLog();
+		super.onRemove();
+	}
+
+	private String createStatsMessage(ImportStats stats, ImportResultWriter result) {
 		StringBuilder buf = new StringBuilder();
 		DecimalFormat nf = NUMBER_FORMAT.get();
+		if (stats.skippedCount > 0) {
+			buf.append("Skipped ").append(nf.format(stats.skippedCount)).append(" queries applied by previous import. ");
+		}
 		buf.append("Executed ").append(nf.format(stats.errorCount + stats.successCount)).append(" queries in ")
 				.append(stats.runtime.toString()).append(", ").append(nf.format(stats.successCount))
-				.append(" were succesfull, ").append(nf.format(stats.errorCount)).append(" failed");
+				.append(" were succesfull, ").append(nf.format(stats.errorCount)).append(" failed, ")
+				.append(nf.format(stats.getRate())).append(" queries/s");
+		if (stats.throttleRate > 0) {
+			buf.append(" (throttled to ").append(nf.format(stats.throttleRate)).append(" queries/s)");
+		}
+		if (stats.preparedCount > 0) {
+			buf.append(", ").append(nf.format(stats.preparedCount)).append(" as prepared statements");
+		}
+		if (stats.batchCount > 0) {
+			buf.append(", ").append(nf.format(stats.batchCount)).append(" unlogged batches");
+		}
+		LatencyHistogram latency = result.getLatency();
+		buf.append(", latency p50: ").append(latency.getPercentile(50)).append(" ms, p99: ")
+				.append(latency.getPercentile(99)).append(" ms");
+		if (result.getDroppedLogLines() > 0) {
+			buf.append(", ").append(nf.format(result.getDroppedLogLines())).append(" results missing in log file");
+		}
 		String resp = buf.toString();
 		LOG.info(resp);
 		return resp;
 	}
 
 	private void executeImport(AjaxRequestTarget target, ImportOptions importOptions, FileUpload upload) {
-		byte[] fileContentBytes = upload.getBytes();
-		LOG.debug("Importing file of {} bytes", fileContentBytes.length);
-
-		ImportResultWriter result = new ImportResultWriter();
+		LOG.debug("Importing file of {} bytes", upload.getSize());
 
 		ImportConfig config = createImportConfig(importOptions);
-		ImportStats stats = getImporter(importOptions).importScript(new ByteArrayInputStream(fileContentBytes), result,
-				config);
+		config.withCheckpoint(um.readIdentifier(), hash(upload));
+		config.withProgress(progressId, upload.getSize());
+
+		ImportStats stats;
+		ImportResultWriter result = new ImportResultWriter(createResultLog(), conf.queryImport.resultMaxErrors,
+				conf.queryImport.resultSuccessSample);
+		try (InputStream input = upload.getInputStream()) {
+			stats = getImporter(importOptions).importScript(input, result, config);
+		} catch (IOException e) {
+			throw new ServiceException("Error reading import script: " + e.getMessage(), e);
+		} finally {
+			result.close();
+		}
 
 		resultModel.setObject(result.getResult());
 
-		String resp = createStatsMessage(stats);
+		String resp = createStatsMessage(stats, result);
 		sendJsResponse(target, resp);
 		importResultContainer.setVisible(true);
 		target.add(importResultContainer);
@@ -144,15 +231,44 @@ public class QueryImportPanel extends Panel {
 		updatePreferences(importOptions);
 	}
 
+	/** identifies script for import checkpoints */
+	private String hash(final FileUpload upload) {
+		ByteSource script = new ByteSource() {
+			@Override
+			public InputStream openStream() throws IOException {
+				return upload.getInputStream();
+			}
+		};
+		try {
+			return script.hash(Hashing.sha256()).toString();
+		} catch (IOException e) {
+			throw new ServiceException("Error reading import script: " + e.getMessage(), e);
+		}
+	}
+
 	private ImportConfig createImportConfig(ImportOptions importOptions) {
 		ImportConfig config = new ImportConfig();
 		config.withContinueWithErrors(importOptions.isContinueWithErrors()).withUpdateHistory(
 				importOptions.isContinueWithErrors());
+		// values below one mean no limit
+		if (importOptions.getStatementsPerSecond() != null && importOptions.getStatementsPerSecond() > 0) {
+			config.withStatementsPerSecond(importOptions.getStatementsPerSecond());
+		}
+		if (importOptions.getKbPerSecond() != null && importOptions.getKbPerSecond() > 0) {
+			config.withBytesPerSecond(importOptions.getKbPerSecond() * 1024L);
+		}
+		config.withAdaptiveThrottle(importOptions.isAdaptiveThrottle());
+		config.withResume(importOptions.isResume());
+		config.withPrepareStatements(importOptions.isPrepareStatements());
+		config.withPartitionBatches(importOptions.isPartitionBatches());
 		return config;
 	}
 
 	private QueryImporter getImporter(ImportOptions importOptions) {
-		return importOptions.isParallel() ? parallelImporter : serialImporter;
+		if (!importOptions.isParallel()) {
+			return serialImporter;
+		}
+		return conf.queryImport.async ? asyncImporter : parallelImporter;
 
 	}
 
@@ -192,6 +308,30 @@ public class QueryImportPanel extends Panel {
 		historyContainer.setOutputMarkupPlaceholderTag(true);
 		historyContainer.setVisible(false);
 		add(historyContainer);
+
+		final DownloadBehavior logDownloader = new DownloadBehavior() {
+			@Override
+			protected String getFileName() {
+				return "cyclop-import.log.gz";
+			}
+
+			@Override
+			protected IResourceStream getResourceStream() {
+				if (resultLog == null || !resultLog.exists()) {
+					return new StringResourceStream("No Data");
+				}
+				return new FileResourceStream(resultLog);
+			}
+		};
+		historyContainer.add(logDownloader);
+		historyContainer.add(new AjaxFallbackLink<Void>("downloadLog") {
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				if (target != null) {
+					logDownloader.initiateDownload(target);
+				}
+			}
+		});
 		return historyContainer;
 	}
 
@@ -239,6 +379,24 @@ public class QueryImportPanel extends Panel {
 
 		CheckBox parallel = new CheckBox("parallel");
 		form.add(parallel);
+
+		TextField<Integer> statementsPerSecond = new TextField<>("statementsPerSecond", Integer.class);
+		form.add(statementsPerSecond);
+
+		TextField<Integer> kbPerSecond = new TextField<>("kbPerSecond", Integer.class);
+		form.add(kbPerSecond);
+
+		CheckBox adaptiveThrottle = new CheckBox("adaptiveThrottle");
+		form.add(adaptiveThrottle);
+
+		CheckBox resume = new CheckBox("resume");
+		form.add(resume);
+
+		CheckBox prepareStatements = new CheckBox("prepareStatements");
+		form.add(prepareStatements);
+
+		CheckBox partitionBatches = new CheckBox("partitionBatches");
+		form.add(partitionBatches);
 	}
 
 	private void populateQuery(ListItem<ImportResult> item, ImportResult entry) {
@@ -266,6 +424,11 @@ public class QueryImportPanel extends Panel {
 	public void renderHead(IHeaderResponse response) {
 		super.renderHead(response);
 		response.render(JavaScriptReferenceHeaderItem.forReference(JS_IMPORT));
+
+		String progressUrl = urlFor(ImportProgressResource.REFERENCE,
+				new PageParameters().add(ImportProgressResource.PARAM_ID, progressId)).toString();
+		String js = JsFunctionBuilder.function("initQueryImportProgress").param(progressUrl).build();
+		response.render(OnDomReadyHeaderItem.forScript(js));
 	}
 
 	private void sendJsResponse(AjaxRequestTarget target, String response) {
@@ -15,6 +15,12 @@
  * limitations under the License.
  */
 var scriptFileName = null;
+var importProgressUrl = null;
+var importProgressTimer = null;
+
+function initQueryImportProgress(url) {
+	importProgressUrl = url;
+}
 
 $(function () {
 	$(".cq-import-btnImport").click(function () {
@@ -24,12 +30,50 @@ $(function () {
 		else {
 			$(".cq-queryImportProgressBar").show();
 			$(".cq-import-btnImport").addClass("disabled");
+			startImportProgress();
 		}
 	});
 
 });
 
+function startImportProgress() {
+	stopImportProgress();
+	$(".cq-queryImportProgress").css("width", "100%");
+	$(".cq-queryImportProgressText").text("");
+	if (!importProgressUrl) {
+		return;
+	}
+	importProgressTimer = setInterval(function () {
+		$.getJSON(importProgressUrl, showImportProgress);
+	}, 1000);
+}
+
+function stopImportProgress() {
+	if (importProgressTimer) {
+		clearInterval(importProgressTimer);
+		importProgressTimer = null;
+	}
+}
+
+function showImportProgress(progress) {
+	if (!importProgressTimer || progress.executed === undefined) {
+		return;
+	}
+	if (progress.percentRead >= 0) {
+		$(".cq-queryImportProgress").css("width", progress.percentRead + "%");
+	}
+	var rate = progress.currentRate >= 0 ? progress.currentRate : progress.averageRate;
+	var text = "Executed " + progress.executed + " of " + progress.parsed + " parsed queries, " + progress.failed
+		+ " failed, " + Math.round(rate) + " queries/s (average " + Math.round(progress.averageRate)
+		+ "), latency p50: " + progress.latencyP50 + " ms, p99: " + progress.latencyP99 + " ms";
+	if (progress.etaSeconds >= 0) {
+		text += ", remaining: " + progress.etaSeconds + " s";
+	}
+	$(".cq-queryImportProgressText").text(text);
+}
+
 function onQueryImportResponse(response) {
+	stopImportProgress();
 	$(".cq-queryImportProgressBar").hide();
 	$(".cq-import-btnImport").removeClass("disabled");
 	if (streq(response, "FILE_SIZE_LIMIT")) {
@@ -32,6 +32,7 @@ import org.cyclop.common.AppConfig;
 import org.cyclop.web.pages.authenticate.AuthenticationPage;
 import org.cyclop.web.pages.error.ErrorPage;
 import org.cyclop.web.pages.main.MainPage;
+import org.cyclop.web.panels.queryimport.ImportProgressResource;
 
 /** @author Maciej Miklas */
 public class WicketWebApplication extends AuthenticatedWebApplication {
@@ -90,6 +91,7 @@ public class WicketWebApplication extends AuthenticatedWebApplication {
 
 	private void setupBookmarks() {
 		mountPage("/ced", MainPage.class);
+		mountResource(ImportProgressResource.PATH, ImportProgressResource.REFERENCE);
 	}
 
 	private void setupSecurity() {
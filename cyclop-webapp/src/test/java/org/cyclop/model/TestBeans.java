@@ -36,6 +36,7 @@ import org.junit.Test;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.DataType.Name;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.common.testing.EqualsTester;
 
 public class TestBeans extends AbstractTestCase {
@@ -75,6 +76,15 @@ public class TestBeans extends AbstractTestCase {
 		execSerializeEquals(obj, CqlColumnValue.class);
 	}
 
+	@Test
+	public void testSerialize_CqlDisplayRow() throws Exception {
+		CqlDisplayValue single = CqlDisplayValue.single("abc.....", "abcdefghijklmnopqrstuvwxyz");
+		CqlDisplayRow obj = new CqlDisplayRow(12, ImmutableList.of(single, CqlDisplayValue.EMPTY,
+				CqlDisplayValue.collection(ImmutableList.of(single)), CqlDisplayValue.map(ImmutableList.of(Maps
+						.immutableEntry(single, CqlDisplayValue.single("1", null))))), "key");
+		execSerializeEquals(obj, CqlDisplayRow.class);
+	}
+
 	@Test
 	public void testSerialize_CqlExtendedColumnName() throws Exception {
 		CqlExtendedColumnName obj = new CqlExtendedColumnName(CqlColumnType.REGULAR, CqlDataType.TEXT, "testcol");
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlKeySpace;
+import org.cyclop.service.cassandra.intern.ClusterRegistry;
+import org.cyclop.service.cassandra.intern.SharedCluster;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.datastax.driver.core.Session;
+
+/** @author Maciej Miklas */
+public class TestClusterRegistry extends AbstractTestCase {
+
+	@Inject
+	private ClusterRegistry registry;
+
+	@Test
+	public void testAcquire_SameCredentials() {
+		int size = registry.size();
+		SharedCluster cluster = registry.acquire("test", "test1234");
+		try {
+			assertEquals(size, registry.size());
+			assertSame(cassandraSession.getSession(), cluster.getSession(Optional.empty()));
+		} finally {
+			registry.release(cluster);
+		}
+		assertEquals(size, registry.size());
+		assertTrue(cassandraSession.isOpen());
+		cassandraSession.getSession().execute("select * from system.local");
+	}
+
+	@Test
+	public void testAcquire_OtherCredentials() {
+		int size = registry.size();
+		SharedCluster cluster = registry.acquire("other-user", "other-pass");
+		try {
+			assertEquals(size + 1, registry.size());
+			assertNotSame(cassandraSession.getSession(), cluster.getSession(Optional.empty()));
+		} finally {
+			registry.release(cluster);
+		}
+		assertEquals(size, registry.size());
+	}
+
+	@Test
+	public void testGetSession_KeySpace() {
+		int size = registry.size();
+		SharedCluster cluster = registry.acquire("keyspace-user", "keyspace-pass");
+		Session session;
+		try {
+			session = cluster.getSession(Optional.of(new CqlKeySpace("CqlDemo")));
+			assertEquals("cqldemo", session.getLoggedKeyspace());
+			assertSame(session, cluster.getSession(Optional.of(new CqlKeySpace(" cqldemo"))));
+			assertNotSame(session, cluster.getSession(Optional.empty()));
+		} finally {
+			registry.release(cluster);
+		}
+		assertEquals(size, registry.size());
+		assertTrue(session.isClosed());
+	}
+}
@@ -21,10 +21,19 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -42,6 +51,8 @@ import org.cyclop.model.CqlTable;
 import org.cyclop.model.QueryHistory;
 import org.cyclop.model.exception.BeanValidationException;
 import org.cyclop.model.exception.QueryException;
+import org.cyclop.service.cassandra.intern.SchemaMetadataCache;
+import org.cyclop.service.cassandra.intern.SchemaMetadataCache.Type;
 import org.cyclop.service.queryprotocoling.HistoryService;
 import org.cyclop.test.AbstractTestCase;
 import org.cyclop.test.ValidationHelper;
@@ -50,6 +61,7 @@ import org.junit.Test;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.Row;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /** @author Maciej Miklas */
 public class TestQueryService extends AbstractTestCase {
@@ -63,6 +75,9 @@ public class TestQueryService extends AbstractTestCase {
 	@Inject
 	private ValidationHelper vh;
 
+	@Inject
+	private SchemaMetadataCache schemaCache;
+
 	@Test
 	public void testFindColumnNames_TableDoesNotExist() {
 		ImmutableSortedSet<CqlColumnName> col = qs.findColumnNames(Optional.of(new CqlTable("not-existing")));
@@ -334,4 +349,176 @@ public class TestQueryService extends AbstractTestCase {
 		assertTrue(qs.checkTableExists(new CqlTable("mybooks")));
 		assertTrue(qs.checkTableExists(new CqlTable("asd", "mybooks")));
 	}
+
+	@Test
+	public void testSchemaCache_Hit() {
+		AtomicInteger loads = new AtomicInteger();
+		long hits = schemaCache.getStats().hitCount();
+
+		assertEquals(1, schemaCache.get(Type.TABLE_NAMES, "hit-test", loads::incrementAndGet).intValue());
+		assertEquals(1, schemaCache.get(Type.TABLE_NAMES, "hit-test", loads::incrementAndGet).intValue());
+		assertEquals(1, loads.get());
+		assertEquals(hits + 1, schemaCache.getStats().hitCount());
+
+		qs.execute(new CqlQuery(CqlQueryType.UNKNOWN, "drop table if exists cqldemo.notexisting_hit_test"), false);
+		assertEquals(2, schemaCache.get(Type.TABLE_NAMES, "hit-test", loads::incrementAndGet).intValue());
+	}
+
+	@Test
+	public void testSchemaCache_InvalidateOnDdl() {
+		Optional<CqlKeySpace> space = Optional.of(new CqlKeySpace("cqldemo"));
+		String tableName = "cachetest_" + UUID.randomUUID().toString().replace("-", "");
+		CqlTable table = new CqlTable(tableName);
+		assertFalse(qs.findTableNames(space).contains(table));
+
+		qs.execute(new CqlQuery(CqlQueryType.UNKNOWN, "create table cqldemo." + tableName + " (id int primary key)"),
+				false);
+		assertTrue(qs.findTableNames(space).contains(table));
+
+		qs.execute(new CqlQuery(CqlQueryType.DROP_TABLE, "drop table cqldemo." + tableName), false);
+		assertFalse(qs.findTableNames(space).contains(table));
+	}
+
+	@Test
+	public void testExecuteAsync_Select() {
+		qs.execute(new CqlQuery(CqlQueryType.USE, "USE CqlDemo"));
+		QueryHandle handle = qs.executeAsync(new CqlQuery(CqlQueryType.SELECT,
+				"select * from MyBooks where pages=2212"), false, 0);
+		CqlQueryResult res = waitForResult(handle);
+		assertTrue(handle.isDone());
+		assertFalse(handle.cancel());
+
+		int rowsSize = 0;
+		for (Row row : res) {
+			rowsSize++;
+			assertEquals("Midnight Rain-" + row.getInt("idx"), row.getString("title"));
+		}
+		assertEquals(100, rowsSize);
+		assertSame(res, handle.poll().get());
+	}
+
+	@Test
+	public void testExecuteAsync_SeekWithPagingState() {
+		QueryHandle handle = qs.executeAsync(new CqlQuery(CqlQueryType.SELECT,
+				"select * from CqlDemo.MyBooks where pages=2212"), false, 7);
+		CqlQueryResult res = waitForResult(handle);
+		assertTrue(res.isSeekable());
+
+		List<Integer> idxs = new ArrayList<>();
+		res.forEach(row -> idxs.add(row.getInt("idx")));
+		assertEquals(100, idxs.size());
+
+		for (int fromRow : new int[] { 0, 6, 7, 8, 23, 56, 98, 99 }) {
+			Iterator<Row> seekIt = res.iterator(fromRow);
+			List<Integer> seekIdxs = new ArrayList<>();
+			seekIt.forEachRemaining(row -> seekIdxs.add(row.getInt("idx")));
+			assertEquals("seek to: " + fromRow, idxs.subList(fromRow, idxs.size()), seekIdxs);
+		}
+	}
+
+	@Test
+	public void testExecuteAsync_Use() {
+		QueryHandle handle = qs.executeAsync(new CqlQuery(CqlQueryType.USE, "USE CqlDemo"), false, 0);
+		assertTrue(handle.isDone());
+		assertTrue(handle.poll().get().isEmpty());
+	}
+
+	@Test(expected = QueryException.class)
+	public void testExecuteAsync_QueryError() {
+		waitForResult(qs.executeAsync(new CqlQuery(CqlQueryType.SELECT, "select * from bara.bara"), false, 0));
+	}
+
+	@Test
+	public void testExecuteAsync_Cancel() {
+		QueryHandle handle = qs.executeAsync(new CqlQuery(CqlQueryType.SELECT,
+				"select * from CqlDemo.MyBooks"), false, 0);
+		if (!handle.cancel()) {
+			// query was faster
+			return;
+		}
+		assertTrue(handle.isDone());
+		try {
+			handle.poll();
+			fail("cancelled query returned result");
+		} catch (QueryException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("cancelled"));
+		}
+	}
+
+	@Test
+	public void testExecuteFullScan_Ordered() {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select * from CqlDemo.MyBooks");
+		List<UUID> expected = readIds(qs.execute(query, false));
+		assertTrue(expected.size() > 10);
+
+		CqlQueryResult res = qs.executeFullScan(query, 4, true);
+		assertFalse(res.isSeekable());
+		assertEquals(qs.execute(query, false).rowMetadata, res.rowMetadata);
+		assertEquals(expected, readIds(res));
+	}
+
+	@Test
+	public void testExecuteFullScan_Unordered() {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select id from CqlDemo.MyBooks;");
+		List<UUID> expected = readIds(qs.execute(query, false));
+
+		List<UUID> read = readIds(qs.executeFullScan(query, 3, false));
+		assertEquals(expected.size(), read.size());
+		assertEquals(new HashSet<>(expected), new HashSet<>(read));
+	}
+
+	@Test
+	public void testExecuteFullScan_FallbackWithWhere() {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select * from CqlDemo.MyBooks where pages=2299");
+		List<UUID> expected = readIds(qs.execute(query, false));
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, readIds(qs.executeFullScan(query, 4, true)));
+	}
+
+	@Test
+	public void testExecuteFullScan_FallbackCount() {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select count(*) from CqlDemo.MyBooks");
+		CqlQueryResult res = qs.executeFullScan(query, 4, true);
+		Iterator<Row> rows = res.iterator();
+		assertTrue(rows.hasNext());
+		rows.next();
+		assertFalse(rows.hasNext());
+	}
+
+	@Test
+	public void testExecuteFullScan_Close() {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select * from CqlDemo.MyBooks");
+		CqlQueryResult res = qs.executeFullScan(query, 4, true);
+		Iterator<Row> rows = res.iterator();
+		for (int i = 0; i < 3; i++) {
+			assertTrue(rows.hasNext());
+			rows.next();
+		}
+		res.close();
+		assertFalse(rows.hasNext());
+		res.close();
+	}
+
+	private List<UUID> readIds(CqlQueryResult result) {
+		List<UUID> ids = new ArrayList<>();
+		Set<UUID> unique = new HashSet<>();
+		for (Row row : result) {
+			UUID id = row.getUUID("id");
+			assertTrue("Duplicated row: " + id, unique.add(id));
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	private CqlQueryResult waitForResult(QueryHandle handle) {
+		for (int i = 0; i < 500; i++) {
+			Optional<CqlQueryResult> res = handle.poll();
+			if (res.isPresent()) {
+				return res.get();
+			}
+			Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+		}
+		fail("Query did not finish: " + handle);
+		return null;
+	}
 }
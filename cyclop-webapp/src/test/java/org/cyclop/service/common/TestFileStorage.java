@@ -23,6 +23,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -40,6 +46,9 @@ import org.cyclop.model.QueryFavourites;
 import org.cyclop.model.QueryHistory;
 import org.cyclop.model.UserIdentifier;
 import org.cyclop.model.exception.BeanValidationException;
+import org.cyclop.model.exception.ServiceException;
+import org.cyclop.service.common.FileStorage.Journal;
+import org.cyclop.service.converter.BinaryMarshaller;
 import org.cyclop.test.AbstractTestCase;
 import org.junit.Before;
 import org.junit.Test;
@@ -304,4 +313,129 @@ public class TestFileStorage extends AbstractTestCase {
 		}
 	}
 
+	@Test
+	public void testJournal() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		assertFalse(storage.journalExists(userId, QueryHistory.class));
+		assertTrue(storage.readJournal(userId, QueryHistory.class).entities.isEmpty());
+
+		for (int i = 0; i < 3; i++) {
+			QueryHistory record = new QueryHistory();
+			record.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable where id=" + i), i));
+			storage.append(userId, record);
+		}
+		assertTrue(storage.journalExists(userId, QueryHistory.class));
+		Journal<QueryHistory> journal = storage.readJournal(userId, QueryHistory.class);
+		assertFalse(journal.damaged);
+		List<QueryHistory> records = journal.entities;
+		assertEquals(3, records.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("select * from MyTable where id=" + i, records.get(i).copyAsList().get(0).query.part);
+		}
+
+		QueryHistory compacted = new QueryHistory();
+		compacted.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from Compacted"), 1));
+		storage.compact(userId, compacted);
+		records = storage.readJournal(userId, QueryHistory.class).entities;
+		assertEquals(1, records.size());
+		assertEquals("select * from Compacted", records.get(0).copyAsList().get(0).query.part);
+	}
+
+	@Test
+	public void testJournal_IncompleteLine() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		QueryHistory record = new QueryHistory();
+		record.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable"), 1));
+		storage.append(userId, record);
+
+		Path journal = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".journal");
+		Files.write(journal, "{\"history\":[{\"que".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		Journal<QueryHistory> read = storage.readJournal(userId, QueryHistory.class);
+		assertEquals(1, read.entities.size());
+		assertTrue(read.damaged);
+	}
+
+	@Test
+	public void testJournal_IncompleteBinaryRecord() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		QueryHistory record = new QueryHistory();
+		record.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable"), 1));
+		storage.append(userId, record);
+
+		Path journal = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".journal");
+		byte[] complete = Files.readAllBytes(journal);
+		Files.write(journal, Arrays.copyOf(complete, complete.length - 3), StandardOpenOption.APPEND);
+
+		Journal<QueryHistory> read = storage.readJournal(userId, QueryHistory.class);
+		assertEquals(1, read.entities.size());
+		assertTrue(read.damaged);
+	}
+
+	@Test
+	public void testReadAndMigrateJson() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".json");
+		String json = "{\"history\":[{\"runTime\":12,\"resultsSize\":0,\"query\":{\"cql\":\"select * from MyTable\","
+				+ "\"type\":\"SELECT\"},\"executedOn\":\"2014-03-12T10:15:30\"}]}";
+		Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+
+		QueryHistory read = storage.read(userId, QueryHistory.class).get();
+		assertEquals(1, read.size());
+		assertEquals("select * from MyTable", read.copyAsList().get(0).query.part);
+		assertEquals(12, read.copyAsList().get(0).runTime);
+
+		storage.store(userId, read);
+		assertTrue(BinaryMarshaller.isBinary(Files.readAllBytes(file)[0] & 0xFF));
+		assertEquals(read.copyAsList(), storage.read(userId, QueryHistory.class).get().copyAsList());
+	}
+
+	@Test
+	public void testRead_EmptyFile() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".json");
+
+		Files.write(file, new byte[0]);
+		assertFalse(storage.read(userId, QueryHistory.class).isPresent());
+
+		Files.write(file, " \n\t ".getBytes(StandardCharsets.UTF_8));
+		assertFalse(storage.read(userId, QueryHistory.class).isPresent());
+	}
+
+	@Test
+	public void testRead_TruncatedJson() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".json");
+		Files.write(file, "{\"history\":[{\"runTime\":12,\"query\":{\"cql\":\"sel".getBytes(StandardCharsets.UTF_8));
+
+		assertFalse(storage.read(userId, QueryHistory.class).isPresent());
+	}
+
+	@Test
+	public void testRead_InvalidJson() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".json");
+		Files.write(file, "{\"history\":[}".getBytes(StandardCharsets.UTF_8));
+
+		try {
+			storage.read(userId, QueryHistory.class);
+			fail();
+		} catch (ServiceException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("json unmarshalling"));
+		}
+	}
+
+	@Test
+	public void testRead_TruncatedBinary() throws Exception {
+		UserIdentifier userId = new UserIdentifier(UUID.randomUUID());
+		QueryHistory history = new QueryHistory();
+		history.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable"), 1));
+		storage.store(userId, history);
+
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + userId.id + ".json");
+		byte[] complete = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(complete, complete.length - 3));
+
+		assertFalse(storage.read(userId, QueryHistory.class).isPresent());
+	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares cost of storing and reading query history in binary format with JSON. It is not part of default test run,
+ * execute it with: <code>mvn test -Pbenchmark,cassandra-2.0</code>
+ *
+ * @author Maciej Miklas
+ */
+public class BinaryMarshallerBenchmark extends AbstractTestCase {
+
+	private final static Logger LOG = LoggerFactory.getLogger(BinaryMarshallerBenchmark.class);
+
+	private final static int ROUNDS = 500;
+
+	private final static int HISTORY_SIZE = 500;
+
+	@Inject
+	private BinaryMarshaller binaryMarshaller;
+
+	@Inject
+	private JsonMarshaller jsonMarshaller;
+
+	@Test
+	public void testBinaryVsJson() throws IOException {
+		QueryHistory history = createHistory();
+
+		// warm up
+		assertEquals(history.size(), writeAndReadJson(history));
+		assertEquals(history.size(), writeAndReadBinary(history));
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			writeAndReadJson(history);
+		}
+		long jsonMicros = (System.nanoTime() - start) / ROUNDS / 1000;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			writeAndReadBinary(history);
+		}
+		long binaryMicros = (System.nanoTime() - start) / ROUNDS / 1000;
+
+		LOG.info("Store and read history of {} entries - JSON: {}us, binary: {}us", history.size(), jsonMicros,
+				binaryMicros);
+	}
+
+	private int writeAndReadJson(QueryHistory history) throws IOException {
+		byte[] data = jsonMarshaller.marshal(history).getBytes(StandardCharsets.UTF_8);
+		return jsonMarshaller.unmarshal(QueryHistory.class, new ByteArrayInputStream(data)).size();
+	}
+
+	private int writeAndReadBinary(QueryHistory history) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		binaryMarshaller.marshal(history, out);
+		return binaryMarshaller.unmarshal(QueryHistory.class, new ByteArrayInputStream(out.toByteArray())).size();
+	}
+
+	private QueryHistory createHistory() {
+		QueryHistory history = new QueryHistory();
+		LocalDateTime executedOn = LocalDateTime.of(2014, 3, 12, 10, 15, 30, 123456789);
+		for (int i = 0; i < HISTORY_SIZE; i++) {
+			history.add(new QueryEntry(new CqlQuery(i % 2 == 0 ? CqlQueryType.SELECT : CqlQueryType.DELETE,
+					"select * from cqldemo.mybooks where id=" + i), executedOn.plusSeconds(i), 100 + i));
+		}
+		return history;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlColumnValue;
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Compares per row cost of {@link ColumnPlan} with column name lookup. It is not part of default test run, execute it
+ * with: <code>mvn test -Pbenchmark,cassandra-2.0</code>
+ *
+ * @author Maciej Miklas
+ */
+public class DataExtractorBenchmark extends AbstractTestCase {
+
+	private final static Logger LOG = LoggerFactory.getLogger(DataExtractorBenchmark.class);
+
+	private final static int ROUNDS = 2000;
+
+	@Inject
+	private DataExtractor extractor;
+
+	@Inject
+	private QueryService qs;
+
+	@Test
+	public void testPlanVsColumnNameLookup() {
+		CqlQueryResult result = qs.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select * from cqldemo.mybooks where pages=2299"));
+		List<Row> rows = ImmutableList.copyOf(result);
+		ColumnPlan plan = extractor.compile(result.rowMetadata, rows.get(0).getColumnDefinitions());
+
+		// warm up
+		long lookupHash = readWithNameLookup(rows, result.rowMetadata.columns);
+		long planHash = readWithPlan(rows, plan);
+		assertEquals(lookupHash, planHash);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			lookupHash += readWithNameLookup(rows, result.rowMetadata.columns);
+		}
+		long lookupNanos = (System.nanoTime() - start) / (ROUNDS * rows.size());
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			planHash += readWithPlan(rows, plan);
+		}
+		long planNanos = (System.nanoTime() - start) / (ROUNDS * rows.size());
+
+		assertEquals(lookupHash, planHash);
+		LOG.info("Per row cost - column name lookup: {}ns, column plan: {}ns", lookupNanos, planNanos);
+	}
+
+	private long readWithNameLookup(List<Row> rows, List<CqlExtendedColumnName> columns) {
+		long hash = 0;
+		for (Row row : rows) {
+			for (CqlExtendedColumnName column : columns) {
+				if (row.isNull(column.partLc)) {
+					continue;
+				}
+				if (column.dataType.isCollection()) {
+					hash += column.dataType.valueClass == null ? extractor.extractCollection(row, column).size()
+							: extractor.extractMap(row, column).size();
+				} else {
+					CqlColumnValue value = extractor.extractSingleValue(row, column);
+					hash += value.value.hashCode();
+				}
+			}
+		}
+		return hash;
+	}
+
+	private long readWithPlan(List<Row> rows, ColumnPlan plan) {
+		long hash = 0;
+		for (Row row : rows) {
+			for (int col = 0; col < plan.size(); col++) {
+				if (plan.isNull(row, col)) {
+					continue;
+				}
+				switch (plan.kind(col)) {
+				case COLLECTION:
+					hash += plan.readCollection(row, col).size();
+					break;
+
+				case MAP:
+					hash += plan.readMap(row, col).size();
+					break;
+
+				default:
+					hash += plan.readSingle(row, col).hashCode();
+				}
+			}
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryFavourites;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** @author Maciej Miklas */
+public class TestBinaryMarshaller extends AbstractTestCase {
+
+	@Inject
+	private BinaryMarshaller marshaller;
+
+	@Inject
+	private JsonMarshaller jsonMarshaller;
+
+	@Test
+	public void testHistory() throws Exception {
+		QueryHistory history = createHistory(100);
+
+		QueryHistory read = marshaller.unmarshal(QueryHistory.class, new ByteArrayInputStream(marshal(history)));
+
+		ImmutableList<QueryEntry> expected = history.copyAsList();
+		ImmutableList<QueryEntry> actual = read.copyAsList();
+		assertEquals(expected, actual);
+		for (int idx = 0; idx < expected.size(); idx++) {
+			assertEquals(expected.get(idx).query.type, actual.get(idx).query.type);
+			assertEquals(expected.get(idx).executedOnUtc, actual.get(idx).executedOnUtc);
+			assertEquals(expected.get(idx).runTime, actual.get(idx).runTime);
+		}
+		assertTrue(read.drainAppended().get().isEmpty());
+	}
+
+	@Test
+	public void testFavourites() throws Exception {
+		QueryFavourites favourites = new QueryFavourites();
+		favourites.addWithSizeCheck(new QueryEntry(new CqlQuery(CqlQueryType.SELECT,
+				"select * from \u0141\u00f3d\u017aTable"), 12));
+		favourites.addWithSizeCheck(new QueryEntry(new CqlQuery(CqlQueryType.INSERT,
+				"insert into MyTable (id) values (1)"), 34));
+
+		QueryFavourites read = marshaller.unmarshal(QueryFavourites.class,
+				new ByteArrayInputStream(marshal(favourites)));
+		assertEquals(favourites.copyAsSortedSet(), read.copyAsSortedSet());
+	}
+
+	@Test
+	public void testSmallerThanJson() throws Exception {
+		QueryHistory history = createHistory(500);
+		int binarySize = marshal(history).length;
+		int jsonSize = jsonMarshaller.marshal(history).getBytes(StandardCharsets.UTF_8).length;
+		assertTrue(binarySize + " >= " + jsonSize, binarySize * 2 < jsonSize);
+	}
+
+	@Test(expected = EOFException.class)
+	public void testTruncated() throws Exception {
+		byte[] data = marshal(createHistory(3));
+		marshaller.unmarshal(QueryHistory.class, new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersion() throws Exception {
+		byte[] data = marshal(createHistory(3));
+		data[1] = (byte) (BinaryMarshaller.VERSION + 1);
+		marshaller.unmarshal(QueryHistory.class, new ByteArrayInputStream(data));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongKind() throws Exception {
+		marshaller.unmarshal(QueryFavourites.class, new ByteArrayInputStream(marshal(createHistory(3))));
+	}
+
+	private byte[] marshal(Object obj) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		marshaller.marshal(obj, out);
+		return out.toByteArray();
+	}
+
+	private QueryHistory createHistory(int size) {
+		QueryHistory history = new QueryHistory();
+		LocalDateTime executedOn = LocalDateTime.of(2014, 3, 12, 10, 15, 30, 123456789);
+		for (int i = 0; i < size; i++) {
+			history.add(new QueryEntry(new CqlQuery(i % 2 == 0 ? CqlQueryType.SELECT : CqlQueryType.DELETE,
+					"select * from MyTable where id=" + i), executedOn.plusSeconds(i), 100 + i));
+		}
+		return history;
+	}
+}
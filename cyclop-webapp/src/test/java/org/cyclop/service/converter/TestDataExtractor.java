@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/** @author Maciej Miklas */
+public class TestDataExtractor extends AbstractTestCase {
+	@Inject
+	private DataExtractor extractor;
+
+	@Inject
+	private QueryService qs;
+
+	@Test
+	public void testCompile_SameValuesAsColumnNameLookup() {
+		CqlQueryResult result = selectMyBooks();
+		List<Row> rows = ImmutableList.copyOf(result);
+		ColumnPlan plan = extractor.compile(result.rowMetadata, rows.get(0).getColumnDefinitions());
+		assertEquals(result.rowMetadata.columns, plan.columns);
+		assertEquals(result.rowMetadata.indexOf(result.rowMetadata.partitionKey), plan.partitionKeyIndex);
+
+		for (Row row : rows) {
+			for (int col = 0; col < plan.size(); col++) {
+				CqlExtendedColumnName column = plan.columns.get(col);
+				switch (plan.kind(col)) {
+				case COLLECTION:
+					assertEquals(column.toString(), extractor.extractCollection(row, column).size(),
+							plan.readCollection(row, col).size());
+					break;
+
+				case MAP:
+					assertEquals(column.toString(), extractor.extractMap(row, column).size(), plan
+							.readMap(row, col).size());
+					break;
+
+				default:
+					if (!plan.isNull(row, col)) {
+						assertEquals(column.toString(), extractor.extractSingleValue(row, column).value,
+								plan.readSingle(row, col));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompile_ReadsTypedValues() {
+		String id = "7b4ad3c1-93cb-4c7a-8a52-2f1b0b6f5a10";
+		qs.executeSimple(new CqlQuery(CqlQueryType.INSERT, "insert into cqldemo.mybooks (id,title,genre,pages,authors,"
+				+ "price) values (" + id + ",'Plan Test','Test',321,{'Anna','Fryderyk'},{'DE':1.5,'EU':2.25})"), false);
+		try {
+			CqlQueryResult result = qs.execute(new CqlQuery(CqlQueryType.SELECT,
+					"select * from cqldemo.mybooks where id=" + id));
+			Row row = result.iterator().next();
+			ColumnPlan plan = extractor.compile(result.rowMetadata, row.getColumnDefinitions());
+
+			assertEquals("id", plan.columns.get(plan.partitionKeyIndex).partLc);
+			assertEquals(UUID.fromString(id), plan.readSingle(row, indexOf(plan, "id")));
+			assertEquals("Plan Test", plan.readSingle(row, indexOf(plan, "title")));
+			assertEquals(321, plan.readSingle(row, indexOf(plan, "pages")));
+
+			int authors = indexOf(plan, "authors");
+			assertEquals(ColumnPlan.Kind.COLLECTION, plan.kind(authors));
+			assertEquals(ImmutableSet.of("Anna", "Fryderyk"), ImmutableSet.copyOf(plan.readCollection(row, authors)));
+
+			int price = indexOf(plan, "price");
+			assertEquals(ColumnPlan.Kind.MAP, plan.kind(price));
+			assertEquals(ImmutableMap.of("DE", 1.5, "EU", 2.25), plan.readMap(row, price));
+
+			int genre = indexOf(plan, "genre");
+			assertEquals(ColumnPlan.Kind.SINGLE, plan.kind(genre));
+			assertFalse(plan.isNull(row, genre));
+			assertEquals("Test", plan.readSingle(row, genre));
+		} finally {
+			qs.executeSimple(new CqlQuery(CqlQueryType.DELETE, "delete from cqldemo.mybooks where id=" + id), false);
+		}
+	}
+
+	@Test
+	public void testCompile_ColumnMissingInRow() {
+		CqlQueryResult all = selectMyBooks();
+		Row row = qs.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select id, title from cqldemo.mybooks where pages=2299")).iterator().next();
+		ColumnPlan plan = extractor.compile(all.rowMetadata, row.getColumnDefinitions());
+
+		assertEquals(all.rowMetadata.columns, plan.columns);
+		assertFalse(plan.isNull(row, indexOf(plan, "id")));
+		assertTrue(plan.isNull(row, indexOf(plan, "pages")));
+		assertNull(plan.readSingle(row, indexOf(plan, "pages")));
+		assertTrue(plan.readMap(row, indexOf(plan, "price")).isEmpty());
+	}
+
+	private int indexOf(ColumnPlan plan, String column) {
+		for (int idx = 0; idx < plan.size(); idx++) {
+			if (plan.columns.get(idx).partLc.equals(column)) {
+				return idx;
+			}
+		}
+		throw new IllegalArgumentException("Column not found: " + column);
+	}
+
+	private CqlQueryResult selectMyBooks() {
+		return qs.execute(new CqlQuery(CqlQueryType.SELECT, "select * from cqldemo.mybooks where pages=2299"));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import javax.inject.Inject;
+
+import org.cyclop.model.CqlColumnType;
+import org.cyclop.model.CqlDataType;
+import org.cyclop.model.CqlDisplayRow;
+import org.cyclop.model.CqlDisplayValue;
+import org.cyclop.model.CqlExtendedColumnName;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.CqlValuePath;
+import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+import com.google.common.base.Strings;
+
+/** @author Maciej Miklas */
+public class TestDisplayRowConverter extends AbstractTestCase {
+
+	@Inject
+	private DisplayRowConverter converter;
+
+	@Inject
+	private QueryService qs;
+
+	private CqlQueryResult lastResult;
+
+	private Row lastRow;
+
+	@Test
+	public void testConvert_CollectionAndMissingColumns() {
+		CqlDisplayRow row = convert("select * from CqlDemo.MyBooks where id=46c63542-db1a-452e-97c9-e3f14b7ebdae");
+
+		assertEquals("46c63542-db1a-452e-97c9-e3f14b7ebdae", row.partitionKeyValue);
+		assertEquals(0, row.index);
+		assertEquals(CqlDisplayValue.single("2299", null), value(row, "pages"));
+
+		// title is null, so it is not part of row metadata
+		assertEquals(-1, lastResult.rowMetadata.indexOf(new CqlExtendedColumnName(CqlColumnType.REGULAR,
+				CqlDataType.TEXT, "title")));
+		assertEquals(CqlDisplayValue.EMPTY, row.get(-1));
+
+		CqlDisplayValue authors = value(row, "authors");
+		assertEquals(CqlDisplayValue.Type.COLLECTION, authors.type);
+		assertEquals(14, authors.collection.size());
+		assertTrue(authors.collection.contains(CqlDisplayValue.single("A-066a7f59-faef-4cf0-89b6-5c6b3f8c8dcf",
+				null)));
+	}
+
+	@Test
+	public void testConvert_Map() {
+		CqlDisplayRow row = convert("select * from CqlDemo.MyBooks where id=0f6939a7-62f7-4ed0-a909-6fc302764c8d");
+
+		CqlDisplayValue price = value(row, "price");
+		assertEquals(CqlDisplayValue.Type.MAP, price.type);
+		assertEquals(2, price.map.size());
+		assertEquals("DE", price.map.get(0).getKey().content);
+		assertEquals("4.0", price.map.get(0).getValue().content);
+		assertFalse(price.map.get(0).getValue().isTrimmed());
+	}
+
+	@Test
+	public void testConvert_TrimmedValuesAndFullContent() {
+		String description = Strings.repeat("0123456789", 60);
+		String author = Strings.repeat("a", 100);
+		qs.executeSimple(new CqlQuery(CqlQueryType.INSERT, "insert into cqldemo.mybooks (id,description,authors,"
+				+ "price) values (c3f9d2b8-7a41-4e6c-9b05-2d8e1f4a7c63,'" + description + "',{'" + author + "'},{'"
+				+ author + "':1.5})"), false);
+
+		try {
+			CqlDisplayRow row = convert("select id,description,authors,price from CqlDemo.MyBooks where "
+					+ "id=c3f9d2b8-7a41-4e6c-9b05-2d8e1f4a7c63");
+
+			CqlDisplayValue desc = value(row, "description");
+			assertTrue(desc.isTrimmed());
+			assertEquals(128 + 5, desc.content.length());
+			assertEquals(512 + 5, desc.tooltip.length());
+			assertTrue(description.startsWith(desc.tooltip.substring(0, 512)));
+			assertEquals(Optional.of(description), fullContent(CqlValuePath.column(row.index, index("description"))));
+
+			CqlDisplayValue authors = value(row, "authors");
+			assertTrue(authors.collection.get(0).isTrimmed());
+			assertEquals(author, authors.collection.get(0).tooltip);
+			CqlValuePath authorsPath = CqlValuePath.column(row.index, index("authors"));
+			assertEquals(Optional.of(author), fullContent(authorsPath.element(0)));
+			assertEquals(Optional.empty(), fullContent(authorsPath.element(1)));
+
+			CqlValuePath pricePath = CqlValuePath.column(row.index, index("price"));
+			assertTrue(value(row, "price").map.get(0).getKey().isTrimmed());
+			assertEquals(Optional.of(author), fullContent(pricePath.mapKey(0)));
+			assertEquals(Optional.of("1.5"), fullContent(pricePath.mapValue(0)));
+		} finally {
+			qs.executeSimple(new CqlQuery(CqlQueryType.DELETE,
+					"delete from cqldemo.mybooks where id=c3f9d2b8-7a41-4e6c-9b05-2d8e1f4a7c63"), false);
+		}
+	}
+
+	private Optional<String> fullContent(CqlValuePath path) {
+		return converter.convertFullContent(lastRow, lastResult.rowMetadata, path);
+	}
+
+	private int index(String column) {
+		CqlExtendedColumnName columnName = lastResult.rowMetadata.columns.stream()
+				.filter(col -> col.partLc.equals(column)).findFirst().get();
+		return lastResult.rowMetadata.indexOf(columnName);
+	}
+
+	private CqlDisplayValue value(CqlDisplayRow row, String column) {
+		return row.get(index(column));
+	}
+
+	private CqlDisplayRow convert(String cql) {
+		lastResult = qs.execute(new CqlQuery(CqlQueryType.SELECT, cql));
+		lastRow = lastResult.iterator().next();
+		CqlDisplayRow displayRow = converter.convert(lastRow, 0, lastResult.rowMetadata);
+		assertEquals(lastResult.rowMetadata.columns.size(), displayRow.values.size());
+		return displayRow;
+	}
+}
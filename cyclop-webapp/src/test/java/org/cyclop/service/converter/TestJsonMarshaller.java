@@ -36,7 +36,7 @@ public class TestJsonMarshaller extends AbstractTestCase {
 		up.setShowCqlCompletionHint(false);
 		String res = marshaller.marshal(up);
 		assertEquals(
-				"{\"e_hi\":\"0\",\"e_he\":\"1\",\"e_ro\":0,\"i_hi\":\"1\",\"i_ce\":\"0\",\"i_pa\":\"0\",\"p_ei\":5,\"p_hi\":50,\"p_ii\":100}",
+				"{\"e_hi\":\"0\",\"e_he\":\"1\",\"e_ro\":0,\"i_hi\":\"1\",\"i_ce\":\"0\",\"i_pa\":\"0\",\"p_ei\":5,\"p_hi\":50,\"p_ii\":100,\"e_fs\":0}",
 				res);
 	}
 
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import javax.inject.Inject;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.service.exporter.model.ExportJob;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/** @author Maciej Miklas */
+public class TestExportJobManager extends AbstractTestCase {
+
+	@Inject
+	private ExportJobManager jobManager;
+
+	@Inject
+	private CsvQueryResultExporter exporter;
+
+	@Inject
+	private AppConfig.ExportJobs conf;
+
+	@Inject
+	private AppConfig.QueryExport exportConf;
+
+	private final UserIdentifier user = new UserIdentifier();
+
+	@Test
+	public void testSubmit_SelectFromMyBooks() throws Exception {
+		CqlQuery query = new CqlQuery(CqlQueryType.SELECT, "select * from cqldemo.mybooks where pages=2299");
+		ExportJob job = jobManager.submit(query, user);
+		assertEquals(query, job.query);
+		assertEquals(user, job.owner);
+
+		ExportJob done = waitForJob(job.id);
+		assertEquals(done.toString(), ExportJob.State.DONE, done.state);
+		assertTrue(done.toString(), done.rows > 0);
+		assertTrue(done.toString(), done.bytes > 0);
+		assertEquals(conf.compress, done.fileName.endsWith(".gz"));
+
+		Optional<Path> file = jobManager.findResult(job.id, user);
+		assertTrue(file.isPresent());
+		assertEquals(exporter.exportAsCsv(query), read(file.get()));
+	}
+
+	@Test
+	public void testSubmit_QueryFailsInJob() {
+		ExportJob job = jobManager.submit(new CqlQuery(CqlQueryType.SELECT,
+				"select * from cqldemo.notexistingtable"), user);
+
+		ExportJob done = waitForJob(job.id);
+		assertEquals(done.toString(), ExportJob.State.FAILED, done.state);
+		assertNotNull(done.toString(), done.error);
+		assertFalse(jobManager.findResult(job.id, user).isPresent());
+	}
+
+	@Test
+	public void testCancel_RemovesFile() throws Exception {
+		ExportJob job = jobManager.submit(new CqlQuery(CqlQueryType.SELECT, "select id from cqldemo.mybooks"),
+				user);
+		waitForJob(job.id);
+		Optional<Path> file = jobManager.findResult(job.id, user);
+		assertTrue(file.isPresent());
+
+		jobManager.cancel(job.id, user);
+		assertFalse(Files.exists(file.get()));
+		assertFalse(jobManager.find(job.id, user).isPresent());
+		assertFalse(jobManager.findResult(job.id, user).isPresent());
+	}
+
+	@Test
+	public void testFind_NotExisting() {
+		assertFalse(jobManager.find("not-existing", user).isPresent());
+		assertFalse(jobManager.findResult("not-existing", user).isPresent());
+	}
+
+	@Test
+	public void testFind_OtherUser() throws Exception {
+		ExportJob job = jobManager.submit(new CqlQuery(CqlQueryType.SELECT, "select id from cqldemo.mybooks"),
+				user);
+		waitForJob(job.id);
+		UserIdentifier otherUser = new UserIdentifier();
+		assertFalse(jobManager.find(job.id, otherUser).isPresent());
+		assertFalse(jobManager.findResult(job.id, otherUser).isPresent());
+
+		jobManager.cancel(job.id, otherUser);
+		Optional<Path> file = jobManager.findResult(job.id, user);
+		assertTrue(file.isPresent());
+		assertTrue(Files.exists(file.get()));
+	}
+
+	private String read(Path file) throws Exception {
+		try (InputStream in = conf.compress ? new GZIPInputStream(Files.newInputStream(file)) : Files
+				.newInputStream(file)) {
+			return CharStreams.toString(new InputStreamReader(in, exportConf.encoding));
+		}
+	}
+
+	private ExportJob waitForJob(String jobId) {
+		for (int i = 0; i < 500; i++) {
+			ExportJob job = jobManager.find(jobId, user).get();
+			if (job.isFinished()) {
+				return job;
+			}
+			Uninterruptibles.sleepUninterruptibly(10, TimeUnit.MILLISECONDS);
+		}
+		fail("Export did not finish: " + jobId);
+		return null;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.exporter.intern;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.inject.Inject;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.test.AbstractTestCase;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/** @author Maciej Miklas */
+public class TestCsvWriter extends AbstractTestCase {
+
+	@Inject
+	private AppConfig.QueryExport conf;
+
+	@Test
+	public void testValue_TrimAndRemoveCr() throws IOException {
+		assertEquals("\"ab c\"", write(out -> out.value(" \n ab\r c\n ")));
+	}
+
+	@Test
+	public void testValue_Null() throws IOException {
+		assertEquals("\"\"", write(out -> out.value(null)));
+	}
+
+	@Test
+	public void testEscape_SameAsValue() throws IOException {
+		assertEquals("\"\"a\",\"b\"\"", write(out -> {
+			StringBuilder nested = out.nested();
+			out.escape(nested, " a\n");
+			nested.append(",");
+			out.escape(nested, "b ");
+			out.value(nested);
+		}));
+	}
+
+	@Test
+	public void testRaw_LargerThanBuffer() throws IOException {
+		String large = Strings.repeat("0123456789", conf.bufferSize / 5);
+		assertEquals("a" + large + "b", write(out -> {
+			out.raw("a");
+			out.raw(large);
+			out.raw("b");
+		}));
+	}
+
+	@Test
+	public void testPlain_LargerThanBuffer() throws IOException {
+		String large = Strings.repeat("0123456789", conf.bufferSize / 5);
+		assertEquals(large, write(out -> out.plain(" " + large + " ")));
+	}
+
+	@Test
+	public void testValue_ConfiguredEncoding() throws IOException {
+		String text = "za\u017c\u00f3\u0142\u0107 g\u0119\u015bl\u0105 ja\u017a\u0144";
+		assertEquals("\"" + text + "\"", write(out -> out.value(text)));
+	}
+
+	private String write(WriteCall call) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (CsvWriter out = new CsvWriter(bos, conf)) {
+			call.write(out);
+		}
+		return new String(bos.toByteArray(), conf.encoding);
+	}
+
+	private interface WriteCall {
+		void write(CsvWriter out) throws IOException;
+	}
+}
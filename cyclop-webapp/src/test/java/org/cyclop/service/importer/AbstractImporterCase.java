@@ -21,14 +21,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
+import java.util.Optional;
 
 import javax.inject.Inject;
 
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.UserIdentifier;
 import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.service.common.FileStorage;
+import org.cyclop.service.importer.model.ImportCheckpoint;
 import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.service.importer.model.ImportProgress;
 import org.cyclop.service.importer.model.ImportStats;
 import org.cyclop.test.AbstractTestCase;
 import org.junit.Before;
@@ -40,6 +45,12 @@ public abstract class AbstractImporterCase extends AbstractTestCase {
 	@Inject
 	private QueryService queryService;
 
+	@Inject
+	private FileStorage storage;
+
+	@Inject
+	private ImportProgressService progressService;
+
 	abstract QueryImporter getImporter();
 
 	@Test
@@ -181,6 +192,99 @@ public abstract class AbstractImporterCase extends AbstractTestCase {
 		execImport(116, 3, 6613);
 	}
 
+	@Test
+	public void testResume() throws Exception {
+		UserIdentifier user = new UserIdentifier();
+		storage.store(user, new ImportCheckpoint("testResume", 10, false));
+
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = getImporter().importScript(fio, rc,
+					new ImportConfig().withCheckpoint(user, "testResume").withResume(true));
+
+			assertEquals(rc.toString(), 10, stats.skippedCount);
+			assertEquals(rc.toString(), 22, stats.successCount);
+			assertEquals(rc.toString(), 0, stats.errorCount);
+		}
+		assertCounter(528 - 55);
+
+		ImportCheckpoint checkpoint = storage.read(user, ImportCheckpoint.class).get();
+		assertEquals(checkpoint.toString(), 32, checkpoint.getApplied());
+		assertTrue(checkpoint.toString(), checkpoint.isFinished());
+	}
+
+	@Test
+	public void testResumeFinished() throws Exception {
+		UserIdentifier user = new UserIdentifier();
+		storage.store(user, new ImportCheckpoint("testResumeFinished", 32, true));
+
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = getImporter().importScript(fio, rc,
+					new ImportConfig().withCheckpoint(user, "testResumeFinished").withResume(true));
+
+			assertEquals(rc.toString(), 0, stats.skippedCount);
+			assertEquals(rc.toString(), 32, stats.successCount);
+		}
+		assertCounter(528);
+
+		ImportCheckpoint checkpoint = storage.read(user, ImportCheckpoint.class).get();
+		assertEquals(checkpoint.toString(), 32, checkpoint.getApplied());
+		assertTrue(checkpoint.toString(), checkpoint.isFinished());
+	}
+
+	@Test
+	public void testCheckpointWithoutResume() throws Exception {
+		UserIdentifier user = new UserIdentifier();
+		storage.store(user, new ImportCheckpoint("testCheckpointWithoutResume", 10, false));
+
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = getImporter().importScript(fio, rc,
+					new ImportConfig().withCheckpoint(user, "testCheckpointWithoutResume"));
+
+			assertEquals(rc.toString(), 0, stats.skippedCount);
+			assertEquals(rc.toString(), 32, stats.successCount);
+		}
+		assertCounter(528);
+
+		ImportCheckpoint checkpoint = storage.read(user, ImportCheckpoint.class).get();
+		assertEquals(checkpoint.toString(), 32, checkpoint.getApplied());
+	}
+
+	@Test
+	public void testProgress() throws Exception {
+		final String progressId = "testProgress-" + getClass().getSimpleName();
+		final ImportProgress[] lastProgress = new ImportProgress[1];
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer() {
+				@Override
+				public synchronized void success(CqlQuery query, long runtime) {
+					super.success(query, runtime);
+					Optional<ImportProgress> progress = progressService.getProgress(progressId);
+					assertTrue(progress.isPresent());
+					lastProgress[0] = progress.get();
+				}
+			};
+			getImporter().importScript(fio, rc, new ImportConfig().withProgress(progressId, 0));
+		}
+		assertFalse(progressService.getProgress(progressId).isPresent());
+
+		ImportProgress progress = lastProgress[0];
+		assertTrue(progress.toString(), progress.parsed > 0);
+		assertTrue(progress.toString(), progress.executed <= progress.parsed);
+		assertTrue(progress.toString(), progress.bytesRead > 0);
+		assertEquals(progress.toString(), -1, progress.getPercentRead());
+		assertEquals(progress.toString(), -1, progress.etaSeconds);
+	}
+
+	void assertCounter(long counterValue) {
+		CqlQueryResult res = queryService.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select cval from CqlDemo.MyCounter where id=44a2054c-f98b-43a7-833d-0e1358fdaa82"));
+		assertTrue(res.iterator().hasNext());
+		assertEquals(counterValue, res.iterator().next().getLong("cval"));
+	}
+
 	private void execImport(int scrNr, int amountError, long counterValue) throws Exception {
 		String script = "/cql/testImportOneCol_" + scrNr + ".cql";
 		try (InputStream fio = getClass().getResourceAsStream(script)) {
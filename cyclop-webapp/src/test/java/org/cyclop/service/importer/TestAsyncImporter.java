@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.cyclop.common.AppConfig;
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.service.importer.model.ImportStats;
+import org.junit.Test;
+
+import com.datastax.driver.core.Row;
+
+/** @author Maciej Miklas */
+public class TestAsyncImporter extends AbstractImporterCase {
+
+	@Inject
+	@Named(QueryImporter.IMPL_ASYNC)
+	private QueryImporter importer;
+
+	@Inject
+	private QueryService queryService;
+
+	@Override
+	QueryImporter getImporter() {
+		return importer;
+	}
+
+	@Override
+	public void testImportOneQueryPerLine() throws Exception {
+	}
+
+	@Override
+	public void testImportLineBreaks() throws Exception {
+	}
+
+	@Test
+	public void testBreakAfterError() throws Exception {
+
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOrdered.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withContinueWithErrors(false)
+					.withUpdateHistory(true));
+
+			assertTrue(rc.toString(), rc.size() < 100);
+			assertTrue(rc.toString(), rc.error.size() < 4);
+			assertTrue(rc.toString(), rc.success.size() < 100);
+			assertTrue(rc.toString(), stats.errorCount < 4);
+			assertTrue(rc.toString(), stats.successCount < 100);
+		}
+	}
+
+	@Test
+	public void testPrepareStatements() throws Exception {
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withPrepareStatements(true));
+
+			assertEquals(rc.toString(), 32, stats.successCount);
+			assertEquals(rc.toString(), 32, stats.preparedCount);
+		}
+		assertCounter(528);
+	}
+
+	@Test
+	public void testPartitionBatches() throws Exception {
+		String[] partitions = { "f1d7a1e2-4b3c-4d5e-8f90-a1b2c3d4e5f6", "f2d7a1e2-4b3c-4d5e-8f90-a1b2c3d4e5f6" };
+		StringBuilder script = new StringBuilder();
+		for (String id : partitions) {
+			queryService.execute(new CqlQuery(CqlQueryType.DELETE, "delete from CqlDemo.CompoundTest where id=" + id));
+			for (int idx = 0; idx < 30; idx++) {
+				script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(id).append(", ")
+						.append(idx).append(", 'row ").append(idx).append("', 'imported');\n");
+			}
+		}
+		// text literal for int column - it's reported for single statement only
+		script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(partitions[0])
+				.append(", 'wrong', 'row', 'imported');\n");
+		// binds, but cassandra rejects ttl - whole batch is rejected and its statements are executed one by one
+		script.insert(script.indexOf("\n", script.length() / 4) + 1, "INSERT INTO CqlDemo.CompoundTest (id, id2, id3, "
+				+ "deesc) VALUES (" + partitions[0] + ", 100, 'row 100', 'imported') USING TTL 999999999;\n");
+
+		try (InputStream fio = new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8))) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withPartitionBatches(true)
+					.withContinueWithErrors(true));
+
+			assertEquals(rc.toString(), 60, stats.successCount);
+			assertEquals(rc.toString(), 2, stats.errorCount);
+			assertEquals(rc.toString(), 2, rc.error.size());
+			assertTrue(stats.toString(), stats.batchCount >= 2);
+		}
+
+		for (String id : partitions) {
+			CqlQueryResult res = queryService.execute(new CqlQuery(CqlQueryType.SELECT,
+					"select count(*) from CqlDemo.CompoundTest where id=" + id));
+			assertTrue(res.iterator().hasNext());
+			assertEquals(30, res.iterator().next().getLong(0));
+		}
+	}
+
+	@Test
+	public void testPartitionBatches_DeleteThenInsert() throws Exception {
+		String row = "f3d7a1e2-4b3c-4d5e-8f90-a1b2c3d4e5f6";
+		String partition = "f4d7a1e2-4b3c-4d5e-8f90-a1b2c3d4e5f6";
+		StringBuilder script = new StringBuilder();
+		script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(row)
+				.append(", 1, 'a', 'first');\n");
+		script.append("DELETE FROM CqlDemo.CompoundTest WHERE id=").append(row).append(" AND id2=1 AND id3='a';\n");
+		script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(row)
+				.append(", 1, 'a', 'second');\n");
+		for (int idx = 0; idx < 5; idx++) {
+			script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(partition)
+					.append(", ").append(idx).append(", 'row ").append(idx).append("', 'before');\n");
+		}
+		script.append("DELETE FROM CqlDemo.CompoundTest WHERE id=").append(partition).append(";\n");
+		script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(partition)
+				.append(", 2, 'row 2', 'after');\n");
+
+		try (InputStream fio = new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8))) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withPartitionBatches(true)
+					.withContinueWithErrors(true));
+
+			assertEquals(rc.toString(), 10, stats.successCount);
+			assertEquals(rc.toString(), 0, stats.errorCount);
+		}
+
+		CqlQueryResult res = queryService.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select deesc from CqlDemo.CompoundTest where id=" + row));
+		Iterator<Row> rows = res.iterator();
+		assertTrue(rows.hasNext());
+		assertEquals("second", rows.next().getString(0));
+		assertFalse(rows.hasNext());
+
+		res = queryService.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select deesc from CqlDemo.CompoundTest where id=" + partition));
+		rows = res.iterator();
+		assertTrue(rows.hasNext());
+		assertEquals("after", rows.next().getString(0));
+		assertFalse(rows.hasNext());
+	}
+
+	@Test
+	public void testMaxInFlight() throws Exception {
+		String id = "f5d7a1e2-4b3c-4d5e-8f90-a1b2c3d4e5f6";
+		int maxInFlight = AppConfig.get().queryImport.maxInFlightProImport;
+		StringBuilder script = new StringBuilder();
+		for (int idx = 0; idx < 500; idx++) {
+			script.append("INSERT INTO CqlDemo.CompoundTest (id, id2, id3, deesc) VALUES (").append(id).append(", ")
+					.append(idx).append(", 'row ").append(idx).append("', 'in flight');\n");
+		}
+
+		for (ImportConfig iconfig : new ImportConfig[] { new ImportConfig(),
+				new ImportConfig().withPartitionBatches(true) }) {
+			try (InputStream fio = new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8))) {
+				ResultConsumer rc = new ResultConsumer();
+				ImportStats stats = importer.importScript(fio, rc, iconfig);
+
+				assertEquals(rc.toString(), 500, stats.successCount);
+				assertTrue(stats.toString(), stats.maxInFlightCount > 0);
+				assertTrue(stats.toString(), stats.maxInFlightCount <= maxInFlight);
+			}
+		}
+	}
+}
@@ -16,6 +16,7 @@
  */
 package org.cyclop.service.importer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
@@ -24,7 +25,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.cyclop.service.importer.model.ImportConfig;
+import org.cyclop.common.AppConfig;
 import org.cyclop.service.importer.model.ImportStats;
+import org.cyclop.service.importer.model.ImportStats.WorkerStats;
 import org.junit.Test;
 
 /** @author Maciej Miklas */
@@ -47,6 +50,22 @@ public class TestParallelImporter extends AbstractImporterCase {
 	public void testImportLineBreaks() throws Exception {
 	}
 
+	@Test
+	public void testWorkerStats() throws Exception {
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_116.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withContinueWithErrors(true));
+
+			assertEquals(stats.toString(), AppConfig.get().queryImport.maxThreadsProImport, stats.workers.size());
+			int executed = 0;
+			for (WorkerStats worker : stats.workers) {
+				assertTrue(worker.toString(), worker.busyMillis <= worker.runMillis);
+				executed += worker.executed;
+			}
+			assertEquals(stats.toString(), stats.successCount + stats.errorCount, executed);
+		}
+	}
+
 	@Test
 	public void testBreakAfterError() throws Exception {
 
@@ -62,4 +81,16 @@ public class TestParallelImporter extends AbstractImporterCase {
 			assertTrue(rc.toString(), stats.successCount < 100);
 		}
 	}
+
+	@Test
+	public void testPrepareStatements() throws Exception {
+		try (InputStream fio = getClass().getResourceAsStream("/cql/testImportOneCol_32.cql")) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc, new ImportConfig().withPrepareStatements(true));
+
+			assertEquals(rc.toString(), 32, stats.successCount);
+			assertEquals(rc.toString(), 32, stats.preparedCount);
+		}
+		assertCounter(528);
+	}
 }
@@ -17,26 +17,43 @@
 package org.cyclop.service.importer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryResult;
 import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.UserIdentifier;
+import org.cyclop.service.cassandra.QueryService;
+import org.cyclop.service.common.FileStorage;
+import org.cyclop.service.importer.model.ImportCheckpoint;
 import org.cyclop.service.importer.model.ImportConfig;
 import org.cyclop.service.importer.model.ImportStats;
 import org.junit.Test;
 
+import com.datastax.driver.core.Row;
+
 public class TestSerialQueryImporter extends AbstractImporterCase {
 
 	@Inject
 	@Named(QueryImporter.IMPL_SERIAL)
 	private QueryImporter importer;
 
+	@Inject
+	private QueryService queryService;
+
+	@Inject
+	private FileStorage storage;
+
 	@Test
 	public void testBreakAfterError() throws Exception {
 
@@ -144,6 +161,33 @@ public class TestSerialQueryImporter extends AbstractImporterCase {
 		}
 	}
 
+	@Test
+	public void testResumeAfterUse() throws Exception {
+		UserIdentifier user = new UserIdentifier();
+		storage.store(user, new ImportCheckpoint("testResumeAfterUse", 1, false));
+		queryService.execute(new CqlQuery(CqlQueryType.USE, "use system"));
+
+		String id = "8b2e4c17-d9a3-4f60-b5e8-3c71a0f9d246";
+		String script = "USE CqlDemo;\nINSERT INTO CompoundTest (id, id2, id3, deesc) VALUES (" + id
+				+ ", 1, 'resume', 'resumed');\n";
+		try (InputStream fio = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8))) {
+			ResultConsumer rc = new ResultConsumer();
+			ImportStats stats = importer.importScript(fio, rc,
+					new ImportConfig().withCheckpoint(user, "testResumeAfterUse").withResume(true));
+
+			assertEquals(rc.toString(), 1, stats.skippedCount);
+			assertEquals(rc.toString(), 1, stats.successCount);
+			assertEquals(rc.toString(), 0, stats.errorCount);
+		}
+
+		CqlQueryResult res = queryService.execute(new CqlQuery(CqlQueryType.SELECT,
+				"select deesc from CqlDemo.CompoundTest where id=" + id + " and id2=1 and id3='resume'"));
+		Iterator<Row> rows = res.iterator();
+		assertTrue(rows.hasNext());
+		assertEquals("resumed", rows.next().getString(0));
+		assertFalse(rows.hasNext());
+	}
+
 	@Override
 	QueryImporter getImporter() {
 		return importer;
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+import org.cyclop.model.exception.QueryException;
+import org.cyclop.service.importer.model.ImportConfig;
+import org.junit.Test;
+
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+
+/** @author Maciej Miklas */
+public class TestImportThrottle {
+
+	private static final double DELTA = 0.001;
+
+	@Test
+	public void testNoLimit() {
+		ImportThrottle throttle = ImportThrottle.create(new ImportConfig(), 500);
+		assertEquals(0, throttle.getStatementRate(), DELTA);
+	}
+
+	@Test
+	public void testStatementLimit() {
+		ImportThrottle throttle = ImportThrottle.create(new ImportConfig().withStatementsPerSecond(20), 500);
+		assertEquals(20, throttle.getStatementRate(), DELTA);
+
+		throttle.failure(overload());
+		assertEquals(20, throttle.getStatementRate(), DELTA);
+	}
+
+	@Test
+	public void testAdaptiveStartRate() {
+		ImportThrottle throttle = ImportThrottle.create(new ImportConfig().withAdaptiveThrottle(true), 300);
+		assertEquals(300, throttle.getStatementRate(), DELTA);
+	}
+
+	@Test
+	public void testAdaptiveBackOff() {
+		ImportThrottle throttle = ImportThrottle.create(
+				new ImportConfig().withStatementsPerSecond(100).withAdaptiveThrottle(true), 500);
+
+		throttle.failure(new RuntimeException("not an overload"));
+		assertEquals(100, throttle.getStatementRate(), DELTA);
+
+		throttle.failure(new QueryException("wrapped", overload()));
+		assertEquals(50, throttle.getStatementRate(), DELTA);
+
+		// queries that were in flight fail as well - rate changes only once within a second
+		throttle.failure(overload());
+		throttle.success();
+		assertEquals(50, throttle.getStatementRate(), DELTA);
+	}
+
+	@Test
+	public void testAdaptiveBackOff_AfterSuccess() {
+		ImportThrottle throttle = ImportThrottle.create(new ImportConfig().withAdaptiveThrottle(true), 100);
+
+		throttle.success();
+		assertEquals(110, throttle.getStatementRate(), DELTA);
+
+		// overload within the same second as raise must still reduce the rate
+		throttle.failure(overload());
+		assertEquals(55, throttle.getStatementRate(), DELTA);
+	}
+
+	private static NoHostAvailableException overload() {
+		return new NoHostAvailableException(Collections.<InetSocketAddress, Throwable> emptyMap());
+	}
+}
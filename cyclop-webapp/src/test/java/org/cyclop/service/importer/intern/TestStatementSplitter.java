@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+/** @author Maciej Miklas */
+public class TestStatementSplitter {
+
+	@Test
+	public void testSplit_SemicolonFollowedByWhiteSpace() {
+		assertEquals(Arrays.asList("select a;b from t", "select * from t2", "select 1;"),
+				split("select a;b from t;\n  select * from t2; ;\nselect 1;;"));
+	}
+
+	@Test
+	public void testSplit_QuotedStrings() {
+		assertEquals(Arrays.asList("insert into t (a) values ('x; y')", "select \"a; b\" from t"),
+				split("insert into t (a) values ('x; y');\nselect \"a; b\" from t;"));
+	}
+
+	@Test
+	public void testSplit_QuotedStringNotTerminated() {
+		assertEquals(Arrays.asList("asdf as'fasdf;asdf ;;q", "select 1"), split("asdf as'fasdf;asdf ;;q;\nselect 1;"));
+	}
+
+	@Test
+	public void testSplit_DollarQuotes() {
+		assertEquals(Arrays.asList("create function f() as $$ a;\n b; $$", "select 1"),
+				split("create function f() as $$ a;\n b; $$;\nselect 1"));
+	}
+
+	@Test
+	public void testSplit_Comments() {
+		assertEquals(Arrays.asList("select a \n from t", "select   b from t"),
+				split("-- first; \nselect a // column; \n from t;\n/* second; */select /* x; */ b from t;"));
+	}
+
+	@Test
+	public void testSplit_Batch() {
+		String batch = "BEGIN UNLOGGED BATCH\n insert into t (a) values (1);\n update t set b='x; y' where a=1;\n"
+				+ "APPLY   BATCH";
+		assertEquals(Arrays.asList(batch, "select 1"), split(batch + ";\n select 1;"));
+	}
+
+	@Test
+	public void testSplit_StatementLongerThanBuffer() {
+		String statement = "insert into t (a) values ('" + Strings.repeat("ab; ", 5000) + "')";
+		assertEquals(Arrays.asList(statement, "select 1"), split(statement + ";\nselect 1;"));
+	}
+
+	@Test
+	public void testSplit_Empty() {
+		assertEquals(Arrays.asList(), split(" \n ;\n -- nothing"));
+	}
+
+	private List<String> split(String script) {
+		StatementSplitter splitter = new StatementSplitter(new StringReader(script));
+		List<String> res = new ArrayList<>();
+		splitter.forEachRemaining(res::add);
+		return res;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.intern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/** @author Maciej Miklas */
+public class TestStatementTemplate {
+
+	@Test
+	public void testInsert() {
+		StatementTemplate template = parse("INSERT INTO CqlDemo.MyBooks (id, title, pages, price, cover)  VALUES "
+				+ "(44a2054c-f98b-43a7-833d-0e1358fdaa82, 'It''s mine', 120, -1.5e3, 0xCAFE) USING TTL 100");
+		assertEquals("INSERT INTO CqlDemo.MyBooks (id, title, pages, price, cover) VALUES (?, ?, ?, ?, ?) USING TTL ?",
+				template.shape);
+		assertEquals(ImmutableList.of("44a2054c-f98b-43a7-833d-0e1358fdaa82", "'It''s mine'", "120", "-1.5e3",
+				"0xCAFE", "100"), template.literals);
+	}
+
+	@Test
+	public void testSameShape() {
+		StatementTemplate first = parse("UPDATE CqlDemo.MyCounter SET cval=cval+1 "
+				+ "WHERE id=44a2054c-f98b-43a7-833d-0e1358fdaa82");
+		StatementTemplate second = parse("update CqlDemo.MyCounter  SET cval=cval+22\n"
+				+ "WHERE id=1c7bb3f0-f98b-43a7-833d-0e1358fdaa82");
+		assertEquals("UPDATE CqlDemo.MyCounter SET cval=cval+? WHERE id=?", first.shape);
+		assertEquals("update CqlDemo.MyCounter SET cval=cval+? WHERE id=?", second.shape);
+		assertEquals(ImmutableList.of("22", "1c7bb3f0-f98b-43a7-833d-0e1358fdaa82"), second.literals);
+	}
+
+	@Test
+	public void testMinusOperator() {
+		StatementTemplate template = parse("UPDATE t SET c=c-1, d=-2 WHERE k IN (-3,4)");
+		assertEquals("UPDATE t SET c=c-?, d=? WHERE k IN (?,?)", template.shape);
+		assertEquals(ImmutableList.of("1", "-2", "-3", "4"), template.literals);
+	}
+
+	@Test
+	public void testIdentifiers() {
+		StatementTemplate template = parse("DELETE \"Col1\" FROM ks.t2 WHERE k1=now() AND k2=t1");
+		assertEquals("DELETE \"Col1\" FROM ks.t2 WHERE k1=now() AND k2=t1", template.shape);
+		assertEquals(0, template.literals.size());
+	}
+
+	@Test
+	public void testNoTemplate() {
+		assertNoTemplate("SELECT * FROM t WHERE k=1");
+		assertNoTemplate("CREATE TABLE t (k int PRIMARY KEY)");
+		assertNoTemplate("BEGIN BATCH INSERT INTO t (k) VALUES (1) APPLY BATCH");
+		assertNoTemplate("INSERT INTO t (k, l) VALUES (1, [1, 2])");
+		assertNoTemplate("INSERT INTO t (k, m) VALUES (1, {'a': 1})");
+		assertNoTemplate("INSERT INTO t (k) VALUES (?)");
+		assertNoTemplate("INSERT INTO t (k) VALUES (:k)");
+		assertNoTemplate("INSERT INTO t (k) VALUES (1) -- comment");
+		assertNoTemplate("INSERT INTO t (k) VALUES (1) /* comment */");
+		assertNoTemplate("INSERT INTO t (k, s) VALUES (1, $$text$$)");
+		assertNoTemplate("INSERT INTO t (k, s) VALUES (1, 'not closed)");
+	}
+
+	private static StatementTemplate parse(String cql) {
+		Optional<StatementTemplate> template = StatementTemplate.parse(cql);
+		assertEquals(cql, true, template.isPresent());
+		return template.get();
+	}
+
+	private static void assertNoTemplate(String cql) {
+		assertFalse(cql, StatementTemplate.parse(cql).isPresent());
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.service.importer.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** @author Maciej Miklas */
+public class TestLatencyHistogram {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram hist = new LatencyHistogram();
+		assertEquals(0, hist.getCount());
+		assertEquals(0, hist.getPercentile(50));
+		assertEquals(0, hist.getPercentile(99));
+	}
+
+	@Test
+	public void testBucketBounds() {
+		for (long val = 0; val < 100000; val++) {
+			int bucket = LatencyHistogram.bucket(val);
+			assertTrue(val + " - " + bucket, LatencyHistogram.lowerBound(bucket) <= val);
+			assertTrue(val + " - " + bucket, LatencyHistogram.upperBound(bucket) >= val);
+		}
+		int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+	}
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram hist = new LatencyHistogram();
+		for (int val = 1; val <= 1000; val++) {
+			hist.add(val);
+		}
+		assertEquals(1000, hist.getCount());
+
+		long p50 = hist.getPercentile(50);
+		assertTrue(Long.toString(p50), p50 >= 500 && p50 <= 500 * 1.25);
+
+		long p99 = hist.getPercentile(99);
+		assertTrue(Long.toString(p99), p99 >= 990 && p99 <= 990 * 1.25);
+	}
+
+	@Test
+	public void testNegative() {
+		LatencyHistogram hist = new LatencyHistogram();
+		hist.add(-5);
+		assertEquals(0, hist.getPercentile(100));
+	}
+}
@@ -106,7 +106,7 @@ public class TestFavouritesService extends AbstractTestCase {
 					"select * from HistoryStarTest where id=" + i), 2000 + i)));
 
 			favService.store(favourites);
-			QueryFavourites favQueue = asyncFileStore.getFromWriteQueue(user).get();
+			QueryFavourites favQueue = asyncFileStore.getFromWriteQueue(user, QueryFavourites.class).get();
 			assertNotNull(favQueue);
 
 			// should be the same instance
@@ -117,7 +117,7 @@ public class TestFavouritesService extends AbstractTestCase {
 		assertFalse(storage.read(user, QueryFavourites.class).isPresent());
 
 		asyncFileStore.flush();
-		assertFalse(asyncFileStore.getFromWriteQueue(user).isPresent());
+		assertFalse(asyncFileStore.getFromWriteQueue(user, QueryFavourites.class).isPresent());
 
 		assertSame(favourites, favService.read());
 
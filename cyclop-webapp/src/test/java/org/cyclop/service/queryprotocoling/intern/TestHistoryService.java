@@ -23,7 +23,11 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -38,9 +42,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
+import org.cyclop.common.AppConfig;
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryType;
 import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryFavourites;
 import org.cyclop.model.QueryHistory;
 import org.cyclop.model.UserIdentifier;
 import org.cyclop.model.exception.BeanValidationException;
@@ -69,6 +75,15 @@ public class TestHistoryService extends AbstractTestCase {
 	@Inject
 	private FileStorage storage;
 
+	@Inject
+	private HistoryJournal journal;
+
+	@Inject
+	private AppConfig config;
+
+	@Inject
+	private FavouritesServiceImpl favService;
+
 	@Inject
 	private ThreadTestScope threadTestScope;
 
@@ -100,7 +115,7 @@ public class TestHistoryService extends AbstractTestCase {
 		for (int i = 0; i < 600; i++) {
 			historyService.addAndStore(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * " + CR
 					+ "from HistoryTest where " + CR + "id=" + i), 1000 + i));
-			QueryHistory historyQueue = asyncFileStore.getFromWriteQueue(user).get();
+			QueryHistory historyQueue = asyncFileStore.getFromWriteQueue(user, QueryHistory.class).get();
 			assertNotNull(historyQueue);
 
 			// should be the same instance
@@ -109,11 +124,11 @@ public class TestHistoryService extends AbstractTestCase {
 		assertEquals(500, history.size());
 
 		asyncFileStore.flush();
-		assertFalse(asyncFileStore.getFromWriteQueue(user).isPresent());
+		assertFalse(asyncFileStore.getFromWriteQueue(user, QueryHistory.class).isPresent());
 
 		assertSame(history, historyService.read());
 
-		QueryHistory readHist = storage.read(user, QueryHistory.class).get();
+		QueryHistory readHist = journal.read(user).get();
 		assertNotSame(history, readHist);
 
 		for (int i = 100; i < 600; i++) {
@@ -134,7 +149,95 @@ public class TestHistoryService extends AbstractTestCase {
 			assertEquals(0, history.size());
 			historyService.store(history);
 			asyncFileStore.flush();
-			assertEquals(0, storage.read(user, QueryHistory.class).get().size());
+			assertEquals(0, journal.read(user).get().size());
+		}
+	}
+
+	@Test
+	public void testJournal() throws Exception {
+		QueryHistory history = historyService.read();
+		asyncFileStore.flush();
+
+		for (int i = 0; i < 10; i++) {
+			historyService.addAndStore(new QueryEntry(new CqlQuery(CqlQueryType.SELECT,
+					"select * from JournalTest where id=" + i), i));
+			if (i % 3 == 0) {
+				asyncFileStore.flush();
+			}
+		}
+		asyncFileStore.flush();
+
+		// history is written on first flush, and each next flush appends new entries
+		List<QueryHistory> records = storage.readJournal(user, QueryHistory.class).entities;
+		assertEquals(4, records.size());
+		assertEquals(10, journal.read(user).get().size());
+		assertEquals(history.copyAsList(), journal.read(user).get().copyAsList());
+
+		// journal is compacted once it holds twice as many entries as history
+		for (int i = 10; i < 1010; i++) {
+			historyService.addAndStore(new QueryEntry(new CqlQuery(CqlQueryType.SELECT,
+					"select * from JournalTest where id=" + i), i));
+			if (i % 100 == 0) {
+				asyncFileStore.flush();
+			}
+		}
+		asyncFileStore.flush();
+		assertTrue(storage.readJournal(user, QueryHistory.class).entities.size() < 10);
+		assertEquals(history.copyAsList(), journal.read(user).get().copyAsList());
+	}
+
+	@Test
+	public void testJournal_AppendAfterDamagedTail() throws Exception {
+		UserIdentifier otherUser = new UserIdentifier(UUID.randomUUID());
+		QueryHistory history = new QueryHistory();
+		history.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from DamagedTail where id=1"), 1));
+		journal.store(otherUser, history);
+		history.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from DamagedTail where id=2"), 2));
+		journal.store(otherUser, history);
+
+		// application stopped while appending the second record
+		Path file = Paths.get(config.fileStore.folder, "QueryHistory-" + otherUser.id + ".journal");
+		byte[] content = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(content, content.length - 3));
+
+		QueryHistory read = journal.read(otherUser).get();
+		assertEquals(1, read.size());
+		read.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from DamagedTail where id=3"), 3));
+		journal.store(otherUser, read);
+
+		QueryHistory reread = journal.read(otherUser).get();
+		assertEquals(read.copyAsList(), reread.copyAsList());
+		assertEquals("select * from DamagedTail where id=3", reread.copyAsList().get(0).query.part);
+		assertFalse(storage.readJournal(otherUser, QueryHistory.class).damaged);
+	}
+
+	@Test
+	public void testFlushHistoryAndFavouritesOfSameUser() throws Exception {
+		// session scoped services keep identifiers from previous tests - restore it, so that other tests of
+		// favourites do not find file flushed here
+		UserIdentifier favUser = favService.getUser();
+		favService.setUser(user);
+		try {
+			QueryEntry entry = new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from FlushTest"), 1);
+			historyService.addAndStore(entry);
+
+			QueryFavourites favourites = favService.read();
+			favourites.addWithSizeCheck(entry);
+			favService.store(favourites);
+
+			assertTrue(asyncFileStore.getFromWriteQueue(user, QueryHistory.class).isPresent());
+			assertTrue(asyncFileStore.getStats().queueSize >= 2);
+
+			long flushCount = asyncFileStore.getStats().flushCount;
+			asyncFileStore.flush();
+			AsyncFileStore.Stats stats = asyncFileStore.getStats();
+			assertEquals(stats.toString(), flushCount + 1, stats.flushCount);
+			assertFalse(asyncFileStore.getFromWriteQueue(user, QueryHistory.class).isPresent());
+
+			assertTrue(journal.read(user).get().contains(entry));
+			assertTrue(storage.read(user, QueryFavourites.class).get().contains(entry));
+		} finally {
+			favService.setUser(favUser);
 		}
 	}
 
@@ -20,14 +20,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.Arrays;
+
 import javax.inject.Inject;
 
 import org.cyclop.model.CqlQuery;
 import org.cyclop.model.CqlQueryType;
 import org.cyclop.model.FilterResult;
+import org.cyclop.model.QueryEntry;
+import org.cyclop.model.QueryFavourites;
+import org.cyclop.model.QueryHistory;
+import org.cyclop.model.SearchIndex;
 import org.cyclop.test.AbstractTestCase;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 public class TestSearchService extends AbstractTestCase {
@@ -138,6 +145,73 @@ public class TestSearchService extends AbstractTestCase {
 		validateFiltered(filtered, 8, 4, 1, 2, 3, 5, 6, 7, 0);
 	}
 
+	@Test
+	public void testIndexedFilter_SameAsFilter() {
+		SearchIndex<CqlQuery> index = new SearchIndex<>(query -> query.partLc);
+		QUERY_LIST.forEach(index::add);
+
+		String[][] keywords = { { "fro" }, { "from " }, { "cqldemo" }, { "attr" }, { "3322" }, { "mybooks" },
+				{ "332" }, { "332", "from" }, { "332", "insert" }, { "332", "from", "insert" },
+				{ "332", "fRom", "INSERT" }, { "332", "from", "insert", "select" }, { "332", "from", "insert", "into" },
+				{ "3322", "from", "insert", "into" }, { "notfound" } };
+		for (String[] kw : keywords) {
+			assertEquals(Arrays.toString(kw), service.filter(QUERY_LIST, FAC, kw).get().result,
+					service.filter(index, 100, kw).get().result);
+		}
+	}
+
+	@Test
+	public void testIndexedFilter_Limit() {
+		SearchIndex<CqlQuery> index = new SearchIndex<>(query -> query.partLc);
+		QUERY_LIST.forEach(index::add);
+
+		ImmutableList<CqlQuery> all = service.filter(QUERY_LIST, FAC, "332", "from").get().result;
+		assertEquals(all.subList(0, 3), service.filter(index, 3, "332", "from").get().result);
+	}
+
+	@Test
+	public void testIndexedFilter_KeywordsToShort() {
+		SearchIndex<CqlQuery> index = new SearchIndex<>(query -> query.partLc);
+		QUERY_LIST.forEach(index::add);
+		assertFalse(service.filter(index, 100, "in", "i", "in  ", "  ").isPresent());
+	}
+
+	@Test
+	public void testIndexedFilter_History() {
+		QueryHistory history = new QueryHistory();
+		history.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable where id=0"), 1));
+		SearchIndex<QueryEntry> index = history.getIndex();
+		assertEquals(1, index.search(ImmutableSet.of("where id=0"), 100).size());
+
+		// index follows history, also when oldest entries are evicted
+		for (int i = 1; i < 600; i++) {
+			history.add(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable where id=" + i), i));
+		}
+		assertEquals(500, index.size());
+		assertEquals(0, index.search(ImmutableSet.of("where id=0"), 100).size());
+		assertEquals(10, index.search(ImmutableSet.of("where id=10"), 100).size());
+		assertEquals(100, index.search(ImmutableSet.of("where id=5"), 200).size());
+
+		history.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.search(ImmutableSet.of("mytable"), 100).size());
+	}
+
+	@Test
+	public void testIndexedFilter_Favourites() {
+		QueryFavourites favourites = new QueryFavourites();
+		QueryEntry entry = new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable"), 1);
+		favourites.addWithSizeCheck(entry);
+		SearchIndex<QueryEntry> index = favourites.getIndex();
+
+		favourites.addWithSizeCheck(new QueryEntry(new CqlQuery(CqlQueryType.SELECT, "select * from MyTable"), 2));
+		assertEquals(1, index.size());
+		assertEquals(2, index.search(ImmutableSet.of("mytable"), 100).get(0).runTime);
+
+		favourites.remove(entry);
+		assertEquals(0, index.search(ImmutableSet.of("mytable"), 100).size());
+	}
+
 	private void validateFiltered(FilterResult<CqlQuery> filterRes, int size, int... queries) {
 		assertEquals(size, filterRes.result.size());
 		assertNotNull(filterRes.normalizedKeywords);
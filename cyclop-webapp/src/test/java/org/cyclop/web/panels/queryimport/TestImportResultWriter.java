@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.panels.queryimport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import org.cyclop.model.CqlQuery;
+import org.cyclop.model.CqlQueryType;
+import org.cyclop.model.exception.QueryException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
+
+/** @author Maciej Miklas */
+public class TestImportResultWriter {
+
+	private Path log;
+
+	@Before
+	public void init() throws Exception {
+		log = Files.createTempFile("cyclop-import-test", ".log.gz");
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		Files.deleteIfExists(log);
+	}
+
+	@Test
+	public void testKeepsErrorsAndSample() throws Exception {
+		ImportResultWriter writer = new ImportResultWriter(log, 5, 10);
+		for (int idx = 0; idx < 100; idx++) {
+			writer.success(new CqlQuery(CqlQueryType.INSERT, "insert " + idx), idx);
+		}
+		for (int idx = 0; idx < 20; idx++) {
+			writer.error(new CqlQuery(CqlQueryType.INSERT, "error " + idx), new QueryException("failed " + idx,
+					null), idx);
+		}
+		writer.close();
+
+		assertEquals(100, writer.getSuccessCount());
+		assertEquals(20, writer.getErrorCount());
+		assertEquals(120, writer.getLatency().getCount());
+
+		ImmutableList<ImportResult> result = writer.getResult();
+		assertEquals(result.toString(), 15, result.size());
+		for (int idx = 0; idx < 5; idx++) {
+			assertEquals("failed " + idx, result.get(idx).error);
+		}
+	}
+
+	@Test
+	public void testLogContainsAllQueries() throws Exception {
+		ImportResultWriter writer = new ImportResultWriter(log, 1, 1);
+		writer.success(new CqlQuery(CqlQueryType.INSERT, "insert into t"), 3);
+		writer.error(new CqlQuery(CqlQueryType.INSERT, "insert 2"), new QueryException("multi\nline", null), 4);
+		writer.unknownError(new CqlQuery(CqlQueryType.INSERT, "insert 3"), new RuntimeException("unknown"), 5);
+		writer.close();
+
+		List<String> lines;
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(log)),
+				StandardCharsets.UTF_8)) {
+			lines = CharStreams.readLines(reader);
+		}
+		assertEquals(0, writer.getDroppedLogLines());
+		assertEquals(lines.toString(), 3, lines.size());
+		assertEquals("3\tOK\tinsert into t", lines.get(0));
+		assertEquals("4\tERROR\tinsert 2\tmulti line", lines.get(1));
+		assertTrue(lines.get(2), lines.get(2).startsWith("5\tERROR\tinsert 3\tUnhandled exception"));
+	}
+
+	@Test
+	public void testLogFromManyThreads() throws Exception {
+		final ImportResultWriter writer = new ImportResultWriter(log, 1, 1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < 4; thread++) {
+			final int threadIdx = thread;
+			futures.add(executor.submit(() -> {
+				for (int idx = 0; idx < 5000; idx++) {
+					writer.success(new CqlQuery(CqlQueryType.INSERT, "insert " + threadIdx + "-" + idx), 1);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		writer.close();
+		writer.close();
+
+		List<String> lines;
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(log)),
+				StandardCharsets.UTF_8)) {
+			lines = CharStreams.readLines(reader);
+		}
+
+		// reporting threads do not wait for disk - lines which did not fit into the queue are counted instead
+		long dropped = writer.getDroppedLogLines();
+		if (dropped > 0) {
+			assertEquals("# " + dropped + " results have not been logged", lines.remove(lines.size() - 1));
+		}
+		assertEquals(20000, lines.size() + dropped);
+		assertEquals(lines.size(), new HashSet<>(lines).size());
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.iterablegrid;
+
+/**
+ * Stores elements read by {@link NavigableIterator}, so that pager can go back to already visited pages without
+ * reading the underlying iterator again. Implementation can evict elements - such elements will be fetched again
+ * trough {@link ElementLoader}.
+ *
+ * @author Maciej Miklas
+ */
+public interface ElementsCache<E> {
+
+	/** @return amount of elements added trough {@link #add(Object)}, including evicted ones */
+	int size();
+
+	/** @return element on given index, or <code>null</code> if it has been evicted */
+	E get(int index);
+
+	/** appends element read from underlying iterator */
+	void add(E element);
+
+	/** replaces evicted element on given index with element fetched again trough {@link ElementLoader} */
+	void set(int index, E element);
+
+	/** @return true if this cache can evict elements - in this case {@link ElementLoader} is required */
+	boolean isEvicting();
+}
@@ -80,7 +80,7 @@ public abstract class IterableDataProvider<E> implements IDataProvider<E> {
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void replaceModel() {
-		iterator = new NavigableIterator(iterator(), elementsLimit, createElementsCache());
+		iterator = new NavigableIterator(iterator(), elementsLimit, createCache(), elementLoader());
 		reset();
 	}
 
@@ -114,4 +114,18 @@ public abstract class IterableDataProvider<E> implements IDataProvider<E> {
 		return new ArrayList<>();
 	}
 
+	/**
+	 * Cache strategy - by default all elements are kept in list created by {@link #createElementsCache()}. Return
+	 * {@link WindowedElementsCache} in order to limit memory usage, in this case {@link #elementLoader()} has to be
+	 * provided.
+	 */
+	protected ElementsCache<E> createCache() {
+		return new ListElementsCache<>(createElementsCache());
+	}
+
+	/** @return loader for elements evicted from cache, or <code>null</code> if cache does not evict */
+	protected ElementLoader<E> elementLoader() {
+		return null;
+	}
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.iterablegrid;
+
+import java.util.List;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Unbounded cache backed by {@link List} - all elements stay in memory.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+final class ListElementsCache<E> implements ElementsCache<E> {
+
+	private final List<E> list;
+
+	public ListElementsCache(List<E> list) {
+		this.list = list;
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	@Override
+	public E get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public void add(E element) {
+		list.add(element);
+	}
+
+	@Override
+	public void set(int index, E element) {
+		list.set(index, element);
+	}
+
+	@Override
+	public boolean isEvicting() {
+		return false;
+	}
+}
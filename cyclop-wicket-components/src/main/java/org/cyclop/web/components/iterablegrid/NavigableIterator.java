@@ -16,10 +16,8 @@
  */
 package org.cyclop.web.components.iterablegrid;
 
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
 
 import net.jcip.annotations.NotThreadSafe;
 
@@ -29,11 +27,19 @@ final class NavigableIterator<E> implements Iterator<E> {
 
 	private final Iterator<E> wrapped;
 
-	/** contains all elements in order returned by iterator */
-	private final List<E> cache;
+	/** contains elements in order returned by iterator, evicted elements are fetched again trough #loader */
+	private final ElementsCache<E> cache;
+
+	/** Fetches evicted elements, can be null if #cache does not evict */
+	private final ElementLoader<E> loader;
 
 	/** Contains index of the elements that has been read by #next() */
-	private final Set<Integer> read = new HashSet<>();
+	private final BitSet read = new BitSet();
+
+	/** Iterator returned by #loader - it is reused as long as evicted elements are being read in sequence */
+	private Iterator<E> reloaded;
+
+	private int reloadedIndex = -1;
 
 	private int nextIndex = 0;
 
@@ -41,13 +47,17 @@ final class NavigableIterator<E> implements Iterator<E> {
 
 	private final int limit;
 
-	public NavigableIterator(Iterator<E> wrapped, int limit, List<E> cache) {
+	public NavigableIterator(Iterator<E> wrapped, int limit, ElementsCache<E> cache, ElementLoader<E> loader) {
 		if (wrapped == null) {
 			throw new IllegalArgumentException("Wrapped must not be null");
 		}
+		if (cache.isEvicting() && loader == null) {
+			throw new IllegalArgumentException("Evicting cache requires element loader");
+		}
 		this.wrapped = wrapped;
 		this.limit = limit;
 		this.cache = cache;
+		this.loader = loader;
 	}
 
 	public void prepare(int first, int count) {
@@ -82,6 +92,9 @@ final class NavigableIterator<E> implements Iterator<E> {
 			next = null;
 		} else if (nextIndex < cache.size()) {
 			next = cache.get(nextIndex);
+			if (next == null) {
+				next = reload(nextIndex);
+			}
 		} else {
 			if (!wrapped.hasNext()) {
 				next = null;
@@ -97,13 +110,28 @@ final class NavigableIterator<E> implements Iterator<E> {
 		}
 
 		if (next != null) {
-			read.add(nextIndex);
+			read.set(nextIndex);
 			count--;
 			nextIndex++;
 		}
 		return next;
 	}
 
+	private E reload(int index) {
+		if (reloaded == null || reloadedIndex != index) {
+			reloaded = loader.load(index);
+			reloadedIndex = index;
+		}
+		if (!reloaded.hasNext()) {
+			reloaded = null;
+			return null;
+		}
+		E next = reloaded.next();
+		reloadedIndex++;
+		cache.set(index, next);
+		return next;
+	}
+
 	@Override
 	public void remove() {
 		wrapped.remove();
@@ -128,10 +156,10 @@ final class NavigableIterator<E> implements Iterator<E> {
 	}
 
 	public int maxSize() {
-		return Math.max(read.size(), cache.size());
+		return Math.max(read.cardinality(), cache.size());
 	}
 
 	public int readSize() {
-		return read.size();
+		return read.cardinality();
 	}
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.iterablegrid;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Cache holding elements in fixed size pages. When row or byte budget is exceeded, pages with the greatest distance to
+ * recently accessed page are evicted - user browsing results goes usually back and forth over few neighbouring pages,
+ * and far away pages can be fetched again trough {@link ElementLoader}.
+ *
+ * @author Maciej Miklas
+ */
+@NotThreadSafe
+public final class WindowedElementsCache<E> implements ElementsCache<E> {
+
+	private final int pageSize;
+
+	private final int maxElements;
+
+	private final long maxBytes;
+
+	private final Weigher<E> weigher;
+
+	private final Map<Integer, Page> pages = new HashMap<>();
+
+	private int size = 0;
+
+	private int cachedElements = 0;
+
+	private long cachedBytes = 0;
+
+	private int focusPage = 0;
+
+	/**
+	 * @param pageSize
+	 *            amount of elements in single page - this is the unit of eviction
+	 * @param maxElements
+	 *            maximal amount of elements kept in memory
+	 * @param maxBytes
+	 *            maximal estimated size of elements kept in memory
+	 * @param weigher
+	 *            estimates element size in bytes
+	 */
+	public WindowedElementsCache(int pageSize, int maxElements, long maxBytes, Weigher<E> weigher) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+		}
+		if (maxElements < pageSize) {
+			throw new IllegalArgumentException("Elements budget " + maxElements + " must hold at least one page: "
+					+ pageSize);
+		}
+		if (weigher == null) {
+			throw new IllegalArgumentException("Weigher must not be null");
+		}
+		this.pageSize = pageSize;
+		this.maxElements = maxElements;
+		this.maxBytes = maxBytes;
+		this.weigher = weigher;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		focusPage = index / pageSize;
+		Page page = pages.get(focusPage);
+		return page == null ? null : (E) page.elements[index % pageSize];
+	}
+
+	@Override
+	public void add(E element) {
+		put(size, element);
+		size++;
+	}
+
+	@Override
+	public void set(int index, E element) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		put(index, element);
+	}
+
+	@Override
+	public boolean isEvicting() {
+		return true;
+	}
+
+	/** @return amount of elements currently held in memory */
+	public int cachedElements() {
+		return cachedElements;
+	}
+
+	/** @return estimated size of elements currently held in memory */
+	public long cachedBytes() {
+		return cachedBytes;
+	}
+
+	private void put(int index, E element) {
+		focusPage = index / pageSize;
+		Page page = pages.get(focusPage);
+		if (page == null) {
+			page = new Page(pageSize);
+			pages.put(focusPage, page);
+		}
+		int offset = index % pageSize;
+		if (page.elements[offset] != null) {
+			return;
+		}
+		long bytes = weigher.weigh(element);
+		page.elements[offset] = element;
+		page.count++;
+		page.bytes += bytes;
+		cachedElements++;
+		cachedBytes += bytes;
+		evict();
+	}
+
+	private void evict() {
+		while ((cachedElements > maxElements || cachedBytes > maxBytes) && pages.size() > 1) {
+			int farthest = focusPage;
+			int farthestDistance = 0;
+			for (Integer pageIdx : pages.keySet()) {
+				int distance = Math.abs(pageIdx - focusPage);
+				if (distance > farthestDistance) {
+					farthest = pageIdx;
+					farthestDistance = distance;
+				}
+			}
+			Page evicted = pages.remove(farthest);
+			cachedElements -= evicted.count;
+			cachedBytes -= evicted.bytes;
+		}
+	}
+
+	/** Estimates amount of memory occupied by single element */
+	public interface Weigher<E> {
+		long weigh(E element);
+	}
+
+	private static final class Page {
+		private final Object[] elements;
+
+		private int count;
+
+		private long bytes;
+
+		public Page(int size) {
+			elements = new Object[size];
+		}
+	}
+}
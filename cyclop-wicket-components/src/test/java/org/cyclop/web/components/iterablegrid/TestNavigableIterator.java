@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.iterablegrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** @author Maciej Miklas */
+public class TestNavigableIterator {
+
+	private List<Integer> data;
+
+	/** indexes passed to loader */
+	private List<Integer> loads;
+
+	private WindowedElementsCache<Integer> cache;
+
+	private NavigableIterator<Integer> iterator;
+
+	@Before
+	public void setup() {
+		data = new ArrayList<>();
+		for (int idx = 0; idx < 100; idx++) {
+			data.add(idx);
+		}
+		loads = new ArrayList<>();
+		cache = new WindowedElementsCache<>(10, 20, Long.MAX_VALUE, element -> 1);
+		iterator = new NavigableIterator<>(data.iterator(), 1000, cache, fromIndex -> {
+			loads.add(fromIndex);
+			return data.subList(fromIndex, data.size()).iterator();
+		});
+	}
+
+	@Test
+	public void testReadAll() {
+		assertEquals(data, read(0, 100));
+		assertFalse(iterator.hasMoreData());
+		assertEquals(100, iterator.maxSize());
+		assertEquals(100, iterator.readSize());
+		assertEquals(20, cache.cachedElements());
+		assertTrue(loads.isEmpty());
+	}
+
+	@Test
+	public void testReadCachedPage() {
+		read(0, 100);
+		assertEquals(data.subList(90, 100), read(90, 10));
+		assertTrue(loads.isEmpty());
+	}
+
+	@Test
+	public void testReloadEvictedPages() {
+		read(0, 100);
+
+		// one loader iterator is reused for the whole range, even if it spans evicted pages
+		assertEquals(data.subList(5, 25), read(5, 20));
+		assertEquals(1, loads.size());
+		assertEquals(Integer.valueOf(5), loads.get(0));
+		assertTrue(cache.cachedElements() <= 20);
+
+		// reloaded elements are cached again
+		assertEquals(data.subList(15, 25), read(15, 10));
+		assertEquals(1, loads.size());
+	}
+
+	@Test
+	public void testReloadAfterSkippingBack() {
+		read(0, 100);
+		assertEquals(data.subList(40, 45), read(40, 5));
+		assertEquals(data.subList(10, 15), read(10, 5));
+		assertEquals(2, loads.size());
+		assertEquals(Integer.valueOf(40), loads.get(0));
+		assertEquals(Integer.valueOf(10), loads.get(1));
+	}
+
+	private List<Integer> read(int first, int count) {
+		iterator.prepare(first, count);
+		List<Integer> read = new ArrayList<>();
+		for (int idx = 0; idx < count && iterator.hasNext(); idx++) {
+			read.add(iterator.next());
+		}
+		return read;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.cyclop.web.components.iterablegrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** @author Maciej Miklas */
+public class TestWindowedElementsCache {
+
+	private final static WindowedElementsCache.Weigher<Integer> ONE_BYTE = element -> 1;
+
+	@Test
+	public void testEvictsPagesOutsideWindow() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(10, 30, Long.MAX_VALUE, ONE_BYTE);
+		for (int idx = 0; idx < 100; idx++) {
+			cache.add(idx);
+			assertTrue(cache.toString(), cache.cachedElements() <= 30);
+		}
+		assertEquals(100, cache.size());
+		assertEquals(30, cache.cachedElements());
+
+		// three pages around the last added element stay in memory
+		assertEquals(Integer.valueOf(99), cache.get(99));
+		assertEquals(Integer.valueOf(70), cache.get(70));
+		assertNull(cache.get(69));
+		assertNull(cache.get(0));
+	}
+
+	@Test
+	public void testEvictsFarthestFromAccessedPage() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(10, 30, Long.MAX_VALUE, ONE_BYTE);
+		for (int idx = 0; idx < 100; idx++) {
+			cache.add(idx);
+		}
+
+		// element loaded again at the beginning evicts the last page
+		cache.set(0, 0);
+		assertEquals(Integer.valueOf(0), cache.get(0));
+		assertEquals(21, cache.cachedElements());
+		assertNull(cache.get(99));
+		assertEquals(Integer.valueOf(70), cache.get(70));
+		assertEquals(Integer.valueOf(89), cache.get(89));
+	}
+
+	@Test
+	public void testByteBudget() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(5, 1000, 1000, element -> 100);
+		for (int idx = 0; idx < 50; idx++) {
+			cache.add(idx);
+			assertTrue(cache.toString(), cache.cachedBytes() <= 1000);
+		}
+		assertEquals(50, cache.size());
+		assertEquals(10, cache.cachedElements());
+		assertEquals(1000, cache.cachedBytes());
+		assertNotNull(cache.get(40));
+		assertNull(cache.get(39));
+	}
+
+	@Test
+	public void testKeepsCurrentPageOverBudget() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(10, 10, 5, ONE_BYTE);
+		for (int idx = 0; idx < 10; idx++) {
+			cache.add(idx);
+		}
+		assertEquals(10, cache.cachedElements());
+		assertEquals(Integer.valueOf(0), cache.get(0));
+
+		cache.add(10);
+		assertEquals(1, cache.cachedElements());
+		assertNull(cache.get(0));
+	}
+
+	@Test
+	public void testSetDoesNotReplaceCachedElement() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(10, 30, Long.MAX_VALUE, ONE_BYTE);
+		cache.add(1);
+		cache.set(0, 2);
+		assertEquals(Integer.valueOf(1), cache.get(0));
+		assertEquals(1, cache.cachedElements());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGet_OutOfBounds() {
+		WindowedElementsCache<Integer> cache = new WindowedElementsCache<>(10, 30, Long.MAX_VALUE, ONE_BYTE);
+		cache.add(1);
+		cache.get(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBudgetSmallerThanPage() {
+		new WindowedElementsCache<>(10, 9, Long.MAX_VALUE, ONE_BYTE);
+	}
+}